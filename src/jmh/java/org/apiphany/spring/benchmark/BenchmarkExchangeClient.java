@@ -0,0 +1,50 @@
+package org.apiphany.spring.benchmark;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apiphany.ApiRequest;
+import org.apiphany.client.ClientProperties;
+import org.apiphany.client.http.RestTemplateExchangeClient;
+import org.springframework.http.HttpEntity;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Rest template exchange client exposing the protected methods measured by the benchmarks.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class BenchmarkExchangeClient extends RestTemplateExchangeClient {
+
+	/**
+	 * Constructor.
+	 *
+	 * @param clientProperties client properties
+	 */
+	public BenchmarkExchangeClient(final ClientProperties clientProperties) {
+		super(clientProperties);
+	}
+
+	/**
+	 * @see RestTemplateExchangeClient#getUriComponentsBuilder(String, Map)
+	 *
+	 * @param url URL
+	 * @param requestParams request parameters
+	 * @return a new {@link UriComponentsBuilder}
+	 */
+	public static UriComponentsBuilder uriComponentsBuilder(final String url, final Map<String, List<String>> requestParams) {
+		return getUriComponentsBuilder(url, requestParams);
+	}
+
+	/**
+	 * @see RestTemplateExchangeClient#buildHttpEntity(ApiRequest)
+	 *
+	 * @param <T> request entity type
+	 *
+	 * @param apiRequest the request object
+	 * @return the request entity
+	 */
+	public <T> HttpEntity<T> httpEntity(final ApiRequest<T> apiRequest) {
+		return buildHttpEntity(apiRequest);
+	}
+}
@@ -0,0 +1,114 @@
+package org.apiphany.spring.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apiphany.spring.http.GZipCompressingRequestInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+
+/**
+ * Benchmark for {@link GZipCompressingRequestInterceptor} with JSON request bodies of different sizes.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+	/**
+	 * Request URI.
+	 */
+	private static final URI REQUEST_URI = URI.create("http://localhost/items");
+
+	/**
+	 * Approximate request body size in bytes.
+	 */
+	@Param({ "512", "16384", "1048576" })
+	private int bodySize;
+
+	/**
+	 * The interceptor under test.
+	 */
+	private GZipCompressingRequestInterceptor interceptor;
+
+	/**
+	 * The request body.
+	 */
+	private byte[] body;
+
+	/**
+	 * Creates the interceptor and the request body.
+	 */
+	@Setup
+	public void setUp() {
+		interceptor = new GZipCompressingRequestInterceptor();
+		StringBuilder sb = new StringBuilder(bodySize + 64).append('[');
+		for (int i = 0; sb.length() < bodySize; ++i) {
+			sb.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i).append("\",\"active\":true},");
+		}
+		sb.setCharAt(sb.length() - 1, ']');
+		body = sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Measures intercepting a request, the execution only consumes the body that would be sent.
+	 *
+	 * @param blackhole JMH black hole
+	 * @throws IOException never
+	 */
+	@Benchmark
+	public void intercept(final Blackhole blackhole) throws IOException {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		HttpRequest request = new HttpRequest() {
+			@Override
+			public HttpMethod getMethod() {
+				return HttpMethod.POST;
+			}
+
+			@Override
+			public URI getURI() {
+				return REQUEST_URI;
+			}
+
+			@Override
+			public HttpHeaders getHeaders() {
+				return headers;
+			}
+
+			@Override
+			public Map<String, Object> getAttributes() {
+				return Collections.emptyMap();
+			}
+		};
+		ClientHttpRequestExecution execution = (httpRequest, bytes) -> {
+			blackhole.consume(bytes);
+			return null;
+		};
+		interceptor.intercept(request, body, execution);
+	}
+}
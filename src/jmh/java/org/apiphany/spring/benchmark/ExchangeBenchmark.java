@@ -0,0 +1,149 @@
+package org.apiphany.spring.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apiphany.ApiRequest;
+import org.apiphany.ApiResponse;
+import org.apiphany.client.ClientProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * End to end benchmark for {@link org.apiphany.client.http.RestTemplateExchangeClient#exchange(ApiRequest)} against an
+ * in-process JDK HTTP server returning a small JSON array.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExchangeBenchmark {
+
+	/**
+	 * Response body returned by the stub server.
+	 */
+	private static final byte[] RESPONSE_BODY = """
+			[
+				{"id":1,"name":"alpha","active":true},
+				{"id":2,"name":"beta","active":false},
+				{"id":3,"name":"gamma","active":true}
+			]
+			""".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Response element.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Item {
+
+		/**
+		 * Identifier.
+		 */
+		public long id;
+
+		/**
+		 * Name.
+		 */
+		public String name;
+
+		/**
+		 * Active flag.
+		 */
+		public boolean active;
+	}
+
+	/**
+	 * The stub server.
+	 */
+	private HttpServer server;
+
+	/**
+	 * The client under test.
+	 */
+	private BenchmarkExchangeClient client;
+
+	/**
+	 * The API request.
+	 */
+	private ApiRequest<Object> apiRequest;
+
+	/**
+	 * Starts the stub server and creates the client.
+	 *
+	 * @throws IOException when the server cannot be started
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext("/items", ExchangeBenchmark::respond);
+		server.start();
+
+		client = Benchmarks.initialize(new BenchmarkExchangeClient(ClientProperties.defaults()));
+		String url = "http://localhost:" + server.getAddress().getPort() + "/items";
+		apiRequest = Benchmarks.apiRequest(url, Benchmarks.PARAMS, Benchmarks.HEADERS, Item[].class);
+	}
+
+	/**
+	 * Closes the client and stops the stub server.
+	 *
+	 * @throws Exception when the client cannot be closed
+	 */
+	@TearDown
+	public void tearDown() throws Exception {
+		client.close();
+		server.stop(0);
+	}
+
+	/**
+	 * Writes the stub response.
+	 *
+	 * @param exchange the HTTP exchange
+	 * @throws IOException on I/O error
+	 */
+	private static void respond(final HttpExchange exchange) throws IOException {
+		try (InputStream requestBody = exchange.getRequestBody()) {
+			requestBody.transferTo(OutputStream.nullOutputStream());
+		}
+		exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+		exchange.sendResponseHeaders(200, RESPONSE_BODY.length);
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(RESPONSE_BODY);
+		}
+	}
+
+	/**
+	 * Measures a full exchange.
+	 *
+	 * @return the API response
+	 */
+	@Benchmark
+	public ApiResponse<Item[]> exchange() {
+		return client.exchange(apiRequest);
+	}
+}
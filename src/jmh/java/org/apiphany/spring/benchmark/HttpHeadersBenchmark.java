@@ -0,0 +1,142 @@
+package org.apiphany.spring.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apiphany.ApiRequest;
+import org.apiphany.client.ClientProperties;
+import org.apiphany.spring.collections.ExtendedMaps;
+import org.apiphany.spring.http.SpringHttpRequests;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Benchmarks for the header and request parameter conversions done on every exchange.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpHeadersBenchmark {
+
+	/**
+	 * Response headers as returned by the Apache HTTP client.
+	 */
+	private static final Header[] RESPONSE_HEADERS = {
+			new BasicHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE),
+			new BasicHeader(HttpHeaders.CONTENT_LENGTH, "1024"),
+			new BasicHeader(HttpHeaders.DATE, "Sat, 17 Oct 2026 10:00:00 GMT"),
+			new BasicHeader(HttpHeaders.ETAG, "\"33a64df551425fcc55e4d42a148795d9f25f89d4\""),
+			new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=60"),
+			new BasicHeader(HttpHeaders.VARY, "Accept-Encoding"),
+			new BasicHeader(HttpHeaders.SET_COOKIE, "session=abc; Path=/; HttpOnly"),
+			new BasicHeader(HttpHeaders.SET_COOKIE, "tracking=def; Path=/"),
+	};
+
+	/**
+	 * Single value request parameters.
+	 */
+	private static final Map<String, String> REQUEST_PARAMETERS = Map.of(
+			"page", "1",
+			"size", "50",
+			"filter", "name eq 'apiphany spring'",
+			"redirect", "https://example.com/callback?x=1&y=2");
+
+	/**
+	 * The client exposing {@code buildHttpEntity}.
+	 */
+	private BenchmarkExchangeClient client;
+
+	/**
+	 * The API request.
+	 */
+	private ApiRequest<Object> apiRequest;
+
+	/**
+	 * Creates the client and the API request.
+	 */
+	@Setup
+	public void setUp() {
+		client = new BenchmarkExchangeClient(ClientProperties.defaults());
+		apiRequest = Benchmarks.apiRequest("http://localhost/items", Benchmarks.PARAMS, Benchmarks.HEADERS, String.class);
+	}
+
+	/**
+	 * Measures {@code buildHttpEntity}.
+	 *
+	 * @return the request entity
+	 */
+	@Benchmark
+	public HttpEntity<Object> buildHttpEntity() {
+		return client.httpEntity(apiRequest);
+	}
+
+	/**
+	 * Measures {@link SpringHttpRequests#toHttpHeaders(Header[])} followed by a lookup.
+	 *
+	 * @return the content type
+	 */
+	@Benchmark
+	public MediaType toHttpHeaders() {
+		return SpringHttpRequests.toHttpHeaders(RESPONSE_HEADERS).getContentType();
+	}
+
+	/**
+	 * Measures {@link SpringHttpRequests#httpHeadersView(Header[])} followed by a lookup.
+	 *
+	 * @return the content type
+	 */
+	@Benchmark
+	public MediaType httpHeadersView() {
+		return SpringHttpRequests.httpHeadersView(RESPONSE_HEADERS).getContentType();
+	}
+
+	/**
+	 * Measures {@link SpringHttpRequests#encodeRequestParameters(Map)}.
+	 *
+	 * @return the encoded parameters
+	 */
+	@Benchmark
+	public Map<String, String> encodeRequestParameters() {
+		return SpringHttpRequests.encodeRequestParameters(REQUEST_PARAMETERS);
+	}
+
+	/**
+	 * Measures {@link ExtendedMaps#multiValueMap(Map)}.
+	 *
+	 * @return the multi value map
+	 */
+	@Benchmark
+	public MultiValueMap<String, String> multiValueMap() {
+		return ExtendedMaps.multiValueMap(Benchmarks.PARAMS);
+	}
+
+	/**
+	 * Measures {@link ExtendedMaps#multiValueMapView(Map)} followed by a lookup.
+	 *
+	 * @return the first value
+	 */
+	@Benchmark
+	public List<String> multiValueMapView() {
+		return ExtendedMaps.multiValueMapView(Benchmarks.PARAMS).get("sort");
+	}
+}
@@ -0,0 +1,69 @@
+package org.apiphany.spring.benchmark;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.apiphany.spring.http.UriTemplateCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for building request URIs.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UriBenchmark {
+
+	/**
+	 * Request URL.
+	 */
+	private static final String URL = "https://api.example.com:8443/v2/accounts/42/transactions";
+
+	/**
+	 * The URI template cache.
+	 */
+	private final UriTemplateCache uriTemplateCache = UriTemplateCache.defaults();
+
+	/**
+	 * Measures {@code getUriComponentsBuilder(url, params).build().toUri()}.
+	 *
+	 * @return the URI
+	 */
+	@Benchmark
+	public URI uriComponentsBuilder() {
+		return BenchmarkExchangeClient.uriComponentsBuilder(URL, Benchmarks.PARAMS).build().toUri();
+	}
+
+	/**
+	 * Measures building the URI with the URI template cache.
+	 *
+	 * @return the URI
+	 */
+	@Benchmark
+	public URI uriTemplateCache() {
+		return uriTemplateCache.getUri(URL, Benchmarks.PARAMS);
+	}
+
+	/**
+	 * Measures building the URI with the URI template cache when there are no request parameters.
+	 *
+	 * @return the URI
+	 */
+	@Benchmark
+	public URI uriTemplateCacheNoParams() {
+		return uriTemplateCache.getUri(URL, null);
+	}
+}
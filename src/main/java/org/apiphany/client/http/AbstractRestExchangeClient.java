@@ -0,0 +1,953 @@
+package org.apiphany.client.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apiphany.ApiRequest;
+import org.apiphany.ApiResponse;
+import org.apiphany.client.ClientProperties;
+import org.apiphany.client.ExchangeClient;
+import org.apiphany.http.ContentEncoding;
+import org.apiphany.http.HttpMethod;
+import org.apiphany.meters.ConnectionManagerMetricsBinder;
+import org.apiphany.spring.BeanFinder;
+import org.apiphany.spring.collections.ExtendedMaps;
+import org.apiphany.spring.http.BinaryFormats;
+import org.apiphany.spring.http.CachingRequestInterceptor;
+import org.apiphany.spring.http.ConcurrencyLimitingRequestInterceptor;
+import org.apiphany.spring.http.ContentNegotiatingRequestInterceptor;
+import org.apiphany.spring.http.GZipCompressingRequestInterceptor;
+import org.apiphany.spring.http.LoadBalancingRequestInterceptor;
+import org.apiphany.spring.http.MetricsRequestInterceptor;
+import org.apiphany.spring.http.SpringHttpRequests;
+import org.apiphany.spring.http.StreamingRequestBody;
+import org.apiphany.spring.http.StreamingRequestExecution;
+import org.apiphany.spring.http.UriTemplateCache;
+import org.apiphany.spring.http.cache.ResponseCache;
+import org.apiphany.spring.io.gzip.CompressionPolicy;
+import org.apiphany.spring.io.gzip.GZipCompressor;
+import org.apiphany.spring.meters.CircuitBreakerMetricsBinder;
+import org.apiphany.spring.meters.CompressionMetricsBinder;
+import org.apiphany.spring.meters.ConcurrencyLimiterMetricsBinder;
+import org.apiphany.spring.meters.EndpointTemplates;
+import org.apiphany.spring.meters.ExchangeMetrics;
+import org.apiphany.spring.meters.LoadBalancerMetricsBinder;
+import org.apiphany.spring.meters.PoolAutoscalerMetricsBinder;
+import org.apiphany.spring.meters.RequestCoalescerMetricsBinder;
+import org.apiphany.spring.meters.RequestHedgerMetricsBinder;
+import org.apiphany.spring.meters.ResponseCacheMetricsBinder;
+import org.apiphany.spring.meters.UriTemplateCacheMetricsBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Base class for the exchange clients built on the Spring HTTP clients. It holds the optional features shared by all
+ * of them (response cache, request coalescing, hedging, load balancing, circuit breaking, concurrency limiting,
+ * connection pool autoscaling, warm-up and sharing, GZIP compression, binary formats and exchange metrics), wires
+ * them into the exchange chain and the request interceptors and registers their metrics.
+ * <p>
+ * All the features are disabled by default and must be set before the client is initialized. Implementations create
+ * the Spring client in their initializer, calling {@link #createHttpClient()}, {@link #addInterceptors(List)} and
+ * {@link #registerMetrics()}, and perform the actual exchange in {@link #exchange(ApiRequest, URI)}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public abstract class AbstractRestExchangeClient extends AbstractHttpExchangeClient implements AsyncExchangeClient, ApplicationContextAware,
+		BeanFinder, SmartLifecycle {
+
+	/**
+	 * Class logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractRestExchangeClient.class);
+
+	/**
+	 * The underlying HTTP client, {@code null} if the client doesn't use a classic HTTP client.
+	 */
+	private CloseableHttpClient httpClient;
+
+	/**
+	 * The connection manager, {@code null} if the client doesn't use a classic HTTP client.
+	 */
+	private PoolingHttpClientConnectionManager connectionManager;
+
+	/**
+	 * The request compressor, {@code null} if GZIP compression is not enabled.
+	 */
+	private GZipCompressor compressor;
+
+	/**
+	 * The compression policy used when GZIP compression is enabled.
+	 */
+	private CompressionPolicy compressionPolicy = CompressionPolicy.defaults();
+
+	/**
+	 * The HTTP response cache for {@code GET} requests, {@code null} if response caching is not enabled.
+	 */
+	private ResponseCache responseCache;
+
+	/**
+	 * The coalescer for identical concurrent {@code GET} requests, {@code null} if request coalescing is not enabled.
+	 */
+	private RequestCoalescer requestCoalescer;
+
+	/**
+	 * The hedger for idempotent requests, {@code null} if request hedging is not enabled.
+	 */
+	private RequestHedger requestHedger;
+
+	/**
+	 * The adaptive per-host concurrency limiter, {@code null} if concurrency limiting is not enabled.
+	 */
+	private ConcurrencyLimiter concurrencyLimiter;
+
+	/**
+	 * The per-host circuit breaker, {@code null} if circuit breaking is not enabled.
+	 */
+	private CircuitBreaker circuitBreaker;
+
+	/**
+	 * The client-side load balancer, {@code null} if load balancing is not enabled.
+	 */
+	private LoadBalancer loadBalancer;
+
+	/**
+	 * The connection pool autoscaler, {@code null} if connection pool autoscaling is not enabled.
+	 */
+	private PoolAutoscaler poolAutoscaler;
+
+	/**
+	 * The connection pool warm-up, {@code null} if connection pool warm-up is not enabled.
+	 */
+	private PoolWarmUp poolWarmUp;
+
+	/**
+	 * The URI templates used by the per-endpoint exchange metrics, {@code null} if exchange metrics are not enabled.
+	 */
+	private EndpointTemplates endpointTemplates;
+
+	/**
+	 * The binary payload formats negotiated with the servers, {@code null} if binary formats are not enabled.
+	 */
+	private BinaryFormats binaryFormats;
+
+	/**
+	 * The registry of shared connection pools, {@code null} if the client has its own connection pool.
+	 */
+	private ConnectionPoolRegistry connectionPoolRegistry;
+
+	/**
+	 * The lease of the shared connection pool, {@code null} if the client has its own connection pool.
+	 */
+	private ConnectionPoolRegistry.Lease connectionPoolLease;
+
+	/**
+	 * Completed when the connection pool warm-up is done, {@code null} if connection pool warm-up is not enabled.
+	 */
+	private CompletableFuture<Void> warmUpResult;
+
+	/**
+	 * True if the client lifecycle was started.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * The executor used for asynchronous exchanges.
+	 */
+	private final ExchangeExecutor exchangeExecutor;
+
+	/**
+	 * Cache of parsed request URLs.
+	 */
+	private final UriTemplateCache uriTemplateCache = UriTemplateCache.defaults();
+
+	/**
+	 * The application context.
+	 */
+	private ApplicationContext ctx;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param clientProperties client properties
+	 * @param exchangeExecutor executor used for asynchronous exchanges, it will be closed when the client is closed
+	 */
+	protected AbstractRestExchangeClient(final ClientProperties clientProperties, final ExchangeExecutor exchangeExecutor) {
+		super(clientProperties);
+		this.exchangeExecutor = exchangeExecutor;
+	}
+
+	/**
+	 * Creates the pooled HTTP client from the client properties, or acquires the shared one when connection pool sharing
+	 * is enabled, and starts the connection pool warm-up when it is enabled.
+	 *
+	 * @return the HTTP client
+	 */
+	protected CloseableHttpClient createHttpClient() {
+		ClientProperties clientProperties = getClientProperties();
+		if (null != connectionPoolRegistry) {
+			this.connectionPoolLease = connectionPoolRegistry.acquire(clientProperties, this::customize, poolAutoscaler);
+			this.httpClient = connectionPoolLease.getHttpClient();
+		} else {
+			this.httpClient = ApacheHC5PoolingHttpClients.createClient(clientProperties, ApacheHC5PoolingHttpClients.noCustomizer(),
+					this::customize, ApacheHC5PoolingHttpClients.noCustomizer());
+		}
+		if (null != poolWarmUp) {
+			this.warmUpResult = poolWarmUp.warmUp(connectionManager, exchangeExecutor.getExecutorService());
+		}
+		return httpClient;
+	}
+
+	/**
+	 * Customizes the connection manager. The autoscaler of a shared pool is started by the connection pool registry.
+	 *
+	 * @param connectionManager pooling HTTP client connection manager
+	 */
+	private void customize(final PoolingHttpClientConnectionManager connectionManager) {
+		this.connectionManager = connectionManager;
+		registerMetrics(connectionManager);
+		if (null != poolAutoscaler && null == connectionPoolRegistry) {
+			poolAutoscaler.start(connectionManager);
+		}
+	}
+
+	/**
+	 * Adds the request interceptors of the enabled features to the given interceptors: the response cache first, then the
+	 * binary formats negotiation, the GZIP compression, the exchange metrics, the load balancer, which rewrites the service
+	 * URI so all the previous interceptors see the service URI, and the concurrency limiter, which is last so that only the
+	 * exchanges that go over the connection take a permit. The metrics of the added features are registered too.
+	 *
+	 * @param interceptors the Spring client request interceptors
+	 */
+	protected void addInterceptors(final List<ClientHttpRequestInterceptor> interceptors) {
+		if (null != binaryFormats) {
+			interceptors.add(new ContentNegotiatingRequestInterceptor(binaryFormats));
+		}
+		if (getClientProperties().getCompression().isGzip()) {
+			this.compressor = new GZipCompressor(compressionPolicy);
+			interceptors.add(new GZipCompressingRequestInterceptor(compressor));
+			registerMetrics(compressor);
+		}
+		if (null != responseCache) {
+			interceptors.addFirst(new CachingRequestInterceptor(responseCache));
+			registerMetrics(responseCache);
+		}
+		if (null != endpointTemplates) {
+			ExchangeMetrics exchangeMetrics = createExchangeMetrics(endpointTemplates);
+			if (null != exchangeMetrics) {
+				interceptors.add(new MetricsRequestInterceptor(exchangeMetrics));
+			}
+		}
+		if (null != loadBalancer) {
+			interceptors.add(new LoadBalancingRequestInterceptor(loadBalancer));
+		}
+		if (null != concurrencyLimiter) {
+			interceptors.add(new ConcurrencyLimitingRequestInterceptor(concurrencyLimiter));
+			registerMetrics(concurrencyLimiter);
+		}
+	}
+
+	/**
+	 * Registers the metrics of the URI template cache and of the enabled features which are not request interceptors.
+	 */
+	protected void registerMetrics() {
+		registerMetrics(uriTemplateCache);
+		if (null != requestCoalescer) {
+			registerMetrics(requestCoalescer);
+		}
+		if (null != requestHedger) {
+			registerMetrics(requestHedger);
+		}
+		if (null != circuitBreaker) {
+			registerMetrics(circuitBreaker);
+		}
+		if (null != loadBalancer) {
+			registerMetrics(loadBalancer);
+		}
+		PoolAutoscaler activePoolAutoscaler = null != connectionPoolLease ? connectionPoolLease.getPoolAutoscaler() : poolAutoscaler;
+		if (null != activePoolAutoscaler && null != connectionManager) {
+			registerMetrics(activePoolAutoscaler);
+		}
+	}
+
+	/**
+	 * Registers the metrics for the connection manager.
+	 *
+	 * @param connectionManager pooling HTTP client connection manager
+	 */
+	protected void registerMetrics(final PoolingHttpClientConnectionManager connectionManager) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null != meterRegistry) {
+			ConnectionManagerMetricsBinder.of(connectionManager, getClass().getSimpleName())
+					.bindTo(meterRegistry);
+		}
+	}
+
+	/**
+	 * Registers the metrics for the request compressor.
+	 *
+	 * @param compressor the request compressor
+	 */
+	protected void registerMetrics(final GZipCompressor compressor) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null != meterRegistry) {
+			CompressionMetricsBinder.of(compressor.getStatistics(), getClass().getSimpleName())
+					.bindTo(meterRegistry);
+		}
+	}
+
+	/**
+	 * Registers the metrics for the HTTP response cache.
+	 *
+	 * @param responseCache the HTTP response cache
+	 */
+	protected void registerMetrics(final ResponseCache responseCache) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null != meterRegistry) {
+			ResponseCacheMetricsBinder.of(responseCache, getClass().getSimpleName())
+					.bindTo(meterRegistry);
+		}
+	}
+
+	/**
+	 * Registers the metrics for the request coalescer.
+	 *
+	 * @param requestCoalescer the request coalescer
+	 */
+	protected void registerMetrics(final RequestCoalescer requestCoalescer) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null != meterRegistry) {
+			RequestCoalescerMetricsBinder.of(requestCoalescer, getClass().getSimpleName())
+					.bindTo(meterRegistry);
+		}
+	}
+
+	/**
+	 * Registers the metrics for the request hedger.
+	 *
+	 * @param requestHedger the request hedger
+	 */
+	protected void registerMetrics(final RequestHedger requestHedger) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null != meterRegistry) {
+			RequestHedgerMetricsBinder.of(requestHedger, getClass().getSimpleName())
+					.bindTo(meterRegistry);
+		}
+	}
+
+	/**
+	 * Registers the metrics for the concurrency limiter.
+	 *
+	 * @param concurrencyLimiter the concurrency limiter
+	 */
+	protected void registerMetrics(final ConcurrencyLimiter concurrencyLimiter) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null != meterRegistry) {
+			ConcurrencyLimiterMetricsBinder.of(concurrencyLimiter, getClass().getSimpleName())
+					.bindTo(meterRegistry);
+		}
+	}
+
+	/**
+	 * Registers the metrics for the circuit breaker.
+	 *
+	 * @param circuitBreaker the circuit breaker
+	 */
+	protected void registerMetrics(final CircuitBreaker circuitBreaker) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null != meterRegistry) {
+			CircuitBreakerMetricsBinder.of(circuitBreaker, getClass().getSimpleName())
+					.bindTo(meterRegistry);
+		}
+	}
+
+	/**
+	 * Registers the metrics for the load balancer.
+	 *
+	 * @param loadBalancer the load balancer
+	 */
+	protected void registerMetrics(final LoadBalancer loadBalancer) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null != meterRegistry) {
+			LoadBalancerMetricsBinder.of(loadBalancer, getClass().getSimpleName())
+					.bindTo(meterRegistry);
+		}
+	}
+
+	/**
+	 * Registers the metrics for the connection pool autoscaler.
+	 *
+	 * @param poolAutoscaler the connection pool autoscaler
+	 */
+	protected void registerMetrics(final PoolAutoscaler poolAutoscaler) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null != meterRegistry) {
+			PoolAutoscalerMetricsBinder.of(poolAutoscaler, getClass().getSimpleName())
+					.bindTo(meterRegistry);
+		}
+	}
+
+	/**
+	 * Registers the metrics for the URI template cache.
+	 *
+	 * @param uriTemplateCache the URI template cache
+	 */
+	protected void registerMetrics(final UriTemplateCache uriTemplateCache) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null != meterRegistry) {
+			UriTemplateCacheMetricsBinder.of(uriTemplateCache, getClass().getSimpleName())
+					.bindTo(meterRegistry);
+		}
+	}
+
+	/**
+	 * Creates the per-endpoint exchange metrics.
+	 *
+	 * @param endpointTemplates the URI templates used as tags
+	 * @return the exchange metrics, {@code null} if there is no meter registry
+	 */
+	protected ExchangeMetrics createExchangeMetrics(final EndpointTemplates endpointTemplates) {
+		MeterRegistry meterRegistry = getOptionalBean(MeterRegistry.class);
+		if (null == meterRegistry) {
+			return null;
+		}
+		return ExchangeMetrics.of(meterRegistry, getClass().getSimpleName(), endpointTemplates);
+	}
+
+	/**
+	 * @see #close()
+	 */
+	@Override
+	public void close() throws Exception {
+		exchangeExecutor.close();
+		if (null != poolAutoscaler && null == connectionPoolLease) {
+			poolAutoscaler.close();
+		}
+		if (null != connectionPoolLease) {
+			connectionPoolLease.close();
+		} else if (null != httpClient) {
+			httpClient.close();
+		}
+	}
+
+	/**
+	 * Waits for the connection pool warm-up when it is enabled, the application reports readiness only after all the
+	 * lifecycle beans are started so no traffic is accepted before the connection pool is warmed up.
+	 *
+	 * @see SmartLifecycle#start()
+	 */
+	@Override
+	public void start() {
+		if (null != warmUpResult) {
+			warmUpResult.join();
+		}
+		running = true;
+	}
+
+	/**
+	 * @see SmartLifecycle#stop()
+	 */
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	/**
+	 * @see SmartLifecycle#isRunning()
+	 */
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @see ExchangeClient#exchange(ApiRequest)
+	 */
+	@Override
+	public <T, U> ApiResponse<U> exchange(final ApiRequest<T> apiRequest) {
+		URI uri = uriTemplateCache.getUri(apiRequest.getUrl(), apiRequest.getParams());
+		if (null != requestCoalescer && requestCoalescer.isCoalescable(apiRequest)) {
+			return requestCoalescer.execute(requestCoalescer.key(apiRequest, uri), () -> hedgedExchange(apiRequest, uri));
+		}
+		return hedgedExchange(apiRequest, uri);
+	}
+
+	/**
+	 * Performs the exchange with the given request URI, hedging it when request hedging is enabled and the request can be
+	 * hedged.
+	 *
+	 * @param <T> request body type
+	 * @param <U> response body type
+	 * @param apiRequest API request object
+	 * @param uri request URI including the query parameters
+	 * @return API response object
+	 */
+	private <T, U> ApiResponse<U> hedgedExchange(final ApiRequest<T> apiRequest, final URI uri) {
+		if (null == requestHedger || !requestHedger.isHedgeable(apiRequest)) {
+			return protectedExchange(apiRequest, uri);
+		}
+		return requestHedger.execute(RequestHedger.route(apiRequest.getMethod(), uri), exchangeExecutor,
+				() -> protectedExchange(apiRequest, uri));
+	}
+
+	/**
+	 * Performs the exchange with the given request URI through the circuit breaker of the host when circuit breaking is
+	 * enabled.
+	 *
+	 * @param <T> request body type
+	 * @param <U> response body type
+	 * @param apiRequest API request object
+	 * @param uri request URI including the query parameters
+	 * @return API response object
+	 */
+	private <T, U> ApiResponse<U> protectedExchange(final ApiRequest<T> apiRequest, final URI uri) {
+		if (null == circuitBreaker) {
+			return exchange(apiRequest, uri);
+		}
+		return circuitBreaker.execute(ConcurrencyLimiter.host(uri), () -> exchange(apiRequest, uri));
+	}
+
+	/**
+	 * Performs the exchange with the given request URI with the underlying Spring client.
+	 *
+	 * @param <T> request body type
+	 * @param <U> response body type
+	 * @param apiRequest API request object
+	 * @param uri request URI including the query parameters
+	 * @return API response object
+	 */
+	protected abstract <T, U> ApiResponse<U> exchange(ApiRequest<T> apiRequest, URI uri);
+
+	/**
+	 * Performs the exchange asynchronously on the client exchange executor which by default starts a new virtual thread
+	 * for each exchange.
+	 *
+	 * @see AsyncExchangeClient#exchangeAsync(ApiRequest)
+	 */
+	@Override
+	public <T, U> CompletableFuture<ApiResponse<U>> exchangeAsync(final ApiRequest<T> apiRequest) {
+		return exchangeExecutor.submit(() -> exchange(apiRequest));
+	}
+
+	/**
+	 * Returns the response body type of the given API request.
+	 *
+	 * @param apiRequest API request
+	 * @return the response body type
+	 */
+	protected static Type getResponseType(final ApiRequest<?> apiRequest) {
+		if (apiRequest.hasGenericType()) {
+			return apiRequest.getGenericResponseType().getType();
+		}
+		return apiRequest.getClassResponseType();
+	}
+
+	/**
+	 * Returns the {@link UriComponentsBuilder} with the give url and request parameters. This method parses the URL on
+	 * every call, the exchanges use the client {@link UriTemplateCache} instead.
+	 *
+	 * @param url URL
+	 * @param requestParams request parameters
+	 * @return a new {@link UriComponentsBuilder}
+	 */
+	protected static UriComponentsBuilder getUriComponentsBuilder(final String url, final Map<String, List<String>> requestParams) {
+		return UriComponentsBuilder.fromUriString(url)
+				.queryParams(ExtendedMaps.multiValueMapView(requestParams));
+	}
+
+	/**
+	 * Executes a request with a streaming body through the given request interceptors, see
+	 * {@link StreamingRequestExecution}. The body is written directly to the connection without being buffered in memory
+	 * and when GZIP compression is enabled and the compression policy allows the content type, the body is compressed on
+	 * the fly.
+	 * <p>
+	 * The interceptors see an empty body so the exchange metrics don't record the request body size. The request is not
+	 * observed since the observations are not recorded by a request interceptor.
+	 *
+	 * @param requestFactory the request factory, it must not be an intercepting request factory
+	 * @param interceptors the request interceptors
+	 * @param uri URI to call
+	 * @param method HTTP method
+	 * @param headers request headers, they are copied
+	 * @param body streaming request body
+	 * @return the HTTP response
+	 * @throws IOException on error
+	 */
+	protected ClientHttpResponse executeStreaming(final ClientHttpRequestFactory requestFactory, final List<ClientHttpRequestInterceptor> interceptors,
+			final URI uri, final HttpMethod method, final HttpHeaders headers, final StreamingRequestBody body) throws IOException {
+		HttpHeaders requestHeaders = new HttpHeaders();
+		requestHeaders.addAll(headers);
+		StreamingHttpOutputMessage.Body requestBody = body;
+		if (shouldCompress(requestHeaders)) {
+			LOGGER.debug("Compressing streaming request: URI: {}", uri);
+			requestHeaders.set(HttpHeaders.CONTENT_ENCODING, ContentEncoding.GZIP.value());
+			requestHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+			requestBody = outputStream -> {
+				try (OutputStream gzipOutputStream = compressor.outputStream(StreamUtils.nonClosing(outputStream))) {
+					body.writeTo(gzipOutputStream);
+				}
+			};
+		} else if (body.contentLength() != StreamingRequestBody.UNKNOWN_LENGTH) {
+			requestHeaders.setContentLength(body.contentLength());
+		}
+		requestHeaders.remove(GZipCompressingRequestInterceptor.SKIP_COMPRESSION);
+		var springHttpMethod = SpringHttpRequests.getHttpMethod(method.value());
+		return StreamingRequestExecution.execute(requestFactory, interceptors, uri, springHttpMethod, requestHeaders, requestBody);
+	}
+
+	/**
+	 * Marks a request whose response body is streamed to the caller so that it bypasses the response cache, which would
+	 * otherwise buffer the body in memory. The header is added only when response caching is enabled since the
+	 * {@link CachingRequestInterceptor} removes it before the request is sent.
+	 *
+	 * @param headers request headers
+	 */
+	protected void skipResponseCache(final HttpHeaders headers) {
+		if (null != responseCache) {
+			headers.set(CachingRequestInterceptor.SKIP_CACHE, Boolean.TRUE.toString());
+		}
+	}
+
+	/**
+	 * Returns true if a streaming request with the given headers should be compressed.
+	 *
+	 * @param headers request headers
+	 * @return true if the request should be compressed
+	 */
+	private boolean shouldCompress(final HttpHeaders headers) {
+		if (null == compressor
+				|| headers.containsKey(GZipCompressingRequestInterceptor.SKIP_COMPRESSION)
+				|| headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+			return false;
+		}
+		return compressor.getPolicy().isCompressible(headers.getContentType());
+	}
+
+	/**
+	 * Sets the application context.
+	 *
+	 * @param applicationContext the application context
+	 * @throws BeansException when the application context cannot be set
+	 */
+	@Override
+	public void setApplicationContext(final ApplicationContext applicationContext) throws BeansException {
+		this.ctx = applicationContext;
+	}
+
+	/**
+	 * Returns the application context.
+	 *
+	 * @return the application context
+	 */
+	@Override
+	public ApplicationContext getApplicationContext() {
+		return ctx;
+	}
+
+	/**
+	 * Sets the compression policy used when GZIP compression is enabled in the client properties. This must be called
+	 * before the client is initialized.
+	 *
+	 * @param compressionPolicy compression policy
+	 */
+	public void setCompressionPolicy(final CompressionPolicy compressionPolicy) {
+		this.compressionPolicy = compressionPolicy;
+	}
+
+	/**
+	 * Returns the compression policy used when GZIP compression is enabled.
+	 *
+	 * @return the compression policy
+	 */
+	public CompressionPolicy getCompressionPolicy() {
+		return compressionPolicy;
+	}
+
+	/**
+	 * Enables HTTP response caching for {@code GET} requests with the given cache, see {@link CachingRequestInterceptor}.
+	 * The same cache can be shared between clients. This must be called before the client is initialized.
+	 *
+	 * @param responseCache HTTP response cache, {@code null} disables response caching
+	 */
+	public void setResponseCache(final ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * Returns the HTTP response cache.
+	 *
+	 * @return the HTTP response cache, {@code null} if response caching is not enabled
+	 */
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * Enables request coalescing with the given coalescer, identical concurrent {@code GET} requests will share a single
+	 * in-flight exchange and all the callers receive the same {@link ApiResponse}, see {@link RequestCoalescer}. This must
+	 * be called before the client is initialized.
+	 *
+	 * @param requestCoalescer request coalescer, {@code null} disables request coalescing
+	 */
+	public void setRequestCoalescer(final RequestCoalescer requestCoalescer) {
+		this.requestCoalescer = requestCoalescer;
+	}
+
+	/**
+	 * Returns the request coalescer.
+	 *
+	 * @return the request coalescer, {@code null} if request coalescing is not enabled
+	 */
+	public RequestCoalescer getRequestCoalescer() {
+		return requestCoalescer;
+	}
+
+	/**
+	 * Enables request hedging with the given hedger, idempotent requests called on virtual threads that take longer than
+	 * the hedge delay are sent a second time when the client exchange executor has a free permit and the first response
+	 * wins, see {@link RequestHedger}. This must be called before the client is initialized.
+	 *
+	 * @param requestHedger request hedger, {@code null} disables request hedging
+	 */
+	public void setRequestHedger(final RequestHedger requestHedger) {
+		this.requestHedger = requestHedger;
+	}
+
+	/**
+	 * Returns the request hedger.
+	 *
+	 * @return the request hedger, {@code null} if request hedging is not enabled
+	 */
+	public RequestHedger getRequestHedger() {
+		return requestHedger;
+	}
+
+	/**
+	 * Enables adaptive per-host concurrency limiting with the given limiter, exchanges over the limit of their host are
+	 * rejected before they wait for a pooled connection, see {@link ConcurrencyLimiter}. This must be called before the
+	 * client is initialized.
+	 *
+	 * @param concurrencyLimiter concurrency limiter, {@code null} disables concurrency limiting
+	 */
+	public void setConcurrencyLimiter(final ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * Returns the concurrency limiter.
+	 *
+	 * @return the concurrency limiter, {@code null} if concurrency limiting is not enabled
+	 */
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
+	/**
+	 * Enables per-host circuit breaking with the given circuit breaker, exchanges to a host whose circuit is open fail
+	 * fast instead of waiting for the timeouts, see {@link CircuitBreaker}. This must be called before the client is
+	 * initialized.
+	 *
+	 * @param circuitBreaker circuit breaker, {@code null} disables circuit breaking
+	 */
+	public void setCircuitBreaker(final CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/**
+	 * Returns the circuit breaker.
+	 *
+	 * @return the circuit breaker, {@code null} if circuit breaking is not enabled
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * Enables client-side load balancing with the given load balancer, requests whose host is a configured service name
+	 * are spread over the service endpoints, see {@link LoadBalancer}. The endpoint is selected in the last request
+	 * interceptor before the concurrency limiter, so the response cache, the metrics and the circuit breaker see the
+	 * service URI: a circuit protects the whole service while the load balancer ejects its failing endpoints. This must be
+	 * called before the client is initialized.
+	 *
+	 * @param loadBalancer load balancer, {@code null} disables load balancing
+	 */
+	public void setLoadBalancer(final LoadBalancer loadBalancer) {
+		this.loadBalancer = loadBalancer;
+	}
+
+	/**
+	 * Returns the load balancer.
+	 *
+	 * @return the load balancer, {@code null} if load balancing is not enabled
+	 */
+	public LoadBalancer getLoadBalancer() {
+		return loadBalancer;
+	}
+
+	/**
+	 * Enables connection pool autoscaling with the given autoscaler, the maximum connections of every route are grown
+	 * while requests wait for a connection lease and shrunk when the route stays underused, see {@link PoolAutoscaler}.
+	 * An autoscaler cannot be shared between clients. When the connection pool is shared, the pool is scaled by the first
+	 * autoscaler given by one of its clients until the pool is closed, see {@link ConnectionPoolRegistry}. This must be
+	 * called before the client is initialized.
+	 *
+	 * @param poolAutoscaler connection pool autoscaler, {@code null} disables connection pool autoscaling
+	 */
+	public void setPoolAutoscaler(final PoolAutoscaler poolAutoscaler) {
+		this.poolAutoscaler = poolAutoscaler;
+	}
+
+	/**
+	 * Returns the connection pool autoscaler.
+	 *
+	 * @return the connection pool autoscaler, {@code null} if connection pool autoscaling is not enabled
+	 */
+	public PoolAutoscaler getPoolAutoscaler() {
+		return poolAutoscaler;
+	}
+
+	/**
+	 * Enables connection pool warm-up with the given warm-up, the connections to the configured base URLs are opened in
+	 * parallel on the client exchange executor when the client is initialized and the client lifecycle start waits for
+	 * them, see {@link PoolWarmUp}. This must be called before the client is initialized.
+	 *
+	 * @param poolWarmUp connection pool warm-up, {@code null} disables connection pool warm-up
+	 */
+	public void setPoolWarmUp(final PoolWarmUp poolWarmUp) {
+		this.poolWarmUp = poolWarmUp;
+	}
+
+	/**
+	 * Returns the connection pool warm-up.
+	 *
+	 * @return the connection pool warm-up, {@code null} if connection pool warm-up is not enabled
+	 */
+	public PoolWarmUp getPoolWarmUp() {
+		return poolWarmUp;
+	}
+
+	/**
+	 * Enables per-endpoint exchange metrics with the given URI templates, every exchange is timed per method, status class
+	 * and URI template and the request and response body sizes are recorded, see {@link ExchangeMetrics}. The metrics are
+	 * recorded by a request interceptor which also runs for streamed uploads and downloads, but without the request body
+	 * size of the streamed uploads. This must be called before the client is initialized.
+	 *
+	 * @param endpointTemplates URI templates used as tags, {@code null} disables exchange metrics
+	 */
+	public void setEndpointTemplates(final EndpointTemplates endpointTemplates) {
+		this.endpointTemplates = endpointTemplates;
+	}
+
+	/**
+	 * Returns the URI templates used by the per-endpoint exchange metrics.
+	 *
+	 * @return the URI templates, {@code null} if exchange metrics are not enabled
+	 */
+	public EndpointTemplates getEndpointTemplates() {
+		return endpointTemplates;
+	}
+
+	/**
+	 * Enables the binary payload formats, the responses are requested in Smile or CBOR with fallback to JSON and the
+	 * request bodies are sent in the binary format each server is known to support, see {@link BinaryFormats}. This must
+	 * be called before the client is initialized.
+	 *
+	 * @param binaryFormats binary payload formats, {@code null} uses only the default converters
+	 */
+	public void setBinaryFormats(final BinaryFormats binaryFormats) {
+		this.binaryFormats = binaryFormats;
+	}
+
+	/**
+	 * Returns the binary payload formats.
+	 *
+	 * @return the binary payload formats, {@code null} if binary formats are not enabled
+	 */
+	public BinaryFormats getBinaryFormats() {
+		return binaryFormats;
+	}
+
+	/**
+	 * Enables connection pool sharing with the given registry, clients with the same client properties that use the same
+	 * registry share one HTTP client and connection pool which is closed when the last of them is closed, see
+	 * {@link ConnectionPoolRegistry}. This must be called before the client is initialized.
+	 *
+	 * @param connectionPoolRegistry registry of shared connection pools, {@code null} gives the client its own pool
+	 */
+	public void setConnectionPoolRegistry(final ConnectionPoolRegistry connectionPoolRegistry) {
+		this.connectionPoolRegistry = connectionPoolRegistry;
+	}
+
+	/**
+	 * Returns the registry of shared connection pools.
+	 *
+	 * @return the registry of shared connection pools, {@code null} if the client has its own connection pool
+	 */
+	public ConnectionPoolRegistry getConnectionPoolRegistry() {
+		return connectionPoolRegistry;
+	}
+
+	/**
+	 * Returns the request compressor.
+	 *
+	 * @return the request compressor, {@code null} if GZIP compression is not enabled
+	 */
+	protected GZipCompressor getCompressor() {
+		return compressor;
+	}
+
+	/**
+	 * Returns the HTTP client.
+	 *
+	 * @return the HTTP client
+	 */
+	protected CloseableHttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	/**
+	 * Returns the pooling HTTP client connection manager.
+	 *
+	 * @return the pooling HTTP client connection manager
+	 */
+	protected PoolingHttpClientConnectionManager getConnectionManager() {
+		return connectionManager;
+	}
+
+	/**
+	 * Returns the executor used for asynchronous exchanges.
+	 *
+	 * @return the executor used for asynchronous exchanges
+	 */
+	protected ExchangeExecutor getExchangeExecutor() {
+		return exchangeExecutor;
+	}
+
+	/**
+	 * Returns the cache of parsed request URLs.
+	 *
+	 * @return the URI template cache
+	 */
+	protected UriTemplateCache getUriTemplateCache() {
+		return uriTemplateCache;
+	}
+}
@@ -0,0 +1,48 @@
+package org.apiphany.client.http;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apiphany.ApiRequest;
+import org.apiphany.ApiResponse;
+import org.apiphany.client.ExchangeClient;
+
+/**
+ * Interface for exchange clients that can also perform exchanges asynchronously.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public interface AsyncExchangeClient extends ExchangeClient {
+
+	/**
+	 * Performs the exchange asynchronously.
+	 *
+	 * @param <T> request body type
+	 * @param <U> response body type
+	 *
+	 * @param apiRequest API request object
+	 * @return a future completed with the API response
+	 */
+	<T, U> CompletableFuture<ApiResponse<U>> exchangeAsync(ApiRequest<T> apiRequest);
+
+	/**
+	 * Performs all the given exchanges asynchronously. The returned future completes when all the exchanges complete and
+	 * the responses are in the same order as the requests, if any of the exchanges fails the returned future completes
+	 * exceptionally.
+	 *
+	 * @param <T> request body type
+	 * @param <U> response body type
+	 *
+	 * @param apiRequests API request objects
+	 * @return a future completed with the list of API responses
+	 */
+	default <T, U> CompletableFuture<List<ApiResponse<U>>> exchangeAll(final List<ApiRequest<T>> apiRequests) {
+		List<CompletableFuture<ApiResponse<U>>> futures = apiRequests.stream()
+				.map(this::<T, U>exchangeAsync)
+				.toList();
+		return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+				.thenApply(ignored -> futures.stream()
+						.map(CompletableFuture::join)
+						.toList());
+	}
+}
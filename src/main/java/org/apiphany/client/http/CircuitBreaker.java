@@ -0,0 +1,810 @@
+package org.apiphany.client.http;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apiphany.http.HttpException;
+import org.apiphany.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Per-host circuit breaker which fails fast against a backend that is down instead of letting every caller wait for
+ * the full timeout while holding a pooled connection.
+ * <p>
+ * Every host has a circuit with a sliding window of the outcomes of the last {@link Builder#windowSize(int)} exchanges.
+ * When at least {@link Builder#minimumCalls(int)} outcomes were recorded and the failure rate or the slow call rate
+ * reaches its threshold the circuit opens and exchanges are rejected with {@link HttpStatus#SERVICE_UNAVAILABLE}. After
+ * {@link Builder#waitInOpenState(Duration)} the circuit becomes half-open and lets {@link Builder#halfOpenCalls(int)}
+ * trial exchanges through, if their failure and slow call rates are below the thresholds the circuit closes again,
+ * otherwise it opens again.
+ * <p>
+ * Failures are I/O errors (timeouts, refused or reset connections) and {@code 5xx} responses. Client errors are
+ * successful calls since the backend answered, {@code 429 Too Many Requests}, the rejections of a
+ * {@link ConcurrencyLimiter} ({@link ConcurrencyLimitExceededException}) and the attempts cancelled by the
+ * {@link RequestHedger} are ignored.
+ * <p>
+ * Recording an outcome is lock-free and does not allocate: the window is a ring buffer of encoded outcomes in an
+ * {@link AtomicIntegerArray} with atomic failure and slow call counters updated with the difference between the new and
+ * the overwritten outcome, and the state changes are compare-and-set operations.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class CircuitBreaker {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	/**
+	 * Default sliding window size.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 100;
+
+	/**
+	 * Default minimum number of recorded calls before the rates are evaluated.
+	 */
+	public static final int DEFAULT_MINIMUM_CALLS = 20;
+
+	/**
+	 * Default failure rate threshold.
+	 */
+	public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+
+	/**
+	 * Default slow call rate threshold.
+	 */
+	public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 1.0;
+
+	/**
+	 * Default duration above which a call is slow.
+	 */
+	public static final Duration DEFAULT_SLOW_CALL_DURATION = Duration.ofSeconds(5);
+
+	/**
+	 * Default time the circuit stays open.
+	 */
+	public static final Duration DEFAULT_WAIT_IN_OPEN_STATE = Duration.ofSeconds(10);
+
+	/**
+	 * Default number of trial calls in half-open state.
+	 */
+	public static final int DEFAULT_HALF_OPEN_CALLS = 5;
+
+	/**
+	 * Outcome bit for a recorded call.
+	 */
+	private static final int RECORDED = 1;
+
+	/**
+	 * Outcome bit for a failed call.
+	 */
+	private static final int FAILED = 1 << 1;
+
+	/**
+	 * Outcome bit for a slow call.
+	 */
+	private static final int SLOW = 1 << 2;
+
+	/**
+	 * Outcome for an ignored call.
+	 */
+	private static final int IGNORED = 0;
+
+	/**
+	 * Circuit states.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public enum State {
+
+		/**
+		 * Calls are allowed and their outcomes recorded.
+		 */
+		CLOSED,
+
+		/**
+		 * Calls are rejected.
+		 */
+		OPEN,
+
+		/**
+		 * A limited number of trial calls are allowed.
+		 */
+		HALF_OPEN
+	}
+
+	/**
+	 * Sliding window size.
+	 */
+	private final int windowSize;
+
+	/**
+	 * Minimum number of recorded calls before the rates are evaluated.
+	 */
+	private final int minimumCalls;
+
+	/**
+	 * Failure rate threshold.
+	 */
+	private final double failureRateThreshold;
+
+	/**
+	 * Slow call rate threshold.
+	 */
+	private final double slowCallRateThreshold;
+
+	/**
+	 * Duration above which a call is slow in nanoseconds.
+	 */
+	private final long slowCallNanos;
+
+	/**
+	 * Time the circuit stays open in nanoseconds.
+	 */
+	private final long waitInOpenStateNanos;
+
+	/**
+	 * Number of trial calls in half-open state.
+	 */
+	private final int halfOpenCalls;
+
+	/**
+	 * The circuits by host.
+	 */
+	private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+	/**
+	 * Listeners called when a new host is added.
+	 */
+	private final List<Consumer<String>> hostListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private CircuitBreaker(final Builder builder) {
+		this.windowSize = builder.windowSize;
+		this.minimumCalls = Math.min(builder.minimumCalls, builder.windowSize);
+		this.failureRateThreshold = builder.failureRateThreshold;
+		this.slowCallRateThreshold = builder.slowCallRateThreshold;
+		this.slowCallNanos = builder.slowCallDuration.toNanos();
+		this.waitInOpenStateNanos = builder.waitInOpenState.toNanos();
+		this.halfOpenCalls = builder.halfOpenCalls;
+	}
+
+	/**
+	 * Returns a new circuit breaker with the default settings.
+	 *
+	 * @return a new circuit breaker
+	 */
+	public static CircuitBreaker defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Executes the exchange if the circuit of the host allows it and records its outcome.
+	 *
+	 * @param <R> result type
+	 *
+	 * @param host the host key, see {@link ConcurrencyLimiter#host(java.net.URI)}
+	 * @param exchange the exchange
+	 * @return the exchange result
+	 * @throws HttpException with {@link HttpStatus#SERVICE_UNAVAILABLE} if the circuit is open
+	 */
+	public <R> R execute(final String host, final Supplier<R> exchange) {
+		Circuit circuit = getCircuit(host);
+		if (!circuit.tryAcquire()) {
+			circuit.rejected.increment();
+			throw new HttpException(HttpStatus.SERVICE_UNAVAILABLE, "Circuit breaker is open for host: " + host);
+		}
+		long start = System.nanoTime();
+		try {
+			R result = exchange.get();
+			circuit.record(outcome(null, System.nanoTime() - start));
+			return result;
+		} catch (RuntimeException | Error e) {
+			circuit.record(outcome(e, System.nanoTime() - start));
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the encoded outcome of a call.
+	 *
+	 * @param failure the call failure, {@code null} if the call succeeded
+	 * @param durationNanos the call duration in nanoseconds
+	 * @return the encoded outcome
+	 */
+	private int outcome(final Throwable failure, final long durationNanos) {
+		int outcome = RECORDED;
+		if (null != failure) {
+			if (failure instanceof ConcurrencyLimitExceededException || RequestHedger.isCancelled()) {
+				return IGNORED;
+			}
+			int status = getStatus(failure);
+			if (HttpStatus.TOO_MANY_REQUESTS.value() == status) {
+				return IGNORED;
+			}
+			if (status >= 500 || isIOError(failure)) {
+				outcome |= FAILED;
+			}
+		}
+		if (durationNanos > slowCallNanos) {
+			outcome |= SLOW;
+		}
+		return outcome;
+	}
+
+	/**
+	 * Returns the HTTP status code of the given failure or 0 if the failure is not an HTTP error.
+	 *
+	 * @param failure the call failure
+	 * @return the HTTP status code
+	 */
+	static int getStatus(final Throwable failure) {
+		if (failure instanceof RestClientResponseException responseException) {
+			return responseException.getStatusCode().value();
+		}
+		if (failure instanceof HttpException httpException && null != httpException.getStatus()) {
+			return httpException.getStatus().value();
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns true if the given failure was caused by an I/O error.
+	 *
+	 * @param failure the call failure
+	 * @return true if the failure was caused by an I/O error
+	 */
+	static boolean isIOError(final Throwable failure) {
+		for (Throwable cause = failure; null != cause; cause = cause.getCause()) {
+			if (cause instanceof IOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the circuit of the given host, creating it if needed.
+	 *
+	 * @param host the host key
+	 * @return the circuit
+	 */
+	private Circuit getCircuit(final String host) {
+		Circuit circuit = circuits.get(host);
+		if (null != circuit) {
+			return circuit;
+		}
+		boolean[] created = new boolean[1];
+		circuit = circuits.computeIfAbsent(host, h -> {
+			created[0] = true;
+			return new Circuit(h);
+		});
+		if (created[0]) {
+			hostListeners.forEach(listener -> listener.accept(host));
+		}
+		return circuit;
+	}
+
+	/**
+	 * Adds a listener called with the host key when a host is seen for the first time.
+	 *
+	 * @param listener the listener
+	 */
+	public void addHostListener(final Consumer<String> listener) {
+		hostListeners.add(listener);
+	}
+
+	/**
+	 * Returns the hosts seen so far.
+	 *
+	 * @return the hosts seen so far
+	 */
+	public Set<String> getHosts() {
+		return circuits.keySet();
+	}
+
+	/**
+	 * Returns the circuit state of the given host.
+	 *
+	 * @param host the host key
+	 * @return the circuit state
+	 */
+	public State getState(final String host) {
+		Circuit circuit = circuits.get(host);
+		return null != circuit ? circuit.state.get() : State.CLOSED;
+	}
+
+	/**
+	 * Returns the number of successful calls of the given host.
+	 *
+	 * @param host the host key
+	 * @return the number of successful calls
+	 */
+	public long getSuccessfulCalls(final String host) {
+		Circuit circuit = circuits.get(host);
+		return null != circuit ? circuit.successfulCalls.sum() : 0;
+	}
+
+	/**
+	 * Returns the number of failed calls of the given host.
+	 *
+	 * @param host the host key
+	 * @return the number of failed calls
+	 */
+	public long getFailedCalls(final String host) {
+		Circuit circuit = circuits.get(host);
+		return null != circuit ? circuit.failedCalls.sum() : 0;
+	}
+
+	/**
+	 * Returns the number of slow calls of the given host.
+	 *
+	 * @param host the host key
+	 * @return the number of slow calls
+	 */
+	public long getSlowCalls(final String host) {
+		Circuit circuit = circuits.get(host);
+		return null != circuit ? circuit.slowCalls.sum() : 0;
+	}
+
+	/**
+	 * Returns the number of calls of the given host rejected because the circuit was open.
+	 *
+	 * @param host the host key
+	 * @return the number of rejected calls
+	 */
+	public long getRejectedCalls(final String host) {
+		Circuit circuit = circuits.get(host);
+		return null != circuit ? circuit.rejected.sum() : 0;
+	}
+
+	/**
+	 * Returns the number of transitions of the circuit of the given host to the given state.
+	 *
+	 * @param host the host key
+	 * @param state the target state
+	 * @return the number of transitions
+	 */
+	public long getTransitions(final String host, final State state) {
+		Circuit circuit = circuits.get(host);
+		return null != circuit ? circuit.transitions[state.ordinal()].sum() : 0;
+	}
+
+	/**
+	 * The circuit of a host.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private class Circuit {
+
+		/**
+		 * The host key.
+		 */
+		private final String host;
+
+		/**
+		 * The current state.
+		 */
+		private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+		/**
+		 * The outcomes ring buffer.
+		 */
+		private final AtomicIntegerArray outcomes = new AtomicIntegerArray(windowSize);
+
+		/**
+		 * The next ring buffer position.
+		 */
+		private final AtomicLong cursor = new AtomicLong();
+
+		/**
+		 * Number of recorded outcomes in the window.
+		 */
+		private final AtomicInteger recorded = new AtomicInteger();
+
+		/**
+		 * Number of failed outcomes in the window.
+		 */
+		private final AtomicInteger failed = new AtomicInteger();
+
+		/**
+		 * Number of slow outcomes in the window.
+		 */
+		private final AtomicInteger slow = new AtomicInteger();
+
+		/**
+		 * The time when the circuit opened in nanoseconds.
+		 */
+		private final AtomicLong openedAt = new AtomicLong();
+
+		/**
+		 * Remaining trial calls in half-open state.
+		 */
+		private final AtomicInteger halfOpenPermits = new AtomicInteger();
+
+		/**
+		 * Number of recorded trial calls in half-open state.
+		 */
+		private final AtomicInteger halfOpenRecorded = new AtomicInteger();
+
+		/**
+		 * Number of failed trial calls in half-open state.
+		 */
+		private final AtomicInteger halfOpenFailed = new AtomicInteger();
+
+		/**
+		 * Number of slow trial calls in half-open state.
+		 */
+		private final AtomicInteger halfOpenSlow = new AtomicInteger();
+
+		/**
+		 * Total number of successful calls.
+		 */
+		private final LongAdder successfulCalls = new LongAdder();
+
+		/**
+		 * Total number of failed calls.
+		 */
+		private final LongAdder failedCalls = new LongAdder();
+
+		/**
+		 * Total number of slow calls.
+		 */
+		private final LongAdder slowCalls = new LongAdder();
+
+		/**
+		 * Total number of rejected calls.
+		 */
+		private final LongAdder rejected = new LongAdder();
+
+		/**
+		 * Number of transitions by target state.
+		 */
+		private final LongAdder[] transitions = new LongAdder[State.values().length];
+
+		/**
+		 * Constructor.
+		 *
+		 * @param host the host key
+		 */
+		Circuit(final String host) {
+			this.host = host;
+			for (int i = 0; i < transitions.length; ++i) {
+				transitions[i] = new LongAdder();
+			}
+		}
+
+		/**
+		 * Returns true if a call is allowed, moving the circuit from open to half-open when the open state wait is over.
+		 *
+		 * @return true if a call is allowed
+		 */
+		boolean tryAcquire() {
+			State current = state.get();
+			if (State.CLOSED == current) {
+				return true;
+			}
+			if (State.OPEN == current) {
+				if (System.nanoTime() - openedAt.get() < waitInOpenStateNanos) {
+					return false;
+				}
+				if (transition(State.OPEN, State.HALF_OPEN)) {
+					halfOpenRecorded.set(0);
+					halfOpenFailed.set(0);
+					halfOpenSlow.set(0);
+					halfOpenPermits.set(halfOpenCalls);
+				}
+			}
+			int permits;
+			do {
+				permits = halfOpenPermits.get();
+				if (permits <= 0) {
+					return false;
+				}
+			} while (!halfOpenPermits.compareAndSet(permits, permits - 1));
+			return true;
+		}
+
+		/**
+		 * Records the outcome of a call.
+		 *
+		 * @param outcome the encoded outcome
+		 */
+		void record(final int outcome) {
+			State current = state.get();
+			if (IGNORED == outcome) {
+				if (State.HALF_OPEN == current) {
+					halfOpenPermits.incrementAndGet();
+				}
+				return;
+			}
+			int isFailed = (outcome & FAILED) >>> 1;
+			int isSlow = (outcome & SLOW) >>> 2;
+			if (0 != isFailed) {
+				failedCalls.increment();
+			} else {
+				successfulCalls.increment();
+			}
+			if (0 != isSlow) {
+				slowCalls.increment();
+			}
+			switch (current) {
+				case CLOSED -> recordClosed(outcome, isFailed, isSlow);
+				case HALF_OPEN -> recordHalfOpen(isFailed, isSlow);
+				case OPEN -> {
+					// calls started before the circuit opened are not recorded
+				}
+			}
+		}
+
+		/**
+		 * Records the outcome of a call in closed state and opens the circuit if the thresholds are reached.
+		 *
+		 * @param outcome the encoded outcome
+		 * @param isFailed 1 if the call failed
+		 * @param isSlow 1 if the call was slow
+		 */
+		private void recordClosed(final int outcome, final int isFailed, final int isSlow) {
+			int index = (int) (cursor.getAndIncrement() % windowSize);
+			int previous = outcomes.getAndSet(index, outcome);
+			int total = 0 == previous ? recorded.incrementAndGet() : recorded.get();
+			int failures = failed.addAndGet(isFailed - ((previous & FAILED) >>> 1));
+			int slowCount = slow.addAndGet(isSlow - ((previous & SLOW) >>> 2));
+			if (total >= minimumCalls && isOverThresholds(failures, slowCount, total) && transition(State.CLOSED, State.OPEN)) {
+				openedAt.set(System.nanoTime());
+				halfOpenPermits.set(0);
+			}
+		}
+
+		/**
+		 * Records the outcome of a trial call in half-open state and closes or opens the circuit when all trial calls were
+		 * recorded.
+		 *
+		 * @param isFailed 1 if the call failed
+		 * @param isSlow 1 if the call was slow
+		 */
+		private void recordHalfOpen(final int isFailed, final int isSlow) {
+			int failures = halfOpenFailed.addAndGet(isFailed);
+			int slowCount = halfOpenSlow.addAndGet(isSlow);
+			int total = halfOpenRecorded.incrementAndGet();
+			if (total < halfOpenCalls) {
+				return;
+			}
+			if (isOverThresholds(failures, slowCount, total)) {
+				if (transition(State.HALF_OPEN, State.OPEN)) {
+					openedAt.set(System.nanoTime());
+					halfOpenPermits.set(0);
+				}
+			} else if (transition(State.HALF_OPEN, State.CLOSED)) {
+				reset();
+			}
+		}
+
+		/**
+		 * Returns true if the failure rate or the slow call rate reached its threshold.
+		 *
+		 * @param failures number of failed calls
+		 * @param slowCount number of slow calls
+		 * @param total number of calls
+		 * @return true if a threshold was reached
+		 */
+		private boolean isOverThresholds(final int failures, final int slowCount, final int total) {
+			return failures >= failureRateThreshold * total || slowCount >= slowCallRateThreshold * total;
+		}
+
+		/**
+		 * Clears the sliding window.
+		 */
+		private void reset() {
+			for (int i = 0; i < windowSize; ++i) {
+				outcomes.set(i, 0);
+			}
+			cursor.set(0);
+			recorded.set(0);
+			failed.set(0);
+			slow.set(0);
+		}
+
+		/**
+		 * Changes the state if the current state is the expected one.
+		 *
+		 * @param expected the expected state
+		 * @param target the target state
+		 * @return true if the state was changed
+		 */
+		private boolean transition(final State expected, final State target) {
+			if (!state.compareAndSet(expected, target)) {
+				return false;
+			}
+			transitions[target.ordinal()].increment();
+			LOGGER.info("Circuit breaker for host: {} changed from {} to {}", host, expected, target);
+			return true;
+		}
+	}
+
+	/**
+	 * Builder for {@link CircuitBreaker}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * Sliding window size.
+		 */
+		private int windowSize = DEFAULT_WINDOW_SIZE;
+
+		/**
+		 * Minimum number of recorded calls before the rates are evaluated.
+		 */
+		private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+
+		/**
+		 * Failure rate threshold.
+		 */
+		private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+
+		/**
+		 * Slow call rate threshold.
+		 */
+		private double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+
+		/**
+		 * Duration above which a call is slow.
+		 */
+		private Duration slowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+
+		/**
+		 * Time the circuit stays open.
+		 */
+		private Duration waitInOpenState = DEFAULT_WAIT_IN_OPEN_STATE;
+
+		/**
+		 * Number of trial calls in half-open state.
+		 */
+		private int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Sets the sliding window size.
+		 *
+		 * @param windowSize number of outcomes in the sliding window
+		 * @return this builder
+		 */
+		public Builder windowSize(final int windowSize) {
+			if (windowSize < 1) {
+				throw new IllegalArgumentException("Window size must be greater than 0, got: " + windowSize);
+			}
+			this.windowSize = windowSize;
+			return this;
+		}
+
+		/**
+		 * Sets the minimum number of recorded calls before the rates are evaluated.
+		 *
+		 * @param minimumCalls minimum number of calls
+		 * @return this builder
+		 */
+		public Builder minimumCalls(final int minimumCalls) {
+			if (minimumCalls < 1) {
+				throw new IllegalArgumentException("Minimum calls must be greater than 0, got: " + minimumCalls);
+			}
+			this.minimumCalls = minimumCalls;
+			return this;
+		}
+
+		/**
+		 * Sets the failure rate at which the circuit opens.
+		 *
+		 * @param failureRateThreshold failure rate between 0 exclusive and 1 inclusive
+		 * @return this builder
+		 */
+		public Builder failureRateThreshold(final double failureRateThreshold) {
+			this.failureRateThreshold = checkRate(failureRateThreshold);
+			return this;
+		}
+
+		/**
+		 * Sets the slow call rate at which the circuit opens.
+		 *
+		 * @param slowCallRateThreshold slow call rate between 0 exclusive and 1 inclusive
+		 * @return this builder
+		 */
+		public Builder slowCallRateThreshold(final double slowCallRateThreshold) {
+			this.slowCallRateThreshold = checkRate(slowCallRateThreshold);
+			return this;
+		}
+
+		/**
+		 * Sets the duration above which a call is slow.
+		 *
+		 * @param slowCallDuration slow call duration
+		 * @return this builder
+		 */
+		public Builder slowCallDuration(final Duration slowCallDuration) {
+			this.slowCallDuration = slowCallDuration;
+			return this;
+		}
+
+		/**
+		 * Sets the time the circuit stays open before it lets trial calls through.
+		 *
+		 * @param waitInOpenState open state duration
+		 * @return this builder
+		 */
+		public Builder waitInOpenState(final Duration waitInOpenState) {
+			this.waitInOpenState = waitInOpenState;
+			return this;
+		}
+
+		/**
+		 * Sets the number of trial calls in half-open state.
+		 *
+		 * @param halfOpenCalls number of trial calls
+		 * @return this builder
+		 */
+		public Builder halfOpenCalls(final int halfOpenCalls) {
+			if (halfOpenCalls < 1) {
+				throw new IllegalArgumentException("Half-open calls must be greater than 0, got: " + halfOpenCalls);
+			}
+			this.halfOpenCalls = halfOpenCalls;
+			return this;
+		}
+
+		/**
+		 * Checks the given rate.
+		 *
+		 * @param rate the rate
+		 * @return the rate
+		 */
+		private static double checkRate(final double rate) {
+			if (rate <= 0 || rate > 1) {
+				throw new IllegalArgumentException("Rate must be between 0 exclusive and 1 inclusive, got: " + rate);
+			}
+			return rate;
+		}
+
+		/**
+		 * Builds the circuit breaker.
+		 *
+		 * @return a new circuit breaker
+		 */
+		public CircuitBreaker build() {
+			return new CircuitBreaker(this);
+		}
+	}
+}
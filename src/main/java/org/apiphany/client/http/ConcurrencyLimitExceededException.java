@@ -0,0 +1,63 @@
+package org.apiphany.client.http;
+
+import java.io.Serial;
+
+import org.apiphany.http.HttpException;
+import org.apiphany.http.HttpStatus;
+
+/**
+ * Exception thrown by the {@link ConcurrencyLimiter} when a host is at its concurrency limit and the exchange was shed
+ * locally without being sent. The host never answered, so unlike a {@code 429 Too Many Requests} response there is no
+ * {@code Retry-After} to honor and the exchange can be retried as soon as the load goes down. The status is
+ * {@link HttpStatus#SERVICE_UNAVAILABLE} only for callers that handle all the {@link HttpException}s the same way.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ConcurrencyLimitExceededException extends HttpException {
+
+	/**
+	 * Serial version UID.
+	 */
+	@Serial
+	private static final long serialVersionUID = 2857309921146275648L;
+
+	/**
+	 * The host key.
+	 */
+	private final String host;
+
+	/**
+	 * The limit of the host when the exchange was rejected.
+	 */
+	private final int limit;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param host the host key
+	 * @param limit the limit of the host when the exchange was rejected
+	 */
+	public ConcurrencyLimitExceededException(final String host, final int limit) {
+		super(HttpStatus.SERVICE_UNAVAILABLE, "Concurrency limit of " + limit + " reached for host: " + host);
+		this.host = host;
+		this.limit = limit;
+	}
+
+	/**
+	 * Returns the host key.
+	 *
+	 * @return the host key
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * Returns the limit of the host when the exchange was rejected.
+	 *
+	 * @return the limit of the host
+	 */
+	public int getLimit() {
+		return limit;
+	}
+}
@@ -0,0 +1,790 @@
+package org.apiphany.client.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.apiphany.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adaptive per-host concurrency limiter which sheds load before the connection pool is exhausted.
+ * <p>
+ * Every host has its own limit of concurrent exchanges which follows the gradient between a long term and a short term
+ * exponentially weighted average of the round trip times. While the short term average stays within
+ * {@link Builder#rttTolerance(double)} times the long term one the limit grows by about the square root of the limit,
+ * when the host gets slower the limit shrinks proportionally to the gradient and the new limit is blended with the old
+ * one by {@link Builder#smoothing(double)}. Since the long term average slowly follows the short term one, a host which
+ * permanently got slower becomes the new baseline and the limit grows again instead of collapsing. A dropped exchange,
+ * that is an I/O error or a {@code 5xx} or {@code 429} response, multiplies the limit by
+ * {@link Builder#backoffRatio(double)}. Only real network round trips are samples, other error responses leave the
+ * limit unchanged.
+ * <p>
+ * The limiter is applied by a request interceptor which runs after the response cache, see
+ * {@code ConcurrencyLimitingRequestInterceptor}, every exchange takes a {@link Permit} which is completed with the
+ * exchange outcome. When a host is at its limit new exchanges wait at most {@link Builder#maxWait(Duration)} (by
+ * default they don't wait at all) and are then rejected with a {@link ConcurrencyLimitExceededException} without ever
+ * touching the connection pool.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ConcurrencyLimiter {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+	/**
+	 * Default initial limit.
+	 */
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+	/**
+	 * Default minimum limit.
+	 */
+	public static final int DEFAULT_MIN_LIMIT = 1;
+
+	/**
+	 * Default maximum limit.
+	 */
+	public static final int DEFAULT_MAX_LIMIT = 200;
+
+	/**
+	 * Default ratio the limit is multiplied with on overload.
+	 */
+	public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+	/**
+	 * Default ratio between the short term and the long term round trip time tolerated before the limit shrinks.
+	 */
+	public static final double DEFAULT_RTT_TOLERANCE = 1.5;
+
+	/**
+	 * Default weight of the new limit when it is blended with the current one.
+	 */
+	public static final double DEFAULT_SMOOTHING = 0.2;
+
+	/**
+	 * Default number of samples of the short term round trip time average.
+	 */
+	public static final int DEFAULT_SHORT_WINDOW = 10;
+
+	/**
+	 * Default number of samples of the long term round trip time average.
+	 */
+	public static final int DEFAULT_LONG_WINDOW = 600;
+
+	/**
+	 * Minimum gradient, the limit shrinks at most by half on every sample.
+	 */
+	private static final double MIN_GRADIENT = 0.5;
+
+	/**
+	 * Decay of the long term round trip time when it is more than twice the short term one, so the baseline recovers
+	 * quickly after a latency spike.
+	 */
+	private static final double LONG_RTT_DECAY = 0.95;
+
+	/**
+	 * Initial limit for new hosts.
+	 */
+	private final int initialLimit;
+
+	/**
+	 * Minimum limit.
+	 */
+	private final int minLimit;
+
+	/**
+	 * Maximum limit.
+	 */
+	private final int maxLimit;
+
+	/**
+	 * Ratio the limit is multiplied with on overload.
+	 */
+	private final double backoffRatio;
+
+	/**
+	 * Ratio between the short term and the long term round trip time tolerated before the limit shrinks.
+	 */
+	private final double rttTolerance;
+
+	/**
+	 * Weight of the new limit when it is blended with the current one.
+	 */
+	private final double smoothing;
+
+	/**
+	 * Weight of a sample in the short term round trip time average.
+	 */
+	private final double shortAlpha;
+
+	/**
+	 * Weight of a sample in the long term round trip time average.
+	 */
+	private final double longAlpha;
+
+	/**
+	 * Maximum time to wait for a permit in nanoseconds.
+	 */
+	private final long maxWaitNanos;
+
+	/**
+	 * The limits by host.
+	 */
+	private final Map<String, HostLimit> hostLimits = new ConcurrentHashMap<>();
+
+	/**
+	 * Listeners called when a new host is added.
+	 */
+	private final List<Consumer<String>> hostListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Number of rejected exchanges.
+	 */
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private ConcurrencyLimiter(final Builder builder) {
+		if (builder.minLimit > builder.maxLimit) {
+			throw new IllegalArgumentException("Minimum limit " + builder.minLimit + " is greater than maximum limit " + builder.maxLimit);
+		}
+		if (builder.shortWindow >= builder.longWindow) {
+			throw new IllegalArgumentException("Short window " + builder.shortWindow + " must be smaller than long window " + builder.longWindow);
+		}
+		this.minLimit = builder.minLimit;
+		this.maxLimit = builder.maxLimit;
+		this.initialLimit = Math.clamp(builder.initialLimit, minLimit, maxLimit);
+		this.backoffRatio = builder.backoffRatio;
+		this.rttTolerance = builder.rttTolerance;
+		this.smoothing = builder.smoothing;
+		this.shortAlpha = 2.0 / (builder.shortWindow + 1);
+		this.longAlpha = 2.0 / (builder.longWindow + 1);
+		this.maxWaitNanos = builder.maxWait.toNanos();
+	}
+
+	/**
+	 * Returns a new limiter with the default settings.
+	 *
+	 * @return a new limiter
+	 */
+	public static ConcurrencyLimiter defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the host key of the given URI, the scheme and the authority, which matches the connection pool route.
+	 *
+	 * @param uri request URI
+	 * @return the host key
+	 */
+	public static String host(final URI uri) {
+		return uri.getScheme() + "://" + uri.getRawAuthority();
+	}
+
+	/**
+	 * Takes a permit for an exchange with the given host, the permit must be completed with the exchange outcome.
+	 *
+	 * @param host the host key, see {@link #host(URI)}
+	 * @return the permit
+	 * @throws ConcurrencyLimitExceededException if the host is at its limit
+	 */
+	public Permit acquire(final String host) {
+		HostLimit hostLimit = getHostLimit(host);
+		if (!hostLimit.acquire(maxWaitNanos)) {
+			rejected.increment();
+			hostLimit.rejected.increment();
+			throw new ConcurrencyLimitExceededException(host, hostLimit.getLimit());
+		}
+		return new Permit(hostLimit);
+	}
+
+	/**
+	 * Returns true if a response with the given status code means the host is overloaded and the exchange must be
+	 * counted as dropped, that is a {@code 5xx} or a {@code 429 Too Many Requests} response.
+	 *
+	 * @param statusCode response status code
+	 * @return true if the exchange was dropped
+	 */
+	public static boolean isDropped(final int statusCode) {
+		return statusCode >= 500 || HttpStatus.TOO_MANY_REQUESTS.value() == statusCode;
+	}
+
+	/**
+	 * Returns the limit of the given host, creating it if needed.
+	 *
+	 * @param host the host key
+	 * @return the host limit
+	 */
+	private HostLimit getHostLimit(final String host) {
+		HostLimit hostLimit = hostLimits.get(host);
+		if (null != hostLimit) {
+			return hostLimit;
+		}
+		boolean[] created = new boolean[1];
+		hostLimit = hostLimits.computeIfAbsent(host, h -> {
+			created[0] = true;
+			return new HostLimit(h);
+		});
+		if (created[0]) {
+			hostListeners.forEach(listener -> listener.accept(host));
+		}
+		return hostLimit;
+	}
+
+	/**
+	 * Adds a listener called with the host key when a host is seen for the first time.
+	 *
+	 * @param listener the listener
+	 */
+	public void addHostListener(final Consumer<String> listener) {
+		hostListeners.add(listener);
+	}
+
+	/**
+	 * Returns the hosts seen so far.
+	 *
+	 * @return the hosts seen so far
+	 */
+	public Set<String> getHosts() {
+		return hostLimits.keySet();
+	}
+
+	/**
+	 * Returns the current limit of the given host.
+	 *
+	 * @param host the host key
+	 * @return the current limit
+	 */
+	public int getLimit(final String host) {
+		HostLimit hostLimit = hostLimits.get(host);
+		return null != hostLimit ? hostLimit.getLimit() : initialLimit;
+	}
+
+	/**
+	 * Returns the number of exchanges in flight for the given host.
+	 *
+	 * @param host the host key
+	 * @return the number of exchanges in flight
+	 */
+	public int getInFlight(final String host) {
+		HostLimit hostLimit = hostLimits.get(host);
+		return null != hostLimit ? hostLimit.getInFlight() : 0;
+	}
+
+	/**
+	 * Returns the number of exchanges rejected for the given host.
+	 *
+	 * @param host the host key
+	 * @return the number of rejected exchanges
+	 */
+	public long getRejected(final String host) {
+		HostLimit hostLimit = hostLimits.get(host);
+		return null != hostLimit ? hostLimit.rejected.sum() : 0;
+	}
+
+	/**
+	 * Returns the number of rejected exchanges for all hosts.
+	 *
+	 * @return the number of rejected exchanges
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * The adaptive limit of a host.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private class HostLimit {
+
+		/**
+		 * The host key.
+		 */
+		private final String host;
+
+		/**
+		 * The lock guarding the limit state.
+		 */
+		private final ReentrantLock lock = new ReentrantLock();
+
+		/**
+		 * Signaled when a permit is released.
+		 */
+		private final Condition released = lock.newCondition();
+
+		/**
+		 * Number of rejected exchanges.
+		 */
+		private final LongAdder rejected = new LongAdder();
+
+		/**
+		 * The current limit, fractional so that the additive increase and multiplicative decrease compose smoothly.
+		 */
+		private double limit = initialLimit;
+
+		/**
+		 * Number of exchanges in flight.
+		 */
+		private int inFlight;
+
+		/**
+		 * Short term average round trip time in nanoseconds, 0 if not known yet.
+		 */
+		private double shortRttNanos;
+
+		/**
+		 * Long term average round trip time in nanoseconds, 0 if not known yet.
+		 */
+		private double longRttNanos;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param host the host key
+		 */
+		HostLimit(final String host) {
+			this.host = host;
+		}
+
+		/**
+		 * Acquires a permit waiting at most the given time.
+		 *
+		 * @param waitNanos maximum time to wait in nanoseconds
+		 * @return true if a permit was acquired
+		 */
+		boolean acquire(final long waitNanos) {
+			lock.lock();
+			try {
+				long remaining = waitNanos;
+				while (inFlight >= (int) limit) {
+					if (remaining <= 0) {
+						return false;
+					}
+					remaining = released.awaitNanos(remaining);
+				}
+				++inFlight;
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Releases a permit and adjusts the limit with the exchange outcome.
+		 *
+		 * @param outcome the exchange outcome
+		 * @param rttNanos exchange round trip time in nanoseconds
+		 */
+		void release(final Outcome outcome, final long rttNanos) {
+			lock.lock();
+			try {
+				int usage = inFlight;
+				--inFlight;
+				int previousLimit = (int) limit;
+				switch (outcome) {
+					case DROPPED -> limit = Math.max(minLimit, limit * backoffRatio);
+					case SUCCESS -> update(rttNanos, usage);
+					case IGNORED -> {
+						// the round trip time of an error response says nothing about the host load
+					}
+				}
+				if (previousLimit != (int) limit) {
+					LOGGER.debug("Concurrency limit for host: {} changed from {} to {}", host, previousLimit, (int) limit);
+				}
+				released.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Updates the round trip time averages and moves the limit along their gradient. The limit doesn't change while
+		 * the host is used at less than half of its limit since then the round trip times don't depend on the limit.
+		 *
+		 * @param rttNanos exchange round trip time in nanoseconds
+		 * @param usage number of exchanges in flight when the exchange completed
+		 */
+		private void update(final long rttNanos, final int usage) {
+			if (0 == longRttNanos) {
+				shortRttNanos = rttNanos;
+				longRttNanos = rttNanos;
+				return;
+			}
+			shortRttNanos += (rttNanos - shortRttNanos) * shortAlpha;
+			longRttNanos += (rttNanos - longRttNanos) * longAlpha;
+			if (longRttNanos > 2 * shortRttNanos) {
+				longRttNanos *= LONG_RTT_DECAY;
+			}
+			if (usage * 2 < limit || 0 == shortRttNanos) {
+				return;
+			}
+			double gradient = Math.clamp(rttTolerance * longRttNanos / shortRttNanos, MIN_GRADIENT, 1.0);
+			double newLimit = limit * gradient + Math.sqrt(limit);
+			limit = Math.clamp(limit * (1 - smoothing) + newLimit * smoothing, minLimit, maxLimit);
+		}
+
+		/**
+		 * Returns the current limit.
+		 *
+		 * @return the current limit
+		 */
+		int getLimit() {
+			lock.lock();
+			try {
+				return (int) limit;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Returns the number of exchanges in flight.
+		 *
+		 * @return the number of exchanges in flight
+		 */
+		int getInFlight() {
+			lock.lock();
+			try {
+				return inFlight;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * The outcome of an exchange.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	enum Outcome {
+
+		/**
+		 * The exchange completed, its round trip time is a sample.
+		 */
+		SUCCESS,
+
+		/**
+		 * The exchange was dropped, the host is overloaded.
+		 */
+		DROPPED,
+
+		/**
+		 * The exchange failed without telling anything about the host load.
+		 */
+		IGNORED
+	}
+
+	/**
+	 * A permit for one exchange, it must be completed exactly once with the exchange outcome, further completions are
+	 * ignored.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Permit {
+
+		/**
+		 * The limit of the host.
+		 */
+		private final HostLimit hostLimit;
+
+		/**
+		 * The time the permit was taken.
+		 */
+		private final long startNanos = System.nanoTime();
+
+		/**
+		 * True when the permit was completed.
+		 */
+		private final AtomicBoolean completed = new AtomicBoolean();
+
+		/**
+		 * The round trip time recorded when the response was received, negative if it was not received yet.
+		 */
+		private volatile long rttNanos = -1;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param hostLimit the limit of the host
+		 */
+		private Permit(final HostLimit hostLimit) {
+			this.hostLimit = hostLimit;
+		}
+
+		/**
+		 * Records the round trip time of the exchange when its response status was received. The permit is still held
+		 * until it is completed, for example until the response body was read, but the time the caller spends reading the
+		 * body is not part of the round trip time sample. Without it the round trip time ends when the permit is completed.
+		 */
+		public void received() {
+			if (rttNanos < 0) {
+				rttNanos = System.nanoTime() - startNanos;
+			}
+		}
+
+		/**
+		 * Completes the permit of an exchange whose round trip time is a sample.
+		 */
+		public void success() {
+			complete(Outcome.SUCCESS, getRttNanos());
+		}
+
+		/**
+		 * Completes the permit of an exchange dropped because the host is overloaded.
+		 */
+		public void dropped() {
+			complete(Outcome.DROPPED, getRttNanos());
+		}
+
+		/**
+		 * Completes the permit of an exchange which failed without telling anything about the host load.
+		 */
+		public void ignored() {
+			complete(Outcome.IGNORED, getRttNanos());
+		}
+
+		/**
+		 * Returns the round trip time of the exchange: the one recorded when the response was received or the time since
+		 * the permit was taken if the response was not received yet.
+		 *
+		 * @return exchange round trip time in nanoseconds
+		 */
+		long getRttNanos() {
+			long receivedRttNanos = rttNanos;
+			return receivedRttNanos < 0 ? System.nanoTime() - startNanos : receivedRttNanos;
+		}
+
+		/**
+		 * Completes the permit with the given outcome and round trip time.
+		 *
+		 * @param outcome the exchange outcome
+		 * @param rttNanos exchange round trip time in nanoseconds
+		 */
+		void complete(final Outcome outcome, final long rttNanos) {
+			if (completed.compareAndSet(false, true)) {
+				hostLimit.release(outcome, rttNanos);
+			}
+		}
+	}
+
+	/**
+	 * Builder for {@link ConcurrencyLimiter}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * Initial limit for new hosts.
+		 */
+		private int initialLimit = DEFAULT_INITIAL_LIMIT;
+
+		/**
+		 * Minimum limit.
+		 */
+		private int minLimit = DEFAULT_MIN_LIMIT;
+
+		/**
+		 * Maximum limit.
+		 */
+		private int maxLimit = DEFAULT_MAX_LIMIT;
+
+		/**
+		 * Ratio the limit is multiplied with on overload.
+		 */
+		private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+
+		/**
+		 * Ratio between the short term and the long term round trip time tolerated before the limit shrinks.
+		 */
+		private double rttTolerance = DEFAULT_RTT_TOLERANCE;
+
+		/**
+		 * Weight of the new limit when it is blended with the current one.
+		 */
+		private double smoothing = DEFAULT_SMOOTHING;
+
+		/**
+		 * Number of samples of the short term round trip time average.
+		 */
+		private int shortWindow = DEFAULT_SHORT_WINDOW;
+
+		/**
+		 * Number of samples of the long term round trip time average.
+		 */
+		private int longWindow = DEFAULT_LONG_WINDOW;
+
+		/**
+		 * Maximum time to wait for a permit.
+		 */
+		private Duration maxWait = Duration.ZERO;
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Sets the initial limit for new hosts.
+		 *
+		 * @param initialLimit initial limit
+		 * @return this builder
+		 */
+		public Builder initialLimit(final int initialLimit) {
+			this.initialLimit = initialLimit;
+			return this;
+		}
+
+		/**
+		 * Sets the minimum limit.
+		 *
+		 * @param minLimit minimum limit
+		 * @return this builder
+		 */
+		public Builder minLimit(final int minLimit) {
+			if (minLimit < 1) {
+				throw new IllegalArgumentException("Minimum limit must be greater than 0, got: " + minLimit);
+			}
+			this.minLimit = minLimit;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum limit, it should not be greater than the maximum connections per route of the pool.
+		 *
+		 * @param maxLimit maximum limit
+		 * @return this builder
+		 */
+		public Builder maxLimit(final int maxLimit) {
+			if (maxLimit < 1) {
+				throw new IllegalArgumentException("Maximum limit must be greater than 0, got: " + maxLimit);
+			}
+			this.maxLimit = maxLimit;
+			return this;
+		}
+
+		/**
+		 * Sets the ratio the limit is multiplied with on overload.
+		 *
+		 * @param backoffRatio backoff ratio between 0 and 1 exclusive
+		 * @return this builder
+		 */
+		public Builder backoffRatio(final double backoffRatio) {
+			if (backoffRatio <= 0 || backoffRatio >= 1) {
+				throw new IllegalArgumentException("Backoff ratio must be between 0 and 1, got: " + backoffRatio);
+			}
+			this.backoffRatio = backoffRatio;
+			return this;
+		}
+
+		/**
+		 * Sets the ratio between the short term and the long term round trip time tolerated before the limit shrinks.
+		 *
+		 * @param rttTolerance round trip time tolerance, at least 1
+		 * @return this builder
+		 */
+		public Builder rttTolerance(final double rttTolerance) {
+			if (rttTolerance < 1) {
+				throw new IllegalArgumentException("Round trip time tolerance must be at least 1, got: " + rttTolerance);
+			}
+			this.rttTolerance = rttTolerance;
+			return this;
+		}
+
+		/**
+		 * Sets the weight of the new limit when it is blended with the current one, 1 means the new limit is used as is.
+		 *
+		 * @param smoothing smoothing between 0 exclusive and 1 inclusive
+		 * @return this builder
+		 */
+		public Builder smoothing(final double smoothing) {
+			if (smoothing <= 0 || smoothing > 1) {
+				throw new IllegalArgumentException("Smoothing must be between 0 exclusive and 1 inclusive, got: " + smoothing);
+			}
+			this.smoothing = smoothing;
+			return this;
+		}
+
+		/**
+		 * Sets the number of samples of the short term round trip time average.
+		 *
+		 * @param shortWindow short term window in samples
+		 * @return this builder
+		 */
+		public Builder shortWindow(final int shortWindow) {
+			if (shortWindow < 1) {
+				throw new IllegalArgumentException("Short window must be greater than 0, got: " + shortWindow);
+			}
+			this.shortWindow = shortWindow;
+			return this;
+		}
+
+		/**
+		 * Sets the number of samples of the long term round trip time average, it should be much larger than the short
+		 * term window.
+		 *
+		 * @param longWindow long term window in samples
+		 * @return this builder
+		 */
+		public Builder longWindow(final int longWindow) {
+			if (longWindow < 1) {
+				throw new IllegalArgumentException("Long window must be greater than 0, got: " + longWindow);
+			}
+			this.longWindow = longWindow;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum time an exchange waits for a permit before it is rejected, zero rejects immediately.
+		 *
+		 * @param maxWait maximum wait time
+		 * @return this builder
+		 */
+		public Builder maxWait(final Duration maxWait) {
+			this.maxWait = maxWait;
+			return this;
+		}
+
+		/**
+		 * Builds the concurrency limiter.
+		 *
+		 * @return a new concurrency limiter
+		 */
+		public ConcurrencyLimiter build() {
+			return new ConcurrencyLimiter(this);
+		}
+	}
+}
@@ -0,0 +1,323 @@
+package org.apiphany.client.http;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.io.CloseMode;
+import org.apiphany.client.ClientProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Registry of HTTP clients and their connection pools shared between exchange clients with the same client properties.
+ * <p>
+ * The pools are keyed by the SHA-256 hash of the JSON form of the client properties (with sorted properties), so only
+ * clients with exactly the same settings share a pool, a client with any different setting gets its own pool. The
+ * properties can hold credentials, so only the hash is kept and logged. A shared pool is reference counted: it is
+ * created by the first client that acquires it and closed when the last client releases it.
+ * <p>
+ * Every client still customizes the shared connection manager when it acquires it, so the per-client metrics are
+ * registered with the client own tags. A shared pool is scaled by at most one {@link PoolAutoscaler}: the first one
+ * given by a client is attached to the pool and runs until the pool is closed, the autoscalers of the other clients are
+ * never started.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ConnectionPoolRegistry {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPoolRegistry.class);
+
+	/**
+	 * The shared pools by key.
+	 */
+	private final Map<String, SharedPool> pools = new HashMap<>();
+
+	/**
+	 * The lock guarding the shared pools.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * The object mapper used to build the pool keys.
+	 */
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+			.featuresToEnable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+			.featuresToDisable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+			.build();
+
+	/**
+	 * Hide constructor.
+	 */
+	private ConnectionPoolRegistry() {
+		// empty
+	}
+
+	/**
+	 * Returns a new empty registry.
+	 *
+	 * @return a new registry
+	 */
+	public static ConnectionPoolRegistry create() {
+		return new ConnectionPoolRegistry();
+	}
+
+	/**
+	 * Acquires the shared pool for the given client properties, creating it if needed. The given customizer is called with
+	 * the shared connection manager for every acquisition.
+	 *
+	 * @param clientProperties client properties
+	 * @param customizer connection manager customizer of the acquiring client
+	 * @return the lease which must be closed when the client is closed
+	 */
+	public Lease acquire(final ClientProperties clientProperties, final Consumer<PoolingHttpClientConnectionManager> customizer) {
+		return acquire(clientProperties, customizer, null);
+	}
+
+	/**
+	 * Acquires the shared pool for the given client properties, creating it if needed. The given customizer is called with
+	 * the shared connection manager for every acquisition. The given autoscaler is attached to the pool and started only
+	 * if the pool has no autoscaler yet, see {@link Lease#getPoolAutoscaler()} for the autoscaler scaling the pool.
+	 *
+	 * @param clientProperties client properties
+	 * @param customizer connection manager customizer of the acquiring client
+	 * @param poolAutoscaler the autoscaler of the acquiring client, can be {@code null}
+	 * @return the lease which must be closed when the client is closed
+	 */
+	public Lease acquire(final ClientProperties clientProperties, final Consumer<PoolingHttpClientConnectionManager> customizer,
+			final PoolAutoscaler poolAutoscaler) {
+		String key = key(clientProperties);
+		SharedPool pool;
+		boolean attached = false;
+		lock.lock();
+		try {
+			pool = pools.get(key);
+			if (null == pool) {
+				pool = new SharedPool(key, clientProperties);
+				pools.put(key, pool);
+				LOGGER.debug("Created shared connection pool: {}", key);
+			}
+			++pool.references;
+			if (null != poolAutoscaler && null == pool.poolAutoscaler && null != pool.connectionManager) {
+				pool.poolAutoscaler = poolAutoscaler;
+				attached = true;
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (attached) {
+			poolAutoscaler.start(pool.connectionManager);
+		} else if (null != poolAutoscaler) {
+			LOGGER.debug("Shared connection pool: {} already has an autoscaler, the client autoscaler is not started", key);
+		}
+		if (null != pool.connectionManager) {
+			customizer.accept(pool.connectionManager);
+		}
+		return new Lease(pool);
+	}
+
+	/**
+	 * Releases a reference to the given pool, the pool is closed when the last reference is released.
+	 *
+	 * @param pool the shared pool
+	 */
+	private void release(final SharedPool pool) {
+		lock.lock();
+		try {
+			if (--pool.references > 0) {
+				return;
+			}
+			pools.remove(pool.key, pool);
+		} finally {
+			lock.unlock();
+		}
+		LOGGER.debug("Closing shared connection pool: {}", pool.key);
+		if (null != pool.poolAutoscaler) {
+			pool.poolAutoscaler.close();
+		}
+		pool.httpClient.close(CloseMode.GRACEFUL);
+	}
+
+	/**
+	 * Returns the key of the pool for the given client properties, the SHA-256 hash of their JSON form. When the
+	 * properties cannot be serialized a unique key is returned so the client gets its own pool.
+	 *
+	 * @param clientProperties client properties
+	 * @return the pool key
+	 */
+	private String key(final ClientProperties clientProperties) {
+		try {
+			byte[] json = objectMapper.writeValueAsBytes(clientProperties);
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		} catch (JsonProcessingException e) {
+			LOGGER.warn("Cannot share the connection pool, client properties cannot be serialized: {}", e.getMessage());
+			return clientProperties.getClass().getName() + "@" + System.identityHashCode(clientProperties);
+		}
+	}
+
+	/**
+	 * Returns the number of shared pools.
+	 *
+	 * @return the number of shared pools
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return pools.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of clients using the pool for the given client properties.
+	 *
+	 * @param clientProperties client properties
+	 * @return the number of clients using the pool, 0 if there is no such pool
+	 */
+	public int getReferences(final ClientProperties clientProperties) {
+		String key = key(clientProperties);
+		lock.lock();
+		try {
+			SharedPool pool = pools.get(key);
+			return null != pool ? pool.references : 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * A shared HTTP client and its connection pool.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class SharedPool {
+
+		/**
+		 * The pool key.
+		 */
+		private final String key;
+
+		/**
+		 * The shared HTTP client.
+		 */
+		private final CloseableHttpClient httpClient;
+
+		/**
+		 * The shared connection manager.
+		 */
+		private PoolingHttpClientConnectionManager connectionManager;
+
+		/**
+		 * The autoscaler attached to the pool, guarded by the registry lock.
+		 */
+		private PoolAutoscaler poolAutoscaler;
+
+		/**
+		 * Number of clients using the pool, guarded by the registry lock.
+		 */
+		private int references;
+
+		/**
+		 * Constructor, creates the HTTP client.
+		 *
+		 * @param key the pool key
+		 * @param clientProperties client properties
+		 */
+		SharedPool(final String key, final ClientProperties clientProperties) {
+			this.key = key;
+			this.httpClient = ApacheHC5PoolingHttpClients.createClient(clientProperties, ApacheHC5PoolingHttpClients.noCustomizer(),
+					cm -> this.connectionManager = cm, ApacheHC5PoolingHttpClients.noCustomizer());
+		}
+	}
+
+	/**
+	 * A client reference to a shared pool.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public class Lease implements AutoCloseable {
+
+		/**
+		 * The shared pool.
+		 */
+		private final SharedPool pool;
+
+		/**
+		 * True if the lease was closed.
+		 */
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param pool the shared pool
+		 */
+		Lease(final SharedPool pool) {
+			this.pool = pool;
+		}
+
+		/**
+		 * Returns the shared HTTP client.
+		 *
+		 * @return the shared HTTP client
+		 */
+		public CloseableHttpClient getHttpClient() {
+			return pool.httpClient;
+		}
+
+		/**
+		 * Returns the shared connection manager.
+		 *
+		 * @return the shared connection manager
+		 */
+		public PoolingHttpClientConnectionManager getConnectionManager() {
+			return pool.connectionManager;
+		}
+
+		/**
+		 * Returns the autoscaler attached to the shared pool, which is not necessarily the one given by this client.
+		 *
+		 * @return the autoscaler of the shared pool, {@code null} if the pool is not autoscaled
+		 */
+		public PoolAutoscaler getPoolAutoscaler() {
+			lock.lock();
+			try {
+				return pool.poolAutoscaler;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Releases the reference to the shared pool, closing it if this was the last reference. Closing a lease more than
+		 * once has no effect.
+		 *
+		 * @see AutoCloseable#close()
+		 */
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				release(pool);
+			}
+		}
+	}
+}
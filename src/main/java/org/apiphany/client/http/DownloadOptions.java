@@ -0,0 +1,222 @@
+package org.apiphany.client.http;
+
+/**
+ * Options for downloads to files.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class DownloadOptions {
+
+	/**
+	 * Default transfer buffer size.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Default number of times an interrupted transfer is resumed.
+	 */
+	public static final int DEFAULT_MAX_RESUME_ATTEMPTS = 3;
+
+	/**
+	 * Default maximum number of segments for parallel downloads.
+	 */
+	public static final int DEFAULT_SEGMENT_COUNT = 4;
+
+	/**
+	 * Default minimum segment size for parallel downloads.
+	 */
+	public static final long DEFAULT_MIN_SEGMENT_SIZE = 8L * 1024 * 1024;
+
+	/**
+	 * Default options instance.
+	 */
+	private static final DownloadOptions DEFAULT = new DownloadOptions(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_RESUME_ATTEMPTS,
+			DownloadProgressListener.none(), DEFAULT_SEGMENT_COUNT, DEFAULT_MIN_SEGMENT_SIZE, false);
+
+	/**
+	 * Size of the direct buffer used to transfer data to the file.
+	 */
+	private final int bufferSize;
+
+	/**
+	 * Maximum number of times an interrupted transfer (or segment of a parallel download) is resumed.
+	 */
+	private final int maxResumeAttempts;
+
+	/**
+	 * The progress listener.
+	 */
+	private final DownloadProgressListener progressListener;
+
+	/**
+	 * Maximum number of segments for parallel downloads.
+	 */
+	private final int segmentCount;
+
+	/**
+	 * Minimum segment size for parallel downloads.
+	 */
+	private final long minSegmentSize;
+
+	/**
+	 * True if parallel downloads write the segments through memory mapped regions.
+	 */
+	private final boolean memoryMapped;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bufferSize transfer buffer size
+	 * @param maxResumeAttempts maximum number of resume attempts
+	 * @param progressListener progress listener
+	 * @param segmentCount maximum number of segments for parallel downloads
+	 * @param minSegmentSize minimum segment size for parallel downloads
+	 * @param memoryMapped true to write segments through memory mapped regions
+	 */
+	private DownloadOptions(final int bufferSize, final int maxResumeAttempts, final DownloadProgressListener progressListener,
+			final int segmentCount, final long minSegmentSize, final boolean memoryMapped) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be greater than 0, got: " + bufferSize);
+		}
+		if (maxResumeAttempts < 0) {
+			throw new IllegalArgumentException("Maximum resume attempts cannot be negative, got: " + maxResumeAttempts);
+		}
+		if (segmentCount < 1) {
+			throw new IllegalArgumentException("Segment count must be greater than 0, got: " + segmentCount);
+		}
+		if (minSegmentSize < 1) {
+			throw new IllegalArgumentException("Minimum segment size must be greater than 0, got: " + minSegmentSize);
+		}
+		this.bufferSize = bufferSize;
+		this.maxResumeAttempts = maxResumeAttempts;
+		this.progressListener = progressListener;
+		this.segmentCount = segmentCount;
+		this.minSegmentSize = minSegmentSize;
+		this.memoryMapped = memoryMapped;
+	}
+
+	/**
+	 * Returns the default download options.
+	 *
+	 * @return the default download options
+	 */
+	public static DownloadOptions defaults() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Returns a copy of these options with the given buffer size.
+	 *
+	 * @param bufferSize transfer buffer size
+	 * @return new download options
+	 */
+	public DownloadOptions bufferSize(final int bufferSize) {
+		return new DownloadOptions(bufferSize, maxResumeAttempts, progressListener, segmentCount, minSegmentSize, memoryMapped);
+	}
+
+	/**
+	 * Returns a copy of these options with the given maximum number of resume attempts.
+	 *
+	 * @param maxResumeAttempts maximum number of resume attempts
+	 * @return new download options
+	 */
+	public DownloadOptions maxResumeAttempts(final int maxResumeAttempts) {
+		return new DownloadOptions(bufferSize, maxResumeAttempts, progressListener, segmentCount, minSegmentSize, memoryMapped);
+	}
+
+	/**
+	 * Returns a copy of these options with the given progress listener.
+	 *
+	 * @param progressListener progress listener
+	 * @return new download options
+	 */
+	public DownloadOptions progressListener(final DownloadProgressListener progressListener) {
+		return new DownloadOptions(bufferSize, maxResumeAttempts, progressListener, segmentCount, minSegmentSize, memoryMapped);
+	}
+
+	/**
+	 * Returns a copy of these options with the given maximum number of segments for parallel downloads.
+	 *
+	 * @param segmentCount maximum number of segments
+	 * @return new download options
+	 */
+	public DownloadOptions segmentCount(final int segmentCount) {
+		return new DownloadOptions(bufferSize, maxResumeAttempts, progressListener, segmentCount, minSegmentSize, memoryMapped);
+	}
+
+	/**
+	 * Returns a copy of these options with the given minimum segment size for parallel downloads, resources smaller than
+	 * two segments are downloaded with a single request.
+	 *
+	 * @param minSegmentSize minimum segment size in bytes
+	 * @return new download options
+	 */
+	public DownloadOptions minSegmentSize(final long minSegmentSize) {
+		return new DownloadOptions(bufferSize, maxResumeAttempts, progressListener, segmentCount, minSegmentSize, memoryMapped);
+	}
+
+	/**
+	 * Returns a copy of these options which makes parallel downloads write the segments through memory mapped regions of
+	 * the destination file instead of positional channel writes.
+	 *
+	 * @param memoryMapped true to write segments through memory mapped regions
+	 * @return new download options
+	 */
+	public DownloadOptions memoryMapped(final boolean memoryMapped) {
+		return new DownloadOptions(bufferSize, maxResumeAttempts, progressListener, segmentCount, minSegmentSize, memoryMapped);
+	}
+
+	/**
+	 * Returns the size of the direct buffer used to transfer data to the file.
+	 *
+	 * @return the transfer buffer size
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Returns the maximum number of times an interrupted transfer is resumed.
+	 *
+	 * @return the maximum number of resume attempts
+	 */
+	public int getMaxResumeAttempts() {
+		return maxResumeAttempts;
+	}
+
+	/**
+	 * Returns the progress listener.
+	 *
+	 * @return the progress listener
+	 */
+	public DownloadProgressListener getProgressListener() {
+		return progressListener;
+	}
+
+	/**
+	 * Returns the maximum number of segments for parallel downloads.
+	 *
+	 * @return the maximum number of segments
+	 */
+	public int getSegmentCount() {
+		return segmentCount;
+	}
+
+	/**
+	 * Returns the minimum segment size for parallel downloads.
+	 *
+	 * @return the minimum segment size in bytes
+	 */
+	public long getMinSegmentSize() {
+		return minSegmentSize;
+	}
+
+	/**
+	 * Returns true if parallel downloads write the segments through memory mapped regions.
+	 *
+	 * @return true if memory mapped regions are used
+	 */
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+}
@@ -0,0 +1,34 @@
+package org.apiphany.client.http;
+
+/**
+ * Listener for download progress.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+@FunctionalInterface
+public interface DownloadProgressListener {
+
+	/**
+	 * Value for total bytes when the size of the downloaded resource is not known.
+	 */
+	long UNKNOWN_SIZE = -1;
+
+	/**
+	 * Called every time a block of data was written to the destination.
+	 *
+	 * @param bytesTransferred number of bytes written so far
+	 * @param totalBytes total number of bytes or {@link #UNKNOWN_SIZE} if unknown
+	 */
+	void onProgress(long bytesTransferred, long totalBytes);
+
+	/**
+	 * Returns a listener that ignores progress.
+	 *
+	 * @return a listener that ignores progress
+	 */
+	static DownloadProgressListener none() {
+		return (bytesTransferred, totalBytes) -> {
+			// empty
+		};
+	}
+}
@@ -0,0 +1,190 @@
+package org.apiphany.client.http;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Executor for asynchronous exchanges which can also bound the number of exchanges running at the same time.
+ * <p>
+ * When a maximum concurrency is set, the caller submitting an exchange over the limit waits for a permit before the
+ * exchange is handed to the executor service, so that the exchanges don't all pile onto the connection pool and time
+ * out waiting for a connection lease, nothing is queued beyond the limit and no pool thread is parked waiting for a
+ * permit. The permit is released when the exchange completes.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ExchangeExecutor implements AutoCloseable {
+
+	/**
+	 * Value for maximum concurrency meaning no limit.
+	 */
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	/**
+	 * The underlying executor service.
+	 */
+	private final ExecutorService executorService;
+
+	/**
+	 * The maximum number of exchanges that can run at the same time.
+	 */
+	private final int maxConcurrency;
+
+	/**
+	 * The permits for running exchanges, {@code null} when the executor is unbounded.
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * True if the executor service was created by this executor and is shut down when it is closed.
+	 */
+	private final boolean ownsExecutorService;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executorService the underlying executor service
+	 * @param maxConcurrency maximum number of exchanges that can run at the same time
+	 * @param ownsExecutorService true if the executor service is shut down when this executor is closed
+	 */
+	private ExchangeExecutor(final ExecutorService executorService, final int maxConcurrency, final boolean ownsExecutorService) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("Maximum concurrency must be greater than 0, got: " + maxConcurrency);
+		}
+		this.executorService = executorService;
+		this.maxConcurrency = maxConcurrency;
+		this.permits = UNBOUNDED == maxConcurrency ? null : new Semaphore(maxConcurrency, true);
+		this.ownsExecutorService = ownsExecutorService;
+	}
+
+	/**
+	 * Returns a new unbounded exchange executor which runs every exchange on a new virtual thread.
+	 *
+	 * @return a new exchange executor
+	 */
+	public static ExchangeExecutor virtualThreads() {
+		return virtualThreads(UNBOUNDED);
+	}
+
+	/**
+	 * Returns a new exchange executor which runs every exchange on a new virtual thread, allowing at most the given number
+	 * of exchanges to run at the same time.
+	 *
+	 * @param maxConcurrency maximum number of exchanges that can run at the same time
+	 * @return a new exchange executor
+	 */
+	public static ExchangeExecutor virtualThreads(final int maxConcurrency) {
+		return new ExchangeExecutor(Executors.newVirtualThreadPerTaskExecutor(), maxConcurrency, true);
+	}
+
+	/**
+	 * Returns a new exchange executor on the given executor service, allowing at most the given number of exchanges to run
+	 * at the same time. The executor service belongs to the caller, it can be shared and it is not shut down when this
+	 * executor is closed.
+	 *
+	 * @param executorService the underlying executor service
+	 * @param maxConcurrency maximum number of exchanges that can run at the same time
+	 * @return a new exchange executor
+	 */
+	public static ExchangeExecutor of(final ExecutorService executorService, final int maxConcurrency) {
+		return new ExchangeExecutor(executorService, maxConcurrency, false);
+	}
+
+	/**
+	 * Submits the given exchange for asynchronous execution. If the executor is bounded the calling thread waits for a
+	 * permit before the exchange is submitted.
+	 *
+	 * @param <T> result type
+	 *
+	 * @param exchange the exchange to run
+	 * @return a future completed with the exchange result, completed exceptionally if the calling thread was interrupted
+	 *     while waiting for a permit
+	 */
+	public <T> CompletableFuture<T> submit(final Supplier<T> exchange) {
+		if (null == permits) {
+			return CompletableFuture.supplyAsync(exchange, executorService);
+		}
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return CompletableFuture.failedFuture(new CompletionException("Interrupted while waiting to start the exchange", e));
+		}
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					return exchange.get();
+				} finally {
+					permits.release();
+				}
+			}, executorService);
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Takes a permit for an exchange run outside of this executor if one is available right away, the permit must be
+	 * released with {@link #releasePermit()} when the exchange completes.
+	 *
+	 * @return true if a permit was taken or the executor is unbounded
+	 */
+	boolean tryAcquirePermit() {
+		return null == permits || permits.tryAcquire();
+	}
+
+	/**
+	 * Releases a permit taken with {@link #tryAcquirePermit()}.
+	 */
+	void releasePermit() {
+		if (null != permits) {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Returns the maximum number of exchanges that can run at the same time.
+	 *
+	 * @return the maximum number of exchanges that can run at the same time
+	 */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * Returns the number of exchanges that can still start without waiting.
+	 *
+	 * @return the number of available permits
+	 */
+	public int getAvailablePermits() {
+		return null == permits ? UNBOUNDED : permits.availablePermits();
+	}
+
+	/**
+	 * Returns the underlying executor service.
+	 *
+	 * @return the underlying executor service
+	 */
+	public ExecutorService getExecutorService() {
+		return executorService;
+	}
+
+	/**
+	 * Shuts down the underlying executor service if it was created by this executor, already submitted exchanges will
+	 * still complete. Executor services given to {@link #of(ExecutorService, int)} are left running.
+	 *
+	 * @see #close()
+	 */
+	@Override
+	public void close() {
+		if (ownsExecutorService) {
+			executorService.shutdown();
+		}
+	}
+}
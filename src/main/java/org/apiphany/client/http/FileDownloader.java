@@ -0,0 +1,423 @@
+package org.apiphany.client.http;
+
+import static org.apache.hc.core5.http.HttpStatus.SC_PARTIAL_CONTENT;
+import static org.apache.hc.core5.http.HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.client5.http.entity.DecompressingEntity;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHost;
+import org.apiphany.ApiResponse;
+import org.apiphany.client.ExchangeClient;
+import org.apiphany.http.HttpException;
+import org.apiphany.http.HttpMethod;
+import org.apiphany.http.HttpStatus;
+import org.apiphany.spring.http.SpringHttpRequests;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Downloads resources directly to files.
+ * <p>
+ * The data is written through a {@link FileChannel} from a direct buffer. If the connection drops during the transfer
+ * and the server advertised {@code Accept-Ranges: bytes}, the transfer is resumed from the last written byte with a
+ * {@code Range} request guarded by {@code If-Range} so that a resource that changed in the meantime is downloaded again
+ * from the start instead of being stitched together. When the response has neither a strong {@code ETag} nor a
+ * {@code Last-Modified} header there is nothing to guard the range with, so the transfer is restarted from the first
+ * byte instead.
+ * <p>
+ * The byte positions of a range refer to the content as sent by the server, so the downloads request the
+ * {@code identity} content encoding: a body decompressed by the HTTP client would have more bytes than the ranges
+ * count. If the server still sends an encoded body the transfer is not resumed.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class FileDownloader {
+
+	/**
+	 * Class logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(FileDownloader.class);
+
+	/**
+	 * Range unit for bytes.
+	 */
+	public static final String BYTES_RANGE_UNIT = "bytes";
+
+	/**
+	 * Prefix of weak entity tags, these cannot be used with {@code If-Range}.
+	 */
+	private static final String WEAK_ETAG_PREFIX = "W/";
+
+	/**
+	 * The {@code identity} content encoding, meaning no encoding.
+	 */
+	static final String IDENTITY_ENCODING = "identity";
+
+	/**
+	 * The HTTP client.
+	 */
+	private final CloseableHttpClient httpClient;
+
+	/**
+	 * The exchange client set on the API responses.
+	 */
+	private final ExchangeClient exchangeClient;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param httpClient HTTP client
+	 * @param exchangeClient exchange client set on the API responses
+	 */
+	public FileDownloader(final CloseableHttpClient httpClient, final ExchangeClient exchangeClient) {
+		this.httpClient = httpClient;
+		this.exchangeClient = exchangeClient;
+	}
+
+	/**
+	 * Downloads the resource at the given URI to the given file, replacing its content.
+	 *
+	 * @param uri URI to call
+	 * @param method HTTP method
+	 * @param headers request headers
+	 * @param target destination file
+	 * @param options download options
+	 * @return API response having the destination file as body
+	 */
+	public ApiResponse<Path> download(final URI uri, final HttpMethod method, final HttpHeaders headers, final Path target,
+			final DownloadOptions options) {
+		ApiResponse.Builder<Path> apiResponseBuilder = ApiResponse.<Path>builder()
+				.body(target)
+				.exchangeClient(exchangeClient);
+		try (FileChannel fileChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			Transfer transfer = new Transfer(fileChannel, options);
+			while (!transfer.run(uri, method, headers)) {
+				LOGGER.warn("Resuming download of {} from byte {}, attempt {}/{}", uri, transfer.position, transfer.attempts,
+						options.getMaxResumeAttempts());
+			}
+			apiResponseBuilder
+					.status(transfer.status)
+					.headers(transfer.responseHeaders);
+		} catch (IOException e) {
+			LOGGER.error("Failed to download content.", e);
+			apiResponseBuilder.status(HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+		return apiResponseBuilder.build();
+	}
+
+	/**
+	 * Returns the validator to be used in {@code If-Range} or {@code null} if the response has none. Only strong entity
+	 * tags are allowed in {@code If-Range}.
+	 *
+	 * @param response HTTP response
+	 * @return the validator
+	 */
+	static String getValidator(final ClassicHttpResponse response) {
+		Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+		if (null != etag && !etag.getValue().startsWith(WEAK_ETAG_PREFIX)) {
+			return etag.getValue();
+		}
+		Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+		return null != lastModified ? lastModified.getValue() : null;
+	}
+
+	/**
+	 * Requests the content without encoding so that the response bytes match the byte ranges, this also keeps the HTTP
+	 * client from asking for compressed content.
+	 *
+	 * @param httpRequest HTTP request
+	 */
+	static void acceptIdentityEncoding(final HttpUriRequest httpRequest) {
+		httpRequest.setHeader(HttpHeaders.ACCEPT_ENCODING, IDENTITY_ENCODING);
+	}
+
+	/**
+	 * Returns true if the HTTP client decompressed the given entity, in which case the bytes read don't match the byte
+	 * positions of the content sent by the server.
+	 *
+	 * @param entity HTTP entity
+	 * @return true if the entity content is decompressed
+	 */
+	static boolean isDecompressed(final HttpEntity entity) {
+		return entity instanceof DecompressingEntity;
+	}
+
+	/**
+	 * Returns true if the response advertises byte range support.
+	 *
+	 * @param response HTTP response
+	 * @return true if byte ranges are supported
+	 */
+	static boolean acceptsByteRanges(final ClassicHttpResponse response) {
+		Header acceptRanges = response.getFirstHeader(HttpHeaders.ACCEPT_RANGES);
+		return null != acceptRanges && BYTES_RANGE_UNIT.equalsIgnoreCase(acceptRanges.getValue().trim());
+	}
+
+	/**
+	 * Returns the first byte position from a {@code Content-Range} header or -1 if it cannot be parsed.
+	 *
+	 * @param response HTTP response
+	 * @return the first byte position
+	 */
+	static long getContentRangeStart(final ClassicHttpResponse response) {
+		Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+		if (null == contentRange) {
+			return -1;
+		}
+		String value = contentRange.getValue().trim();
+		int start = value.indexOf(' ') + 1;
+		int end = value.indexOf('-', start);
+		if (start == 0 || end < 0) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(value, start, end, 10);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the last byte position (inclusive) from a {@code Content-Range} header or -1 if it cannot be parsed.
+	 *
+	 * @param response HTTP response
+	 * @return the last byte position
+	 */
+	static long getContentRangeEnd(final ClassicHttpResponse response) {
+		Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+		if (null == contentRange) {
+			return -1;
+		}
+		String value = contentRange.getValue().trim();
+		int start = value.indexOf('-') + 1;
+		int end = value.indexOf('/', start);
+		if (start == 0) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(value, start, end < 0 ? value.length() : end, 10);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Copies the entity content to the file channel starting at the given position.
+	 *
+	 * @param entity HTTP entity
+	 * @param fileChannel destination file channel
+	 * @param buffer transfer buffer
+	 * @param position start position in the file
+	 * @param onProgress called with the new position after each written block
+	 * @return the position after the last written byte
+	 * @throws IOException on transfer error
+	 */
+	static long copy(final HttpEntity entity, final FileChannel fileChannel, final ByteBuffer buffer, final long position,
+			final LongConsumer onProgress) throws IOException {
+		return copy(entity, fileChannel, buffer, position, Long.MAX_VALUE, onProgress);
+	}
+
+	/**
+	 * Copies the entity content to the file channel starting at the given position, without writing at or past the given
+	 * limit.
+	 *
+	 * @param entity HTTP entity
+	 * @param fileChannel destination file channel
+	 * @param buffer transfer buffer
+	 * @param position start position in the file
+	 * @param limit position after the last byte that can be written
+	 * @param onProgress called with the new position after each written block
+	 * @return the position after the last written byte
+	 * @throws IOException on transfer error or when the entity has more bytes than fit before the limit
+	 */
+	static long copy(final HttpEntity entity, final FileChannel fileChannel, final ByteBuffer buffer, final long position,
+			final long limit, final LongConsumer onProgress) throws IOException {
+		long current = position;
+		try (ReadableByteChannel in = Channels.newChannel(entity.getContent())) {
+			while (current < limit) {
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), limit - current));
+				if (in.read(buffer) == -1) {
+					return current;
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					current += fileChannel.write(buffer, current);
+				}
+				onProgress.accept(current);
+			}
+			checkEndOfContent(in, current);
+		}
+		return current;
+	}
+
+	/**
+	 * Checks that the given channel has no more bytes to read.
+	 *
+	 * @param in the channel to check
+	 * @param position the position reached in the destination
+	 * @throws IOException when the channel has more bytes
+	 */
+	static void checkEndOfContent(final ReadableByteChannel in, final long position) throws IOException {
+		if (in.read(ByteBuffer.allocate(1)) != -1) {
+			throw new IOException("Response has more bytes than expected, the content exceeds byte " + (position - 1));
+		}
+	}
+
+	/**
+	 * State of a single file transfer across resume attempts.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private class Transfer {
+
+		/**
+		 * The destination file channel.
+		 */
+		private final FileChannel fileChannel;
+
+		/**
+		 * The download options.
+		 */
+		private final DownloadOptions options;
+
+		/**
+		 * The transfer buffer.
+		 */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Position after the last written byte.
+		 */
+		private long position;
+
+		/**
+		 * Total size of the resource or {@link DownloadProgressListener#UNKNOWN_SIZE}.
+		 */
+		private long totalBytes = DownloadProgressListener.UNKNOWN_SIZE;
+
+		/**
+		 * True if the server advertised byte range support.
+		 */
+		private boolean rangesSupported;
+
+		/**
+		 * Validator used in {@code If-Range}.
+		 */
+		private String validator;
+
+		/**
+		 * Number of resume attempts.
+		 */
+		private int attempts;
+
+		/**
+		 * The response status.
+		 */
+		private HttpStatus status;
+
+		/**
+		 * The response headers.
+		 */
+		private HttpHeaders responseHeaders;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param fileChannel destination file channel
+		 * @param options download options
+		 */
+		Transfer(final FileChannel fileChannel, final DownloadOptions options) {
+			this.fileChannel = fileChannel;
+			this.options = options;
+			this.buffer = ByteBuffer.allocateDirect(options.getBufferSize());
+		}
+
+		/**
+		 * Runs one transfer attempt.
+		 *
+		 * @param uri URI to call
+		 * @param method HTTP method
+		 * @param headers request headers
+		 * @return true if the transfer completed, false if it was interrupted and should be resumed
+		 * @throws IOException when the transfer failed and cannot be resumed
+		 */
+		boolean run(final URI uri, final HttpMethod method, final HttpHeaders headers) throws IOException {
+			HttpUriRequest httpRequest = ApacheHC5HttpExchangeClient.toHttpUriRequest(uri, method);
+			ApacheHC5HttpExchangeClient.addHeaders(httpRequest, headers);
+			acceptIdentityEncoding(httpRequest);
+			if (position > 0 && null == validator) {
+				LOGGER.debug("Download of {} has no validator to resume with, restarting from the beginning", uri);
+				fileChannel.truncate(0);
+				position = 0;
+			}
+			boolean resuming = position > 0;
+			if (resuming) {
+				httpRequest.setHeader(HttpHeaders.RANGE, BYTES_RANGE_UNIT + "=" + position + "-");
+				httpRequest.setHeader(HttpHeaders.IF_RANGE, validator);
+			}
+			try (ClassicHttpResponse httpResponse = httpClient.executeOpen(HttpHost.create(uri), httpRequest, null)) {
+				HttpStatus responseStatus = HttpStatus.fromCode(httpResponse.getCode());
+				if (resuming && httpResponse.getCode() == SC_REQUESTED_RANGE_NOT_SATISFIABLE
+						&& position == totalBytes) {
+					return true;
+				}
+				if (responseStatus.isError()) {
+					throw new HttpException(responseStatus, "Failed to download content.");
+				}
+				if (resuming && (httpResponse.getCode() != SC_PARTIAL_CONTENT
+						|| getContentRangeStart(httpResponse) != position)) {
+					LOGGER.warn("Server did not resume download of {} at byte {}, restarting from the beginning", uri, position);
+					fileChannel.truncate(0);
+					position = 0;
+					resuming = false;
+				}
+				if (!resuming) {
+					status = responseStatus;
+					responseHeaders = SpringHttpRequests.httpHeadersView(httpResponse.getHeaders());
+					rangesSupported = acceptsByteRanges(httpResponse);
+					validator = getValidator(httpResponse);
+				}
+				HttpEntity entity = httpResponse.getEntity();
+				if (null == entity) {
+					return true;
+				}
+				if (!resuming) {
+					totalBytes = entity.getContentLength() < 0 ? DownloadProgressListener.UNKNOWN_SIZE : entity.getContentLength();
+					if (rangesSupported && isDecompressed(entity)) {
+						LOGGER.debug("Server sent an encoded body for {}, the download cannot be resumed", uri);
+						rangesSupported = false;
+					}
+				}
+				position = copy(entity, fileChannel, buffer, position, current -> {
+					position = current;
+					options.getProgressListener().onProgress(current, totalBytes);
+				});
+				return true;
+			} catch (IOException e) {
+				if (!rangesSupported || position == 0 || attempts >= options.getMaxResumeAttempts()) {
+					throw e;
+				}
+				LOGGER.debug("Download of {} interrupted at byte {}", uri, position, e);
+				++attempts;
+				return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,414 @@
+package org.apiphany.client.http;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+import org.apiphany.client.ClientProperties;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Options of the HTTP/2 async client used by the exchange clients in HTTP/2 mode.
+ * <p>
+ * In HTTP/2 mode all the requests to a host are multiplexed as concurrent streams over a single connection handled by a
+ * small number of I/O reactor threads, so there is no connection pool to size: the concurrency per host is bounded by
+ * {@link Builder#maxConcurrentStreams(int)} and the throughput by the flow control windows. HTTPS hosts negotiate
+ * HTTP/2 with ALPN and plain HTTP hosts are called with HTTP/2 prior knowledge (h2c), so the servers must support
+ * HTTP/2, there is no fallback to HTTP/1.1.
+ * <p>
+ * The HTTP/2 client is configured only by these options: the timeouts and the SSL context are set here and there is no
+ * proxy support. The client properties are still checked when the client is created and any setting other than the
+ * compression, which the exchange client applies itself, must keep its default value, otherwise the client is not
+ * created instead of silently ignoring the setting.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class Http2Options {
+
+	/**
+	 * Default maximum number of concurrent streams per connection.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+
+	/**
+	 * Default initial flow control window size in bytes.
+	 */
+	public static final int DEFAULT_INITIAL_WINDOW_SIZE = 1024 * 1024;
+
+	/**
+	 * Default number of I/O reactor threads.
+	 */
+	public static final int DEFAULT_IO_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * Default connect timeout.
+	 */
+	public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+	/**
+	 * Default response timeout.
+	 */
+	public static final Duration DEFAULT_RESPONSE_TIMEOUT = Duration.ofSeconds(30);
+
+	/**
+	 * Client properties applied by the exchange client itself in HTTP/2 mode.
+	 */
+	private static final Set<String> APPLIED_PROPERTIES = Set.of("compression");
+
+	/**
+	 * The object mapper used to compare the client properties with their defaults.
+	 */
+	private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+	/**
+	 * Maximum number of concurrent streams per connection.
+	 */
+	private final int maxConcurrentStreams;
+
+	/**
+	 * Initial flow control window size in bytes.
+	 */
+	private final int initialWindowSize;
+
+	/**
+	 * Number of I/O reactor threads.
+	 */
+	private final int ioThreads;
+
+	/**
+	 * Connect timeout.
+	 */
+	private final Duration connectTimeout;
+
+	/**
+	 * Response timeout.
+	 */
+	private final Duration responseTimeout;
+
+	/**
+	 * SSL context used for HTTPS hosts, {@code null} to use the JVM default one.
+	 */
+	private final SSLContext sslContext;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private Http2Options(final Builder builder) {
+		this.maxConcurrentStreams = builder.maxConcurrentStreams;
+		this.initialWindowSize = builder.initialWindowSize;
+		this.ioThreads = builder.ioThreads;
+		this.connectTimeout = builder.connectTimeout;
+		this.responseTimeout = builder.responseTimeout;
+		this.sslContext = builder.sslContext;
+	}
+
+	/**
+	 * Returns the default options.
+	 *
+	 * @return the default options
+	 */
+	public static Http2Options defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Creates and starts a new HTTP/2 async client with these options, the caller must close it.
+	 *
+	 * @param clientProperties the client properties of the exchange client
+	 * @return a new started HTTP/2 async client
+	 * @throws IllegalArgumentException if the client properties have settings the HTTP/2 client cannot apply
+	 */
+	public CloseableHttpAsyncClient createClient(final ClientProperties clientProperties) {
+		List<String> unsupported = unsupportedProperties(clientProperties, ClientProperties.defaults());
+		if (!unsupported.isEmpty()) {
+			throw new IllegalArgumentException("HTTP/2 mode cannot apply the client properties " + unsupported
+					+ ", set the timeouts and the SSL context with Http2Options or use the HTTP/1.1 client");
+		}
+		H2Config h2Config = H2Config.custom()
+				.setMaxConcurrentStreams(maxConcurrentStreams)
+				.setInitialWindowSize(initialWindowSize)
+				.setPushEnabled(false)
+				.build();
+		IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+				.setIoThreadCount(ioThreads)
+				.setSoTimeout(Timeout.of(responseTimeout))
+				.build();
+		ConnectionConfig connectionConfig = ConnectionConfig.custom()
+				.setConnectTimeout(Timeout.of(connectTimeout))
+				.setSocketTimeout(Timeout.of(responseTimeout))
+				.build();
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setResponseTimeout(Timeout.of(responseTimeout))
+				.build();
+		H2AsyncClientBuilder clientBuilder = H2AsyncClientBuilder.create()
+				.setH2Config(h2Config)
+				.setIOReactorConfig(ioReactorConfig)
+				.setDefaultConnectionConfig(connectionConfig)
+				.setDefaultRequestConfig(requestConfig);
+		if (null != sslContext) {
+			clientBuilder.setTlsStrategy(ClientTlsStrategyBuilder.create().setSslContext(sslContext).build());
+		}
+		CloseableHttpAsyncClient client = clientBuilder.build();
+		client.start();
+		return client;
+	}
+
+	/**
+	 * Returns the paths of the properties that differ from their defaults and are not applied in HTTP/2 mode. Only the
+	 * property names are returned since the values can hold credentials.
+	 *
+	 * @param clientProperties the client properties
+	 * @param defaults the default client properties
+	 * @return the paths of the unsupported properties, empty if all properties can be applied
+	 * @throws IllegalArgumentException if the client properties cannot be compared
+	 */
+	static List<String> unsupportedProperties(final Object clientProperties, final Object defaults) {
+		JsonNode properties = OBJECT_MAPPER.valueToTree(clientProperties);
+		JsonNode defaultProperties = OBJECT_MAPPER.valueToTree(defaults);
+		List<String> unsupported = new ArrayList<>();
+		addChanged("", properties, defaultProperties, unsupported);
+		return unsupported;
+	}
+
+	/**
+	 * Adds the paths of the values in the given node that differ from the default node.
+	 *
+	 * @param path the path of the node
+	 * @param node the node
+	 * @param defaultNode the default node
+	 * @param changed the paths of the changed values
+	 */
+	private static void addChanged(final String path, final JsonNode node, final JsonNode defaultNode, final List<String> changed) {
+		if (!node.isObject() || !defaultNode.isObject()) {
+			if (!node.equals(defaultNode)) {
+				changed.add(path);
+			}
+			return;
+		}
+		Set<String> names = new TreeSet<>();
+		node.fieldNames().forEachRemaining(names::add);
+		defaultNode.fieldNames().forEachRemaining(names::add);
+		for (String name : names) {
+			String childPath = path.isEmpty() ? name : path + "." + name;
+			if (!APPLIED_PROPERTIES.contains(childPath)) {
+				addChanged(childPath, node.path(name), defaultNode.path(name), changed);
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximum number of concurrent streams per connection.
+	 *
+	 * @return the maximum number of concurrent streams
+	 */
+	public int getMaxConcurrentStreams() {
+		return maxConcurrentStreams;
+	}
+
+	/**
+	 * Returns the initial flow control window size in bytes.
+	 *
+	 * @return the initial window size
+	 */
+	public int getInitialWindowSize() {
+		return initialWindowSize;
+	}
+
+	/**
+	 * Returns the number of I/O reactor threads.
+	 *
+	 * @return the number of I/O reactor threads
+	 */
+	public int getIoThreads() {
+		return ioThreads;
+	}
+
+	/**
+	 * Returns the connect timeout.
+	 *
+	 * @return the connect timeout
+	 */
+	public Duration getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * Returns the response timeout.
+	 *
+	 * @return the response timeout
+	 */
+	public Duration getResponseTimeout() {
+		return responseTimeout;
+	}
+
+	/**
+	 * Returns the SSL context used for HTTPS hosts, {@code null} if the JVM default one is used.
+	 *
+	 * @return the SSL context
+	 */
+	public SSLContext getSslContext() {
+		return sslContext;
+	}
+
+	/**
+	 * Builder for {@link Http2Options}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * Maximum number of concurrent streams per connection.
+		 */
+		private int maxConcurrentStreams = DEFAULT_MAX_CONCURRENT_STREAMS;
+
+		/**
+		 * Initial flow control window size in bytes.
+		 */
+		private int initialWindowSize = DEFAULT_INITIAL_WINDOW_SIZE;
+
+		/**
+		 * Number of I/O reactor threads.
+		 */
+		private int ioThreads = DEFAULT_IO_THREADS;
+
+		/**
+		 * Connect timeout.
+		 */
+		private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+		/**
+		 * Response timeout.
+		 */
+		private Duration responseTimeout = DEFAULT_RESPONSE_TIMEOUT;
+
+		/**
+		 * SSL context used for HTTPS hosts.
+		 */
+		private SSLContext sslContext;
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Sets the maximum number of concurrent streams per connection.
+		 *
+		 * @param maxConcurrentStreams maximum number of concurrent streams
+		 * @return this builder
+		 */
+		public Builder maxConcurrentStreams(final int maxConcurrentStreams) {
+			if (maxConcurrentStreams < 1) {
+				throw new IllegalArgumentException("Maximum concurrent streams must be greater than 0, got: " + maxConcurrentStreams);
+			}
+			this.maxConcurrentStreams = maxConcurrentStreams;
+			return this;
+		}
+
+		/**
+		 * Sets the initial flow control window size in bytes, between 65535 and 2^31-1 bytes.
+		 *
+		 * @param initialWindowSize initial window size
+		 * @return this builder
+		 */
+		public Builder initialWindowSize(final int initialWindowSize) {
+			if (initialWindowSize < 65_535) {
+				throw new IllegalArgumentException("Initial window size must be at least 65535, got: " + initialWindowSize);
+			}
+			this.initialWindowSize = initialWindowSize;
+			return this;
+		}
+
+		/**
+		 * Sets the number of I/O reactor threads.
+		 *
+		 * @param ioThreads number of I/O reactor threads
+		 * @return this builder
+		 */
+		public Builder ioThreads(final int ioThreads) {
+			if (ioThreads < 1) {
+				throw new IllegalArgumentException("I/O threads must be greater than 0, got: " + ioThreads);
+			}
+			this.ioThreads = ioThreads;
+			return this;
+		}
+
+		/**
+		 * Sets the connect timeout.
+		 *
+		 * @param connectTimeout connect timeout
+		 * @return this builder
+		 */
+		public Builder connectTimeout(final Duration connectTimeout) {
+			if (null == connectTimeout || connectTimeout.isNegative() || connectTimeout.isZero()) {
+				throw new IllegalArgumentException("Connect timeout must be positive, got: " + connectTimeout);
+			}
+			this.connectTimeout = connectTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets the response timeout.
+		 *
+		 * @param responseTimeout response timeout
+		 * @return this builder
+		 */
+		public Builder responseTimeout(final Duration responseTimeout) {
+			if (null == responseTimeout || responseTimeout.isNegative() || responseTimeout.isZero()) {
+				throw new IllegalArgumentException("Response timeout must be positive, got: " + responseTimeout);
+			}
+			this.responseTimeout = responseTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets the SSL context used for HTTPS hosts, with the key and trust material of the client. When not set the JVM
+		 * default SSL context is used.
+		 *
+		 * @param sslContext SSL context
+		 * @return this builder
+		 */
+		public Builder sslContext(final SSLContext sslContext) {
+			this.sslContext = sslContext;
+			return this;
+		}
+
+		/**
+		 * Builds the options.
+		 *
+		 * @return new options
+		 */
+		public Http2Options build() {
+			return new Http2Options(this);
+		}
+	}
+}
@@ -0,0 +1,802 @@
+package org.apiphany.client.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apiphany.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client-side load balancer which spreads the requests to a logical service over a list of endpoints.
+ * <p>
+ * A request is load balanced when the host of its URL is a configured service name, for example
+ * {@code http://users/api/users/1} with the service {@code users} mapped to {@code http://10.0.0.1:8080} and
+ * {@code http://10.0.0.2:8080}, the service scheme and authority are replaced with the ones of the selected endpoint
+ * (an endpoint can also have a base path which is prepended to the request path). The requests to other hosts are sent
+ * as they are. The exchange clients rewrite the URI in their last request interceptor, so the response cache and the
+ * metrics see the service URI and only the connection level features see the endpoint URI.
+ * <p>
+ * The endpoint is selected with the power of two choices: two random endpoints are picked and the one with the lower
+ * cost is used, the cost being the peak EWMA latency (an exponentially weighted moving average that jumps up to a
+ * slower sample immediately and decays with {@link Builder#decayTime(Duration)}) times the number of outstanding
+ * requests plus one. This sends the load away from slow and busy instances while avoiding the herding of always
+ * picking the best one.
+ * <p>
+ * An endpoint that fails {@link Builder#consecutiveFailures(int)} times in a row (I/O errors and {@code 5xx}
+ * responses, as for the {@link CircuitBreaker}) is ejected for {@link Builder#ejectionTime(Duration)} multiplied by
+ * its ejection multiplier, up to {@link Builder#maxEjectionTime(Duration)}. The multiplier grows by one with every
+ * ejection and shrinks by one for every ejection time the endpoint stays in service, so an endpoint that recovered is
+ * ejected again only for the base time. At most
+ * {@link Builder#maxEjectionPercent(int)} of the endpoints of a service are ejected at a time and when all the
+ * endpoints are ejected the requests are spread over all of them.
+ * <p>
+ * Selecting an endpoint and recording the outcome is lock-free and only allocates the endpoint choice and URI.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class LoadBalancer {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(LoadBalancer.class);
+
+	/**
+	 * Default number of consecutive failures after which an endpoint is ejected.
+	 */
+	public static final int DEFAULT_CONSECUTIVE_FAILURES = 5;
+
+	/**
+	 * Default base ejection time.
+	 */
+	public static final Duration DEFAULT_EJECTION_TIME = Duration.ofSeconds(30);
+
+	/**
+	 * Default maximum ejection time.
+	 */
+	public static final Duration DEFAULT_MAX_EJECTION_TIME = Duration.ofMinutes(5);
+
+	/**
+	 * Default maximum percentage of the endpoints of a service ejected at a time.
+	 */
+	public static final int DEFAULT_MAX_EJECTION_PERCENT = 50;
+
+	/**
+	 * Default EWMA latency decay time.
+	 */
+	public static final Duration DEFAULT_DECAY_TIME = Duration.ofSeconds(10);
+
+	/**
+	 * Default latency of an endpoint without samples.
+	 */
+	public static final Duration DEFAULT_INITIAL_LATENCY = Duration.ofMillis(100);
+
+	/**
+	 * The endpoints by service name.
+	 */
+	private final Map<String, Endpoint[]> services;
+
+	/**
+	 * Number of consecutive failures after which an endpoint is ejected.
+	 */
+	private final int consecutiveFailures;
+
+	/**
+	 * Base ejection time in nanoseconds.
+	 */
+	private final long ejectionTimeNanos;
+
+	/**
+	 * Maximum ejection time in nanoseconds.
+	 */
+	private final long maxEjectionTimeNanos;
+
+	/**
+	 * Maximum percentage of the endpoints of a service ejected at a time.
+	 */
+	private final int maxEjectionPercent;
+
+	/**
+	 * EWMA latency decay time in nanoseconds.
+	 */
+	private final double decayTimeNanos;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private LoadBalancer(final Builder builder) {
+		this.consecutiveFailures = builder.consecutiveFailures;
+		this.ejectionTimeNanos = builder.ejectionTime.toNanos();
+		this.maxEjectionTimeNanos = builder.maxEjectionTime.toNanos();
+		this.maxEjectionPercent = builder.maxEjectionPercent;
+		this.decayTimeNanos = builder.decayTime.toNanos();
+		long initialLatencyNanos = builder.initialLatency.toNanos();
+		Map<String, Endpoint[]> endpoints = new LinkedHashMap<>();
+		builder.services.forEach((service, urls) -> endpoints.put(service, urls.stream()
+				.map(url -> new Endpoint(service, url, initialLatencyNanos))
+				.toArray(Endpoint[]::new)));
+		this.services = Map.copyOf(endpoints);
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Selects an endpoint of the service of the given URI, the returned choice must be completed with the outcome of the
+	 * exchange sent to the endpoint URI.
+	 *
+	 * @param uri the request URI
+	 * @return the endpoint choice, {@code null} if the URI host is not a service
+	 */
+	public Choice choose(final URI uri) {
+		Endpoint[] endpoints = null != uri.getHost() ? services.get(uri.getHost()) : null;
+		if (null == endpoints) {
+			return null;
+		}
+		Endpoint endpoint = select(endpoints);
+		URI endpointUri = endpoint.resolve(uri);
+		endpoint.inFlight.incrementAndGet();
+		return new Choice(endpoints, endpoint, endpointUri);
+	}
+
+	/**
+	 * Selects an endpoint with the power of two choices.
+	 *
+	 * @param endpoints the service endpoints
+	 * @return the selected endpoint
+	 */
+	private Endpoint select(final Endpoint[] endpoints) {
+		int size = endpoints.length;
+		if (1 == size) {
+			return endpoints[0];
+		}
+		long now = System.nanoTime();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Endpoint first = null;
+		Endpoint second = null;
+		// a few random picks skip the ejected endpoints without building a list of the available ones
+		for (int i = 0; i < 2 * size && null == second; ++i) {
+			Endpoint endpoint = endpoints[random.nextInt(size)];
+			if (endpoint.isEjected(now) || endpoint == first) {
+				continue;
+			}
+			if (null == first) {
+				first = endpoint;
+			} else {
+				second = endpoint;
+			}
+		}
+		if (null == second) {
+			Endpoint available = null != first ? first : firstAvailable(endpoints, now);
+			if (null != available) {
+				return available;
+			}
+			// all the endpoints are ejected, spread the requests over all of them
+			first = endpoints[random.nextInt(size)];
+			second = endpoints[random.nextInt(size)];
+		}
+		return first.cost() <= second.cost() ? first : second;
+	}
+
+	/**
+	 * Returns the first endpoint which is not ejected.
+	 *
+	 * @param endpoints the service endpoints
+	 * @param now the current time in nanoseconds
+	 * @return the first endpoint which is not ejected, {@code null} if all the endpoints are ejected
+	 */
+	private static Endpoint firstAvailable(final Endpoint[] endpoints, final long now) {
+		for (Endpoint endpoint : endpoints) {
+			if (!endpoint.isEjected(now)) {
+				return endpoint;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Records a failure of the given endpoint, ejecting it after too many consecutive failures unless too many endpoints
+	 * of the service are already ejected.
+	 *
+	 * @param endpoints the service endpoints
+	 * @param endpoint the failed endpoint
+	 * @param durationNanos the exchange duration in nanoseconds
+	 */
+	private void onFailure(final Endpoint[] endpoints, final Endpoint endpoint, final long durationNanos) {
+		endpoint.failures.increment();
+		// a fast failure must not make the endpoint look fast
+		endpoint.updateLatency(Math.max(durationNanos, endpoint.getLatencyNanos()));
+		if (endpoint.consecutiveFailures.incrementAndGet() < consecutiveFailures) {
+			return;
+		}
+		long now = System.nanoTime();
+		int ejected = 0;
+		for (Endpoint e : endpoints) {
+			if (e.isEjected(now)) {
+				++ejected;
+			}
+		}
+		if ((ejected + 1) * 100 > endpoints.length * maxEjectionPercent) {
+			return;
+		}
+		endpoint.consecutiveFailures.set(0);
+		endpoint.ejections.incrementAndGet();
+		long healthyIntervals = endpoint.getHealthyIntervals(now);
+		long multiplier = endpoint.ejectionMultiplier.updateAndGet(m -> Math.max(0, m - healthyIntervals) + 1);
+		long ejectionNanos = multiplier >= maxEjectionTimeNanos / ejectionTimeNanos
+				? maxEjectionTimeNanos
+				: ejectionTimeNanos * multiplier;
+		endpoint.ejectedUntil.set(now + ejectionNanos);
+		LOGGER.warn("Ejected endpoint {} of service {} for {} ms after {} consecutive failures", endpoint.url, endpoint.service,
+				ejectionNanos / 1_000_000, consecutiveFailures);
+	}
+
+	/**
+	 * Returns the service names.
+	 *
+	 * @return the service names
+	 */
+	public Set<String> getServices() {
+		return services.keySet();
+	}
+
+	/**
+	 * Returns the endpoints of the given service.
+	 *
+	 * @param service the service name
+	 * @return the service endpoints, empty if there is no such service
+	 */
+	public List<Endpoint> getEndpoints(final String service) {
+		Endpoint[] endpoints = services.get(service);
+		return null != endpoints ? List.of(endpoints) : List.of();
+	}
+
+	/**
+	 * An endpoint of a service with its load and health.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public class Endpoint {
+
+		/**
+		 * The service name.
+		 */
+		private final String service;
+
+		/**
+		 * The endpoint base URL without a trailing slash.
+		 */
+		private final String url;
+
+		/**
+		 * Number of outstanding requests.
+		 */
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		/**
+		 * The peak EWMA latency in nanoseconds, as double bits.
+		 */
+		private final AtomicLong latency;
+
+		/**
+		 * Time in nanoseconds of the last latency update.
+		 */
+		private volatile long lastUpdate = System.nanoTime();
+
+		/**
+		 * Number of consecutive failures.
+		 */
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+		/**
+		 * Time in nanoseconds until the endpoint is ejected, 0 if it was never ejected.
+		 */
+		private final AtomicLong ejectedUntil = new AtomicLong();
+
+		/**
+		 * Number of ejections.
+		 */
+		private final AtomicLong ejections = new AtomicLong();
+
+		/**
+		 * Ejection time multiplier, decays while the endpoint is in service.
+		 */
+		private final AtomicLong ejectionMultiplier = new AtomicLong();
+
+		/**
+		 * Number of successful requests.
+		 */
+		private final LongAdder successes = new LongAdder();
+
+		/**
+		 * Number of failed requests.
+		 */
+		private final LongAdder failures = new LongAdder();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param service the service name
+		 * @param url the endpoint base URL
+		 * @param initialLatencyNanos latency in nanoseconds until the first sample
+		 */
+		Endpoint(final String service, final String url, final long initialLatencyNanos) {
+			this.service = service;
+			this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+			this.latency = new AtomicLong(Double.doubleToLongBits(initialLatencyNanos));
+		}
+
+		/**
+		 * Returns the URI of the given service request URI on this endpoint.
+		 *
+		 * @param uri the service request URI
+		 * @return the endpoint request URI
+		 */
+		URI resolve(final URI uri) {
+			StringBuilder endpointUri = new StringBuilder(url);
+			String path = uri.getRawPath();
+			if (null != path) {
+				endpointUri.append(path);
+			}
+			if (null != uri.getRawQuery()) {
+				endpointUri.append('?').append(uri.getRawQuery());
+			}
+			if (null != uri.getRawFragment()) {
+				endpointUri.append('#').append(uri.getRawFragment());
+			}
+			return URI.create(endpointUri.toString());
+		}
+
+		/**
+		 * Records a successful request.
+		 *
+		 * @param durationNanos the request duration in nanoseconds
+		 */
+		void onSuccess(final long durationNanos) {
+			successes.increment();
+			consecutiveFailures.set(0);
+			updateLatency(durationNanos);
+		}
+
+		/**
+		 * Updates the peak EWMA latency with a new sample: a slower sample replaces the average, a faster one is averaged
+		 * with a weight depending on the time since the last update.
+		 *
+		 * @param sampleNanos the latency sample in nanoseconds
+		 */
+		void updateLatency(final double sampleNanos) {
+			long now = System.nanoTime();
+			double weight = Math.exp(-Math.max(0, now - lastUpdate) / decayTimeNanos);
+			lastUpdate = now;
+			latency.updateAndGet(bits -> {
+				double current = Double.longBitsToDouble(bits);
+				double updated = sampleNanos > current ? sampleNanos : current * weight + sampleNanos * (1 - weight);
+				return Double.doubleToLongBits(updated);
+			});
+		}
+
+		/**
+		 * Returns the endpoint cost used by the selection.
+		 *
+		 * @return the endpoint cost
+		 */
+		double cost() {
+			return (Double.longBitsToDouble(latency.get()) + 1) * (inFlight.get() + 1);
+		}
+
+		/**
+		 * Returns true if the endpoint is ejected at the given time.
+		 *
+		 * @param now the current time in nanoseconds
+		 * @return true if the endpoint is ejected
+		 */
+		boolean isEjected(final long now) {
+			long until = ejectedUntil.get();
+			return 0 != until && now - until < 0;
+		}
+
+		/**
+		 * Returns the number of whole ejection times the endpoint was in service since its last ejection ended.
+		 *
+		 * @param now the current time in nanoseconds
+		 * @return the number of healthy ejection times, 0 if the endpoint was never ejected
+		 */
+		long getHealthyIntervals(final long now) {
+			long until = ejectedUntil.get();
+			return 0 == until || now - until < 0 ? 0 : (now - until) / ejectionTimeNanos;
+		}
+
+		/**
+		 * Returns the service name.
+		 *
+		 * @return the service name
+		 */
+		public String getService() {
+			return service;
+		}
+
+		/**
+		 * Returns the endpoint base URL.
+		 *
+		 * @return the endpoint base URL
+		 */
+		public String getUrl() {
+			return url;
+		}
+
+		/**
+		 * Returns the number of outstanding requests.
+		 *
+		 * @return the number of outstanding requests
+		 */
+		public int getInFlight() {
+			return inFlight.get();
+		}
+
+		/**
+		 * Returns the peak EWMA latency in nanoseconds.
+		 *
+		 * @return the latency in nanoseconds
+		 */
+		public double getLatencyNanos() {
+			return Double.longBitsToDouble(latency.get());
+		}
+
+		/**
+		 * Returns true if the endpoint is currently ejected.
+		 *
+		 * @return true if the endpoint is ejected
+		 */
+		public boolean isEjected() {
+			return isEjected(System.nanoTime());
+		}
+
+		/**
+		 * Returns the number of times the endpoint was ejected.
+		 *
+		 * @return the number of ejections
+		 */
+		public long getEjections() {
+			return ejections.get();
+		}
+
+		/**
+		 * Returns the current ejection multiplier, the number of ejection times the endpoint would be ejected for next,
+		 * minus one.
+		 *
+		 * @return the ejection multiplier
+		 */
+		public long getEjectionMultiplier() {
+			return Math.max(0, ejectionMultiplier.get() - getHealthyIntervals(System.nanoTime()));
+		}
+
+		/**
+		 * Returns the number of successful requests.
+		 *
+		 * @return the number of successful requests
+		 */
+		public long getSuccesses() {
+			return successes.sum();
+		}
+
+		/**
+		 * Returns the number of failed requests.
+		 *
+		 * @return the number of failed requests
+		 */
+		public long getFailures() {
+			return failures.sum();
+		}
+	}
+
+	/**
+	 * An endpoint selected for an exchange, completed once with the exchange outcome.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public class Choice {
+
+		/**
+		 * The endpoints of the service.
+		 */
+		private final Endpoint[] endpoints;
+
+		/**
+		 * The selected endpoint.
+		 */
+		private final Endpoint endpoint;
+
+		/**
+		 * The request URI on the selected endpoint.
+		 */
+		private final URI uri;
+
+		/**
+		 * Time in nanoseconds when the endpoint was selected.
+		 */
+		private final long start = System.nanoTime();
+
+		/**
+		 * True if the outcome was recorded.
+		 */
+		private final AtomicBoolean completed = new AtomicBoolean();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param endpoints the endpoints of the service
+		 * @param endpoint the selected endpoint
+		 * @param uri the request URI on the selected endpoint
+		 */
+		Choice(final Endpoint[] endpoints, final Endpoint endpoint, final URI uri) {
+			this.endpoints = endpoints;
+			this.endpoint = endpoint;
+			this.uri = uri;
+		}
+
+		/**
+		 * Records the outcome of an exchange that got a response with the given status code: {@code 5xx} responses are
+		 * failures, {@code 429} responses are ignored and the rest are successes.
+		 *
+		 * @param statusCode the response status code
+		 */
+		public void complete(final int statusCode) {
+			if (statusCode >= 500) {
+				failure();
+			} else if (HttpStatus.TOO_MANY_REQUESTS.value() == statusCode) {
+				ignored();
+			} else {
+				success();
+			}
+		}
+
+		/**
+		 * Records a successful exchange.
+		 */
+		public void success() {
+			if (completed.compareAndSet(false, true)) {
+				endpoint.inFlight.decrementAndGet();
+				endpoint.onSuccess(System.nanoTime() - start);
+			}
+		}
+
+		/**
+		 * Records a failed exchange, an I/O error or a {@code 5xx} response.
+		 */
+		public void failure() {
+			if (completed.compareAndSet(false, true)) {
+				endpoint.inFlight.decrementAndGet();
+				onFailure(endpoints, endpoint, System.nanoTime() - start);
+			}
+		}
+
+		/**
+		 * Records an exchange whose outcome says nothing about the endpoint health.
+		 */
+		public void ignored() {
+			if (completed.compareAndSet(false, true)) {
+				endpoint.inFlight.decrementAndGet();
+			}
+		}
+
+		/**
+		 * Returns the request URI on the selected endpoint.
+		 *
+		 * @return the endpoint request URI
+		 */
+		public URI getUri() {
+			return uri;
+		}
+
+		/**
+		 * Returns the selected endpoint.
+		 *
+		 * @return the selected endpoint
+		 */
+		public Endpoint getEndpoint() {
+			return endpoint;
+		}
+	}
+
+	/**
+	 * Builder for {@link LoadBalancer}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * The endpoint URLs by service name.
+		 */
+		private final Map<String, List<String>> services = new LinkedHashMap<>();
+
+		/**
+		 * Number of consecutive failures after which an endpoint is ejected.
+		 */
+		private int consecutiveFailures = DEFAULT_CONSECUTIVE_FAILURES;
+
+		/**
+		 * Base ejection time.
+		 */
+		private Duration ejectionTime = DEFAULT_EJECTION_TIME;
+
+		/**
+		 * Maximum ejection time.
+		 */
+		private Duration maxEjectionTime = DEFAULT_MAX_EJECTION_TIME;
+
+		/**
+		 * Maximum percentage of the endpoints of a service ejected at a time.
+		 */
+		private int maxEjectionPercent = DEFAULT_MAX_EJECTION_PERCENT;
+
+		/**
+		 * EWMA latency decay time.
+		 */
+		private Duration decayTime = DEFAULT_DECAY_TIME;
+
+		/**
+		 * Latency of an endpoint without samples.
+		 */
+		private Duration initialLatency = DEFAULT_INITIAL_LATENCY;
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Maps a service name, used as host in the request URLs, to its endpoints.
+		 *
+		 * @param service the service name
+		 * @param urls the endpoint base URLs, for example {@code http://10.0.0.1:8080}
+		 * @return this builder
+		 */
+		public Builder service(final String service, final List<String> urls) {
+			if (null == service || service.isBlank()) {
+				throw new IllegalArgumentException("Service name must not be empty");
+			}
+			if (null == urls || urls.isEmpty()) {
+				throw new IllegalArgumentException("Service " + service + " must have at least one endpoint");
+			}
+			for (String url : urls) {
+				URI uri = URI.create(url);
+				if (null == uri.getScheme() || null == uri.getHost()) {
+					throw new IllegalArgumentException("Invalid endpoint URL for service " + service + ": " + url);
+				}
+			}
+			this.services.put(service, new ArrayList<>(urls));
+			return this;
+		}
+
+		/**
+		 * Maps a service name, used as host in the request URLs, to its endpoints.
+		 *
+		 * @param service the service name
+		 * @param urls the endpoint base URLs, for example {@code http://10.0.0.1:8080}
+		 * @return this builder
+		 */
+		public Builder service(final String service, final String... urls) {
+			return service(service, null != urls ? Arrays.asList(urls) : null);
+		}
+
+		/**
+		 * Sets the number of consecutive failures after which an endpoint is ejected.
+		 *
+		 * @param consecutiveFailures number of consecutive failures
+		 * @return this builder
+		 */
+		public Builder consecutiveFailures(final int consecutiveFailures) {
+			if (consecutiveFailures < 1) {
+				throw new IllegalArgumentException("Consecutive failures must be greater than 0, got: " + consecutiveFailures);
+			}
+			this.consecutiveFailures = consecutiveFailures;
+			return this;
+		}
+
+		/**
+		 * Sets the base ejection time, an endpoint is ejected for this time multiplied by its ejection multiplier.
+		 *
+		 * @param ejectionTime base ejection time
+		 * @return this builder
+		 */
+		public Builder ejectionTime(final Duration ejectionTime) {
+			if (null == ejectionTime || ejectionTime.isNegative() || ejectionTime.isZero()) {
+				throw new IllegalArgumentException("Ejection time must be positive, got: " + ejectionTime);
+			}
+			this.ejectionTime = ejectionTime;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum ejection time.
+		 *
+		 * @param maxEjectionTime maximum ejection time
+		 * @return this builder
+		 */
+		public Builder maxEjectionTime(final Duration maxEjectionTime) {
+			if (null == maxEjectionTime || maxEjectionTime.isNegative() || maxEjectionTime.isZero()) {
+				throw new IllegalArgumentException("Maximum ejection time must be positive, got: " + maxEjectionTime);
+			}
+			this.maxEjectionTime = maxEjectionTime;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum percentage of the endpoints of a service ejected at a time.
+		 *
+		 * @param maxEjectionPercent maximum ejection percentage, between 0 and 100
+		 * @return this builder
+		 */
+		public Builder maxEjectionPercent(final int maxEjectionPercent) {
+			if (maxEjectionPercent < 0 || maxEjectionPercent > 100) {
+				throw new IllegalArgumentException("Maximum ejection percent must be between 0 and 100, got: " + maxEjectionPercent);
+			}
+			this.maxEjectionPercent = maxEjectionPercent;
+			return this;
+		}
+
+		/**
+		 * Sets the EWMA latency decay time, the time after which a latency sample weighs about a third of its initial
+		 * weight.
+		 *
+		 * @param decayTime decay time
+		 * @return this builder
+		 */
+		public Builder decayTime(final Duration decayTime) {
+			if (null == decayTime || decayTime.isNegative() || decayTime.isZero()) {
+				throw new IllegalArgumentException("Decay time must be positive, got: " + decayTime);
+			}
+			this.decayTime = decayTime;
+			return this;
+		}
+
+		/**
+		 * Sets the latency of an endpoint without samples.
+		 *
+		 * @param initialLatency initial latency
+		 * @return this builder
+		 */
+		public Builder initialLatency(final Duration initialLatency) {
+			if (null == initialLatency || initialLatency.isNegative()) {
+				throw new IllegalArgumentException("Initial latency must not be negative, got: " + initialLatency);
+			}
+			this.initialLatency = initialLatency;
+			return this;
+		}
+
+		/**
+		 * Builds the load balancer.
+		 *
+		 * @return a new load balancer
+		 */
+		public LoadBalancer build() {
+			if (services.isEmpty()) {
+				throw new IllegalArgumentException("At least one service must be configured");
+			}
+			return new LoadBalancer(this);
+		}
+	}
+}
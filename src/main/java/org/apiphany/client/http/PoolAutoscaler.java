@@ -0,0 +1,463 @@
+package org.apiphany.client.http;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Self-tuning connection pool sizing which adjusts the maximum connections per route of a
+ * {@link PoolingHttpClientConnectionManager} from the pool statistics.
+ * <p>
+ * The pool statistics of every route are sampled periodically (see {@link Builder#interval(Duration)}). When requests
+ * are pending for a connection lease and the pool still has free capacity (the total number of leased connections is
+ * below the pool maximum) the route maximum grows by the number of pending requests. A route shrinks only after its
+ * peak number of leased connections stayed below half of its maximum for {@link Builder#shrinkDelay(Duration)}, then its
+ * maximum is halved but never below twice the observed peak, so a route doesn't oscillate between growing and shrinking.
+ * After a route shrinks the connections idle for longer than the shrink delay are closed, the remaining connections over
+ * the new maximum are closed by the pool as they are released.
+ * <p>
+ * Every adjustment is logged and counted, see {@link #getGrows(String)} and {@link #getShrinks(String)}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class PoolAutoscaler implements AutoCloseable {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(PoolAutoscaler.class);
+
+	/**
+	 * Default minimum connections per route.
+	 */
+	public static final int DEFAULT_MIN_PER_ROUTE = 2;
+
+	/**
+	 * Default maximum connections per route.
+	 */
+	public static final int DEFAULT_MAX_PER_ROUTE = 100;
+
+	/**
+	 * Default interval between samples.
+	 */
+	public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(1);
+
+	/**
+	 * Default time a route must stay underused before it shrinks.
+	 */
+	public static final Duration DEFAULT_SHRINK_DELAY = Duration.ofSeconds(60);
+
+	/**
+	 * Minimum connections per route.
+	 */
+	private final int minPerRoute;
+
+	/**
+	 * Maximum connections per route.
+	 */
+	private final int maxPerRoute;
+
+	/**
+	 * Interval between samples.
+	 */
+	private final Duration interval;
+
+	/**
+	 * Time a route must stay underused before it shrinks.
+	 */
+	private final Duration shrinkDelay;
+
+	/**
+	 * Number of consecutive underused samples after which a route shrinks.
+	 */
+	private final int shrinkSamples;
+
+	/**
+	 * The state by route.
+	 */
+	private final Map<String, RouteState> routeStates = new ConcurrentHashMap<>();
+
+	/**
+	 * Listeners called when a new route is added.
+	 */
+	private final List<Consumer<String>> routeListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The scaled connection manager, {@code null} until started.
+	 */
+	private volatile PoolingHttpClientConnectionManager connectionManager;
+
+	/**
+	 * The sampling scheduler, {@code null} until started.
+	 */
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private PoolAutoscaler(final Builder builder) {
+		if (builder.minPerRoute > builder.maxPerRoute) {
+			throw new IllegalArgumentException("Minimum per route " + builder.minPerRoute
+					+ " is greater than maximum per route " + builder.maxPerRoute);
+		}
+		this.minPerRoute = builder.minPerRoute;
+		this.maxPerRoute = builder.maxPerRoute;
+		this.interval = builder.interval;
+		this.shrinkDelay = builder.shrinkDelay;
+		this.shrinkSamples = (int) Math.max(1, builder.shrinkDelay.toMillis() / builder.interval.toMillis());
+	}
+
+	/**
+	 * Returns a new autoscaler with the default settings.
+	 *
+	 * @return a new autoscaler
+	 */
+	public static PoolAutoscaler defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the route key of the given route, the scheme and the authority of the target host.
+	 *
+	 * @param route the connection pool route
+	 * @return the route key
+	 */
+	public static String route(final HttpRoute route) {
+		return route.getTargetHost().toURI();
+	}
+
+	/**
+	 * Starts sampling the given connection manager on a daemon thread. An autoscaler can scale only one connection
+	 * manager.
+	 *
+	 * @param connectionManager the connection manager to scale
+	 * @throws IllegalStateException if the autoscaler was already started
+	 */
+	public synchronized void start(final PoolingHttpClientConnectionManager connectionManager) {
+		if (null != this.connectionManager) {
+			throw new IllegalStateException("Pool autoscaler already started");
+		}
+		this.connectionManager = connectionManager;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+				.name("apiphany-pool-autoscaler")
+				.daemon()
+				.factory());
+		long intervalMillis = interval.toMillis();
+		scheduler.scheduleWithFixedDelay(this::scaleSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops sampling.
+	 *
+	 * @see AutoCloseable#close()
+	 */
+	@Override
+	public synchronized void close() {
+		if (null != scheduler) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * Adjusts the routes, a failure is logged so that the next samples still run.
+	 */
+	private void scaleSafely() {
+		try {
+			scale();
+		} catch (RuntimeException e) {
+			LOGGER.warn("Failed to scale connection pool", e);
+		}
+	}
+
+	/**
+	 * Samples the pool statistics once and adjusts the maximum connections of every route, this is called periodically
+	 * after the autoscaler is started.
+	 */
+	public void scale() {
+		PoolingHttpClientConnectionManager cm = this.connectionManager;
+		if (null == cm) {
+			return;
+		}
+		PoolStats totalStats = cm.getTotalStats();
+		int freeTotal = totalStats.getMax() - totalStats.getLeased();
+		int routeLimit = Math.min(maxPerRoute, totalStats.getMax());
+		boolean shrunk = false;
+		for (HttpRoute route : cm.getRoutes()) {
+			PoolStats stats = cm.getStats(route);
+			RouteState routeState = getRouteState(route(route));
+			int max = stats.getMax();
+			int newMax = max;
+			routeState.peakLeased = Math.max(routeState.peakLeased, stats.getLeased());
+			if (stats.getPending() > 0) {
+				routeState.underusedSamples = 0;
+				routeState.peakLeased = 0;
+				if (freeTotal > 0) {
+					newMax = Math.min(routeLimit, max + Math.min(stats.getPending(), freeTotal));
+				}
+			} else if (routeState.peakLeased * 2 < max && max > minPerRoute) {
+				if (++routeState.underusedSamples >= shrinkSamples) {
+					newMax = Math.max(minPerRoute, Math.max(routeState.peakLeased * 2, max / 2));
+					routeState.underusedSamples = 0;
+					routeState.peakLeased = 0;
+				}
+			} else {
+				routeState.underusedSamples = 0;
+				routeState.peakLeased = 0;
+			}
+			routeState.maxPerRoute = newMax;
+			if (newMax != max) {
+				cm.setMaxPerRoute(route, newMax);
+				LOGGER.info("Connection pool max per route for: {} changed from {} to {} (leased: {}, pending: {}, available: {})",
+						routeState.route, max, newMax, stats.getLeased(), stats.getPending(), stats.getAvailable());
+				if (newMax > max) {
+					freeTotal -= newMax - max;
+					routeState.grows.increment();
+				} else {
+					routeState.shrinks.increment();
+					shrunk = true;
+				}
+			}
+		}
+		if (shrunk) {
+			cm.closeIdle(TimeValue.ofMilliseconds(shrinkDelay.toMillis()));
+		}
+	}
+
+	/**
+	 * Returns the state of the given route, creating it if needed.
+	 *
+	 * @param route the route key
+	 * @return the route state
+	 */
+	private RouteState getRouteState(final String route) {
+		RouteState routeState = routeStates.get(route);
+		if (null != routeState) {
+			return routeState;
+		}
+		routeState = new RouteState(route);
+		routeStates.put(route, routeState);
+		routeListeners.forEach(listener -> listener.accept(route));
+		return routeState;
+	}
+
+	/**
+	 * Adds a listener called with the route key when a route is seen for the first time.
+	 *
+	 * @param listener the listener
+	 */
+	public void addRouteListener(final Consumer<String> listener) {
+		routeListeners.add(listener);
+	}
+
+	/**
+	 * Returns the routes seen so far.
+	 *
+	 * @return the routes seen so far
+	 */
+	public Set<String> getRoutes() {
+		return routeStates.keySet();
+	}
+
+	/**
+	 * Returns the maximum connections of the given route as of the last sample.
+	 *
+	 * @param route the route key
+	 * @return the maximum connections of the route, 0 if the route is not known
+	 */
+	public int getMaxPerRoute(final String route) {
+		RouteState routeState = routeStates.get(route);
+		return null != routeState ? routeState.maxPerRoute : 0;
+	}
+
+	/**
+	 * Returns the number of times the given route grew.
+	 *
+	 * @param route the route key
+	 * @return the number of grows
+	 */
+	public long getGrows(final String route) {
+		RouteState routeState = routeStates.get(route);
+		return null != routeState ? routeState.grows.sum() : 0;
+	}
+
+	/**
+	 * Returns the number of times the given route shrank.
+	 *
+	 * @param route the route key
+	 * @return the number of shrinks
+	 */
+	public long getShrinks(final String route) {
+		RouteState routeState = routeStates.get(route);
+		return null != routeState ? routeState.shrinks.sum() : 0;
+	}
+
+	/**
+	 * The sampling state of a route, it is only changed from the sampling thread.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class RouteState {
+
+		/**
+		 * The route key.
+		 */
+		private final String route;
+
+		/**
+		 * Number of times the route grew.
+		 */
+		private final LongAdder grows = new LongAdder();
+
+		/**
+		 * Number of times the route shrank.
+		 */
+		private final LongAdder shrinks = new LongAdder();
+
+		/**
+		 * The maximum connections of the route as of the last sample.
+		 */
+		private volatile int maxPerRoute;
+
+		/**
+		 * Number of consecutive samples in which the route was underused.
+		 */
+		private int underusedSamples;
+
+		/**
+		 * Peak number of leased connections since the last adjustment or the last busy sample.
+		 */
+		private int peakLeased;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param route the route key
+		 */
+		RouteState(final String route) {
+			this.route = route;
+		}
+	}
+
+	/**
+	 * Builder for {@link PoolAutoscaler}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * Minimum connections per route.
+		 */
+		private int minPerRoute = DEFAULT_MIN_PER_ROUTE;
+
+		/**
+		 * Maximum connections per route.
+		 */
+		private int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+
+		/**
+		 * Interval between samples.
+		 */
+		private Duration interval = DEFAULT_INTERVAL;
+
+		/**
+		 * Time a route must stay underused before it shrinks.
+		 */
+		private Duration shrinkDelay = DEFAULT_SHRINK_DELAY;
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Sets the minimum connections per route.
+		 *
+		 * @param minPerRoute minimum connections per route
+		 * @return this builder
+		 */
+		public Builder minPerRoute(final int minPerRoute) {
+			if (minPerRoute < 1) {
+				throw new IllegalArgumentException("Minimum per route must be greater than 0, got: " + minPerRoute);
+			}
+			this.minPerRoute = minPerRoute;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum connections per route, the pool maximum total connections also bounds the route maximum.
+		 *
+		 * @param maxPerRoute maximum connections per route
+		 * @return this builder
+		 */
+		public Builder maxPerRoute(final int maxPerRoute) {
+			if (maxPerRoute < 1) {
+				throw new IllegalArgumentException("Maximum per route must be greater than 0, got: " + maxPerRoute);
+			}
+			this.maxPerRoute = maxPerRoute;
+			return this;
+		}
+
+		/**
+		 * Sets the interval between samples.
+		 *
+		 * @param interval sampling interval
+		 * @return this builder
+		 */
+		public Builder interval(final Duration interval) {
+			if (interval.toMillis() < 1) {
+				throw new IllegalArgumentException("Interval must be at least 1 millisecond, got: " + interval);
+			}
+			this.interval = interval;
+			return this;
+		}
+
+		/**
+		 * Sets the time a route must stay underused before it shrinks.
+		 *
+		 * @param shrinkDelay shrink delay
+		 * @return this builder
+		 */
+		public Builder shrinkDelay(final Duration shrinkDelay) {
+			this.shrinkDelay = shrinkDelay;
+			return this;
+		}
+
+		/**
+		 * Builds the pool autoscaler.
+		 *
+		 * @return a new pool autoscaler
+		 */
+		public PoolAutoscaler build() {
+			return new PoolAutoscaler(this);
+		}
+	}
+}
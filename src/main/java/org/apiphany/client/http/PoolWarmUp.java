@@ -0,0 +1,352 @@
+package org.apiphany.client.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.routing.RoutingSupport;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connection pool warm-up which opens connections for the configured base URLs before the client serves requests, so
+ * that the first requests don't pay the TCP connect and TLS handshake costs.
+ * <p>
+ * For every base URL the warm-up leases {@link Builder#connectionsPerRoute(int)} connections from the pool at the same
+ * time (at most the maximum connections of the route), connects them in parallel, validates that they are open and then
+ * releases them back to the pool as idle connections. Warm-up failures are logged and never fail the client, the
+ * requests would open the connections anyway.
+ * <p>
+ * The routes are built the same way the HTTP client route planner builds them for direct connections, so the warmed up
+ * connections are reused by the requests, connections through proxies are not warmed up.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class PoolWarmUp {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(PoolWarmUp.class);
+
+	/**
+	 * Default number of connections opened per route.
+	 */
+	public static final int DEFAULT_CONNECTIONS_PER_ROUTE = 4;
+
+	/**
+	 * Default timeout for leasing and connecting a connection.
+	 */
+	public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+	/**
+	 * Default time the warmed up connections are kept alive in the pool, the same as the HTTP client default when the
+	 * server doesn't send a keep alive.
+	 */
+	public static final Duration DEFAULT_KEEP_ALIVE = Duration.ofMinutes(3);
+
+	/**
+	 * The routes to warm up.
+	 */
+	private final List<HttpRoute> routes;
+
+	/**
+	 * Number of connections opened per route.
+	 */
+	private final int connectionsPerRoute;
+
+	/**
+	 * Timeout for leasing and connecting a connection.
+	 */
+	private final Timeout timeout;
+
+	/**
+	 * Time the warmed up connections are kept alive in the pool.
+	 */
+	private final TimeValue keepAlive;
+
+	/**
+	 * Number of connections opened.
+	 */
+	private final LongAdder opened = new LongAdder();
+
+	/**
+	 * Number of connections that failed to open.
+	 */
+	private final LongAdder failed = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private PoolWarmUp(final Builder builder) {
+		this.routes = builder.urls.stream().map(PoolWarmUp::route).distinct().toList();
+		this.connectionsPerRoute = builder.connectionsPerRoute;
+		this.timeout = Timeout.ofMilliseconds(builder.timeout.toMillis());
+		this.keepAlive = TimeValue.ofMilliseconds(builder.keepAlive.toMillis());
+	}
+
+	/**
+	 * Returns a new warm-up for the given base URLs with the default settings.
+	 *
+	 * @param urls base URLs
+	 * @return a new warm-up
+	 */
+	public static PoolWarmUp of(final Collection<String> urls) {
+		return builder().urls(urls).build();
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the direct connection pool route of the given URL.
+	 *
+	 * @param url the URL
+	 * @return the route
+	 */
+	public static HttpRoute route(final String url) {
+		HttpHost target = RoutingSupport.normalize(HttpHost.create(URI.create(url)), DefaultSchemePortResolver.INSTANCE);
+		return new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName()));
+	}
+
+	/**
+	 * Warms up the given connection manager, the connections are opened in parallel on the given executor.
+	 *
+	 * @param connectionManager the connection manager
+	 * @param executor the executor used to open the connections
+	 * @return a future completed when all the routes were warmed up, it never completes exceptionally
+	 */
+	public CompletableFuture<Void> warmUp(final PoolingHttpClientConnectionManager connectionManager, final Executor executor) {
+		CompletableFuture<?>[] routeWarmUps = routes.stream()
+				.map(route -> warmUp(connectionManager, route, executor))
+				.toArray(CompletableFuture<?>[]::new);
+		return CompletableFuture.allOf(routeWarmUps);
+	}
+
+	/**
+	 * Warms up the given route, all the connections are leased before any is released so that they are distinct
+	 * connections.
+	 *
+	 * @param connectionManager the connection manager
+	 * @param route the route
+	 * @param executor the executor used to open the connections
+	 * @return a future completed when the route was warmed up, it never completes exceptionally
+	 */
+	private CompletableFuture<Void> warmUp(final PoolingHttpClientConnectionManager connectionManager, final HttpRoute route,
+			final Executor executor) {
+		long start = System.nanoTime();
+		int count = Math.min(connectionsPerRoute, connectionManager.getMaxPerRoute(route));
+		List<CompletableFuture<ConnectionEndpoint>> connections = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			connections.add(CompletableFuture.supplyAsync(() -> open(connectionManager, route), executor));
+		}
+		return CompletableFuture.allOf(connections.toArray(CompletableFuture<?>[]::new))
+				.handle((result, e) -> {
+					int routeOpened = 0;
+					for (CompletableFuture<ConnectionEndpoint> connection : connections) {
+						if (connection.isCompletedExceptionally()) {
+							failed.increment();
+							continue;
+						}
+						connectionManager.release(connection.join(), null, keepAlive);
+						opened.increment();
+						++routeOpened;
+					}
+					long durationMillis = (System.nanoTime() - start) / 1_000_000;
+					if (null != e) {
+						LOGGER.warn("Warmed up {} of {} connections for route: {} in {} ms, last failure: {}",
+								routeOpened, count, route, durationMillis, e.getMessage());
+					} else {
+						LOGGER.info("Warmed up {} connections for route: {} in {} ms", routeOpened, route, durationMillis);
+					}
+					return null;
+				});
+	}
+
+	/**
+	 * Leases and connects a connection, a connection that fails to connect is discarded.
+	 *
+	 * @param connectionManager the connection manager
+	 * @param route the route
+	 * @return the connected endpoint
+	 */
+	private ConnectionEndpoint open(final PoolingHttpClientConnectionManager connectionManager, final HttpRoute route) {
+		ConnectionEndpoint endpoint;
+		try {
+			endpoint = connectionManager.lease(null, route, timeout, null).get(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CompletionException(e);
+		} catch (ExecutionException | TimeoutException e) {
+			throw new CompletionException(e);
+		}
+		try {
+			if (!endpoint.isConnected()) {
+				connectionManager.connect(endpoint, timeout, HttpClientContext.create());
+			}
+			if (!endpoint.isConnected()) {
+				throw new IOException("Connection closed after connect");
+			}
+			return endpoint;
+		} catch (IOException | RuntimeException e) {
+			endpoint.close(CloseMode.IMMEDIATE);
+			connectionManager.release(endpoint, null, TimeValue.ZERO_MILLISECONDS);
+			throw new CompletionException(e);
+		}
+	}
+
+	/**
+	 * Returns the routes to warm up.
+	 *
+	 * @return the routes to warm up
+	 */
+	public List<HttpRoute> getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * Returns the number of connections opened.
+	 *
+	 * @return the number of connections opened
+	 */
+	public long getOpened() {
+		return opened.sum();
+	}
+
+	/**
+	 * Returns the number of connections that failed to open.
+	 *
+	 * @return the number of connections that failed to open
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * Builder for {@link PoolWarmUp}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * The base URLs.
+		 */
+		private final List<String> urls = new ArrayList<>();
+
+		/**
+		 * Number of connections opened per route.
+		 */
+		private int connectionsPerRoute = DEFAULT_CONNECTIONS_PER_ROUTE;
+
+		/**
+		 * Timeout for leasing and connecting a connection.
+		 */
+		private Duration timeout = DEFAULT_TIMEOUT;
+
+		/**
+		 * Time the warmed up connections are kept alive in the pool.
+		 */
+		private Duration keepAlive = DEFAULT_KEEP_ALIVE;
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Adds a base URL to warm up, only the scheme and the authority are used.
+		 *
+		 * @param url base URL
+		 * @return this builder
+		 */
+		public Builder url(final String url) {
+			this.urls.add(url);
+			return this;
+		}
+
+		/**
+		 * Adds the base URLs to warm up, only the scheme and the authority are used.
+		 *
+		 * @param urls base URLs
+		 * @return this builder
+		 */
+		public Builder urls(final Collection<String> urls) {
+			this.urls.addAll(urls);
+			return this;
+		}
+
+		/**
+		 * Sets the number of connections opened per route.
+		 *
+		 * @param connectionsPerRoute number of connections per route
+		 * @return this builder
+		 */
+		public Builder connectionsPerRoute(final int connectionsPerRoute) {
+			if (connectionsPerRoute < 1) {
+				throw new IllegalArgumentException("Connections per route must be greater than 0, got: " + connectionsPerRoute);
+			}
+			this.connectionsPerRoute = connectionsPerRoute;
+			return this;
+		}
+
+		/**
+		 * Sets the timeout for leasing and connecting a connection.
+		 *
+		 * @param timeout timeout
+		 * @return this builder
+		 */
+		public Builder timeout(final Duration timeout) {
+			this.timeout = timeout;
+			return this;
+		}
+
+		/**
+		 * Sets the time the warmed up connections are kept alive in the pool.
+		 *
+		 * @param keepAlive keep alive time
+		 * @return this builder
+		 */
+		public Builder keepAlive(final Duration keepAlive) {
+			this.keepAlive = keepAlive;
+			return this;
+		}
+
+		/**
+		 * Builds the pool warm-up.
+		 *
+		 * @return a new pool warm-up
+		 */
+		public PoolWarmUp build() {
+			return new PoolWarmUp(this);
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package org.apiphany.client.http;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apiphany.ApiRequest;
+import org.apiphany.http.HttpException;
+import org.apiphany.http.HttpMethod;
+import org.apiphany.http.HttpStatus;
+import org.apiphany.lang.collections.Maps;
+
+/**
+ * Coalesces identical concurrent requests into a single in-flight call (single-flight).
+ * <p>
+ * The first caller for a key executes the exchange, all the callers that arrive with the same key while the exchange is
+ * in flight wait for it and receive the same result or exception. Once the exchange completes the key is released, so
+ * callers arriving later start a new exchange, the coalescer never caches results.
+ * <p>
+ * Only idempotent {@code GET} requests without a body are coalesced, see {@link #isCoalescable(ApiRequest)}. The key
+ * contains the method, the URI, the response type and the values of the configured header names, the headers that
+ * change the response (like {@code Authorization}, {@code Cookie} or {@code Accept}) must be part of the key so that
+ * callers never get a response meant for someone else. The credential headers ({@code Authorization},
+ * {@code Proxy-Authorization} and {@code Cookie}) are part of the key as a SHA-256 hash of their values, the credentials
+ * themselves are never kept in the key.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class RequestCoalescer {
+
+	/**
+	 * Default header names used in the key.
+	 */
+	public static final List<String> DEFAULT_KEY_HEADERS = List.of("Authorization", "Cookie", "Accept", "Accept-Language");
+
+	/**
+	 * Header names whose values are hashed in the key.
+	 */
+	private static final Set<String> CREDENTIAL_HEADERS = credentialHeaders();
+
+	/**
+	 * The in-flight exchanges by key.
+	 */
+	private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * The header names used in the key.
+	 */
+	private final List<String> keyHeaders;
+
+	/**
+	 * Number of exchanges executed.
+	 */
+	private final LongAdder executed = new LongAdder();
+
+	/**
+	 * Number of callers that joined an in-flight exchange instead of executing their own.
+	 */
+	private final LongAdder coalesced = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param keyHeaders the header names used in the key
+	 */
+	private RequestCoalescer(final Collection<String> keyHeaders) {
+		this.keyHeaders = keyHeaders.stream().sorted(String.CASE_INSENSITIVE_ORDER).toList();
+	}
+
+	/**
+	 * Returns a new coalescer which uses the given header names in the key.
+	 *
+	 * @param keyHeaders the header names used in the key
+	 * @return a new coalescer
+	 */
+	public static RequestCoalescer of(final Collection<String> keyHeaders) {
+		return new RequestCoalescer(keyHeaders);
+	}
+
+	/**
+	 * Returns a new coalescer which uses the {@link #DEFAULT_KEY_HEADERS} in the key.
+	 *
+	 * @return a new coalescer
+	 */
+	public static RequestCoalescer defaults() {
+		return of(DEFAULT_KEY_HEADERS);
+	}
+
+	/**
+	 * Returns true if the given request can be coalesced, only {@code GET} requests without a body that are not streamed
+	 * are coalesced.
+	 *
+	 * @param apiRequest API request
+	 * @return true if the request can be coalesced
+	 */
+	public boolean isCoalescable(final ApiRequest<?> apiRequest) {
+		return HttpMethod.GET == apiRequest.getMethod() && !apiRequest.isStream() && null == apiRequest.getBody();
+	}
+
+	/**
+	 * Returns the key for the given request.
+	 *
+	 * @param apiRequest API request
+	 * @param uri request URI including the query parameters
+	 * @return the key
+	 */
+	public String key(final ApiRequest<?> apiRequest, final URI uri) {
+		Type responseType = apiRequest.hasGenericType()
+				? apiRequest.getGenericResponseType().getType()
+				: apiRequest.getClassResponseType();
+		StringBuilder key = new StringBuilder(128)
+				.append(apiRequest.getMethod().value()).append(' ')
+				.append(uri).append(' ')
+				.append(null != responseType ? responseType.getTypeName() : "");
+		Map<String, List<String>> headers = apiRequest.getHeaders();
+		if (Maps.isNotEmpty(headers)) {
+			for (String name : keyHeaders) {
+				List<String> values = getHeader(headers, name);
+				if (null != values) {
+					key.append('\n').append(name).append(": ").append(CREDENTIAL_HEADERS.contains(name) ? hash(values) : values);
+				}
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Executes the exchange or joins the in-flight exchange with the same key.
+	 *
+	 * @param <R> result type
+	 *
+	 * @param key the request key, see {@link #key(ApiRequest, URI)}
+	 * @param exchange the exchange
+	 * @return the exchange result
+	 */
+	@SuppressWarnings("unchecked")
+	public <R> R execute(final String key, final Supplier<R> exchange) {
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+		if (null != existing) {
+			coalesced.increment();
+			return (R) await(existing);
+		}
+		executed.increment();
+		try {
+			R result = exchange.get();
+			future.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, future);
+		}
+	}
+
+	/**
+	 * Waits for the in-flight exchange and returns its result, rethrowing the exchange exception as it is.
+	 *
+	 * @param future the in-flight exchange
+	 * @return the exchange result
+	 */
+	private static Object await(final CompletableFuture<Object> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new HttpException(HttpStatus.INTERNAL_SERVER_ERROR, "Interrupted while waiting for the in-flight exchange");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			if (cause instanceof Error error) {
+				throw error;
+			}
+			throw new HttpException(HttpStatus.INTERNAL_SERVER_ERROR, "In-flight exchange failed: " + cause.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the given header values.
+	 *
+	 * @param values header values
+	 * @return the hex encoded hash
+	 */
+	private static String hash(final List<String> values) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String value : values) {
+				digest.update((value + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	/**
+	 * Returns the credential header names, compared ignoring the case.
+	 *
+	 * @return the credential header names
+	 */
+	private static Set<String> credentialHeaders() {
+		Set<String> credentialHeaders = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		credentialHeaders.addAll(List.of("Authorization", "Proxy-Authorization", "Cookie"));
+		return credentialHeaders;
+	}
+
+	/**
+	 * Returns the values of the given header ignoring the header name case.
+	 *
+	 * @param headers request headers
+	 * @param name header name
+	 * @return the header values or {@code null} if not present
+	 */
+	private static List<String> getHeader(final Map<String, List<String>> headers, final String name) {
+		List<String> values = headers.get(name);
+		if (null != values) {
+			return values;
+		}
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			if (name.equalsIgnoreCase(entry.getKey())) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the header names used in the key.
+	 *
+	 * @return the header names used in the key
+	 */
+	public List<String> getKeyHeaders() {
+		return keyHeaders;
+	}
+
+	/**
+	 * Returns the number of exchanges executed.
+	 *
+	 * @return the number of exchanges executed
+	 */
+	public long getExecuted() {
+		return executed.sum();
+	}
+
+	/**
+	 * Returns the number of callers that joined an in-flight exchange instead of executing their own.
+	 *
+	 * @return the number of coalesced callers
+	 */
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * Returns the number of exchanges currently in flight.
+	 *
+	 * @return the number of in-flight exchanges
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+}
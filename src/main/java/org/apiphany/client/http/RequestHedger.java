@@ -0,0 +1,982 @@
+package org.apiphany.client.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apiphany.ApiRequest;
+import org.apiphany.http.HttpMethod;
+import org.apiphany.spring.http.StreamingRequestBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentLruCache;
+
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+
+/**
+ * Hedges idempotent requests to cut the latency tail.
+ * <p>
+ * The exchange runs on the calling thread and if it did not complete within the hedge delay an identical exchange is
+ * started on a new virtual thread, with a snapshot of the caller context when the Micrometer context propagation
+ * library is present. The first successful exchange wins and the other one is cancelled by interrupting its thread,
+ * which with virtual threads aborts the blocking socket read so the connection is discarded instead of being left to
+ * finish. The losing attempt is marked as cancelled before it is interrupted so the I/O error it ends with is not taken
+ * for a failure of the host: while it unwinds {@link #isCancelled()} returns true on its thread and the
+ * {@link CircuitBreaker}, the {@link ConcurrencyLimiter} and the {@link LoadBalancer} ignore its outcome. Since a
+ * platform thread cannot be aborted this way, only exchanges called on virtual threads are hedged. If an exchange fails
+ * the other one is still awaited, only when both fail the failure of the original exchange is thrown.
+ * <p>
+ * A hedge counts against the concurrency limit of the {@link ExchangeExecutor}: it is sent only if a permit is free
+ * right away, hedges never wait for permits.
+ * <p>
+ * The hedge delay is by default the tracked {@link Builder#percentile(double)} of the latencies of the route (method,
+ * scheme, host and path), routes are hedged only after {@link Builder#minSamples(int)} latencies were recorded. A fixed
+ * delay can be configured with {@link Builder#delay(Duration)} instead.
+ * <p>
+ * To avoid amplifying the load on a slow backend the hedges are limited by a budget: every request adds
+ * {@link Builder#maxHedgeRatio(double)} tokens to a bucket that holds at most {@link Builder#maxBurst(int)} tokens and
+ * every hedge takes one token, so in the long run at most that ratio of requests is hedged.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class RequestHedger {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(RequestHedger.class);
+
+	/**
+	 * Default latency percentile used as hedge delay.
+	 */
+	public static final double DEFAULT_PERCENTILE = 0.95;
+
+	/**
+	 * Default minimum number of latency samples of a route before it is hedged.
+	 */
+	public static final int DEFAULT_MIN_SAMPLES = 20;
+
+	/**
+	 * Default number of latency samples kept for each route.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 128;
+
+	/**
+	 * Default maximum ratio of hedged requests.
+	 */
+	public static final double DEFAULT_MAX_HEDGE_RATIO = 0.05;
+
+	/**
+	 * Default maximum number of hedges that can be sent in a burst.
+	 */
+	public static final int DEFAULT_MAX_BURST = 10;
+
+	/**
+	 * Default minimum hedge delay.
+	 */
+	public static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(5);
+
+	/**
+	 * Default maximum number of tracked routes.
+	 */
+	public static final int DEFAULT_MAX_ROUTES = 1024;
+
+	/**
+	 * The idempotent methods, see RFC 9110 section 9.2.2.
+	 */
+	private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(
+			HttpMethod.GET,
+			HttpMethod.HEAD,
+			HttpMethod.OPTIONS,
+			HttpMethod.TRACE,
+			HttpMethod.PUT,
+			HttpMethod.DELETE);
+
+	/**
+	 * Number of budget tokens that make one hedge, the budget is kept in fractions of a token.
+	 */
+	private static final long TOKEN = 1000;
+
+	/**
+	 * Value for no fixed delay.
+	 */
+	private static final long NO_DELAY = -1;
+
+	/**
+	 * Factory for the virtual threads running the hedges.
+	 */
+	private static final ThreadFactory HEDGE_THREAD_FACTORY = Thread.ofVirtual().name("apiphany-hedge-", 0).factory();
+
+	/**
+	 * The attempt running on the current thread.
+	 */
+	private static final ThreadLocal<Attempt> CURRENT_ATTEMPT = new ThreadLocal<>();
+
+	/**
+	 * Latency percentile used as hedge delay.
+	 */
+	private final double percentile;
+
+	/**
+	 * Minimum number of latency samples of a route before it is hedged.
+	 */
+	private final int minSamples;
+
+	/**
+	 * Fixed hedge delay in nanoseconds or {@link #NO_DELAY}.
+	 */
+	private final long fixedDelayNanos;
+
+	/**
+	 * Minimum hedge delay in nanoseconds.
+	 */
+	private final long minDelayNanos;
+
+	/**
+	 * Budget tokens added for each request.
+	 */
+	private final long tokensPerRequest;
+
+	/**
+	 * Maximum budget tokens.
+	 */
+	private final long maxTokens;
+
+	/**
+	 * Current budget tokens.
+	 */
+	private final AtomicLong tokens;
+
+	/**
+	 * The latencies by route.
+	 */
+	private final ConcurrentLruCache<String, LatencyWindow> latencies;
+
+	/**
+	 * Number of hedgeable requests.
+	 */
+	private final LongAdder requests = new LongAdder();
+
+	/**
+	 * Number of hedges sent.
+	 */
+	private final LongAdder hedges = new LongAdder();
+
+	/**
+	 * Number of hedges that completed before the original request.
+	 */
+	private final LongAdder hedgeWins = new LongAdder();
+
+	/**
+	 * Number of hedges not sent because the budget was exhausted.
+	 */
+	private final LongAdder budgetExhausted = new LongAdder();
+
+	/**
+	 * Number of hedges not sent because the exchange executor had no free permit.
+	 */
+	private final LongAdder saturated = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private RequestHedger(final Builder builder) {
+		this.percentile = builder.percentile;
+		this.minSamples = builder.minSamples;
+		this.fixedDelayNanos = null != builder.delay ? builder.delay.toNanos() : NO_DELAY;
+		this.minDelayNanos = builder.minDelay.toNanos();
+		this.tokensPerRequest = Math.round(builder.maxHedgeRatio * TOKEN);
+		this.maxTokens = builder.maxBurst * TOKEN;
+		this.tokens = new AtomicLong(maxTokens);
+		int windowSize = builder.windowSize;
+		this.latencies = new ConcurrentLruCache<>(builder.maxRoutes, route -> new LatencyWindow(windowSize));
+	}
+
+	/**
+	 * Returns a new request hedger with the default settings.
+	 *
+	 * @return a new request hedger
+	 */
+	public static RequestHedger defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns true if the given request can be hedged, only requests with idempotent methods whose body can be sent more
+	 * than once and that are not streamed are hedged.
+	 *
+	 * @param apiRequest API request
+	 * @return true if the request can be hedged
+	 */
+	public boolean isHedgeable(final ApiRequest<?> apiRequest) {
+		return IDEMPOTENT_METHODS.contains(apiRequest.getMethod())
+				&& !apiRequest.isStream()
+				&& !StreamingRequestBody.isStreamable(apiRequest.getBody());
+	}
+
+	/**
+	 * Returns the route of the given request, the route is the method and the URI without the query.
+	 *
+	 * @param method HTTP method
+	 * @param uri request URI
+	 * @return the route
+	 */
+	public static String route(final HttpMethod method, final URI uri) {
+		return method.value() + " " + uri.getScheme() + "://" + uri.getRawAuthority() + uri.getRawPath();
+	}
+
+	/**
+	 * Returns true if the hedged exchange running on the current thread was cancelled because the other attempt won, the
+	 * failure it ends with must not be recorded as a failure of the host.
+	 *
+	 * @return true if the current exchange attempt was cancelled
+	 */
+	public static boolean isCancelled() {
+		Attempt attempt = CURRENT_ATTEMPT.get();
+		return null != attempt && attempt.cancelled;
+	}
+
+	/**
+	 * Executes the exchange on the calling thread, hedging it if it does not complete within the hedge delay of the
+	 * route. The hedge runs on a new virtual thread with a snapshot of the caller context and only if a permit of the
+	 * given exchange executor is available right away, so hedges never wait for permits held by the exchanges they
+	 * hedge.
+	 * <p>
+	 * Only exchanges called on virtual threads are hedged: the losing attempt is cancelled by interrupting its thread,
+	 * which aborts the blocking socket read of a virtual thread but not that of a platform thread.
+	 *
+	 * @param <R> result type
+	 *
+	 * @param route the route, see {@link #route(HttpMethod, URI)}
+	 * @param exchangeExecutor the exchange executor bounding the number of running exchanges
+	 * @param exchange the exchange
+	 * @return the result of the first successful exchange
+	 */
+	public <R> R execute(final String route, final ExchangeExecutor exchangeExecutor, final Supplier<R> exchange) {
+		requests.increment();
+		deposit();
+		LatencyWindow window = latencies.get(route);
+		long delayNanos = getDelayNanos(window);
+		if (NO_DELAY == delayNanos || !Thread.currentThread().isVirtual()) {
+			long start = System.nanoTime();
+			R result = exchange.get();
+			window.record(System.nanoTime() - start);
+			return result;
+		}
+		Attempt primary = new Attempt();
+		Hedge<R> hedge = new Hedge<>(route, delayNanos, exchangeExecutor, ContextPropagation.wrap(exchange), primary);
+		Thread hedgeThread = HEDGE_THREAD_FACTORY.newThread(hedge);
+		hedgeThread.start();
+
+		long start = System.nanoTime();
+		R result = null;
+		RuntimeException failure = null;
+		try {
+			result = primary.run(exchange);
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		long durationNanos = System.nanoTime() - start;
+		if (hedge.primaryCompleted()) {
+			window.record(hedge.durationNanos);
+			hedgeWins.increment();
+			return hedge.result.join();
+		}
+		if (null == failure) {
+			hedge.attempt.cancel(hedgeThread);
+			window.record(durationNanos);
+			return result;
+		}
+		return awaitHedge(hedge, hedgeThread, failure, window);
+	}
+
+	/**
+	 * Waits for the hedge after the original exchange failed and returns its result if it succeeded.
+	 *
+	 * @param <R> result type
+	 *
+	 * @param hedge the hedge
+	 * @param hedgeThread the thread running the hedge
+	 * @param failure the failure of the original exchange
+	 * @param window the latency window of the route
+	 * @return the result of the hedge
+	 */
+	private <R> R awaitHedge(final Hedge<R> hedge, final Thread hedgeThread, final RuntimeException failure, final LatencyWindow window) {
+		try {
+			R result = hedge.result.get();
+			window.record(hedge.durationNanos);
+			hedgeWins.increment();
+			return result;
+		} catch (CancellationException | ExecutionException e) {
+			throw failure;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			hedge.attempt.cancel(hedgeThread);
+			throw failure;
+		}
+	}
+
+	/**
+	 * Returns the hedge delay in nanoseconds for the route or {@link #NO_DELAY} if the route should not be hedged yet.
+	 *
+	 * @param window the latency window of the route
+	 * @return the hedge delay in nanoseconds
+	 */
+	private long getDelayNanos(final LatencyWindow window) {
+		if (NO_DELAY != fixedDelayNanos) {
+			return fixedDelayNanos;
+		}
+		long percentileNanos = window.getPercentile(percentile, minSamples);
+		return NO_DELAY == percentileNanos ? NO_DELAY : Math.max(minDelayNanos, percentileNanos);
+	}
+
+	/**
+	 * Adds the budget tokens for a request.
+	 */
+	private void deposit() {
+		tokens.getAndUpdate(current -> Math.min(maxTokens, current + tokensPerRequest));
+	}
+
+	/**
+	 * Takes the budget tokens for a hedge.
+	 *
+	 * @return true if there were enough tokens for a hedge
+	 */
+	private boolean withdraw() {
+		long current;
+		do {
+			current = tokens.get();
+			if (current < TOKEN) {
+				return false;
+			}
+		} while (!tokens.compareAndSet(current, current - TOKEN));
+		return true;
+	}
+
+	/**
+	 * Returns the current hedge delay for the given route.
+	 *
+	 * @param route the route
+	 * @return the hedge delay or {@code null} if the route is not hedged yet
+	 */
+	public Duration getDelay(final String route) {
+		long delayNanos = getDelayNanos(latencies.get(route));
+		return NO_DELAY == delayNanos ? null : Duration.ofNanos(delayNanos);
+	}
+
+	/**
+	 * Returns the number of hedgeable requests.
+	 *
+	 * @return the number of hedgeable requests
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * Returns the number of hedges sent.
+	 *
+	 * @return the number of hedges sent
+	 */
+	public long getHedges() {
+		return hedges.sum();
+	}
+
+	/**
+	 * Returns the number of hedges that completed before the original request.
+	 *
+	 * @return the number of hedges that won
+	 */
+	public long getHedgeWins() {
+		return hedgeWins.sum();
+	}
+
+	/**
+	 * Returns the number of hedges not sent because the budget was exhausted.
+	 *
+	 * @return the number of hedges not sent
+	 */
+	public long getBudgetExhausted() {
+		return budgetExhausted.sum();
+	}
+
+	/**
+	 * Returns the number of hedges not sent because the exchange executor had no free permit.
+	 *
+	 * @return the number of hedges not sent
+	 */
+	public long getSaturated() {
+		return saturated.sum();
+	}
+
+	/**
+	 * An attempt of a hedged exchange, the original exchange or its hedge.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class Attempt {
+
+		/**
+		 * True if the attempt was cancelled because the other attempt won.
+		 */
+		private volatile boolean cancelled;
+
+		/**
+		 * Runs the exchange on the current thread as this attempt.
+		 *
+		 * @param <R> result type
+		 *
+		 * @param exchange the exchange
+		 * @return the exchange result
+		 */
+		<R> R run(final Supplier<R> exchange) {
+			Attempt previous = CURRENT_ATTEMPT.get();
+			CURRENT_ATTEMPT.set(this);
+			try {
+				return exchange.get();
+			} finally {
+				if (null == previous) {
+					CURRENT_ATTEMPT.remove();
+				} else {
+					CURRENT_ATTEMPT.set(previous);
+				}
+			}
+		}
+
+		/**
+		 * Marks the attempt as cancelled and interrupts the thread running it.
+		 *
+		 * @param thread the thread running the attempt
+		 */
+		void cancel(final Thread thread) {
+			cancelled = true;
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * A hedge of an exchange running on the calling thread. The hedge waits for the hedge delay, sends the same exchange
+	 * if the original one did not complete by then and, if it succeeds first, interrupts the calling thread to abort the
+	 * original exchange.
+	 *
+	 * @param <R> result type
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private class Hedge<R> implements Runnable {
+
+		/**
+		 * The original exchange is still running.
+		 */
+		private static final int RUNNING = 0;
+
+		/**
+		 * The original exchange completed before the hedge.
+		 */
+		private static final int COMPLETED = 1;
+
+		/**
+		 * The hedge is interrupting the calling thread.
+		 */
+		private static final int INTERRUPTING = 2;
+
+		/**
+		 * The hedge completed first and interrupted the calling thread.
+		 */
+		private static final int INTERRUPTED = 3;
+
+		/**
+		 * The route.
+		 */
+		private final String route;
+
+		/**
+		 * The hedge delay in nanoseconds.
+		 */
+		private final long delayNanos;
+
+		/**
+		 * The exchange executor the hedge takes a permit from.
+		 */
+		private final ExchangeExecutor exchangeExecutor;
+
+		/**
+		 * The exchange, bound to the context of the calling thread.
+		 */
+		private final Supplier<R> exchange;
+
+		/**
+		 * The thread running the original exchange.
+		 */
+		private final Thread caller = Thread.currentThread();
+
+		/**
+		 * The original exchange attempt.
+		 */
+		private final Attempt primary;
+
+		/**
+		 * The hedge attempt.
+		 */
+		private final Attempt attempt = new Attempt();
+
+		/**
+		 * Released when the original exchange completed.
+		 */
+		private final CountDownLatch primaryDone = new CountDownLatch(1);
+
+		/**
+		 * The state of the original exchange.
+		 */
+		private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+		/**
+		 * The hedge result, cancelled if the hedge was not sent.
+		 */
+		private final CompletableFuture<R> result = new CompletableFuture<>();
+
+		/**
+		 * The hedge duration in nanoseconds.
+		 */
+		private volatile long durationNanos;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param route the route
+		 * @param delayNanos the hedge delay in nanoseconds
+		 * @param exchangeExecutor the exchange executor the hedge takes a permit from
+		 * @param exchange the exchange
+		 * @param primary the original exchange attempt
+		 */
+		Hedge(final String route, final long delayNanos, final ExchangeExecutor exchangeExecutor, final Supplier<R> exchange,
+				final Attempt primary) {
+			this.route = route;
+			this.delayNanos = delayNanos;
+			this.exchangeExecutor = exchangeExecutor;
+			this.exchange = exchange;
+			this.primary = primary;
+		}
+
+		/**
+		 * Waits for the hedge delay and sends the hedge if the original exchange did not complete by then and both the
+		 * hedge budget and the exchange executor allow it.
+		 *
+		 * @see Runnable#run()
+		 */
+		@Override
+		public void run() {
+			try {
+				if (primaryDone.await(delayNanos, TimeUnit.NANOSECONDS)) {
+					result.cancel(false);
+					return;
+				}
+			} catch (InterruptedException e) {
+				result.cancel(false);
+				return;
+			}
+			if (!exchangeExecutor.tryAcquirePermit()) {
+				saturated.increment();
+				result.cancel(false);
+				return;
+			}
+			try {
+				if (!withdraw()) {
+					budgetExhausted.increment();
+					result.cancel(false);
+					return;
+				}
+				LOGGER.debug("Hedging request on route: {} after {} ms", route, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+				hedges.increment();
+				send();
+			} finally {
+				exchangeExecutor.releasePermit();
+			}
+		}
+
+		/**
+		 * Sends the hedge and interrupts the calling thread if the hedge succeeded before the original exchange completed.
+		 */
+		private void send() {
+			long start = System.nanoTime();
+			try {
+				R hedgeResult = attempt.run(exchange);
+				durationNanos = System.nanoTime() - start;
+				result.complete(hedgeResult);
+				if (state.compareAndSet(RUNNING, INTERRUPTING)) {
+					primary.cancel(caller);
+					state.set(INTERRUPTED);
+				}
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		}
+
+		/**
+		 * Marks the original exchange as completed, must be called by the calling thread.
+		 *
+		 * @return true if the hedge succeeded first and interrupted the calling thread, the interrupt is cleared
+		 */
+		boolean primaryCompleted() {
+			primaryDone.countDown();
+			if (state.compareAndSet(RUNNING, COMPLETED)) {
+				return false;
+			}
+			while (INTERRUPTED != state.get()) {
+				Thread.onSpinWait();
+			}
+			boolean interrupted = Thread.interrupted(); // NOSONAR the interrupt was sent by the hedge and is consumed here
+			LOGGER.trace("Original request on route: {} aborted by its hedge, interrupted: {}", route, interrupted);
+			return true;
+		}
+	}
+
+	/**
+	 * Binds exchanges to a snapshot of the thread local context of the calling thread, like the current observation and
+	 * the MDC, when the Micrometer context propagation library is present.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class ContextPropagation {
+
+		/**
+		 * True if the Micrometer context propagation library is present.
+		 */
+		private static final boolean PRESENT = ClassUtils.isPresent("io.micrometer.context.ContextSnapshotFactory",
+				RequestHedger.class.getClassLoader());
+
+		/**
+		 * Hide constructor.
+		 */
+		private ContextPropagation() {
+			// empty
+		}
+
+		/**
+		 * Returns the given exchange bound to a snapshot of the thread local context of the calling thread.
+		 *
+		 * @param <R> result type
+		 *
+		 * @param exchange the exchange
+		 * @return the exchange running with the context of the calling thread
+		 */
+		static <R> Supplier<R> wrap(final Supplier<R> exchange) {
+			return PRESENT ? Snapshots.wrap(exchange) : exchange;
+		}
+	}
+
+	/**
+	 * Captures the context snapshots, this class is loaded only when the Micrometer context propagation library is
+	 * present.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class Snapshots {
+
+		/**
+		 * The context snapshot factory.
+		 */
+		private static final ContextSnapshotFactory FACTORY = ContextSnapshotFactory.builder().build();
+
+		/**
+		 * Hide constructor.
+		 */
+		private Snapshots() {
+			// empty
+		}
+
+		/**
+		 * Returns the given exchange bound to a snapshot of the thread local context of the calling thread.
+		 *
+		 * @param <R> result type
+		 *
+		 * @param exchange the exchange
+		 * @return the exchange running with the context of the calling thread
+		 */
+		static <R> Supplier<R> wrap(final Supplier<R> exchange) {
+			ContextSnapshot snapshot = FACTORY.captureAll();
+			return () -> {
+				try (ContextSnapshot.Scope scope = snapshot.setThreadLocals()) {
+					return exchange.get();
+				}
+			};
+		}
+	}
+
+	/**
+	 * Sliding window of the latest latencies of a route. The percentile is recomputed only every few samples since
+	 * sorting the window on every request would cost more than the hedging saves.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class LatencyWindow {
+
+		/**
+		 * Number of samples after which the percentile is recomputed.
+		 */
+		private static final int UPDATE_INTERVAL = 16;
+
+		/**
+		 * The samples ring buffer.
+		 */
+		private final long[] samples;
+
+		/**
+		 * Number of samples in the buffer.
+		 */
+		private int count;
+
+		/**
+		 * The next write position.
+		 */
+		private int index;
+
+		/**
+		 * Number of samples recorded since the percentile was computed.
+		 */
+		private int pending;
+
+		/**
+		 * The last computed percentile.
+		 */
+		private double computedPercentile;
+
+		/**
+		 * The last computed percentile value in nanoseconds.
+		 */
+		private long percentileNanos = NO_DELAY;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param size window size
+		 */
+		LatencyWindow(final int size) {
+			this.samples = new long[size];
+		}
+
+		/**
+		 * Records a latency.
+		 *
+		 * @param nanos latency in nanoseconds
+		 */
+		synchronized void record(final long nanos) {
+			samples[index] = nanos;
+			index = (index + 1) % samples.length;
+			count = Math.min(count + 1, samples.length);
+			++pending;
+		}
+
+		/**
+		 * Returns the given percentile of the latencies or {@link #NO_DELAY} if there are not enough samples.
+		 *
+		 * @param percentile the percentile
+		 * @param minSamples minimum number of samples
+		 * @return the percentile in nanoseconds
+		 */
+		synchronized long getPercentile(final double percentile, final int minSamples) {
+			if (count < minSamples) {
+				return NO_DELAY;
+			}
+			if (NO_DELAY == percentileNanos || pending >= UPDATE_INTERVAL || computedPercentile != percentile) {
+				long[] sorted = Arrays.copyOf(samples, count);
+				Arrays.sort(sorted);
+				percentileNanos = sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+				computedPercentile = percentile;
+				pending = 0;
+			}
+			return percentileNanos;
+		}
+	}
+
+	/**
+	 * Builder for {@link RequestHedger}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * Latency percentile used as hedge delay.
+		 */
+		private double percentile = DEFAULT_PERCENTILE;
+
+		/**
+		 * Minimum number of latency samples of a route before it is hedged.
+		 */
+		private int minSamples = DEFAULT_MIN_SAMPLES;
+
+		/**
+		 * Number of latency samples kept for each route.
+		 */
+		private int windowSize = DEFAULT_WINDOW_SIZE;
+
+		/**
+		 * Fixed hedge delay, {@code null} to use the route latency percentile.
+		 */
+		private Duration delay;
+
+		/**
+		 * Minimum hedge delay.
+		 */
+		private Duration minDelay = DEFAULT_MIN_DELAY;
+
+		/**
+		 * Maximum ratio of hedged requests.
+		 */
+		private double maxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+
+		/**
+		 * Maximum number of hedges that can be sent in a burst.
+		 */
+		private int maxBurst = DEFAULT_MAX_BURST;
+
+		/**
+		 * Maximum number of tracked routes.
+		 */
+		private int maxRoutes = DEFAULT_MAX_ROUTES;
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Sets the route latency percentile used as hedge delay.
+		 *
+		 * @param percentile percentile between 0 and 1 exclusive
+		 * @return this builder
+		 */
+		public Builder percentile(final double percentile) {
+			if (percentile <= 0 || percentile >= 1) {
+				throw new IllegalArgumentException("Percentile must be between 0 and 1, got: " + percentile);
+			}
+			this.percentile = percentile;
+			return this;
+		}
+
+		/**
+		 * Sets the minimum number of latency samples of a route before it is hedged.
+		 *
+		 * @param minSamples minimum number of samples
+		 * @return this builder
+		 */
+		public Builder minSamples(final int minSamples) {
+			if (minSamples < 1) {
+				throw new IllegalArgumentException("Minimum samples must be greater than 0, got: " + minSamples);
+			}
+			this.minSamples = minSamples;
+			return this;
+		}
+
+		/**
+		 * Sets the number of latency samples kept for each route.
+		 *
+		 * @param windowSize window size
+		 * @return this builder
+		 */
+		public Builder windowSize(final int windowSize) {
+			if (windowSize < 1) {
+				throw new IllegalArgumentException("Window size must be greater than 0, got: " + windowSize);
+			}
+			this.windowSize = windowSize;
+			return this;
+		}
+
+		/**
+		 * Sets a fixed hedge delay used for all routes instead of the route latency percentile.
+		 *
+		 * @param delay fixed hedge delay
+		 * @return this builder
+		 */
+		public Builder delay(final Duration delay) {
+			this.delay = delay;
+			return this;
+		}
+
+		/**
+		 * Sets the minimum hedge delay, it protects very fast routes from being hedged on noise.
+		 *
+		 * @param minDelay minimum hedge delay
+		 * @return this builder
+		 */
+		public Builder minDelay(final Duration minDelay) {
+			this.minDelay = minDelay;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum ratio of hedged requests.
+		 *
+		 * @param maxHedgeRatio maximum ratio of hedged requests between 0 and 1
+		 * @return this builder
+		 */
+		public Builder maxHedgeRatio(final double maxHedgeRatio) {
+			if (maxHedgeRatio < 0 || maxHedgeRatio > 1) {
+				throw new IllegalArgumentException("Maximum hedge ratio must be between 0 and 1, got: " + maxHedgeRatio);
+			}
+			this.maxHedgeRatio = maxHedgeRatio;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of hedges that can be sent in a burst.
+		 *
+		 * @param maxBurst maximum burst
+		 * @return this builder
+		 */
+		public Builder maxBurst(final int maxBurst) {
+			if (maxBurst < 1) {
+				throw new IllegalArgumentException("Maximum burst must be greater than 0, got: " + maxBurst);
+			}
+			this.maxBurst = maxBurst;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of tracked routes, the least recently used routes are dropped.
+		 *
+		 * @param maxRoutes maximum number of routes
+		 * @return this builder
+		 */
+		public Builder maxRoutes(final int maxRoutes) {
+			this.maxRoutes = maxRoutes;
+			return this;
+		}
+
+		/**
+		 * Builds the request hedger.
+		 *
+		 * @return a new request hedger
+		 */
+		public RequestHedger build() {
+			return new RequestHedger(this);
+		}
+	}
+}
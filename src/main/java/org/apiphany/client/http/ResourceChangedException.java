@@ -0,0 +1,49 @@
+package org.apiphany.client.http;
+
+import java.io.Serial;
+import java.net.URI;
+
+import org.apiphany.http.HttpException;
+import org.apiphany.http.HttpStatus;
+
+/**
+ * Exception thrown when a resource changed while it was being downloaded in parts, that is when the server answered a
+ * {@code Range} request guarded by {@code If-Range} with the whole resource instead of the requested range. The parts
+ * already written belong to the previous version of the resource so the download cannot be completed, it must be
+ * started again.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ResourceChangedException extends HttpException {
+
+	/**
+	 * Serial version UID.
+	 */
+	@Serial
+	private static final long serialVersionUID = -4329120861536478212L;
+
+	/**
+	 * The URI of the resource that changed.
+	 */
+	private final URI uri;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param uri the URI of the resource that changed
+	 * @param validator the validator the resource no longer matches
+	 */
+	public ResourceChangedException(final URI uri, final String validator) {
+		super(HttpStatus.PRECONDITION_FAILED, "Resource " + uri + " changed during the download, it no longer matches " + validator);
+		this.uri = uri;
+	}
+
+	/**
+	 * Returns the URI of the resource that changed.
+	 *
+	 * @return the URI of the resource
+	 */
+	public URI getUri() {
+		return uri;
+	}
+}
@@ -0,0 +1,358 @@
+package org.apiphany.client.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.annotation.PostConstruct;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.io.CloseMode;
+import org.apiphany.ApiRequest;
+import org.apiphany.ApiResponse;
+import org.apiphany.client.ClientProperties;
+import org.apiphany.http.HttpException;
+import org.apiphany.http.HttpMethod;
+import org.apiphany.http.HttpStatus;
+import org.apiphany.lang.collections.Maps;
+import org.apiphany.spring.RestClients;
+import org.apiphany.spring.http.ApacheHC5AsyncClientHttpRequestFactory;
+import org.apiphany.spring.http.BinaryFormats;
+import org.apiphany.spring.http.ClientHttpResponseInputStream;
+import org.apiphany.spring.http.LazyBody;
+import org.apiphany.spring.http.ResponseConverterCache;
+import org.apiphany.spring.http.SpringHttpRequests;
+import org.apiphany.spring.http.StreamingRequestBody;
+import org.morphix.lang.JavaObjects;
+import org.morphix.reflection.Methods;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestClient;
+
+/**
+ * Exchange client implemented with {@link RestClient}.
+ * <p>
+ * Besides the blocking {@link #exchange(ApiRequest)} this client can also run exchanges asynchronously with
+ * {@link #exchangeAsync(ApiRequest)}, by default every asynchronous exchange runs on its own virtual thread so the
+ * number of concurrent outbound calls is bounded only by the connection pool and not by the number of platform threads.
+ * <p>
+ * Request bodies that are {@link StreamingRequestBody}, {@link InputStream}, {@link java.nio.file.Path} or
+ * {@link java.nio.channels.ReadableByteChannel} objects are streamed to the connection, see
+ * {@link #upload(URI, HttpMethod, HttpHeaders, StreamingRequestBody, Type)}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class RestClientExchangeClient extends AbstractRestExchangeClient {
+
+	/**
+	 * Error handler for the streaming requests, it throws the same exceptions as the rest client default status handler.
+	 */
+	private static final ResponseErrorHandler STREAMING_ERROR_HANDLER = new DefaultResponseErrorHandler();
+
+	/**
+	 * The underlying REST client.
+	 */
+	private RestClient restClient;
+
+	/**
+	 * The request factory of the rest client, used for streaming request bodies which the rest client would buffer in
+	 * memory when there are interceptors.
+	 */
+	private ClientHttpRequestFactory requestFactory;
+
+	/**
+	 * The request interceptors of the rest client.
+	 */
+	private List<ClientHttpRequestInterceptor> requestInterceptors;
+
+	/**
+	 * Cache of the message converters resolved for response types.
+	 */
+	private ResponseConverterCache responseConverterCache;
+
+	/**
+	 * The HTTP/2 client options, {@code null} if the client uses HTTP/1.1 with a connection pool.
+	 */
+	private Http2Options http2Options;
+
+	/**
+	 * The HTTP/2 async client, {@code null} if the client uses HTTP/1.1 with a connection pool.
+	 */
+	private CloseableHttpAsyncClient httpAsyncClient;
+
+	/**
+	 * Default constructor, see also {@link #initialize()}.
+	 */
+	public RestClientExchangeClient() {
+		this(ClientProperties.defaults());
+	}
+
+	/**
+	 * Constructor, see also {@link #initialize()}.
+	 *
+	 * @param clientProperties client properties
+	 */
+	public RestClientExchangeClient(final ClientProperties clientProperties) {
+		this(clientProperties, ExchangeExecutor.virtualThreads());
+	}
+
+	/**
+	 * Constructor, see also {@link #initialize()}.
+	 *
+	 * @param clientProperties client properties
+	 * @param exchangeExecutor executor used for asynchronous exchanges, it will be closed when the client is closed
+	 */
+	public RestClientExchangeClient(final ClientProperties clientProperties, final ExchangeExecutor exchangeExecutor) {
+		super(clientProperties, exchangeExecutor);
+	}
+
+	/**
+	 * Initializes the client after the object was constructed. If you implement this class and use it as a non bean make
+	 * sure you use an initializer that calls all methods that are annotated with {@link PostConstruct}.
+	 *
+	 * @see Methods.IgnoreAccess#invokeWithAnnotation(Object, Class)
+	 */
+	@PostConstruct
+	private void initialize() { // NOSONAR
+		if (null != http2Options) {
+			this.httpAsyncClient = http2Options.createClient(getClientProperties());
+			this.requestFactory = new ApacheHC5AsyncClientHttpRequestFactory(httpAsyncClient);
+		} else {
+			this.requestFactory = new HttpComponentsClientHttpRequestFactory(createHttpClient());
+		}
+		RestClient.Builder restClientBuilder = RestClients.builder(requestFactory, getApplicationContext());
+		BinaryFormats binaryFormats = getBinaryFormats();
+		restClientBuilder.messageConverters(converters -> {
+			if (null != binaryFormats) {
+				binaryFormats.addConverters(converters);
+			}
+			this.responseConverterCache = ResponseConverterCache.of(converters);
+		});
+		restClientBuilder.requestInterceptors(interceptors -> {
+			addInterceptors(interceptors);
+			this.requestInterceptors = new ArrayList<>(interceptors);
+		});
+		registerMetrics();
+		this.restClient = restClientBuilder.build();
+	}
+
+	/**
+	 * @see #close()
+	 */
+	@Override
+	public void close() throws Exception {
+		super.close();
+		if (null != httpAsyncClient) {
+			httpAsyncClient.close(CloseMode.GRACEFUL);
+		}
+	}
+
+	/**
+	 * @see AbstractRestExchangeClient#exchange(ApiRequest, URI)
+	 */
+	@Override
+	protected <T, U> ApiResponse<U> exchange(final ApiRequest<T> apiRequest, final URI uri) {
+		if (StreamingRequestBody.isStreamable(apiRequest.getBody())) {
+			HttpHeaders headers = SpringHttpRequests.httpHeadersView(apiRequest.getHeaders());
+			return upload(uri, apiRequest.getMethod(), headers, StreamingRequestBody.from(apiRequest.getBody()), getResponseType(apiRequest));
+		}
+		RestClient.RequestBodySpec requestSpec = restClient
+				.method(SpringHttpRequests.getHttpMethod(apiRequest.getMethod().value()))
+				.uri(uri)
+				.headers(headers -> addHeaders(headers, apiRequest.getHeaders()));
+		T body = apiRequest.getBody();
+		if (null != body) {
+			requestSpec.body(body);
+			if (null != getBinaryFormats()) {
+				requestSpec.headers(headers -> setBinaryContentType(headers, uri, body));
+			}
+		}
+		if (apiRequest.isStream()) {
+			return download(requestSpec);
+		}
+		if (null != getBinaryFormats()) {
+			String acceptHeader = responseConverterCache.getAcceptHeader(getResponseType(apiRequest));
+			requestSpec.headers(headers -> setAcceptHeader(headers, acceptHeader));
+		}
+		RestClient.ResponseSpec responseSpec = requestSpec.retrieve();
+
+		ResponseEntity<U> responseEntity = null;
+		Type lazyElementType = LazyBody.elementType(getResponseType(apiRequest));
+		if (null != lazyElementType) {
+			ResponseEntity<byte[]> rawResponseEntity = responseSpec.toEntity(byte[].class);
+			LazyBody<?> lazyBody = responseConverterCache.lazyBody(lazyElementType, rawResponseEntity.getHeaders(), rawResponseEntity.getBody());
+			responseEntity = new ResponseEntity<>(JavaObjects.cast(lazyBody), rawResponseEntity.getHeaders(), rawResponseEntity.getStatusCode());
+		} else if (apiRequest.hasGenericType()) {
+			Type genericType = apiRequest.getGenericResponseType().getType();
+			ParameterizedTypeReference<U> parameterizedResponseType = ParameterizedTypeReference.forType(genericType);
+			responseEntity = responseSpec.toEntity(parameterizedResponseType);
+		} else {
+			Class<U> responseType = apiRequest.getClassResponseType();
+			responseEntity = responseSpec.toEntity(responseType);
+		}
+		return ApiResponse.create(responseEntity.getBody())
+				.status(responseEntity.getStatusCode().value(), HttpStatus::fromCode)
+				.headers(responseEntity.getHeaders())
+				.exchangeClient(this)
+				.build();
+	}
+
+	/**
+	 * Performs an upload HTTP operation, the request body is written directly to the connection without being buffered in
+	 * memory. When GZIP compression is enabled and the compression policy allows the content type, the body is compressed
+	 * on the fly.
+	 * <p>
+	 * The request goes through the rest client interceptors with an empty body array, see
+	 * {@link #executeStreaming(ClientHttpRequestFactory, List, URI, HttpMethod, HttpHeaders, StreamingRequestBody)}, error
+	 * responses throw the same exceptions as the rest client and the response body is read with the rest client message
+	 * converters.
+	 *
+	 * @param <U> response body type
+	 * @param uri URI to call
+	 * @param method HTTP method
+	 * @param headers request headers
+	 * @param body streaming request body
+	 * @param responseType response body type
+	 * @return API response
+	 */
+	public <U> ApiResponse<U> upload(final URI uri, final HttpMethod method, final HttpHeaders headers, final StreamingRequestBody body,
+			final Type responseType) {
+		try (ClientHttpResponse response = executeStreaming(requestFactory, requestInterceptors, uri, method, headers, body)) {
+			if (STREAMING_ERROR_HANDLER.hasError(response)) {
+				STREAMING_ERROR_HANDLER.handleError(uri, SpringHttpRequests.getHttpMethod(method.value()), response);
+			}
+			ResponseEntity<U> responseEntity = responseConverterCache.<U>responseEntityExtractor(responseType).extractData(response);
+			return ApiResponse.create(responseEntity.getBody())
+					.status(responseEntity.getStatusCode().value(), HttpStatus::fromCode)
+					.headers(responseEntity.getHeaders())
+					.exchangeClient(this)
+					.build();
+		} catch (IOException e) {
+			throw new ResourceAccessException("I/O error on " + method + " request for \"" + uri + "\": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Performs a download HTTP operation. The response entity body will be an {@link InputStream} which must be closed by
+	 * the caller in order to release the connection. The response cache is bypassed so the body is never buffered in
+	 * memory.
+	 *
+	 * @param <T> response entity type
+	 * @param requestSpec the request specification
+	 * @return response entity
+	 */
+	protected <T> ApiResponse<T> download(final RestClient.RequestHeadersSpec<?> requestSpec) {
+		requestSpec.headers(this::skipResponseCache);
+		return requestSpec.exchange((request, response) -> {
+			HttpStatus status = HttpStatus.fromCode(response.getStatusCode().value());
+			if (status.isError()) {
+				response.close();
+				throw new HttpException(status, "Failed to download content.");
+			}
+			InputStream inputStream = ClientHttpResponseInputStream.of(response);
+			return ApiResponse.<T>builder()
+					.body(JavaObjects.cast(inputStream))
+					.status(status)
+					.headers(response.getHeaders())
+					.exchangeClient(this)
+					.build();
+		}, false);
+	}
+
+	/**
+	 * Sets the {@code Accept} header for the response type, the same way the rest template does, when the request has no
+	 * {@code Accept} header. The rest client doesn't set it by itself and the binary formats are negotiated only for
+	 * requests which accept JSON.
+	 *
+	 * @param httpHeaders the HTTP headers
+	 * @param acceptHeader the {@code Accept} header value for the response type, can be {@code null}
+	 */
+	private static void setAcceptHeader(final HttpHeaders httpHeaders, final String acceptHeader) {
+		if (null != acceptHeader && !httpHeaders.containsKey(HttpHeaders.ACCEPT)) {
+			httpHeaders.set(HttpHeaders.ACCEPT, acceptHeader);
+		}
+	}
+
+	/**
+	 * Sets the binary format the server is known to support as content type when the request has no content type.
+	 *
+	 * @param httpHeaders the HTTP headers
+	 * @param uri the request URI
+	 * @param body the request body
+	 */
+	private void setBinaryContentType(final HttpHeaders httpHeaders, final URI uri, final Object body) {
+		if (null != httpHeaders.getContentType()) {
+			return;
+		}
+		MediaType contentType = getBinaryFormats().getContentType(uri, body);
+		if (null != contentType) {
+			httpHeaders.setContentType(contentType);
+		}
+	}
+
+	/**
+	 * Adds the API request headers to the given HTTP headers.
+	 *
+	 * @param httpHeaders the HTTP headers
+	 * @param headers the headers to add
+	 */
+	private static void addHeaders(final HttpHeaders httpHeaders, final Map<String, List<String>> headers) {
+		if (Maps.isNotEmpty(headers)) {
+			headers.forEach(httpHeaders::addAll);
+		}
+	}
+
+	/**
+	 * Returns the underlying REST client.
+	 *
+	 * @return the REST client
+	 */
+	protected RestClient getRestClient() {
+		return restClient;
+	}
+
+	/**
+	 * Enables HTTP/2 mode: all the exchanges are multiplexed as concurrent streams over one connection per host with an
+	 * HTTP/2 async client created from the given options, see {@link Http2Options}. The response bodies are buffered in
+	 * memory. In HTTP/2 mode there is no connection pool so the connection pool autoscaler, warm-up and registry are
+	 * ignored. The timeouts and the SSL context are taken from the options, the initialization fails if the client
+	 * properties have other settings than the compression that the HTTP/2 client cannot apply. This must be called before
+	 * the client is initialized.
+	 *
+	 * @param http2Options HTTP/2 client options, {@code null} uses HTTP/1.1 with a connection pool
+	 */
+	public void setHttp2Options(final Http2Options http2Options) {
+		this.http2Options = http2Options;
+	}
+
+	/**
+	 * Returns the HTTP/2 client options.
+	 *
+	 * @return the HTTP/2 client options, {@code null} if the client uses HTTP/1.1 with a connection pool
+	 */
+	public Http2Options getHttp2Options() {
+		return http2Options;
+	}
+
+	/**
+	 * Returns the HTTP/2 async client.
+	 *
+	 * @return the HTTP/2 async client, {@code null} if the client uses HTTP/1.1 with a connection pool
+	 */
+	protected CloseableHttpAsyncClient getHttpAsyncClient() {
+		return httpAsyncClient;
+	}
+}
@@ -4,56 +4,63 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.net.URI;
-import java.util.HashMap;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 import jakarta.annotation.PostConstruct;
 
-import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
-import org.apache.hc.core5.http.ClassicHttpResponse;
-import org.apache.hc.core5.http.HttpHost;
 import org.apiphany.ApiRequest;
 import org.apiphany.ApiResponse;
 import org.apiphany.client.ClientProperties;
-import org.apiphany.client.ExchangeClient;
-import org.apiphany.http.CloseableHttpResponseInputStream;
 import org.apiphany.http.HttpException;
 import org.apiphany.http.HttpMethod;
 import org.apiphany.http.HttpStatus;
-import org.apiphany.lang.collections.Maps;
-import org.apiphany.meters.ConnectionManagerMetricsBinder;
-import org.apiphany.spring.BeanFinder;
 import org.apiphany.spring.RestTemplates;
-import org.apiphany.spring.collections.ExtendedMaps;
-import org.apiphany.spring.http.GZipCompressingRequestInterceptor;
+import org.apiphany.spring.http.BinaryFormats;
+import org.apiphany.spring.http.ClientHttpResponseInputStream;
+import org.apiphany.spring.http.ResponseConverterCache;
 import org.apiphany.spring.http.SpringHttpRequests;
+import org.apiphany.spring.http.StreamingRequestBody;
+import org.apiphany.spring.json.JsonStreams;
 import org.morphix.lang.JavaObjects;
-import org.morphix.lang.Nullables;
 import org.morphix.reflection.Methods;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.BeansException;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.ApplicationContextAware;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
-import io.micrometer.core.instrument.MeterRegistry;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Exchange client implemented with {@link RestTemplate}.
+ * <p>
+ * Exchanges can also be performed asynchronously with {@link #exchangeAsync(ApiRequest)} and
+ * {@link #exchangeAll(List)}, these run on the client {@link ExchangeExecutor} which by default starts a new virtual
+ * thread for each exchange. To apply backpressure use an exchange executor with a maximum concurrency.
+ * <p>
+ * Request bodies that are {@link StreamingRequestBody}, {@link InputStream}, {@link java.nio.file.Path} or
+ * {@link java.nio.channels.ReadableByteChannel} objects are streamed to the connection, see
+ * {@link #upload(URI, HttpMethod, HttpHeaders, StreamingRequestBody, Type)}.
  *
  * @author Radu Sebastian LAZIN
  */
-public class RestTemplateExchangeClient extends AbstractHttpExchangeClient implements ApplicationContextAware, BeanFinder {
+public class RestTemplateExchangeClient extends AbstractRestExchangeClient {
 
 	/**
 	 * Class logger.
@@ -66,19 +73,36 @@ public class RestTemplateExchangeClient extends AbstractHttpExchangeClient imple
 	private RestTemplate restTemplate;
 
 	/**
-	 * The underlying HTTP client.
+	 * Request factory used for streaming request bodies, the rest template request factory would buffer the whole body in
+	 * memory when there are interceptors so the streaming requests run the interceptors themselves.
 	 */
-	private CloseableHttpClient httpClient;
+	private ClientHttpRequestFactory streamingRequestFactory;
 
 	/**
-	 * The connection manager.
+	 * The object mapper of the rest template JSON message converter, used for streaming JSON responses.
 	 */
-	private PoolingHttpClientConnectionManager connectionManager;
+	private ObjectMapper objectMapper;
 
 	/**
-	 * The application context.
+	 * Cache of the message converters resolved for response types.
 	 */
-	private ApplicationContext ctx;
+	private ResponseConverterCache responseConverterCache;
+
+	/**
+	 * Downloader used for downloads to files.
+	 */
+	private FileDownloader fileDownloader;
+
+	/**
+	 * Downloader used for parallel downloads to files.
+	 */
+	private SegmentedFileDownloader segmentedFileDownloader;
+
+	/**
+	 * Executor on which the segments of parallel downloads are fetched, separate from the exchange executor so that
+	 * parallel downloads started asynchronously don't wait for permits held by themselves.
+	 */
+	private ExecutorService segmentExecutor;
 
 	/**
 	 * Default constructor, see also {@link #initialize()}.
@@ -93,7 +117,17 @@ public class RestTemplateExchangeClient extends AbstractHttpExchangeClient imple
 	 * @param clientProperties client properties
 	 */
 	public RestTemplateExchangeClient(final ClientProperties clientProperties) {
-		super(clientProperties);
+		this(clientProperties, ExchangeExecutor.virtualThreads());
+	}
+
+	/**
+	 * Constructor, see also {@link #initialize()}.
+	 *
+	 * @param clientProperties client properties
+	 * @param exchangeExecutor executor used for asynchronous exchanges, it will be closed when the client is closed
+	 */
+	public RestTemplateExchangeClient(final ClientProperties clientProperties, final ExchangeExecutor exchangeExecutor) {
+		super(clientProperties, exchangeExecutor);
 	}
 
 	/**
@@ -104,73 +138,63 @@ public class RestTemplateExchangeClient extends AbstractHttpExchangeClient imple
 	 */
 	@PostConstruct
 	private void initialize() { // NOSONAR
-		ClientProperties clientProperties = getClientProperties();
-
-		this.httpClient = ApacheHC5PoolingHttpClients.createClient(clientProperties, ApacheHC5PoolingHttpClients.noCustomizer(),
-				this::customize, ApacheHC5PoolingHttpClients.noCustomizer());
+		CloseableHttpClient httpClient = createHttpClient();
 		this.restTemplate = RestTemplates.create(httpClient, getApplicationContext());
-
-		if (clientProperties.getCompression().isGzip()) {
-			restTemplate.getInterceptors().add(new GZipCompressingRequestInterceptor());
+		BinaryFormats binaryFormats = getBinaryFormats();
+		if (null != binaryFormats) {
+			binaryFormats.addConverters(restTemplate.getMessageConverters());
 		}
+		this.responseConverterCache = ResponseConverterCache.of(restTemplate.getMessageConverters());
+		this.objectMapper = RestTemplates.getObjectMapper(restTemplate).orElseGet(() -> Jackson2ObjectMapperBuilder.json().build());
+		this.streamingRequestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+		this.fileDownloader = new FileDownloader(httpClient, this);
+		this.segmentExecutor = Executors.newVirtualThreadPerTaskExecutor();
+		this.segmentedFileDownloader = new SegmentedFileDownloader(httpClient, this, segmentExecutor);
+
+		addInterceptors(restTemplate.getInterceptors());
+		registerMetrics();
 //		RestTemplates.getObjectMapper(restTemplate)
 //				.ifPresent(mapper -> mapper.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true));
 	}
 
-	/**
-	 * Customizes the connection manager.
-	 *
-	 * @param connectionManager pooling HTTP client connection manager
-	 */
-	private void customize(final PoolingHttpClientConnectionManager connectionManager) {
-		this.connectionManager = connectionManager;
-		registerMetrics(connectionManager);
-	}
-
-	/**
-	 * Registers the metrics for the connection manager.
-	 *
-	 * @param connectionManager pooling HTTP client connection manager
-	 */
-	protected void registerMetrics(final PoolingHttpClientConnectionManager connectionManager) {
-		MeterRegistry meterRegistry = getBean(MeterRegistry.class);
-		if (null != meterRegistry) {
-			ConnectionManagerMetricsBinder.of(connectionManager, getClass().getSimpleName())
-					.bindTo(meterRegistry);
-		}
-	}
-
 	/**
 	 * @see #close()
 	 */
 	@Override
 	public void close() throws Exception {
-		if (null != httpClient) {
-			httpClient.close();
+		super.close();
+		if (null != segmentExecutor) {
+			segmentExecutor.shutdown();
 		}
 	}
 
 	/**
-	 * @see ExchangeClient#exchange(ApiRequest)
+	 * @see AbstractRestExchangeClient#exchange(ApiRequest, URI)
 	 */
 	@Override
-	public <T, U> ApiResponse<U> exchange(final ApiRequest<T> apiRequest) {
-		URI uri = getUriComponentsBuilder(apiRequest.getUrl(), apiRequest.getParams()).build().toUri();
+	protected <T, U> ApiResponse<U> exchange(final ApiRequest<T> apiRequest, final URI uri) {
 		HttpEntity<?> httpEntity = buildHttpEntity(apiRequest);
 		HttpMethod httpMethod = apiRequest.getMethod();
 		if (apiRequest.isStream()) {
 			return download(uri, httpMethod, httpEntity);
 		}
+		if (StreamingRequestBody.isStreamable(apiRequest.getBody())) {
+			return upload(uri, httpMethod, httpEntity.getHeaders(), StreamingRequestBody.from(apiRequest.getBody()), getResponseType(apiRequest));
+		}
 		var springHttpMethod = SpringHttpRequests.getHttpMethod(httpMethod.value());
-
-		ResponseEntity<U> responseEntity = null;
-		if (apiRequest.hasGenericType()) {
-			Type genericType = apiRequest.getGenericResponseType().getType();
-			ParameterizedTypeReference<U> parameterizedResponseType = ParameterizedTypeReference.forType(genericType);
-			responseEntity = restTemplate.exchange(uri, springHttpMethod, httpEntity, parameterizedResponseType);
-		} else {
-			responseEntity = restTemplate.exchange(uri, springHttpMethod, httpEntity, apiRequest.getClassResponseType());
+		if (null != getBinaryFormats() && null == httpEntity.getHeaders().getContentType()) {
+			MediaType contentType = getBinaryFormats().getContentType(uri, httpEntity.getBody());
+			if (null != contentType) {
+				HttpHeaders headers = new HttpHeaders();
+				headers.addAll(httpEntity.getHeaders());
+				headers.setContentType(contentType);
+				httpEntity = new HttpEntity<>(httpEntity.getBody(), headers);
+			}
 		}
+
+		Type responseType = getResponseType(apiRequest);
+		ResponseEntity<U> responseEntity = restTemplate.execute(uri, springHttpMethod, requestCallback(httpEntity, responseType),
+				responseConverterCache.responseEntityExtractor(responseType));
 		return ApiResponse.create(responseEntity.getBody())
 				.status(responseEntity.getStatusCode().value(), HttpStatus::fromCode)
 				.headers(responseEntity.getHeaders())
@@ -179,7 +203,118 @@ public class RestTemplateExchangeClient extends AbstractHttpExchangeClient imple
 	}
 
 	/**
-	 * Performs a download HTTP operation. The response entity body will be an {@link InputStream}.
+	 * Returns the request callback which writes the request entity and sets the {@code Accept} header for the response
+	 * type from the response converter cache when the request entity doesn't have one.
+	 *
+	 * @param httpEntity request entity
+	 * @param responseType response type
+	 * @return the request callback
+	 */
+	private RequestCallback requestCallback(final HttpEntity<?> httpEntity, final Type responseType) {
+		RequestCallback entityCallback = restTemplate.httpEntityCallback(httpEntity);
+		String acceptHeader = responseConverterCache.getAcceptHeader(responseType);
+		if (null == acceptHeader) {
+			return entityCallback;
+		}
+		return request -> {
+			request.getHeaders().set(HttpHeaders.ACCEPT, acceptHeader);
+			entityCallback.doWithRequest(request);
+		};
+	}
+
+	/**
+	 * Performs the exchange and returns the elements of the JSON array response body as a lazy stream, see
+	 * {@link #exchangeStream(ApiRequest, Type)}.
+	 *
+	 * @param <T> request body type
+	 * @param <U> element type
+	 * @param apiRequest API request object
+	 * @param elementType element type
+	 * @return a lazy stream of response elements
+	 */
+	public <T, U> Stream<U> exchangeStream(final ApiRequest<T> apiRequest, final Class<U> elementType) {
+		return exchangeStream(apiRequest, (Type) elementType);
+	}
+
+	/**
+	 * Performs the exchange and returns the elements of the JSON array response body as a lazy stream. The elements are
+	 * parsed one at a time from the response stream with the object mapper of the rest template, so only the current
+	 * element is held in memory and processing can start before the whole response arrived.
+	 * <p>
+	 * The returned stream must be closed to release the connection, for example:
+	 *
+	 * <pre>
+	 * try (Stream&lt;Item&gt; items = client.exchangeStream(apiRequest, Item.class)) {
+	 * 	items.forEach(this::process);
+	 * }
+	 * </pre>
+	 *
+	 * @param <T> request body type
+	 * @param <U> element type
+	 * @param apiRequest API request object
+	 * @param elementType element type
+	 * @return a lazy stream of response elements
+	 */
+	public <T, U> Stream<U> exchangeStream(final ApiRequest<T> apiRequest, final Type elementType) {
+		URI uri = getUriTemplateCache().getUri(apiRequest.getUrl(), apiRequest.getParams());
+		HttpEntity<T> httpEntity = buildHttpEntity(apiRequest);
+		if (!httpEntity.getHeaders().containsKey(HttpHeaders.ACCEPT)) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.addAll(httpEntity.getHeaders());
+			headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+			httpEntity = new HttpEntity<>(httpEntity.getBody(), headers);
+		}
+		ApiResponse<InputStream> apiResponse = download(uri, apiRequest.getMethod(), httpEntity);
+		InputStream inputStream = apiResponse.getBody();
+		if (null == inputStream) {
+			throw new HttpException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to stream content.");
+		}
+		JavaType javaType = objectMapper.getTypeFactory().constructType(elementType);
+		return JsonStreams.stream(objectMapper, inputStream, javaType);
+	}
+
+	/**
+	 * Performs an upload HTTP operation, the request body is written directly to the connection without being buffered in
+	 * memory. When GZIP compression is enabled and the compression policy allows the content type, the body is compressed
+	 * on the fly.
+	 * <p>
+	 * The request goes through the rest template interceptors with an empty body array, see
+	 * {@link #executeStreaming(ClientHttpRequestFactory, List, URI, HttpMethod, HttpHeaders, StreamingRequestBody)}, and
+	 * the response is handled by the rest template error handler and message converters.
+	 *
+	 * @param <U> response body type
+	 * @param uri URI to call
+	 * @param method HTTP method
+	 * @param headers request headers
+	 * @param body streaming request body
+	 * @param responseType response body type
+	 * @return API response
+	 */
+	public <U> ApiResponse<U> upload(final URI uri, final HttpMethod method, final HttpHeaders headers, final StreamingRequestBody body,
+			final Type responseType) {
+		try (ClientHttpResponse response = executeStreaming(streamingRequestFactory, restTemplate.getInterceptors(), uri, method, headers, body)) {
+			ResponseErrorHandler errorHandler = restTemplate.getErrorHandler();
+			if (errorHandler.hasError(response)) {
+				errorHandler.handleError(uri, SpringHttpRequests.getHttpMethod(method.value()), response);
+			}
+			ResponseEntity<U> responseEntity = responseConverterCache.<U>responseEntityExtractor(responseType).extractData(response);
+			return ApiResponse.create(responseEntity.getBody())
+					.status(responseEntity.getStatusCode().value(), HttpStatus::fromCode)
+					.headers(responseEntity.getHeaders())
+					.exchangeClient(this)
+					.build();
+		} catch (IOException e) {
+			throw new ResourceAccessException("I/O error on " + method + " request for \"" + uri + "\": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Performs a download HTTP operation. The response entity body will be an {@link InputStream} which must be closed by
+	 * the caller in order to release the connection.
+	 * <p>
+	 * The request entity body is written with the rest template message converters and the request goes through the rest
+	 * template interceptors, only the response body is not read by the message converters. The response cache is bypassed
+	 * so the body is never buffered in memory.
 	 *
 	 * @param <T> response entity type
 	 * @param <U> request entity type
@@ -189,29 +324,26 @@ public class RestTemplateExchangeClient extends AbstractHttpExchangeClient imple
 	 * @return response entity
 	 */
 	public <T, U> ApiResponse<T> download(final URI uri, final HttpMethod method, final HttpEntity<U> requestEntity) {
-		HttpHost httpHost = HttpHost.create(uri);
-
-		HttpUriRequest httpRequest = ApacheHC5HttpExchangeClient.toHttpUriRequest(uri, method);
-		ApacheHC5HttpExchangeClient.addHeaders(httpRequest, requestEntity.getHeaders());
-
 		ApiResponse.Builder<T> apiResponseBuilder = ApiResponse.<T>builder().exchangeClient(this);
 		try {
+			ClientHttpRequest request = restTemplate.getRequestFactory().createRequest(uri, SpringHttpRequests.getHttpMethod(method.value()));
+			restTemplate.httpEntityCallback(requestEntity).doWithRequest(request);
+			skipResponseCache(request.getHeaders());
+
 			@SuppressWarnings("resource")
-			ClassicHttpResponse httpResponse = httpClient.executeOpen(httpHost, httpRequest, null);
+			ClientHttpResponse response = request.execute();
 
-			HttpStatus status = HttpStatus.fromCode(httpResponse.getCode());
+			HttpStatus status = HttpStatus.fromCode(response.getStatusCode().value());
 			if (status.isError()) {
-				httpResponse.close();
+				response.close();
 				throw new HttpException(status, "Failed to download content.");
 			}
-			HttpHeaders headers = SpringHttpRequests.toHttpHeaders(httpResponse.getHeaders());
-
 			@SuppressWarnings("resource")
-			InputStream inputStream = CloseableHttpResponseInputStream.of(httpResponse);
+			InputStream inputStream = ClientHttpResponseInputStream.of(response);
 			apiResponseBuilder
 					.body(JavaObjects.cast(inputStream))
 					.status(status)
-					.headers(headers);
+					.headers(response.getHeaders());
 		} catch (IOException e) {
 			LOGGER.error("Failed to download content.", e);
 			apiResponseBuilder.status(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -220,73 +352,78 @@ public class RestTemplateExchangeClient extends AbstractHttpExchangeClient imple
 	}
 
 	/**
-	 * Returns the {@link UriComponentsBuilder} with the give url and request parameters.
+	 * Performs a download HTTP operation writing the response body directly to the given file with the default download
+	 * options.
 	 *
-	 * @param url URL
-	 * @param requestParams request parameters
-	 * @return a new {@link UriComponentsBuilder}
+	 * @param <U> request entity type
+	 * @param uri URI to call
+	 * @param method HTTP method
+	 * @param requestEntity request HTTP entity
+	 * @param target destination file, its content is replaced
+	 * @return API response having the destination file as body
 	 */
-	protected static UriComponentsBuilder getUriComponentsBuilder(final String url, final Map<String, List<String>> requestParams) {
-		Map<String, List<String>> queryParams = Nullables.apply(requestParams, HashMap::new, HashMap::new);
-		return UriComponentsBuilder.fromUriString(url)
-				.queryParams(ExtendedMaps.multiValueMap(queryParams));
+	public <U> ApiResponse<Path> download(final URI uri, final HttpMethod method, final HttpEntity<U> requestEntity, final Path target) {
+		return download(uri, method, requestEntity, target, DownloadOptions.defaults());
 	}
 
 	/**
-	 * Builds the HTTP request entity from the API request object. This method also adds: {@link HttpHeaders#CONTENT_TYPE} as
-	 * {@link MediaType#APPLICATION_JSON} and {@link HttpHeaders#ACCEPT} with {@link MediaType#APPLICATION_JSON} if none are
-	 * present in the request.
-	 *
-	 * @param <T> request entity type
+	 * Performs a download HTTP operation writing the response body directly to the given file. The body is written
+	 * through a {@link java.nio.channels.FileChannel} and interrupted transfers are resumed with {@code Range} requests
+	 * when the server supports them, see {@link FileDownloader}.
 	 *
-	 * @param apiRequest the request object
-	 * @return the request entity
+	 * @param <U> request entity type
+	 * @param uri URI to call
+	 * @param method HTTP method
+	 * @param requestEntity request HTTP entity
+	 * @param target destination file, its content is replaced
+	 * @param options download options
+	 * @return API response having the destination file as body
 	 */
-	protected <T> HttpEntity<T> buildHttpEntity(final ApiRequest<T> apiRequest) {
-		HttpHeaders headers = new HttpHeaders();
-		Map<String, List<String>> existingHeaders = apiRequest.getHeaders();
-		if (Maps.isNotEmpty(existingHeaders)) {
-			existingHeaders.forEach(headers::addAll);
-		}
-		return new HttpEntity<>(apiRequest.getBody(), headers);
+	public <U> ApiResponse<Path> download(final URI uri, final HttpMethod method, final HttpEntity<U> requestEntity, final Path target,
+			final DownloadOptions options) {
+		return fileDownloader.download(uri, method, requestEntity.getHeaders(), target, options);
 	}
 
 	/**
-	 * Sets the application context.
+	 * Performs a parallel download writing the resource directly to the given file. The resource is split in byte ranges
+	 * which are fetched concurrently on virtual threads, see {@link SegmentedFileDownloader}. If the server
+	 * doesn't support byte ranges the resource is downloaded with a single request.
 	 *
-	 * @param applicationContext the application context
-	 * @throws BeansException when the application context cannot be set
+	 * @param <U> request entity type
+	 * @param uri URI to call
+	 * @param requestEntity request HTTP entity
+	 * @param target destination file, its content is replaced
+	 * @param options download options, see {@link DownloadOptions#segmentCount(int)} and
+	 *     {@link DownloadOptions#minSegmentSize(long)}
+	 * @return API response having the destination file as body
 	 */
-	@Override
-	public void setApplicationContext(final ApplicationContext applicationContext) throws BeansException {
-		this.ctx = applicationContext;
+	public <U> ApiResponse<Path> parallelDownload(final URI uri, final HttpEntity<U> requestEntity, final Path target,
+			final DownloadOptions options) {
+		return segmentedFileDownloader.download(uri, requestEntity.getHeaders(), target, options);
 	}
 
 	/**
-	 * Returns the application context.
+	 * Builds the HTTP request entity from the API request object. This method also adds: {@link HttpHeaders#CONTENT_TYPE} as
+	 * {@link MediaType#APPLICATION_JSON} and {@link HttpHeaders#ACCEPT} with {@link MediaType#APPLICATION_JSON} if none are
+	 * present in the request.
+	 * <p>
+	 * The request headers are not copied, the entity headers are a view over the API request headers.
 	 *
-	 * @return the application context
-	 */
-	@Override
-	public ApplicationContext getApplicationContext() {
-		return ctx;
-	}
-
-	/**
-	 * Returns the HTTP client.
+	 * @param <T> request entity type
 	 *
-	 * @return the HTTP client
+	 * @param apiRequest the request object
+	 * @return the request entity
 	 */
-	protected CloseableHttpClient getHttpClient() {
-		return httpClient;
+	protected <T> HttpEntity<T> buildHttpEntity(final ApiRequest<T> apiRequest) {
+		return new HttpEntity<>(apiRequest.getBody(), SpringHttpRequests.httpHeadersView(apiRequest.getHeaders()));
 	}
 
 	/**
-	 * Returns the pooling HTTP client connection manager.
+	 * Returns the cache of the message converters resolved for response types.
 	 *
-	 * @return the pooling HTTP client connection manager
+	 * @return the response converter cache
 	 */
-	protected PoolingHttpClientConnectionManager getConnectionManager() {
-		return connectionManager;
+	protected ResponseConverterCache getResponseConverterCache() {
+		return responseConverterCache;
 	}
 }
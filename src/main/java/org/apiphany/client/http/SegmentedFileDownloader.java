@@ -0,0 +1,545 @@
+package org.apiphany.client.http;
+
+import static org.apache.hc.core5.http.HttpStatus.SC_OK;
+import static org.apache.hc.core5.http.HttpStatus.SC_PARTIAL_CONTENT;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHost;
+import org.apiphany.ApiResponse;
+import org.apiphany.client.ExchangeClient;
+import org.apiphany.http.HttpException;
+import org.apiphany.http.HttpMethod;
+import org.apiphany.http.HttpStatus;
+import org.apiphany.spring.http.SpringHttpRequests;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Downloads resources to files by splitting them in byte ranges which are fetched in parallel.
+ * <p>
+ * The resource is first probed with a {@code HEAD} request, if the server reports the length, advertises
+ * {@code Accept-Ranges: bytes} and sends a strong {@code ETag} or a {@code Last-Modified} header the resource is split
+ * in at most {@link DownloadOptions#getSegmentCount()} segments of at least {@link DownloadOptions#getMinSegmentSize()}
+ * bytes. Every segment is fetched with its own {@code Range} request on the segment executor and written at its
+ * position in the destination file, either with positional channel writes or through a memory mapped region which is
+ * unmapped as soon as the segment is written. The writes never go past the end of the segment. A failed segment is
+ * resumed from its last written byte without fetching the other segments again. All segment requests carry
+ * {@code If-Range} so a resource that changes during the download makes the download fail with a
+ * {@link ResourceChangedException} instead of producing a mixed file. When a segment fails for good the download is
+ * aborted: the in-flight requests of the other segments are aborted, they are not resumed and the partially written
+ * file is deleted. Like the {@link FileDownloader}, the segments are requested with the {@code identity} content
+ * encoding since the byte ranges refer to the content as sent by the server.
+ * <p>
+ * The segments must not run on the client exchange executor: a bounded exchange executor could have all its permits
+ * held by downloads waiting for their own segments.
+ * <p>
+ * When the resource cannot be split, it is downloaded with a single request by a {@link FileDownloader}. This includes
+ * the resources without a validator since their segments could not be guarded by {@code If-Range}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class SegmentedFileDownloader {
+
+	/**
+	 * Class logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedFileDownloader.class);
+
+	/**
+	 * Method handle which unmaps a mapped byte buffer, {@code null} if the JVM doesn't allow it.
+	 */
+	private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+	/**
+	 * The HTTP client.
+	 */
+	private final CloseableHttpClient httpClient;
+
+	/**
+	 * The exchange client set on the API responses.
+	 */
+	private final ExchangeClient exchangeClient;
+
+	/**
+	 * The executor on which segments are fetched.
+	 */
+	private final ExecutorService segmentExecutor;
+
+	/**
+	 * Downloader used when the resource cannot be split.
+	 */
+	private final FileDownloader fileDownloader;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param httpClient HTTP client
+	 * @param exchangeClient exchange client set on the API responses
+	 * @param segmentExecutor executor on which segments are fetched, it must not be the executor the downloads run on
+	 */
+	public SegmentedFileDownloader(final CloseableHttpClient httpClient, final ExchangeClient exchangeClient,
+			final ExecutorService segmentExecutor) {
+		this.httpClient = httpClient;
+		this.exchangeClient = exchangeClient;
+		this.segmentExecutor = segmentExecutor;
+		this.fileDownloader = new FileDownloader(httpClient, exchangeClient);
+	}
+
+	/**
+	 * Downloads the resource at the given URI to the given file with parallel range requests, replacing the file content.
+	 * The progress listener is called from the threads fetching the segments with the total number of bytes written by all
+	 * segments.
+	 *
+	 * @param uri URI to call
+	 * @param headers request headers
+	 * @param target destination file
+	 * @param options download options
+	 * @return API response having the destination file as body
+	 */
+	public ApiResponse<Path> download(final URI uri, final HttpHeaders headers, final Path target, final DownloadOptions options) {
+		Probe probe = probe(uri, headers);
+		if (null == probe || !probe.rangesSupported || null == probe.validator || probe.length < 2 * options.getMinSegmentSize()) {
+			LOGGER.debug("Resource {} cannot be split in segments, downloading with a single request", uri);
+			return fileDownloader.download(uri, HttpMethod.GET, headers, target, options);
+		}
+		List<Segment> segments = split(probe.length, options);
+		LOGGER.debug("Downloading {} ({} bytes) in {} segments", uri, probe.length, segments.size());
+
+		ApiResponse.Builder<Path> apiResponseBuilder = ApiResponse.<Path>builder()
+				.body(target)
+				.exchangeClient(exchangeClient);
+		try (FileChannel fileChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			fileChannel.write(ByteBuffer.allocate(1), probe.length - 1);
+			Transfer transfer = new Transfer();
+			List<CompletableFuture<Void>> futures = new ArrayList<>(segments.size());
+			for (Segment segment : segments) {
+				futures.add(CompletableFuture.runAsync(() -> fetch(uri, headers, probe, segment, fileChannel, options, transfer),
+						segmentExecutor).whenComplete((result, e) -> transfer.abort(e)));
+			}
+			try {
+				CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+			} catch (CompletionException e) {
+				throw new CompletionException(transfer.getFailure());
+			}
+			apiResponseBuilder
+					.status(probe.status)
+					.headers(probe.headers);
+		} catch (CompletionException e) {
+			delete(target);
+			if (e.getCause() instanceof HttpException httpException) {
+				throw httpException;
+			}
+			LOGGER.error("Failed to download content.", e.getCause());
+			apiResponseBuilder.status(HttpStatus.INTERNAL_SERVER_ERROR);
+		} catch (IOException e) {
+			delete(target);
+			LOGGER.error("Failed to download content.", e);
+			apiResponseBuilder.status(HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+		return apiResponseBuilder.build();
+	}
+
+	/**
+	 * Deletes the partially written destination file of a failed download.
+	 *
+	 * @param target destination file
+	 */
+	private static void delete(final Path target) {
+		try {
+			Files.deleteIfExists(target);
+		} catch (IOException e) {
+			LOGGER.warn("Failed to delete the partially downloaded file {}", target, e);
+		}
+	}
+
+	/**
+	 * Probes the resource with a {@code HEAD} request.
+	 *
+	 * @param uri URI to call
+	 * @param headers request headers
+	 * @return the probe result or {@code null} if the resource could not be probed
+	 */
+	protected Probe probe(final URI uri, final HttpHeaders headers) {
+		HttpUriRequest httpRequest = ApacheHC5HttpExchangeClient.toHttpUriRequest(uri, HttpMethod.HEAD);
+		ApacheHC5HttpExchangeClient.addHeaders(httpRequest, headers);
+		FileDownloader.acceptIdentityEncoding(httpRequest);
+		try (ClassicHttpResponse httpResponse = httpClient.executeOpen(HttpHost.create(uri), httpRequest, null)) {
+			if (httpResponse.getCode() != SC_OK) {
+				LOGGER.debug("Probing {} returned {}", uri, httpResponse.getCode());
+				return null;
+			}
+			Header contentLength = httpResponse.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+			if (null == contentLength) {
+				return null;
+			}
+			return new Probe(HttpStatus.fromCode(httpResponse.getCode()),
+					SpringHttpRequests.httpHeadersView(httpResponse.getHeaders()),
+					Long.parseLong(contentLength.getValue().trim()),
+					FileDownloader.acceptsByteRanges(httpResponse),
+					FileDownloader.getValidator(httpResponse));
+		} catch (IOException | NumberFormatException e) {
+			LOGGER.debug("Failed to probe {}", uri, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Splits the given length in segments.
+	 *
+	 * @param length resource length
+	 * @param options download options
+	 * @return the segments
+	 */
+	static List<Segment> split(final long length, final DownloadOptions options) {
+		long maxSegments = Math.max(1, length / options.getMinSegmentSize());
+		int count = (int) Math.min(options.getSegmentCount(), maxSegments);
+		long segmentSize = length / count;
+		List<Segment> segments = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			long start = i * segmentSize;
+			long end = i == count - 1 ? length - 1 : start + segmentSize - 1;
+			segments.add(new Segment(start, end));
+		}
+		return segments;
+	}
+
+	/**
+	 * Fetches a segment, resuming it from its last written byte if the transfer is interrupted. The segment is not
+	 * resumed once the download was aborted.
+	 *
+	 * @param uri URI to call
+	 * @param headers request headers
+	 * @param probe probe result
+	 * @param segment the segment
+	 * @param fileChannel destination file channel
+	 * @param options download options
+	 * @param transfer the state of the download shared by all segments
+	 */
+	private void fetch(final URI uri, final HttpHeaders headers, final Probe probe, final Segment segment, final FileChannel fileChannel,
+			final DownloadOptions options, final Transfer transfer) {
+		ByteBuffer buffer = options.isMemoryMapped() ? null : ByteBuffer.allocateDirect(options.getBufferSize());
+		int attempts = 0;
+		while (segment.position <= segment.end) {
+			try {
+				fetchRange(uri, headers, probe, segment, fileChannel, buffer, options, transfer);
+			} catch (IOException e) {
+				if (transfer.isAborted() || attempts >= options.getMaxResumeAttempts()) {
+					throw new UncheckedIOException("Failed to download segment " + segment, e);
+				}
+				++attempts;
+				LOGGER.warn("Resuming segment {} of {} from byte {}, attempt {}/{}", segment, uri, segment.position, attempts,
+						options.getMaxResumeAttempts());
+			}
+		}
+	}
+
+	/**
+	 * Fetches the remaining range of a segment.
+	 *
+	 * @param uri URI to call
+	 * @param headers request headers
+	 * @param probe probe result
+	 * @param segment the segment
+	 * @param fileChannel destination file channel
+	 * @param buffer transfer buffer, {@code null} when writing through memory mapped regions
+	 * @param options download options
+	 * @param transfer the state of the download shared by all segments
+	 * @throws IOException on transfer error or when the download was aborted
+	 */
+	private void fetchRange(final URI uri, final HttpHeaders headers, final Probe probe, final Segment segment,
+			final FileChannel fileChannel, final ByteBuffer buffer, final DownloadOptions options, final Transfer transfer)
+			throws IOException {
+		HttpUriRequest httpRequest = ApacheHC5HttpExchangeClient.toHttpUriRequest(uri, HttpMethod.GET);
+		ApacheHC5HttpExchangeClient.addHeaders(httpRequest, headers);
+		FileDownloader.acceptIdentityEncoding(httpRequest);
+		httpRequest.setHeader(HttpHeaders.RANGE, FileDownloader.BYTES_RANGE_UNIT + "=" + segment.position + "-" + segment.end);
+		httpRequest.setHeader(HttpHeaders.IF_RANGE, probe.validator);
+		if (!transfer.start(httpRequest)) {
+			throw new IOException("Download aborted before segment " + segment);
+		}
+		try (ClassicHttpResponse httpResponse = httpClient.executeOpen(HttpHost.create(uri), httpRequest, null)) {
+			HttpStatus status = HttpStatus.fromCode(httpResponse.getCode());
+			if (httpResponse.getCode() == SC_OK) {
+				throw new ResourceChangedException(uri, probe.validator);
+			}
+			if (httpResponse.getCode() != SC_PARTIAL_CONTENT
+					|| FileDownloader.getContentRangeStart(httpResponse) != segment.position
+					|| FileDownloader.getContentRangeEnd(httpResponse) != segment.end) {
+				throw new HttpException(status, "Failed to download segment " + segment + ", the server did not return the requested range");
+			}
+			HttpEntity entity = httpResponse.getEntity();
+			if (null == entity) {
+				throw new IOException("Empty response for segment " + segment);
+			}
+			if (FileDownloader.isDecompressed(entity)) {
+				throw new HttpException(status, "Failed to download segment " + segment + ", the server sent an encoded range");
+			}
+			DownloadProgressListener listener = options.getProgressListener();
+			long remaining = segment.end - segment.position + 1;
+			if (null == buffer && remaining <= Integer.MAX_VALUE) {
+				MappedByteBuffer region = fileChannel.map(FileChannel.MapMode.READ_WRITE, segment.position, remaining);
+				try (ReadableByteChannel in = Channels.newChannel(entity.getContent())) {
+					int read;
+					while (region.hasRemaining() && (read = in.read(region)) != -1) {
+						segment.position += read;
+						listener.onProgress(transfer.transferred.addAndGet(read), probe.length);
+					}
+					if (!region.hasRemaining()) {
+						FileDownloader.checkEndOfContent(in, segment.position);
+					}
+				} finally {
+					unmap(region);
+				}
+			} else {
+				ByteBuffer transferBuffer = null != buffer ? buffer : ByteBuffer.allocateDirect(options.getBufferSize());
+				FileDownloader.copy(entity, fileChannel, transferBuffer, segment.position, segment.end + 1, current -> {
+					listener.onProgress(transfer.transferred.addAndGet(current - segment.position), probe.length);
+					segment.position = current;
+				});
+			}
+			if (segment.position <= segment.end) {
+				throw new IOException("Premature end of segment " + segment + " at byte " + segment.position);
+			}
+		} finally {
+			transfer.end(httpRequest);
+		}
+	}
+
+	/**
+	 * Unmaps the given mapped region so that its memory and file mapping are released now instead of when the buffer is
+	 * garbage collected. The region must not be used after this call.
+	 *
+	 * @param region the mapped region
+	 */
+	static void unmap(final MappedByteBuffer region) {
+		if (null == INVOKE_CLEANER) {
+			return;
+		}
+		try {
+			INVOKE_CLEANER.invokeExact(region);
+		} catch (Throwable e) { // NOSONAR the region is released by the garbage collector
+			LOGGER.debug("Failed to unmap region", e);
+		}
+	}
+
+	/**
+	 * Returns a method handle which unmaps a mapped byte buffer, there is no public API for it so it uses
+	 * {@code sun.misc.Unsafe.invokeCleaner(ByteBuffer)} from the {@code jdk.unsupported} module.
+	 *
+	 * @return a method handle taking a byte buffer, {@code null} if the JVM doesn't allow it
+	 */
+	private static MethodHandle invokeCleaner() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true); // NOSONAR
+			return MethodHandles.lookup()
+					.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+					.bindTo(theUnsafe.get(null))
+					.asType(MethodType.methodType(void.class, MappedByteBuffer.class));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOGGER.debug("Mapped regions cannot be unmapped, they are released by the garbage collector", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Result of probing a resource.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	protected static class Probe {
+
+		/**
+		 * The response status.
+		 */
+		private final HttpStatus status;
+
+		/**
+		 * The response headers.
+		 */
+		private final HttpHeaders headers;
+
+		/**
+		 * The resource length.
+		 */
+		private final long length;
+
+		/**
+		 * True if the server advertised byte range support.
+		 */
+		private final boolean rangesSupported;
+
+		/**
+		 * Validator used in {@code If-Range}, {@code null} if the resource has none and cannot be split.
+		 */
+		private final String validator;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param status response status
+		 * @param headers response headers
+		 * @param length resource length
+		 * @param rangesSupported true if byte ranges are supported
+		 * @param validator validator used in {@code If-Range}
+		 */
+		protected Probe(final HttpStatus status, final HttpHeaders headers, final long length, final boolean rangesSupported,
+				final String validator) {
+			this.status = status;
+			this.headers = headers;
+			this.length = length;
+			this.rangesSupported = rangesSupported;
+			this.validator = validator;
+		}
+	}
+
+	/**
+	 * State of a segmented download shared by all its segments.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	static class Transfer {
+
+		/**
+		 * Total bytes written by all segments.
+		 */
+		private final AtomicLong transferred = new AtomicLong();
+
+		/**
+		 * The in-flight segment requests.
+		 */
+		private final Set<HttpUriRequest> requests = ConcurrentHashMap.newKeySet();
+
+		/**
+		 * The failure which aborted the download, {@code null} while the download was not aborted.
+		 */
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		/**
+		 * Registers an in-flight segment request.
+		 *
+		 * @param httpRequest the segment request
+		 * @return false if the download was already aborted and the request must not be sent
+		 */
+		boolean start(final HttpUriRequest httpRequest) {
+			requests.add(httpRequest);
+			if (isAborted()) {
+				requests.remove(httpRequest);
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Unregisters a segment request which completed.
+		 *
+		 * @param httpRequest the segment request
+		 */
+		void end(final HttpUriRequest httpRequest) {
+			requests.remove(httpRequest);
+		}
+
+		/**
+		 * Aborts the download with the given failure of a segment: the in-flight requests of the other segments are
+		 * aborted so that they fail right away. Only the first failure is kept.
+		 *
+		 * @param segmentFailure the failure of a segment, {@code null} if the segment completed
+		 */
+		void abort(final Throwable segmentFailure) {
+			if (null == segmentFailure) {
+				return;
+			}
+			Throwable cause = segmentFailure instanceof CompletionException ? segmentFailure.getCause() : segmentFailure;
+			if (failure.compareAndSet(null, cause)) {
+				requests.forEach(HttpUriRequest::abort);
+			}
+		}
+
+		/**
+		 * Returns true if the download was aborted.
+		 *
+		 * @return true if the download was aborted
+		 */
+		boolean isAborted() {
+			return null != failure.get();
+		}
+
+		/**
+		 * Returns the failure which aborted the download.
+		 *
+		 * @return the failure which aborted the download, {@code null} if the download was not aborted
+		 */
+		Throwable getFailure() {
+			return failure.get();
+		}
+	}
+
+	/**
+	 * A byte range of the resource.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	static class Segment {
+
+		/**
+		 * Position of the next byte to fetch.
+		 */
+		private volatile long position;
+
+		/**
+		 * Position of the last byte (inclusive).
+		 */
+		private final long end;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param start first byte position
+		 * @param end last byte position (inclusive)
+		 */
+		Segment(final long start, final long end) {
+			this.position = start;
+			this.end = end;
+		}
+
+		/**
+		 * @see #toString()
+		 */
+		@Override
+		public String toString() {
+			return "[" + position + "-" + end + "]";
+		}
+	}
+}
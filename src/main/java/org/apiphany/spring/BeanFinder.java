@@ -2,9 +2,11 @@ package org.apiphany.spring;
 
 import java.util.function.Consumer;
 
+import org.springframework.beans.factory.ObjectProvider;
+
 /**
  * Interface with default getBean methods which is useful when in a class hierarchy beans need to be retrieved from the
- * application context.
+ * application context. Bean type lookups go through cached bean providers and don't use exceptions for missing beans.
  *
  * @author Radu Sebastian LAZIN
  */
@@ -55,4 +57,39 @@ public interface BeanFinder extends ApplicationContextCapable {
 	default <T> T getBean(final Class<T> beanClass, final Consumer<Exception> onError) {
 		return Beans.getBean(beanClass, getApplicationContext(), onError);
 	}
+
+	/**
+	 * Returns a bean by name or {@code null} if the bean is not found, no exception is thrown or logged when the bean is
+	 * missing.
+	 *
+	 * @param <T> bean type
+	 * @param beanName bean name
+	 * @return a bean or {@code null}
+	 */
+	default <T> T getOptionalBean(final String beanName) {
+		return Beans.getOptionalBean(beanName, getApplicationContext());
+	}
+
+	/**
+	 * Returns the unique (or primary) bean of the given type or {@code null} if there is no such bean, no exception is
+	 * thrown or logged when the bean is missing.
+	 *
+	 * @param <T> bean type
+	 * @param beanClass bean class
+	 * @return a bean or {@code null}
+	 */
+	default <T> T getOptionalBean(final Class<T> beanClass) {
+		return Beans.getOptionalBean(beanClass, getApplicationContext());
+	}
+
+	/**
+	 * Returns the bean provider for the given bean type.
+	 *
+	 * @param <T> bean type
+	 * @param beanClass bean class
+	 * @return the bean provider
+	 */
+	default <T> ObjectProvider<T> getBeanProvider(final Class<T> beanClass) {
+		return Beans.getBeanProvider(beanClass, getApplicationContext());
+	}
 }
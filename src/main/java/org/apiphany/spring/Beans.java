@@ -1,5 +1,8 @@
 package org.apiphany.spring;
 
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 import org.morphix.lang.JavaObjects;
@@ -7,7 +10,13 @@ import org.morphix.lang.function.Consumers;
 import org.morphix.reflection.Constructors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.ConcurrentReferenceHashMap.ReferenceType;
 
 /**
  * Utility methods for spring beans.
@@ -18,6 +27,18 @@ public class Beans {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Beans.class);
 
+	/**
+	 * Consumer signifying that {@code null} is returned when a bean is not found, see {@link #nullOnError()}.
+	 */
+	private static final Consumer<Exception> NULL_ON_ERROR = Consumers.consumeNothing();
+
+	/**
+	 * The optional beans resolved by type per bean factory. The entries are weakly referenced so the cache never keeps a
+	 * bean factory, its application context or the cached beans alive, a collected entry is just resolved again.
+	 */
+	private static final Map<ConfigurableListableBeanFactory, Map<Class<?>, Optional<Object>>> RESOLVED_BEANS =
+			new ConcurrentReferenceHashMap<>(16, ReferenceType.WEAK);
+
 	/**
 	 * Messages used for beans.
 	 *
@@ -60,6 +81,9 @@ public class Beans {
 	 * @return a bean
 	 */
 	public static <T> T getBean(final String beanName, final ApplicationContext ctx, final Consumer<Exception> onError) {
+		if (NULL_ON_ERROR == onError) {
+			return getOptionalBean(beanName, ctx);
+		}
 		try {
 			return JavaObjects.cast(ctx.getBean(beanName));
 		} catch (Exception e) {
@@ -104,6 +128,9 @@ public class Beans {
 	 * @return a bean
 	 */
 	public static <T> T getBean(final Class<?> beanClass, final ApplicationContext ctx, final Consumer<Exception> onError) {
+		if (NULL_ON_ERROR == onError) {
+			return JavaObjects.cast(getOptionalBean(beanClass, ctx));
+		}
 		try {
 			return JavaObjects.cast(ctx.getBean(beanClass));
 		} catch (Exception e) {
@@ -122,7 +149,11 @@ public class Beans {
 	 * @return a bean
 	 */
 	public static <T> T getBean(final Class<?> beanClass, final ApplicationContext ctx) {
-		return getBean(beanClass, ctx, e -> LOGGER.error(Message.BEAN_NOT_FOUND, beanClass));
+		Object bean = getOptionalBean(beanClass, ctx);
+		if (null == bean) {
+			LOGGER.error(Message.BEAN_NOT_FOUND, beanClass);
+		}
+		return JavaObjects.cast(bean);
 	}
 
 	/**
@@ -135,7 +166,109 @@ public class Beans {
 	 * @return a bean
 	 */
 	public static <T> T getBean(final Class<?> beanClass, final Class<?> neededInClass, final ApplicationContext ctx) {
-		return getBean(beanClass, ctx, e -> LOGGER.error(Message.BEAN_NOT_FOUND_NEEDED_IN, beanClass, neededInClass));
+		Object bean = getOptionalBean(beanClass, ctx);
+		if (null == bean) {
+			LOGGER.error(Message.BEAN_NOT_FOUND_NEEDED_IN, beanClass, neededInClass);
+		}
+		return JavaObjects.cast(bean);
+	}
+
+	/**
+	 * Returns a bean by name or {@code null} if the bean is not found. No exception is thrown or logged when the bean is
+	 * missing.
+	 *
+	 * @param <T> bean type
+	 * @param beanName bean name
+	 * @param ctx application context, can be {@code null}
+	 * @return a bean or {@code null}
+	 */
+	public static <T> T getOptionalBean(final String beanName, final ApplicationContext ctx) {
+		if (null == ctx || !ctx.containsBean(beanName)) {
+			LOGGER.trace(Message.BEAN_NOT_FOUND, beanName);
+			return null;
+		}
+		return getBean(beanName, ctx, e -> LOGGER.debug(Message.BEAN_NOT_FOUND, beanName, e));
+	}
+
+	/**
+	 * Returns the unique (or primary) bean of the given type or {@code null} if there is no such bean. The lookup goes
+	 * through the {@link ObjectProvider} of the bean type so no exception is thrown or logged when the bean is missing or
+	 * not unique or when the application context is closed.
+	 * <p>
+	 * Once the bean definitions of an active application context are frozen, the result of the lookup, including a
+	 * missing bean, is cached per bean type when all the candidate beans are singletons, so repeated lookups don't resolve
+	 * the type again. Lookups of scoped or prototype beans are never cached.
+	 *
+	 * @param <T> bean type
+	 * @param beanClass bean class
+	 * @param ctx application context, can be {@code null}
+	 * @return a bean or {@code null}
+	 */
+	public static <T> T getOptionalBean(final Class<T> beanClass, final ApplicationContext ctx) {
+		if (null == ctx) {
+			return null;
+		}
+		try {
+			Map<Class<?>, Optional<Object>> resolvedBeans = getResolvedBeans(ctx);
+			Optional<Object> resolved = null != resolvedBeans ? resolvedBeans.get(beanClass) : null;
+			T bean;
+			if (null != resolved) {
+				bean = JavaObjects.cast(resolved.orElse(null));
+			} else {
+				bean = ctx.getBeanProvider(beanClass).getIfUnique();
+				if (null != resolvedBeans && hasOnlySingletons(beanClass, ctx)) {
+					resolvedBeans.put(beanClass, Optional.ofNullable(bean));
+				}
+			}
+			if (null == bean) {
+				LOGGER.trace(Message.BEAN_NOT_FOUND, beanClass);
+			}
+			return bean;
+		} catch (BeansException | IllegalStateException e) {
+			LOGGER.debug(Message.BEAN_NOT_FOUND, beanClass, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the {@link ObjectProvider} for the given bean type.
+	 *
+	 * @param <T> bean type
+	 * @param beanClass bean class
+	 * @param ctx application context
+	 * @return the bean provider
+	 */
+	public static <T> ObjectProvider<T> getBeanProvider(final Class<T> beanClass, final ApplicationContext ctx) {
+		return ctx.getBeanProvider(beanClass);
+	}
+
+	/**
+	 * Returns the resolved beans cache of the bean factory of the given application context.
+	 *
+	 * @param ctx application context
+	 * @return the resolved beans cache or {@code null} if the lookups in the application context cannot be cached, when it
+	 *         is not active or its bean definitions can still change
+	 */
+	private static Map<Class<?>, Optional<Object>> getResolvedBeans(final ApplicationContext ctx) {
+		if (!(ctx instanceof ConfigurableApplicationContext configurableCtx) || !configurableCtx.isActive()) {
+			return null;
+		}
+		ConfigurableListableBeanFactory beanFactory = configurableCtx.getBeanFactory();
+		if (!beanFactory.isConfigurationFrozen()) {
+			return null;
+		}
+		return RESOLVED_BEANS.computeIfAbsent(beanFactory, key -> new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * Returns true if all the beans of the given type are singletons.
+	 *
+	 * @param beanClass bean class
+	 * @param ctx application context
+	 * @return true if all the beans of the given type are singletons
+	 */
+	private static boolean hasOnlySingletons(final Class<?> beanClass, final ApplicationContext ctx) {
+		return ctx.getBeanNamesForType(beanClass, true, false).length == ctx.getBeanNamesForType(beanClass, false, false).length;
 	}
 
 	/**
@@ -144,11 +277,13 @@ public class Beans {
 	 * <li>{@link #getBean(Class, ApplicationContext, Consumer)}</li>
 	 * <li>{@link #getBean(String, ApplicationContext, Consumer)}</li>
 	 * </ul>
-	 * to automatically return {@code null} if the bean is not found.
+	 * to automatically return {@code null} if the bean is not found. The returned consumer is always the same instance so
+	 * these methods recognize it and use the exception free lookups {@link #getOptionalBean(Class, ApplicationContext)} and
+	 * {@link #getOptionalBean(String, ApplicationContext)}.
 	 *
 	 * @return consumer that signifies that a null will be returned on error
 	 */
 	public static Consumer<Exception> nullOnError() {
-		return Consumers.consumeNothing();
+		return NULL_ON_ERROR;
 	}
 }
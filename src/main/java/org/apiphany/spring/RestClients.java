@@ -0,0 +1,74 @@
+package org.apiphany.spring;
+
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.morphix.lang.Nullables;
+import org.morphix.reflection.Constructors;
+import org.springframework.boot.actuate.metrics.web.client.ObservationRestClientCustomizer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+/**
+ * Utility class for working with rest clients.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class RestClients {
+
+	/**
+	 * Private constructor.
+	 */
+	private RestClients() {
+		throw Constructors.unsupportedOperationException();
+	}
+
+	/**
+	 * Returns a new {@link RestClient} configured with the given HTTP client.
+	 * <p>
+	 * This method automatically adds tracing information if tracing is present.
+	 *
+	 * @param httpClient HTTP client this rest client will use
+	 * @param ctx application context
+	 * @return a new rest client
+	 */
+	public static RestClient create(final HttpClient httpClient, final ApplicationContext ctx) {
+		return builder(httpClient, ctx).build();
+	}
+
+	/**
+	 * Returns a new {@link RestClient.Builder} configured with the given HTTP client. This is useful when the caller needs
+	 * to further customize the rest client (for example to add request interceptors) before building it.
+	 * <p>
+	 * This method automatically adds tracing information if tracing is present.
+	 *
+	 * @param httpClient HTTP client the built rest client will use
+	 * @param ctx application context
+	 * @return a new rest client builder
+	 */
+	public static RestClient.Builder builder(final HttpClient httpClient, final ApplicationContext ctx) {
+		return builder(new HttpComponentsClientHttpRequestFactory(httpClient), ctx);
+	}
+
+	/**
+	 * Returns a new {@link RestClient.Builder} configured with the given request factory, for example one using an HTTP/2
+	 * async client.
+	 * <p>
+	 * This method automatically adds tracing information if tracing is present.
+	 *
+	 * @param requestFactory request factory the built rest client will use
+	 * @param ctx application context
+	 * @return a new rest client builder
+	 */
+	public static RestClient.Builder builder(final ClientHttpRequestFactory requestFactory, final ApplicationContext ctx) {
+		RestClient.Builder builder = RestClient.builder()
+				.requestFactory(requestFactory);
+		if (null == ctx) {
+			return builder;
+		}
+		ObservationRestClientCustomizer observationCustomizer =
+				Beans.getOptionalBean(ObservationRestClientCustomizer.class, ctx);
+		Nullables.whenNotNull(observationCustomizer).then(customizer -> customizer.customize(builder));
+		return builder;
+	}
+}
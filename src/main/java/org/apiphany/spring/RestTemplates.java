@@ -55,7 +55,7 @@ public abstract class RestTemplates {
 //					.then(restTemplate.getInterceptors()::add);
 //		}
 		ObservationRestTemplateCustomizer observationCustomizer =
-				Beans.getBean(ObservationRestTemplateCustomizer.class, ctx, Beans.nullOnError());
+				Beans.getOptionalBean(ObservationRestTemplateCustomizer.class, ctx);
 		Nullables.whenNotNull(observationCustomizer).then(customizer -> customizer.customize(restTemplate));
 		return restTemplate;
 	}
@@ -0,0 +1,346 @@
+package org.apiphany.spring.collections;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.morphix.lang.JavaObjects;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.MultiValueMapAdapter;
+
+/**
+ * {@link MultiValueMap} view over an existing {@code Map<K, List<V>>}. All reads go directly to the source map, the
+ * source is copied only when the view is modified for the first time and after that all operations use the copy, the
+ * source map is never modified.
+ * <p>
+ * The value lists returned before the first modification are the lists of the source map and must not be modified
+ * directly, the same goes for the key, value and entry views which are unmodifiable until the first modification.
+ * <p>
+ * This class is not thread safe, just like {@link LinkedMultiValueMap}.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class CopyOnWriteMultiValueMap<K, V> implements MultiValueMap<K, V> {
+
+	/**
+	 * The source map.
+	 */
+	private final Map<K, List<V>> source;
+
+	/**
+	 * True if the keys are strings that are compared ignoring case, like HTTP header names.
+	 */
+	private final boolean caseInsensitiveKeys;
+
+	/**
+	 * The copy of the source map, {@code null} until the first modification.
+	 */
+	private MultiValueMap<K, V> copy;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param source the source map
+	 * @param caseInsensitiveKeys true if the keys are strings that are compared ignoring case
+	 */
+	private CopyOnWriteMultiValueMap(final Map<K, List<V>> source, final boolean caseInsensitiveKeys) {
+		this.source = null != source ? source : Collections.emptyMap();
+		this.caseInsensitiveKeys = caseInsensitiveKeys;
+	}
+
+	/**
+	 * Returns a new view over the given map.
+	 *
+	 * @param <K> key type
+	 * @param <V> value type
+	 *
+	 * @param source the source map, can be {@code null}
+	 * @return a new view
+	 */
+	public static <K, V> CopyOnWriteMultiValueMap<K, V> of(final Map<K, List<V>> source) {
+		return new CopyOnWriteMultiValueMap<>(source, false);
+	}
+
+	/**
+	 * Returns a new view over the given HTTP headers map, the header names are compared ignoring case.
+	 *
+	 * @param source the source headers map, can be {@code null}
+	 * @return a new view
+	 */
+	public static CopyOnWriteMultiValueMap<String, String> ofHeaders(final Map<String, List<String>> source) {
+		return new CopyOnWriteMultiValueMap<>(source, true);
+	}
+
+	/**
+	 * Returns true if the source map was copied because the view was modified.
+	 *
+	 * @return true if the source map was copied
+	 */
+	public boolean isCopied() {
+		return null != copy;
+	}
+
+	/**
+	 * Returns the map used for reading.
+	 *
+	 * @return the map used for reading
+	 */
+	private Map<K, List<V>> read() {
+		return null != copy ? copy : source;
+	}
+
+	/**
+	 * Returns the map used for writing, copying the source map on the first call.
+	 *
+	 * @return the map used for writing
+	 */
+	private MultiValueMap<K, V> write() {
+		if (null == copy) {
+			MultiValueMap<K, V> target = caseInsensitiveKeys
+					? JavaObjects.cast(new MultiValueMapAdapter<>(new LinkedCaseInsensitiveMap<List<V>>(source.size(), Locale.ROOT)))
+					: new LinkedMultiValueMap<>(source.size());
+			source.forEach((key, values) -> target.addAll(key, null != values ? values : Collections.emptyList()));
+			copy = target;
+		}
+		return copy;
+	}
+
+	/**
+	 * Finds the source map key equal to the given key ignoring case.
+	 *
+	 * @param key key to find
+	 * @return the source map key or {@code null} if not found
+	 */
+	private K findKeyIgnoreCase(final Object key) {
+		if (!caseInsensitiveKeys || !(key instanceof String name)) {
+			return null;
+		}
+		for (K sourceKey : source.keySet()) {
+			if (name.equalsIgnoreCase((String) sourceKey)) {
+				return sourceKey;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @see MultiValueMap#getFirst(Object)
+	 */
+	@Override
+	public V getFirst(final K key) {
+		List<V> values = get(key);
+		return null != values && !values.isEmpty() ? values.getFirst() : null;
+	}
+
+	/**
+	 * @see MultiValueMap#add(Object, Object)
+	 */
+	@Override
+	public void add(final K key, final V value) {
+		write().add(key, value);
+	}
+
+	/**
+	 * @see MultiValueMap#addAll(Object, List)
+	 */
+	@Override
+	public void addAll(final K key, final List<? extends V> values) {
+		write().addAll(key, values);
+	}
+
+	/**
+	 * @see MultiValueMap#addAll(MultiValueMap)
+	 */
+	@Override
+	public void addAll(final MultiValueMap<K, V> values) {
+		write().addAll(values);
+	}
+
+	/**
+	 * @see MultiValueMap#set(Object, Object)
+	 */
+	@Override
+	public void set(final K key, final V value) {
+		write().set(key, value);
+	}
+
+	/**
+	 * @see MultiValueMap#setAll(Map)
+	 */
+	@Override
+	public void setAll(final Map<K, V> values) {
+		write().setAll(values);
+	}
+
+	/**
+	 * @see MultiValueMap#toSingleValueMap()
+	 */
+	@Override
+	public Map<K, V> toSingleValueMap() {
+		if (null != copy) {
+			return copy.toSingleValueMap();
+		}
+		Map<K, V> singleValueMap = LinkedHashMap.newLinkedHashMap(source.size());
+		source.forEach((key, values) -> {
+			if (null != values && !values.isEmpty()) {
+				singleValueMap.put(key, values.getFirst());
+			}
+		});
+		return singleValueMap;
+	}
+
+	/**
+	 * @see Map#size()
+	 */
+	@Override
+	public int size() {
+		return read().size();
+	}
+
+	/**
+	 * @see Map#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return read().isEmpty();
+	}
+
+	/**
+	 * @see Map#containsKey(Object)
+	 */
+	@Override
+	public boolean containsKey(final Object key) {
+		if (null != copy) {
+			return copy.containsKey(key);
+		}
+		return source.containsKey(key) || null != findKeyIgnoreCase(key);
+	}
+
+	/**
+	 * @see Map#containsValue(Object)
+	 */
+	@Override
+	public boolean containsValue(final Object value) {
+		return read().containsValue(value);
+	}
+
+	/**
+	 * @see Map#get(Object)
+	 */
+	@Override
+	public List<V> get(final Object key) {
+		if (null != copy) {
+			return copy.get(key);
+		}
+		List<V> values = source.get(key);
+		if (null == values) {
+			K sourceKey = findKeyIgnoreCase(key);
+			values = null != sourceKey ? source.get(sourceKey) : null;
+		}
+		return values;
+	}
+
+	/**
+	 * @see Map#put(Object, Object)
+	 */
+	@Override
+	public List<V> put(final K key, final List<V> value) {
+		return write().put(key, value);
+	}
+
+	/**
+	 * @see Map#remove(Object)
+	 */
+	@Override
+	public List<V> remove(final Object key) {
+		if (null == copy && !containsKey(key)) {
+			return null;
+		}
+		return write().remove(key);
+	}
+
+	/**
+	 * @see Map#putAll(Map)
+	 */
+	@Override
+	public void putAll(final Map<? extends K, ? extends List<V>> map) {
+		write().putAll(map);
+	}
+
+	/**
+	 * @see Map#clear()
+	 */
+	@Override
+	public void clear() {
+		if (null == copy && source.isEmpty()) {
+			return;
+		}
+		write().clear();
+	}
+
+	/**
+	 * @see Map#forEach(BiConsumer)
+	 */
+	@Override
+	public void forEach(final BiConsumer<? super K, ? super List<V>> action) {
+		read().forEach(action);
+	}
+
+	/**
+	 * @see Map#keySet()
+	 */
+	@Override
+	public Set<K> keySet() {
+		return null != copy ? copy.keySet() : Collections.unmodifiableSet(source.keySet());
+	}
+
+	/**
+	 * @see Map#values()
+	 */
+	@Override
+	public Collection<List<V>> values() {
+		return null != copy ? copy.values() : Collections.unmodifiableCollection(source.values());
+	}
+
+	/**
+	 * @see Map#entrySet()
+	 */
+	@Override
+	public Set<Entry<K, List<V>>> entrySet() {
+		return null != copy ? copy.entrySet() : Collections.unmodifiableMap(source).entrySet();
+	}
+
+	/**
+	 * @see Object#equals(Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		return this == obj || read().equals(obj);
+	}
+
+	/**
+	 * @see Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return read().hashCode();
+	}
+
+	/**
+	 * @see Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return read().toString();
+	}
+}
@@ -60,6 +60,23 @@ public class ExtendedMaps {
 		return multiValueMap;
 	}
 
+	/**
+	 * Returns a {@link MultiValueMap} view backed by the given {@link Map}, the map is copied only when the view is
+	 * modified, see {@link CopyOnWriteMultiValueMap}.
+	 *
+	 * @param <K> key type
+	 * @param <V> value type
+	 *
+	 * @param map entry map
+	 * @return a multi value map view
+	 */
+	public static <K, V> MultiValueMap<K, V> multiValueMapView(final Map<K, List<V>> map) {
+		if (null == map || map.isEmpty()) {
+			return emptyMultiValueMap();
+		}
+		return CopyOnWriteMultiValueMap.of(map);
+	}
+
 	/**
 	 * Returns a new {@link MultiValueMap} from a key and value.
 	 *
@@ -0,0 +1,257 @@
+package org.apiphany.spring.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.FastByteArrayOutputStream;
+
+/**
+ * {@link ClientHttpRequestFactory} on the Apache HTTP Client 5 async API, used with an HTTP/2 async client many
+ * concurrent requests are multiplexed as streams over a few connections.
+ * <p>
+ * The calling thread waits for the response, which is cheap on virtual threads, while the I/O is done by the client
+ * I/O reactor threads. The request and response bodies are buffered in memory, so this factory is not meant for very
+ * large uploads or downloads.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ApacheHC5AsyncClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+	/**
+	 * Connection specific headers which are not allowed in HTTP/2 requests, the client sets the framing itself.
+	 */
+	private static final Set<String> CONNECTION_HEADERS = Set.of(
+			HttpHeaders.CONNECTION.toLowerCase(),
+			HttpHeaders.CONTENT_LENGTH.toLowerCase(),
+			HttpHeaders.HOST.toLowerCase(),
+			HttpHeaders.TRANSFER_ENCODING.toLowerCase(),
+			HttpHeaders.UPGRADE.toLowerCase(),
+			"keep-alive",
+			"proxy-connection");
+
+	/**
+	 * The async HTTP client, it must be started.
+	 */
+	private final CloseableHttpAsyncClient httpAsyncClient;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param httpAsyncClient the started async HTTP client
+	 */
+	public ApacheHC5AsyncClientHttpRequestFactory(final CloseableHttpAsyncClient httpAsyncClient) {
+		this.httpAsyncClient = httpAsyncClient;
+	}
+
+	/**
+	 * @see ClientHttpRequestFactory#createRequest(URI, HttpMethod)
+	 */
+	@Override
+	public ClientHttpRequest createRequest(final URI uri, final HttpMethod httpMethod) {
+		return new AsyncClientHttpRequest(uri, httpMethod);
+	}
+
+	/**
+	 * Returns the async HTTP client.
+	 *
+	 * @return the async HTTP client
+	 */
+	public CloseableHttpAsyncClient getHttpAsyncClient() {
+		return httpAsyncClient;
+	}
+
+	/**
+	 * Request executed with the async HTTP client.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private class AsyncClientHttpRequest extends AbstractClientHttpRequest {
+
+		/**
+		 * The request URI.
+		 */
+		private final URI uri;
+
+		/**
+		 * The request method.
+		 */
+		private final HttpMethod method;
+
+		/**
+		 * The buffered request body.
+		 */
+		private final FastByteArrayOutputStream body = new FastByteArrayOutputStream(1024);
+
+		/**
+		 * Constructor.
+		 *
+		 * @param uri the request URI
+		 * @param method the request method
+		 */
+		AsyncClientHttpRequest(final URI uri, final HttpMethod method) {
+			this.uri = uri;
+			this.method = method;
+		}
+
+		/**
+		 * @see AbstractClientHttpRequest#getMethod()
+		 */
+		@Override
+		public HttpMethod getMethod() {
+			return method;
+		}
+
+		/**
+		 * @see AbstractClientHttpRequest#getURI()
+		 */
+		@Override
+		public URI getURI() {
+			return uri;
+		}
+
+		/**
+		 * @see AbstractClientHttpRequest#getBodyInternal(HttpHeaders)
+		 */
+		@Override
+		protected OutputStream getBodyInternal(final HttpHeaders headers) {
+			return body;
+		}
+
+		/**
+		 * Sends the request and waits for the response.
+		 *
+		 * @see AbstractClientHttpRequest#executeInternal(HttpHeaders)
+		 */
+		@Override
+		protected ClientHttpResponse executeInternal(final HttpHeaders headers) throws IOException {
+			SimpleHttpRequest request = SimpleHttpRequest.create(method.name(), uri);
+			for (Map.Entry<String, List<String>> header : headers.headerSet()) {
+				String name = header.getKey();
+				if (CONNECTION_HEADERS.contains(name.toLowerCase())) {
+					continue;
+				}
+				for (String value : header.getValue()) {
+					request.addHeader(name, value);
+				}
+			}
+			if (body.size() > 0) {
+				String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+				request.setBody(body.toByteArrayUnsafe(), null != contentType ? ContentType.parse(contentType) : null);
+			}
+			Future<SimpleHttpResponse> future = httpAsyncClient.execute(SimpleRequestProducer.create(request),
+					SimpleResponseConsumer.create(), null);
+			try {
+				return new AsyncClientHttpResponse(future.get());
+			} catch (InterruptedException e) {
+				future.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the response of " + method + " " + uri);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException ioException) {
+					throw ioException;
+				}
+				throw new IOException("Failed to execute " + method + " " + uri + ": " + cause.getMessage(), cause);
+			}
+		}
+	}
+
+	/**
+	 * Response buffered by the async HTTP client.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class AsyncClientHttpResponse implements ClientHttpResponse {
+
+		/**
+		 * The buffered response.
+		 */
+		private final SimpleHttpResponse response;
+
+		/**
+		 * The response headers, created on the first {@link #getHeaders()} call.
+		 */
+		private HttpHeaders headers;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param response the buffered response
+		 */
+		AsyncClientHttpResponse(final SimpleHttpResponse response) {
+			this.response = response;
+		}
+
+		/**
+		 * @see ClientHttpResponse#getStatusCode()
+		 */
+		@Override
+		public HttpStatusCode getStatusCode() {
+			return HttpStatusCode.valueOf(response.getCode());
+		}
+
+		/**
+		 * @see ClientHttpResponse#getStatusText()
+		 */
+		@Override
+		public String getStatusText() {
+			return null != response.getReasonPhrase() ? response.getReasonPhrase() : "";
+		}
+
+		/**
+		 * @see ClientHttpResponse#getHeaders()
+		 */
+		@Override
+		public HttpHeaders getHeaders() {
+			if (null == headers) {
+				headers = new HttpHeaders();
+				for (Header header : response.getHeaders()) {
+					headers.add(header.getName(), header.getValue());
+				}
+			}
+			return headers;
+		}
+
+		/**
+		 * @see ClientHttpResponse#getBody()
+		 */
+		@Override
+		public InputStream getBody() {
+			byte[] bytes = response.getBodyBytes();
+			return new ByteArrayInputStream(null != bytes ? bytes : new byte[0]);
+		}
+
+		/**
+		 * The response is fully buffered, there is nothing to release.
+		 *
+		 * @see ClientHttpResponse#close()
+		 */
+		@Override
+		public void close() {
+			// empty
+		}
+	}
+}
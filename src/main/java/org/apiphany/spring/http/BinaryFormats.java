@@ -0,0 +1,578 @@
+package org.apiphany.spring.http;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentLruCache;
+import org.springframework.util.MultiValueMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Binary Jackson payload formats (Smile and CBOR) negotiated per host with automatic fallback to JSON.
+ * <p>
+ * The binary converters use a copy of the JSON object mapper configuration so the DTOs are (de)serialized exactly as
+ * with JSON, only the encoding changes. They are added after the JSON converter so JSON stays the default for request
+ * bodies.
+ * <p>
+ * The negotiation is server driven: the {@code Accept} header of the requests that accept JSON is rewritten to prefer
+ * the binary formats in the configured order with JSON as a lower quality fallback, a server that doesn't know the
+ * binary formats just answers with JSON. What every host answers is remembered:
+ * <ul>
+ * <li>a host which answered with a binary format is sent request bodies in that format too</li>
+ * <li>a host which answered a successful request with JSON or rejected a binary body with
+ * {@code 415 Unsupported Media Type} is called with JSON only, until {@link Builder#recheckInterval(Duration)} passes
+ * and the binary formats are offered again</li>
+ * </ul>
+ * The format libraries are optional dependencies, the formats whose library is not on the class path are skipped.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class BinaryFormats {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(BinaryFormats.class);
+
+	/**
+	 * Smile media type.
+	 */
+	public static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+	/**
+	 * CBOR media type.
+	 */
+	public static final MediaType CBOR = MediaType.APPLICATION_CBOR;
+
+	/**
+	 * Default interval after which the binary formats are offered again to a JSON only host.
+	 */
+	public static final Duration DEFAULT_RECHECK_INTERVAL = Duration.ofMinutes(10);
+
+	/**
+	 * Maximum number of cached {@code Accept} header values.
+	 */
+	private static final int ACCEPT_CACHE_CAPACITY = 256;
+
+	/**
+	 * True if the Smile library is on the class path.
+	 */
+	private static final boolean SMILE_PRESENT = ClassUtils.isPresent("com.fasterxml.jackson.dataformat.smile.SmileFactory",
+			BinaryFormats.class.getClassLoader());
+
+	/**
+	 * True if the CBOR library is on the class path.
+	 */
+	private static final boolean CBOR_PRESENT = ClassUtils.isPresent("com.fasterxml.jackson.dataformat.cbor.CBORFactory",
+			BinaryFormats.class.getClassLoader());
+
+	/**
+	 * Body types which are sent as they are and never encoded in a binary format.
+	 */
+	private static final Set<Class<?>> RAW_BODY_TYPES = Set.of(CharSequence.class, byte[].class, Resource.class,
+			InputStream.class, MultiValueMap.class);
+
+	/**
+	 * The binary formats in preference order.
+	 */
+	private final List<MediaType> mediaTypes;
+
+	/**
+	 * Interval in nanoseconds after which the binary formats are offered again to a JSON only host.
+	 */
+	private final long recheckIntervalNanos;
+
+	/**
+	 * The negotiated format by host.
+	 */
+	private final Map<String, HostFormat> hosts = new ConcurrentHashMap<>();
+
+	/**
+	 * The rewritten {@code Accept} header values by preferred format index and original value.
+	 */
+	private final ConcurrentLruCache<String, String> acceptHeaders = new ConcurrentLruCache<>(ACCEPT_CACHE_CAPACITY, this::rewrite);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private BinaryFormats(final Builder builder) {
+		this.mediaTypes = List.copyOf(builder.mediaTypes);
+		this.recheckIntervalNanos = builder.recheckInterval.toNanos();
+	}
+
+	/**
+	 * Returns new binary formats with Smile preferred over CBOR, when their libraries are on the class path.
+	 *
+	 * @return new binary formats
+	 */
+	public static BinaryFormats defaults() {
+		return builder().smile().cbor().build();
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Adds the binary format converters to the given converters right after the JSON converter, replacing the binary
+	 * converters already present. The binary converters use a copy of the JSON converter object mapper. Only the formats
+	 * whose library is on the class path are configured, so the format classes are loaded only through their converter
+	 * holder classes.
+	 *
+	 * @param converters the message converters to change
+	 */
+	public void addConverters(final List<HttpMessageConverter<?>> converters) {
+		converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter
+				|| converter instanceof MappingJackson2CborHttpMessageConverter);
+		int jsonIndex = -1;
+		ObjectMapper objectMapper = null;
+		for (int i = 0; i < converters.size(); ++i) {
+			if (converters.get(i) instanceof MappingJackson2HttpMessageConverter jsonConverter) {
+				jsonIndex = i;
+				objectMapper = jsonConverter.getObjectMapper();
+				break;
+			}
+		}
+		if (null == objectMapper) {
+			objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		}
+		List<HttpMessageConverter<?>> binaryConverters = new ArrayList<>(mediaTypes.size());
+		for (MediaType mediaType : mediaTypes) {
+			binaryConverters.add(SMILE.equals(mediaType)
+					? SmileConverters.converter(objectMapper)
+					: CborConverters.converter(objectMapper));
+		}
+		converters.addAll(jsonIndex + 1, binaryConverters);
+	}
+
+	/**
+	 * Returns the {@code Accept} header value to send to the host of the given URI. Values which don't accept JSON are
+	 * returned unchanged.
+	 *
+	 * @param uri the request URI
+	 * @param accept the original {@code Accept} header value, can be {@code null}
+	 * @return the {@code Accept} header value
+	 */
+	public String getAcceptHeader(final URI uri, final String accept) {
+		if (null == accept || mediaTypes.isEmpty()) {
+			return accept;
+		}
+		HostFormat hostFormat = getHostFormat(uri);
+		int preferred;
+		if (null == hostFormat) {
+			preferred = 0;
+		} else if (null == hostFormat.mediaType) {
+			preferred = -1;
+		} else {
+			preferred = mediaTypes.indexOf(hostFormat.mediaType);
+		}
+		return acceptHeaders.get(preferred + " " + accept);
+	}
+
+	/**
+	 * Returns the binary format known to be supported by the host of the given URI.
+	 *
+	 * @param uri the request URI
+	 * @return the binary format, {@code null} if the host is not known to support a binary format
+	 */
+	public MediaType getContentType(final URI uri) {
+		HostFormat hostFormat = getHostFormat(uri);
+		return null != hostFormat ? hostFormat.mediaType : null;
+	}
+
+	/**
+	 * Returns true if the host of the given URI is known to support only JSON.
+	 *
+	 * @param uri the request URI
+	 * @return true if the host supports only JSON
+	 */
+	public boolean isJsonOnly(final URI uri) {
+		HostFormat hostFormat = getHostFormat(uri);
+		return null != hostFormat && null == hostFormat.mediaType;
+	}
+
+	/**
+	 * Returns the binary format to encode the given request body for the host of the given URI with.
+	 *
+	 * @param uri the request URI
+	 * @param body the request body, can be {@code null}
+	 * @return the binary format, {@code null} if the body should be sent as it is
+	 */
+	public MediaType getContentType(final URI uri, final Object body) {
+		if (null == body) {
+			return null;
+		}
+		for (Class<?> rawBodyType : RAW_BODY_TYPES) {
+			if (rawBodyType.isInstance(body)) {
+				return null;
+			}
+		}
+		return getContentType(uri);
+	}
+
+	/**
+	 * Remembers the format of the host of the given URI from the response of an exchange.
+	 *
+	 * @param uri the request URI
+	 * @param binaryAccepted true if the request accepted a binary format
+	 * @param requestContentType the request content type, can be {@code null}
+	 * @param statusCode the response status code
+	 * @param responseContentType the response content type, can be {@code null}
+	 */
+	public void update(final URI uri, final boolean binaryAccepted, final MediaType requestContentType, final int statusCode,
+			final MediaType responseContentType) {
+		if (415 == statusCode && isBinary(requestContentType)) {
+			setHostFormat(uri, new HostFormat(null, System.nanoTime()));
+			return;
+		}
+		if (null == responseContentType) {
+			return;
+		}
+		for (MediaType mediaType : mediaTypes) {
+			if (mediaType.isCompatibleWith(responseContentType)) {
+				setHostFormat(uri, new HostFormat(mediaType, 0));
+				return;
+			}
+		}
+		if (binaryAccepted && statusCode >= 200 && statusCode < 300 && isJson(responseContentType) && null == getContentType(uri)) {
+			setHostFormat(uri, new HostFormat(null, System.nanoTime()));
+		}
+	}
+
+	/**
+	 * Returns true if the given content type is one of the binary formats.
+	 *
+	 * @param contentType the content type, can be {@code null}
+	 * @return true if the content type is a binary format
+	 */
+	public boolean isBinary(final MediaType contentType) {
+		if (null == contentType) {
+			return false;
+		}
+		for (MediaType mediaType : mediaTypes) {
+			if (mediaType.isCompatibleWith(contentType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the negotiated format of the host of the given URI.
+	 *
+	 * @param uri the request URI
+	 * @return the host format, {@code null} if the host is not known or should be checked again
+	 */
+	private HostFormat getHostFormat(final URI uri) {
+		HostFormat hostFormat = hosts.get(host(uri));
+		if (null == hostFormat || (null == hostFormat.mediaType && System.nanoTime() - hostFormat.since > recheckIntervalNanos)) {
+			return null;
+		}
+		return hostFormat;
+	}
+
+	/**
+	 * Sets the negotiated format of the host of the given URI, logging the changes.
+	 *
+	 * @param uri the request URI
+	 * @param hostFormat the host format
+	 */
+	private void setHostFormat(final URI uri, final HostFormat hostFormat) {
+		String host = host(uri);
+		HostFormat previous = hosts.put(host, hostFormat);
+		if (null == previous || previous.mediaType != hostFormat.mediaType) {
+			LOGGER.debug("Negotiated payload format for {}: {}", host, null != hostFormat.mediaType ? hostFormat.mediaType : "JSON");
+		}
+	}
+
+	/**
+	 * Rewrites an {@code Accept} header value, called on cache misses.
+	 *
+	 * @param key the preferred format index, -1 for JSON only, and the original value separated by a space
+	 * @return the rewritten value
+	 */
+	private String rewrite(final String key) {
+		int separator = key.indexOf(' ');
+		int preferred = Integer.parseInt(key.substring(0, separator));
+		String accept = key.substring(separator + 1);
+		List<MediaType> accepted;
+		try {
+			accepted = MediaType.parseMediaTypes(accept);
+		} catch (IllegalArgumentException e) {
+			return accept;
+		}
+		boolean acceptsJson = false;
+		List<MediaType> others = new ArrayList<>(accepted.size());
+		for (MediaType mediaType : accepted) {
+			if (mediaType.isConcrete() && isBinary(mediaType)) {
+				continue;
+			}
+			acceptsJson |= isJson(mediaType) && !mediaType.isWildcardType();
+			others.add(mediaType);
+		}
+		if (!acceptsJson) {
+			return accept;
+		}
+		if (preferred < 0) {
+			return MediaType.toString(others);
+		}
+		List<MediaType> rewritten = new ArrayList<>(mediaTypes.size() + others.size());
+		List<MediaType> binary = new ArrayList<>(mediaTypes);
+		Collections.swap(binary, 0, preferred);
+		double quality = 1.0;
+		for (MediaType mediaType : binary) {
+			rewritten.add(1.0 == quality ? mediaType : new MediaType(mediaType, Map.of("q", quality(quality))));
+			quality -= 0.1;
+		}
+		for (MediaType mediaType : others) {
+			rewritten.add(new MediaType(mediaType, Map.of("q", quality(Math.min(quality, mediaType.getQualityValue())))));
+		}
+		return MediaType.toString(rewritten);
+	}
+
+	/**
+	 * Returns the given quality value as a header parameter value.
+	 *
+	 * @param quality the quality value
+	 * @return the quality parameter value
+	 */
+	private static String quality(final double quality) {
+		return String.valueOf(Math.round(quality * 10) / 10.0);
+	}
+
+	/**
+	 * Returns true if the given media type is JSON.
+	 *
+	 * @param mediaType the media type
+	 * @return true if the media type is JSON
+	 */
+	private static boolean isJson(final MediaType mediaType) {
+		return MediaType.APPLICATION_JSON.isCompatibleWith(mediaType)
+				|| (null != mediaType.getSubtypeSuffix() && "json".equals(mediaType.getSubtypeSuffix()));
+	}
+
+	/**
+	 * Returns the host key of the given URI.
+	 *
+	 * @param uri the request URI
+	 * @return the host key
+	 */
+	private static String host(final URI uri) {
+		return uri.getScheme() + "://" + uri.getRawAuthority();
+	}
+
+	/**
+	 * Returns the binary formats in preference order.
+	 *
+	 * @return the binary formats
+	 */
+	public List<MediaType> getMediaTypes() {
+		return mediaTypes;
+	}
+
+	/**
+	 * Returns the hosts known to support a binary format and their format.
+	 *
+	 * @return the binary format by host
+	 */
+	public Map<String, MediaType> getBinaryHosts() {
+		Map<String, MediaType> binaryHosts = new ConcurrentHashMap<>();
+		hosts.forEach((host, hostFormat) -> {
+			if (null != hostFormat.mediaType) {
+				binaryHosts.put(host, hostFormat.mediaType);
+			}
+		});
+		return binaryHosts;
+	}
+
+	/**
+	 * The negotiated format of a host.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class HostFormat {
+
+		/**
+		 * The binary format, {@code null} if the host supports only JSON.
+		 */
+		private final MediaType mediaType;
+
+		/**
+		 * Time in nanoseconds since the host is known to support only JSON.
+		 */
+		private final long since;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param mediaType the binary format, {@code null} for JSON only
+		 * @param since time in nanoseconds since the host is known to support only JSON
+		 */
+		HostFormat(final MediaType mediaType, final long since) {
+			this.mediaType = mediaType;
+			this.since = since;
+		}
+	}
+
+	/**
+	 * Creates the Smile converters, this class is loaded only when the Smile library is on the class path.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class SmileConverters {
+
+		/**
+		 * Hide constructor.
+		 */
+		private SmileConverters() {
+			// empty
+		}
+
+		/**
+		 * Returns a new Smile converter using a copy of the given object mapper.
+		 *
+		 * @param objectMapper the JSON object mapper
+		 * @return a new Smile converter
+		 */
+		static HttpMessageConverter<?> converter(final ObjectMapper objectMapper) {
+			return new MappingJackson2SmileHttpMessageConverter(objectMapper.copyWith(new SmileFactory()));
+		}
+	}
+
+	/**
+	 * Creates the CBOR converters, this class is loaded only when the CBOR library is on the class path.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class CborConverters {
+
+		/**
+		 * Hide constructor.
+		 */
+		private CborConverters() {
+			// empty
+		}
+
+		/**
+		 * Returns a new CBOR converter using a copy of the given object mapper.
+		 *
+		 * @param objectMapper the JSON object mapper
+		 * @return a new CBOR converter
+		 */
+		static HttpMessageConverter<?> converter(final ObjectMapper objectMapper) {
+			return new MappingJackson2CborHttpMessageConverter(objectMapper.copyWith(new CBORFactory()));
+		}
+	}
+
+	/**
+	 * Builder for {@link BinaryFormats}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * The binary formats in preference order.
+		 */
+		private final List<MediaType> mediaTypes = new ArrayList<>();
+
+		/**
+		 * Interval after which the binary formats are offered again to a JSON only host.
+		 */
+		private Duration recheckInterval = DEFAULT_RECHECK_INTERVAL;
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Adds the Smile format, the formats are preferred in the order they are added. The format is skipped if the
+		 * {@code jackson-dataformat-smile} library is not on the class path.
+		 *
+		 * @return this builder
+		 */
+		public Builder smile() {
+			return add(SMILE, SMILE_PRESENT, "jackson-dataformat-smile");
+		}
+
+		/**
+		 * Adds the CBOR format, the formats are preferred in the order they are added. The format is skipped if the
+		 * {@code jackson-dataformat-cbor} library is not on the class path.
+		 *
+		 * @return this builder
+		 */
+		public Builder cbor() {
+			return add(CBOR, CBOR_PRESENT, "jackson-dataformat-cbor");
+		}
+
+		/**
+		 * Adds a format if its library is present.
+		 *
+		 * @param mediaType the format media type
+		 * @param present true if the format library is on the class path
+		 * @param library the format library name
+		 * @return this builder
+		 */
+		private Builder add(final MediaType mediaType, final boolean present, final String library) {
+			if (!present) {
+				LOGGER.warn("{} payload format is disabled, {} is not on the class path", mediaType, library);
+			} else if (!mediaTypes.contains(mediaType)) {
+				mediaTypes.add(mediaType);
+			}
+			return this;
+		}
+
+		/**
+		 * Sets the interval after which the binary formats are offered again to a host which supports only JSON.
+		 *
+		 * @param recheckInterval recheck interval
+		 * @return this builder
+		 */
+		public Builder recheckInterval(final Duration recheckInterval) {
+			if (null == recheckInterval || recheckInterval.isNegative()) {
+				throw new IllegalArgumentException("Recheck interval must not be negative, got: " + recheckInterval);
+			}
+			this.recheckInterval = recheckInterval;
+			return this;
+		}
+
+		/**
+		 * Builds the binary formats.
+		 *
+		 * @return new binary formats
+		 */
+		public BinaryFormats build() {
+			return new BinaryFormats(this);
+		}
+	}
+}
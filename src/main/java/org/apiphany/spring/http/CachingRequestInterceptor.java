@@ -0,0 +1,354 @@
+package org.apiphany.spring.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+import org.apiphany.spring.http.cache.CacheDirectives;
+import org.apiphany.spring.http.cache.CachedResponse;
+import org.apiphany.spring.http.cache.ResponseCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Private HTTP cache request interceptor for {@code GET} requests.
+ * <p>
+ * Fresh responses, as given by the {@code Cache-Control: max-age} directive or the {@code Expires} header, are
+ * answered from the {@link ResponseCache} without contacting the server. Stale responses that have an {@code ETag} or
+ * a {@code Last-Modified} header are revalidated with a conditional request ({@code If-None-Match} /
+ * {@code If-Modified-Since}) and a {@code 304 Not Modified} answer is served from the cache. The response bodies are
+ * stored as bytes so the cached responses still go through the normal message conversion.
+ * <p>
+ * Requests that already have conditional headers or a {@code no-store} directive bypass the cache, responses with
+ * {@code no-store}, {@code Vary: *} or larger than the maximum entry size are never stored. Range requests bypass the
+ * cache too, a partial response must neither be served for nor replace the full response. Requests with the internal
+ * {@link #SKIP_CACHE} header, used for downloads and streamed responses which must not be buffered, bypass the cache
+ * too and the header is removed before the request is sent.
+ * <p>
+ * The cache key includes a SHA-256 hash of the {@code Authorization} and {@code Cookie} request headers, so a response
+ * fetched with the credentials of one principal is never served to a request with other credentials, even when the
+ * cache is shared between clients. The credentials themselves are never part of the key.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class CachingRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(CachingRequestInterceptor.class);
+
+	/**
+	 * Internal header used to bypass the cache, it is never sent to the server.
+	 */
+	public static final String SKIP_CACHE = "Skip-Cache";
+
+	/**
+	 * Status codes that can be stored, see RFC 9110 section 15.1 (heuristically cacheable status codes) limited to the
+	 * ones that make sense for an API client.
+	 */
+	private static final Set<Integer> CACHEABLE_STATUS_CODES = Set.of(
+			HttpStatus.OK.value(),
+			HttpStatus.NON_AUTHORITATIVE_INFORMATION.value(),
+			HttpStatus.MULTIPLE_CHOICES.value(),
+			HttpStatus.MOVED_PERMANENTLY.value(),
+			HttpStatus.NOT_FOUND.value(),
+			HttpStatus.GONE.value());
+
+	/**
+	 * The response cache.
+	 */
+	private final ResponseCache responseCache;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param responseCache the response cache
+	 */
+	public CachingRequestInterceptor(final ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * Answers {@code GET} requests from the cache when possible and stores the cacheable responses.
+	 *
+	 * @param httpRequest HTTP request
+	 * @param body request body
+	 * @param exec client request execution object
+	 * @return HTTP response
+	 * @throws IOException on error
+	 */
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest httpRequest, final byte[] body, final ClientHttpRequestExecution exec)
+			throws IOException {
+		HttpHeaders requestHeaders = httpRequest.getHeaders();
+		if (requestHeaders.containsKey(SKIP_CACHE)) {
+			LOGGER.debug("Response cache skipped via {} custom HTTP header", SKIP_CACHE);
+			requestHeaders.remove(SKIP_CACHE);
+			return exec.execute(httpRequest, body);
+		}
+		if (!isCacheable(httpRequest, body)) {
+			return exec.execute(httpRequest, body);
+		}
+		String key = key(httpRequest);
+		long now = System.currentTimeMillis();
+		CachedResponse cached = responseCache.get(key);
+		if (null != cached && !cached.matchesVary(requestHeaders)) {
+			cached = null;
+		}
+		if (null != cached && cached.isFresh(now) && !CacheDirectives.of(requestHeaders).isNoCache()) {
+			LOGGER.debug("Response cache hit: {}", key);
+			responseCache.getStatistics().recordHit();
+			return cached.toClientHttpResponse();
+		}
+		boolean revalidating = null != cached && cached.hasValidators();
+		if (revalidating) {
+			addConditionalHeaders(requestHeaders, cached);
+		}
+		ClientHttpResponse response = exec.execute(httpRequest, body);
+		now = System.currentTimeMillis();
+		if (revalidating && response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+			LOGGER.debug("Response cache revalidated: {}", key);
+			HttpHeaders notModifiedHeaders = response.getHeaders();
+			response.close();
+			CachedResponse revalidated = cached.revalidated(notModifiedHeaders, now);
+			responseCache.put(key, revalidated);
+			responseCache.getStatistics().recordRevalidation();
+			return revalidated.toClientHttpResponse();
+		}
+		responseCache.getStatistics().recordMiss();
+		return store(key, requestHeaders, response, now);
+	}
+
+	/**
+	 * Returns true if the request can use the cache.
+	 *
+	 * @param httpRequest HTTP request
+	 * @param body request body
+	 * @return true if the request can use the cache
+	 */
+	private static boolean isCacheable(final HttpRequest httpRequest, final byte[] body) {
+		if (HttpMethod.GET != httpRequest.getMethod() || !ObjectUtils.isEmpty(body)) {
+			return false;
+		}
+		HttpHeaders headers = httpRequest.getHeaders();
+		return !headers.containsKey(HttpHeaders.IF_NONE_MATCH)
+				&& !headers.containsKey(HttpHeaders.IF_MODIFIED_SINCE)
+				&& !headers.containsKey(HttpHeaders.IF_MATCH)
+				&& !headers.containsKey(HttpHeaders.IF_UNMODIFIED_SINCE)
+				&& !headers.containsKey(HttpHeaders.RANGE)
+				&& !headers.containsKey(HttpHeaders.IF_RANGE)
+				&& !CacheDirectives.of(headers).isNoStore();
+	}
+
+	/**
+	 * Returns the cache key for the given request: the method, the URI and the hash of the credentials if the request has
+	 * any.
+	 *
+	 * @param httpRequest HTTP request
+	 * @return the cache key
+	 */
+	static String key(final HttpRequest httpRequest) {
+		String key = httpRequest.getMethod().name() + " " + httpRequest.getURI();
+		String credentialsHash = credentialsHash(httpRequest.getHeaders());
+		return null == credentialsHash ? key : key + " " + credentialsHash;
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the {@code Authorization} and {@code Cookie} header values.
+	 *
+	 * @param headers request headers
+	 * @return the credentials hash or {@code null} if the request has no credentials
+	 */
+	private static String credentialsHash(final HttpHeaders headers) {
+		List<String> authorization = headers.get(HttpHeaders.AUTHORIZATION);
+		List<String> cookies = headers.get(HttpHeaders.COOKIE);
+		if (ObjectUtils.isEmpty(authorization) && ObjectUtils.isEmpty(cookies)) {
+			return null;
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			update(digest, HttpHeaders.AUTHORIZATION, authorization);
+			update(digest, HttpHeaders.COOKIE, cookies);
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	/**
+	 * Updates the digest with the given header values.
+	 *
+	 * @param digest the message digest
+	 * @param name the header name
+	 * @param values the header values, can be {@code null}
+	 */
+	private static void update(final MessageDigest digest, final String name, final List<String> values) {
+		if (null == values) {
+			return;
+		}
+		for (String value : values) {
+			digest.update((name + ": " + value + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Adds the conditional headers to revalidate the given cached response.
+	 *
+	 * @param requestHeaders request headers
+	 * @param cached cached response
+	 */
+	private static void addConditionalHeaders(final HttpHeaders requestHeaders, final CachedResponse cached) {
+		String eTag = cached.getETag();
+		if (null != eTag) {
+			requestHeaders.set(HttpHeaders.IF_NONE_MATCH, eTag);
+		}
+		long lastModified = cached.getLastModified();
+		if (lastModified > 0) {
+			requestHeaders.setIfModifiedSince(lastModified);
+		}
+	}
+
+	/**
+	 * Stores the response if it is cacheable. The body is read only up to the maximum entry size, larger bodies are
+	 * returned as they are without being stored.
+	 *
+	 * @param key cache key
+	 * @param requestHeaders request headers
+	 * @param response HTTP response
+	 * @param now current time in milliseconds since epoch
+	 * @return the response to return to the caller
+	 * @throws IOException on error
+	 */
+	private ClientHttpResponse store(final String key, final HttpHeaders requestHeaders, final ClientHttpResponse response,
+			final long now) throws IOException {
+		HttpHeaders responseHeaders = response.getHeaders();
+		CacheDirectives directives = CacheDirectives.of(responseHeaders);
+		if (!CACHEABLE_STATUS_CODES.contains(response.getStatusCode().value())
+				|| directives.isNoStore()
+				|| responseHeaders.getVary().contains("*")) {
+			responseCache.remove(key);
+			return response;
+		}
+		long contentLength = responseHeaders.getContentLength();
+		long maxEntryBytes = responseCache.getMaxEntryBytes();
+		if (contentLength > maxEntryBytes) {
+			return response;
+		}
+		int limit = (int) Math.min(maxEntryBytes, Integer.MAX_VALUE - 1L);
+		byte[] bytes = response.getBody().readNBytes(limit + 1);
+		if (bytes.length > limit) {
+			LOGGER.debug("Response not cached, body larger than {} bytes: {}", limit, key);
+			return new PrefetchedClientHttpResponse(response, bytes);
+		}
+		CachedResponse cached = CachedResponse.of(response.getStatusCode().value(), response.getStatusText(), responseHeaders, bytes,
+				requestHeaders, now);
+		response.close();
+		if (cached.isFresh(now) || cached.hasValidators()) {
+			responseCache.put(key, cached);
+		}
+		return cached.toClientHttpResponse();
+	}
+
+	/**
+	 * Returns the response cache.
+	 *
+	 * @return the response cache
+	 */
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * Client HTTP response that returns the already read bytes followed by the rest of the original body.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class PrefetchedClientHttpResponse implements ClientHttpResponse {
+
+		/**
+		 * The original response.
+		 */
+		private final ClientHttpResponse response;
+
+		/**
+		 * The body bytes already read from the original response.
+		 */
+		private final byte[] prefetched;
+
+		/**
+		 * The body stream, created on the first {@link #getBody()} call.
+		 */
+		private InputStream body;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param response the original response
+		 * @param prefetched the body bytes already read from the original response
+		 */
+		PrefetchedClientHttpResponse(final ClientHttpResponse response, final byte[] prefetched) {
+			this.response = response;
+			this.prefetched = prefetched;
+		}
+
+		/**
+		 * @see ClientHttpResponse#getStatusCode()
+		 */
+		@Override
+		public HttpStatusCode getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+		/**
+		 * @see ClientHttpResponse#getStatusText()
+		 */
+		@Override
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+		/**
+		 * @see ClientHttpResponse#getHeaders()
+		 */
+		@Override
+		public HttpHeaders getHeaders() {
+			return response.getHeaders();
+		}
+
+		/**
+		 * @see ClientHttpResponse#getBody()
+		 */
+		@Override
+		public InputStream getBody() throws IOException {
+			if (null == body) {
+				body = new SequenceInputStream(new ByteArrayInputStream(prefetched), response.getBody());
+			}
+			return body;
+		}
+
+		/**
+		 * @see ClientHttpResponse#close()
+		 */
+		@Override
+		public void close() {
+			response.close();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package org.apiphany.spring.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Input stream over the body of a {@link ClientHttpResponse} which also closes the response (and thus releases the
+ * underlying connection) when the stream is closed.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ClientHttpResponseInputStream extends FilterInputStream {
+
+	/**
+	 * The response owning the body stream.
+	 */
+	private final ClientHttpResponse response;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param response client HTTP response
+	 * @throws IOException when the response body cannot be read
+	 */
+	private ClientHttpResponseInputStream(final ClientHttpResponse response) throws IOException {
+		super(response.getBody());
+		this.response = response;
+	}
+
+	/**
+	 * Returns a new input stream over the given response body.
+	 *
+	 * @param response client HTTP response
+	 * @return a new input stream
+	 * @throws IOException when the response body cannot be read
+	 */
+	public static InputStream of(final ClientHttpResponse response) throws IOException {
+		return new ClientHttpResponseInputStream(response);
+	}
+
+	/**
+	 * Closes the body stream and the response.
+	 *
+	 * @see #close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			response.close();
+		}
+	}
+}
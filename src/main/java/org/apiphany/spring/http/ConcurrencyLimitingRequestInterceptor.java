@@ -0,0 +1,175 @@
+package org.apiphany.spring.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apiphany.client.http.ConcurrencyLimitExceededException;
+import org.apiphany.client.http.ConcurrencyLimiter;
+import org.apiphany.client.http.RequestHedger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Request interceptor which applies the {@link ConcurrencyLimiter} of the request host.
+ * <p>
+ * The interceptor runs after the response cache so only the exchanges that go over the connection take a permit and
+ * feed round trip times to the limiter. The round trip time is taken when the response status is received so the time
+ * the caller spends reading the body is not part of it, but the permit is held until the response is closed, that is
+ * until the response body was consumed. The outcome is decided by the response status: {@code 5xx} and {@code 429}
+ * responses and I/O errors are dropped exchanges, the other error responses and the exchanges cancelled by the
+ * {@link RequestHedger} are ignored and the rest are round trip time samples.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ConcurrencyLimitingRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	/**
+	 * The concurrency limiter.
+	 */
+	private final ConcurrencyLimiter concurrencyLimiter;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param concurrencyLimiter the concurrency limiter
+	 */
+	public ConcurrencyLimitingRequestInterceptor(final ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * Executes the request within the concurrency limit of the request host.
+	 *
+	 * @param httpRequest HTTP request
+	 * @param body request body
+	 * @param exec client request execution object
+	 * @return HTTP response
+	 * @throws IOException on error
+	 * @throws ConcurrencyLimitExceededException if the host is at its limit
+	 */
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest httpRequest, final byte[] body, final ClientHttpRequestExecution exec)
+			throws IOException {
+		ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(ConcurrencyLimiter.host(httpRequest.getURI()));
+		ClientHttpResponse response;
+		int statusCode;
+		try {
+			response = exec.execute(httpRequest, body);
+			statusCode = response.getStatusCode().value();
+			permit.received();
+		} catch (IOException e) {
+			if (RequestHedger.isCancelled()) {
+				permit.ignored();
+			} else {
+				permit.dropped();
+			}
+			throw e;
+		} catch (RuntimeException | Error e) {
+			permit.ignored();
+			throw e;
+		}
+		return new LimitedClientHttpResponse(response, permit, statusCode);
+	}
+
+	/**
+	 * Returns the concurrency limiter.
+	 *
+	 * @return the concurrency limiter
+	 */
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
+	/**
+	 * Response which completes the permit with the exchange outcome when it is closed, the round trip time was already
+	 * recorded when the response status was received.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class LimitedClientHttpResponse implements ClientHttpResponse {
+
+		/**
+		 * The original response.
+		 */
+		private final ClientHttpResponse response;
+
+		/**
+		 * The permit of the exchange.
+		 */
+		private final ConcurrencyLimiter.Permit permit;
+
+		/**
+		 * The response status code.
+		 */
+		private final int statusCode;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param response the original response
+		 * @param permit the permit of the exchange
+		 * @param statusCode the response status code
+		 */
+		LimitedClientHttpResponse(final ClientHttpResponse response, final ConcurrencyLimiter.Permit permit, final int statusCode) {
+			this.response = response;
+			this.permit = permit;
+			this.statusCode = statusCode;
+		}
+
+		/**
+		 * @see ClientHttpResponse#getStatusCode()
+		 */
+		@Override
+		public HttpStatusCode getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+		/**
+		 * @see ClientHttpResponse#getStatusText()
+		 */
+		@Override
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+		/**
+		 * @see ClientHttpResponse#getHeaders()
+		 */
+		@Override
+		public HttpHeaders getHeaders() {
+			return response.getHeaders();
+		}
+
+		/**
+		 * @see ClientHttpResponse#getBody()
+		 */
+		@Override
+		public InputStream getBody() throws IOException {
+			return response.getBody();
+		}
+
+		/**
+		 * Closes the original response and completes the permit.
+		 *
+		 * @see ClientHttpResponse#close()
+		 */
+		@Override
+		public void close() {
+			try {
+				response.close();
+			} finally {
+				if (ConcurrencyLimiter.isDropped(statusCode)) {
+					permit.dropped();
+				} else if (statusCode >= 400) {
+					permit.ignored();
+				} else {
+					permit.success();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package org.apiphany.spring.http;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Request interceptor which negotiates the {@link BinaryFormats} with every host: it rewrites the {@code Accept}
+ * header to prefer the binary formats the host is known or expected to support and remembers the format each host
+ * answers with.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ContentNegotiatingRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	/**
+	 * The binary formats.
+	 */
+	private final BinaryFormats binaryFormats;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param binaryFormats the binary formats
+	 */
+	public ContentNegotiatingRequestInterceptor(final BinaryFormats binaryFormats) {
+		this.binaryFormats = binaryFormats;
+	}
+
+	/**
+	 * Rewrites the {@code Accept} header, executes the request and remembers the host format from the response.
+	 *
+	 * @param httpRequest HTTP request
+	 * @param body request body
+	 * @param exec client request execution object
+	 * @return HTTP response
+	 * @throws IOException on error
+	 */
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest httpRequest, final byte[] body, final ClientHttpRequestExecution exec)
+			throws IOException {
+		URI uri = httpRequest.getURI();
+		HttpHeaders headers = httpRequest.getHeaders();
+		String accept = headers.getFirst(HttpHeaders.ACCEPT);
+		String negotiatedAccept = binaryFormats.getAcceptHeader(uri, accept);
+		boolean binaryAccepted = false;
+		if (null != negotiatedAccept && !negotiatedAccept.equals(accept)) {
+			headers.set(HttpHeaders.ACCEPT, negotiatedAccept);
+			binaryAccepted = !binaryFormats.isJsonOnly(uri);
+		}
+		ClientHttpResponse response = exec.execute(httpRequest, body);
+		MediaType responseContentType;
+		try {
+			responseContentType = response.getHeaders().getContentType();
+		} catch (IllegalArgumentException e) {
+			responseContentType = null;
+		}
+		binaryFormats.update(uri, binaryAccepted, headers.getContentType(), response.getStatusCode().value(), responseContentType);
+		return response;
+	}
+
+	/**
+	 * Returns the binary formats.
+	 *
+	 * @return the binary formats
+	 */
+	public BinaryFormats getBinaryFormats() {
+		return binaryFormats;
+	}
+}
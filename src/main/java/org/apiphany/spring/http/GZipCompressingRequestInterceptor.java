@@ -3,7 +3,8 @@ package org.apiphany.spring.http;
 import java.io.IOException;
 
 import org.apiphany.http.ContentEncoding;
-import org.apiphany.io.gzip.GZip;
+import org.apiphany.spring.io.gzip.CompressionPolicy;
+import org.apiphany.spring.io.gzip.GZipCompressor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
@@ -15,6 +16,9 @@ import org.springframework.util.ObjectUtils;
 
 /**
  * GZIP compression request interceptor.
+ * <p>
+ * The bodies are compressed only if the {@link CompressionPolicy} of the compressor allows it and the compressed body
+ * is sent only if it is smaller than the original one.
  *
  * @author Radu Sebastian LAZIN
  */
@@ -31,10 +35,24 @@ public class GZipCompressingRequestInterceptor implements ClientHttpRequestInter
 	public static final String SKIP_COMPRESSION = "Skip-Compression";
 
 	/**
-	 * Default constructor.
+	 * The compressor.
+	 */
+	private final GZipCompressor compressor;
+
+	/**
+	 * Default constructor, uses the default compression policy.
 	 */
 	public GZipCompressingRequestInterceptor() {
-		// empty
+		this(GZipCompressor.defaults());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param compressor the compressor to use
+	 */
+	public GZipCompressingRequestInterceptor(final GZipCompressor compressor) {
+		this.compressor = compressor;
 	}
 
 	/**
@@ -52,32 +70,50 @@ public class GZipCompressingRequestInterceptor implements ClientHttpRequestInter
 		HttpHeaders httpHeaders = httpRequest.getHeaders();
 		byte[] bytes = body;
 
-		if (!ObjectUtils.isEmpty(bytes)) {
-			if (!httpHeaders.containsKey(SKIP_COMPRESSION)) {
-				LOGGER.debug("Compressing request: URI: {}", httpRequest.getURI());
-				bytes = compress(bytes, httpHeaders);
-				LOGGER.debug("Request compressed, sending...");
-			} else {
-				LOGGER.debug("Compression skipped via {} custom HTTP header", SKIP_COMPRESSION);
-			}
-		} else {
+		if (ObjectUtils.isEmpty(bytes)) {
 			LOGGER.debug("Compression skipped because the body was empty");
+		} else if (httpHeaders.containsKey(SKIP_COMPRESSION)) {
+			LOGGER.debug("Compression skipped via {} custom HTTP header", SKIP_COMPRESSION);
+			compressor.getStatistics().recordSkipped();
+		} else if (httpHeaders.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+			LOGGER.debug("Compression skipped because the body is already encoded");
+			compressor.getStatistics().recordSkipped();
+		} else if (!compressor.getPolicy().shouldCompress(bytes.length, httpHeaders.getContentType())) {
+			LOGGER.debug("Compression skipped by the compression policy");
+			compressor.getStatistics().recordSkipped();
+		} else {
+			LOGGER.debug("Compressing request: URI: {}", httpRequest.getURI());
+			bytes = compress(bytes, httpHeaders);
+			LOGGER.debug("Request compressed, sending...");
 		}
 		return exec.execute(httpRequest, bytes);
 	}
 
 	/**
-	 * Compresses the given bytes and adds the corresponding compression headers to the request.
+	 * Compresses the given bytes and adds the corresponding compression headers to the request. If the compressed bytes
+	 * are not smaller than the original ones the original bytes are returned and no headers are added.
 	 *
 	 * @param body bytes to compress
 	 * @param httpHeaders the HTTP headers of the request
 	 * @return compressed byte array
-	 * @throws IOException when compression fails
 	 */
-	private static byte[] compress(final byte[] body, final HttpHeaders httpHeaders) throws IOException {
-		byte[] bytes = GZip.compress(body);
+	private byte[] compress(final byte[] body, final HttpHeaders httpHeaders) {
+		byte[] bytes = compressor.compressIfSmaller(body);
+		if (bytes == body) {
+			LOGGER.debug("Compressed body is not smaller than the original, sending the original body");
+			return body;
+		}
 		httpHeaders.add(HttpHeaders.CONTENT_ENCODING, ContentEncoding.GZIP.value());
 		httpHeaders.set(HttpHeaders.CONTENT_LENGTH, Integer.toString(bytes.length));
 		return bytes;
 	}
+
+	/**
+	 * Returns the compressor.
+	 *
+	 * @return the compressor
+	 */
+	public GZipCompressor getCompressor() {
+		return compressor;
+	}
 }
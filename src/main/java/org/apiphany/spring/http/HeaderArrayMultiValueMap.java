@@ -0,0 +1,298 @@
+package org.apiphany.spring.http;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.apache.hc.core5.http.Header;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.MultiValueMapAdapter;
+
+/**
+ * Lazy {@link MultiValueMap} view over an array of Apache {@link Header}s, the header names are compared ignoring case.
+ * <p>
+ * Single header lookups ({@link #getFirst(Object)}, {@link #get(Object)} and {@link #containsKey(Object)}) scan the
+ * array directly, the headers are converted to a map only when the whole map is needed (iteration, size, equality) or
+ * when the view is modified. Response headers are usually only looked up by name if at all, so most of the time no map
+ * is ever created.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class HeaderArrayMultiValueMap implements MultiValueMap<String, String> {
+
+	/**
+	 * Empty headers array.
+	 */
+	private static final Header[] NO_HEADERS = new Header[0];
+
+	/**
+	 * The source headers.
+	 */
+	private final Header[] headers;
+
+	/**
+	 * The headers converted to a map, {@code null} until the whole map is needed.
+	 */
+	private MultiValueMap<String, String> map;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param headers the source headers
+	 */
+	private HeaderArrayMultiValueMap(final Header[] headers) {
+		this.headers = null != headers ? headers : NO_HEADERS;
+	}
+
+	/**
+	 * Returns a new view over the given headers, the array must not be modified after this call.
+	 *
+	 * @param headers the source headers, can be {@code null}
+	 * @return a new view
+	 */
+	public static HeaderArrayMultiValueMap of(final Header[] headers) {
+		return new HeaderArrayMultiValueMap(headers);
+	}
+
+	/**
+	 * Returns true if the headers were converted to a map.
+	 *
+	 * @return true if the headers were converted to a map
+	 */
+	public boolean isMaterialized() {
+		return null != map;
+	}
+
+	/**
+	 * Returns the headers as a map, converting them on the first call.
+	 *
+	 * @return the headers map
+	 */
+	private MultiValueMap<String, String> map() {
+		if (null == map) {
+			MultiValueMap<String, String> target = new MultiValueMapAdapter<>(new LinkedCaseInsensitiveMap<>(headers.length, Locale.ROOT));
+			for (Header header : headers) {
+				target.add(header.getName(), header.getValue());
+			}
+			map = target;
+		}
+		return map;
+	}
+
+	/**
+	 * @see MultiValueMap#getFirst(Object)
+	 */
+	@Override
+	public String getFirst(final String key) {
+		if (null != map) {
+			return map.getFirst(key);
+		}
+		for (Header header : headers) {
+			if (header.getName().equalsIgnoreCase(key)) {
+				return header.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @see MultiValueMap#add(Object, Object)
+	 */
+	@Override
+	public void add(final String key, final String value) {
+		map().add(key, value);
+	}
+
+	/**
+	 * @see MultiValueMap#addAll(Object, List)
+	 */
+	@Override
+	public void addAll(final String key, final List<? extends String> values) {
+		map().addAll(key, values);
+	}
+
+	/**
+	 * @see MultiValueMap#addAll(MultiValueMap)
+	 */
+	@Override
+	public void addAll(final MultiValueMap<String, String> values) {
+		map().addAll(values);
+	}
+
+	/**
+	 * @see MultiValueMap#set(Object, Object)
+	 */
+	@Override
+	public void set(final String key, final String value) {
+		map().set(key, value);
+	}
+
+	/**
+	 * @see MultiValueMap#setAll(Map)
+	 */
+	@Override
+	public void setAll(final Map<String, String> values) {
+		map().setAll(values);
+	}
+
+	/**
+	 * @see MultiValueMap#toSingleValueMap()
+	 */
+	@Override
+	public Map<String, String> toSingleValueMap() {
+		return map().toSingleValueMap();
+	}
+
+	/**
+	 * @see Map#size()
+	 */
+	@Override
+	public int size() {
+		return map().size();
+	}
+
+	/**
+	 * @see Map#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return null != map ? map.isEmpty() : headers.length == 0;
+	}
+
+	/**
+	 * @see Map#containsKey(Object)
+	 */
+	@Override
+	public boolean containsKey(final Object key) {
+		if (null != map) {
+			return map.containsKey(key);
+		}
+		return key instanceof String name && null != getFirst(name);
+	}
+
+	/**
+	 * @see Map#containsValue(Object)
+	 */
+	@Override
+	public boolean containsValue(final Object value) {
+		return map().containsValue(value);
+	}
+
+	/**
+	 * @see Map#get(Object)
+	 */
+	@Override
+	public List<String> get(final Object key) {
+		if (null != map) {
+			return map.get(key);
+		}
+		if (!(key instanceof String name)) {
+			return null;
+		}
+		List<String> values = null;
+		for (Header header : headers) {
+			if (header.getName().equalsIgnoreCase(name)) {
+				if (null == values) {
+					values = new ArrayList<>(1);
+				}
+				values.add(header.getValue());
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @see Map#put(Object, Object)
+	 */
+	@Override
+	public List<String> put(final String key, final List<String> value) {
+		return map().put(key, value);
+	}
+
+	/**
+	 * @see Map#remove(Object)
+	 */
+	@Override
+	public List<String> remove(final Object key) {
+		return map().remove(key);
+	}
+
+	/**
+	 * @see Map#putAll(Map)
+	 */
+	@Override
+	public void putAll(final Map<? extends String, ? extends List<String>> m) {
+		map().putAll(m);
+	}
+
+	/**
+	 * @see Map#clear()
+	 */
+	@Override
+	public void clear() {
+		map().clear();
+	}
+
+	/**
+	 * @see Map#forEach(BiConsumer)
+	 */
+	@Override
+	public void forEach(final BiConsumer<? super String, ? super List<String>> action) {
+		map().forEach(action);
+	}
+
+	/**
+	 * @see Map#keySet()
+	 */
+	@Override
+	public Set<String> keySet() {
+		return map().keySet();
+	}
+
+	/**
+	 * @see Map#values()
+	 */
+	@Override
+	public Collection<List<String>> values() {
+		return map().values();
+	}
+
+	/**
+	 * @see Map#entrySet()
+	 */
+	@Override
+	public Set<Entry<String, List<String>>> entrySet() {
+		return map().entrySet();
+	}
+
+	/**
+	 * @see Object#equals(Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		return this == obj || map().equals(obj);
+	}
+
+	/**
+	 * @see Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return map().hashCode();
+	}
+
+	/**
+	 * @see Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return map().toString();
+	}
+}
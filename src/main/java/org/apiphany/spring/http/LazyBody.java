@@ -0,0 +1,197 @@
+package org.apiphany.spring.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.MediaType;
+
+/**
+ * Response body which is deserialized only when it is first accessed.
+ * <p>
+ * Using {@code LazyBody<T>} as the response type of a request, for example with a generic response type of
+ * {@code LazyBody<User>}, makes the exchange client read the raw response bytes, which releases the connection, and
+ * build the response without deserializing them. The body is deserialized on the first {@link #get()} call with the
+ * converter and object reader cached for the element type, and the result is kept for the next calls. A body which is
+ * never read costs only the byte array, so callers that look only at the status or headers (existence checks, probes,
+ * fire-and-forget requests) pay no deserialization CPU or garbage.
+ * <p>
+ * The body is thread safe, it is deserialized at most once even when accessed concurrently.
+ *
+ * @param <T> the deserialized body type
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class LazyBody<T> {
+
+	/**
+	 * Empty body bytes.
+	 */
+	private static final byte[] EMPTY = new byte[0];
+
+	/**
+	 * The raw body bytes.
+	 */
+	private final byte[] bytes;
+
+	/**
+	 * The response headers.
+	 */
+	private final HttpHeaders headers;
+
+	/**
+	 * The reader deserializing the body, released after the body was read.
+	 */
+	private Reader<T> reader;
+
+	/**
+	 * The lock guarding the deserialization.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * The deserialized body.
+	 */
+	private T value;
+
+	/**
+	 * True if the body was deserialized.
+	 */
+	private volatile boolean read;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bytes the raw body bytes, can be {@code null} if the response has no body
+	 * @param headers the response headers
+	 * @param reader the reader deserializing the body
+	 */
+	LazyBody(final byte[] bytes, final HttpHeaders headers, final Reader<T> reader) {
+		this.bytes = null != bytes ? bytes : EMPTY;
+		this.headers = headers;
+		this.reader = reader;
+	}
+
+	/**
+	 * Returns the element type of the given response type if it is a {@link LazyBody} type.
+	 *
+	 * @param responseType response type
+	 * @return the element type, {@code null} if the response type is not a lazy body
+	 */
+	public static Type elementType(final Type responseType) {
+		if (LazyBody.class == responseType) {
+			return Object.class;
+		}
+		ResolvableType resolvableType = ResolvableType.forType(responseType);
+		if (LazyBody.class != resolvableType.resolve()) {
+			return null;
+		}
+		ResolvableType elementType = resolvableType.getGeneric(0);
+		return ResolvableType.NONE == elementType ? Object.class : elementType.getType();
+	}
+
+	/**
+	 * Returns the deserialized body, deserializing it on the first call.
+	 *
+	 * @return the deserialized body, {@code null} if the response has no body
+	 */
+	public T get() {
+		if (read) {
+			return value;
+		}
+		lock.lock();
+		try {
+			if (!read) {
+				value = 0 == bytes.length ? null : reader.read(inputMessage());
+				reader = null;
+				read = true;
+			}
+			return value;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read the response body", e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the raw body bytes, the returned array must not be changed.
+	 *
+	 * @return the raw body bytes, empty if the response has no body
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the body content type.
+	 *
+	 * @return the content type, {@code null} if the response has none
+	 */
+	public MediaType getContentType() {
+		return headers.getContentType();
+	}
+
+	/**
+	 * Returns true if the response has no body.
+	 *
+	 * @return true if the response has no body
+	 */
+	public boolean isEmpty() {
+		return 0 == bytes.length;
+	}
+
+	/**
+	 * Returns true if the body was already deserialized.
+	 *
+	 * @return true if the body was deserialized
+	 */
+	public boolean isRead() {
+		return read;
+	}
+
+	/**
+	 * Returns an input message over the raw body bytes.
+	 *
+	 * @return an input message
+	 */
+	private HttpInputMessage inputMessage() {
+		return new HttpInputMessage() {
+			@Override
+			public InputStream getBody() {
+				return new ByteArrayInputStream(bytes);
+			}
+
+			@Override
+			public HttpHeaders getHeaders() {
+				return headers;
+			}
+		};
+	}
+
+	/**
+	 * Deserializes a response body.
+	 *
+	 * @param <T> the deserialized body type
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	@FunctionalInterface
+	interface Reader<T> {
+
+		/**
+		 * Reads the body of the given input message.
+		 *
+		 * @param inputMessage the input message
+		 * @return the deserialized body
+		 * @throws IOException on I/O error
+		 */
+		T read(HttpInputMessage inputMessage) throws IOException;
+	}
+}
@@ -0,0 +1,116 @@
+package org.apiphany.spring.http;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apiphany.client.http.LoadBalancer;
+import org.apiphany.client.http.RequestHedger;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+
+/**
+ * Request interceptor which sends the requests to a load balanced service to an endpoint selected by the
+ * {@link LoadBalancer}.
+ * <p>
+ * The interceptor must run after the response cache, the content negotiation and the metrics so that they all see the
+ * service URI: the cached responses and their validators are shared by all the endpoints and the metrics are recorded
+ * per service. It runs before the concurrency limiter so the limits are kept per endpoint. The outcome of the exchange
+ * is recorded when the response status is received: {@code 5xx} responses and I/O errors are failures of the endpoint,
+ * except for the exchanges cancelled by the {@link RequestHedger}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class LoadBalancingRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	/**
+	 * The load balancer.
+	 */
+	private final LoadBalancer loadBalancer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param loadBalancer the load balancer
+	 */
+	public LoadBalancingRequestInterceptor(final LoadBalancer loadBalancer) {
+		this.loadBalancer = loadBalancer;
+	}
+
+	/**
+	 * Executes the request on an endpoint of the service of the request host, or as it is when the host is not a load
+	 * balanced service.
+	 *
+	 * @param httpRequest HTTP request
+	 * @param body request body
+	 * @param exec client request execution object
+	 * @return HTTP response
+	 * @throws IOException on error
+	 */
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest httpRequest, final byte[] body, final ClientHttpRequestExecution exec)
+			throws IOException {
+		LoadBalancer.Choice choice = loadBalancer.choose(httpRequest.getURI());
+		if (null == choice) {
+			return exec.execute(httpRequest, body);
+		}
+		try {
+			ClientHttpResponse response = exec.execute(new EndpointHttpRequest(httpRequest, choice.getUri()), body);
+			choice.complete(response.getStatusCode().value());
+			return response;
+		} catch (IOException e) {
+			if (RequestHedger.isCancelled()) {
+				choice.ignored();
+			} else {
+				choice.failure();
+			}
+			throw e;
+		} catch (RuntimeException | Error e) {
+			choice.ignored();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the load balancer.
+	 *
+	 * @return the load balancer
+	 */
+	public LoadBalancer getLoadBalancer() {
+		return loadBalancer;
+	}
+
+	/**
+	 * Request sent to the selected endpoint.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class EndpointHttpRequest extends HttpRequestWrapper {
+
+		/**
+		 * The request URI on the endpoint.
+		 */
+		private final URI uri;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param request the service request
+		 * @param uri the request URI on the endpoint
+		 */
+		EndpointHttpRequest(final HttpRequest request, final URI uri) {
+			super(request);
+			this.uri = uri;
+		}
+
+		/**
+		 * @see HttpRequestWrapper#getURI()
+		 */
+		@Override
+		public URI getURI() {
+			return uri;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package org.apiphany.spring.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apiphany.client.http.ConcurrencyLimitExceededException;
+import org.apiphany.spring.meters.ExchangeMetrics;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Request interceptor which records the per-endpoint {@link ExchangeMetrics}.
+ * <p>
+ * The exchange is timed until the response is closed, that is until the response body was consumed by the message
+ * converters, and the response body size is the number of bytes read from the body stream. The interceptor runs after
+ * the response cache and the GZIP compression, so it records the compressed request bodies and no cached responses, and
+ * before the load balancer so the metrics are recorded per service URI, not per endpoint. Since it also runs before the
+ * concurrency limiter, the exchanges rejected by the limiter are recorded with the {@link ExchangeMetrics#REJECTED}
+ * status.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class MetricsRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	/**
+	 * The exchange metrics.
+	 */
+	private final ExchangeMetrics exchangeMetrics;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param exchangeMetrics the exchange metrics
+	 */
+	public MetricsRequestInterceptor(final ExchangeMetrics exchangeMetrics) {
+		this.exchangeMetrics = exchangeMetrics;
+	}
+
+	/**
+	 * Executes the request and records its metrics.
+	 *
+	 * @param httpRequest HTTP request
+	 * @param body request body
+	 * @param exec client request execution object
+	 * @return HTTP response
+	 * @throws IOException on error
+	 */
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest httpRequest, final byte[] body, final ClientHttpRequestExecution exec)
+			throws IOException {
+		ExchangeMetrics.Endpoint endpoint = exchangeMetrics.endpoint(httpRequest.getMethod().name(), httpRequest.getURI());
+		if (body.length > 0) {
+			endpoint.recordRequestSize(httpRequest.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), body.length);
+		}
+		long start = System.nanoTime();
+		try {
+			return new MeteredClientHttpResponse(exec.execute(httpRequest, body), endpoint, start);
+		} catch (IOException e) {
+			endpoint.recordIoError(System.nanoTime() - start);
+			throw e;
+		} catch (ConcurrencyLimitExceededException e) {
+			endpoint.recordRejected(System.nanoTime() - start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the exchange metrics.
+	 *
+	 * @return the exchange metrics
+	 */
+	public ExchangeMetrics getExchangeMetrics() {
+		return exchangeMetrics;
+	}
+
+	/**
+	 * Response which counts the body bytes read and records the exchange when it is closed.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class MeteredClientHttpResponse implements ClientHttpResponse {
+
+		/**
+		 * The original response.
+		 */
+		private final ClientHttpResponse response;
+
+		/**
+		 * The endpoint meters.
+		 */
+		private final ExchangeMetrics.Endpoint endpoint;
+
+		/**
+		 * The exchange start time in nanoseconds.
+		 */
+		private final long start;
+
+		/**
+		 * The counting body stream, created on the first {@link #getBody()} call.
+		 */
+		private CountingInputStream body;
+
+		/**
+		 * True if the exchange was recorded.
+		 */
+		private boolean recorded;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param response the original response
+		 * @param endpoint the endpoint meters
+		 * @param start the exchange start time in nanoseconds
+		 */
+		MeteredClientHttpResponse(final ClientHttpResponse response, final ExchangeMetrics.Endpoint endpoint, final long start) {
+			this.response = response;
+			this.endpoint = endpoint;
+			this.start = start;
+		}
+
+		/**
+		 * @see ClientHttpResponse#getStatusCode()
+		 */
+		@Override
+		public HttpStatusCode getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+		/**
+		 * @see ClientHttpResponse#getStatusText()
+		 */
+		@Override
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+		/**
+		 * @see ClientHttpResponse#getHeaders()
+		 */
+		@Override
+		public HttpHeaders getHeaders() {
+			return response.getHeaders();
+		}
+
+		/**
+		 * @see ClientHttpResponse#getBody()
+		 */
+		@Override
+		public InputStream getBody() throws IOException {
+			if (null == body) {
+				body = new CountingInputStream(response.getBody());
+			}
+			return body;
+		}
+
+		/**
+		 * Closes the original response and records the exchange.
+		 *
+		 * @see ClientHttpResponse#close()
+		 */
+		@Override
+		public void close() {
+			try {
+				response.close();
+			} finally {
+				record();
+			}
+		}
+
+		/**
+		 * Records the exchange once.
+		 */
+		private void record() {
+			if (recorded) {
+				return;
+			}
+			recorded = true;
+			long duration = System.nanoTime() - start;
+			int statusCode;
+			try {
+				statusCode = response.getStatusCode().value();
+			} catch (IOException e) {
+				endpoint.recordIoError(duration);
+				return;
+			}
+			endpoint.recordExchange(statusCode, duration);
+			if (null != body && body.count > 0) {
+				endpoint.recordResponseSize(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), body.count);
+			}
+		}
+	}
+
+	/**
+	 * Input stream which counts the bytes read.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+
+		/**
+		 * Number of bytes read.
+		 */
+		private long count;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param in the underlying input stream
+		 */
+		CountingInputStream(final InputStream in) {
+			super(in);
+		}
+
+		/**
+		 * @see FilterInputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				++count;
+			}
+			return b;
+		}
+
+		/**
+		 * @see FilterInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+
+		/**
+		 * @see FilterInputStream#skip(long)
+		 */
+		@Override
+		public long skip(final long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,517 @@
+package org.apiphany.spring.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.morphix.lang.JavaObjects;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.SmartHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
+
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Cache of the message converters resolved for response types.
+ * <p>
+ * The rest template resolves the response type and walks all message converters with {@code canRead} checks on every
+ * exchange, once to compute the {@code Accept} header and once more to find the converter for the response content
+ * type. This cache remembers per response type the {@code Accept} header value and per response type and content type
+ * the converter to use. When the resolved converter is a Jackson converter the {@link ObjectReader} for the response
+ * type is also cached and used directly.
+ * <p>
+ * The converters are the ones given when the cache is created, changes to the rest template converters after that are
+ * not seen by the cache.
+ * <p>
+ * Response types of {@link LazyBody} are read as raw bytes and deserialized with the cached converter of the element
+ * type only when the body is first accessed.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ResponseConverterCache {
+
+	/**
+	 * The message converters.
+	 */
+	private final List<HttpMessageConverter<?>> messageConverters;
+
+	/**
+	 * The cache entries by response type.
+	 */
+	private final Map<Type, ResponseType> responseTypes = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param messageConverters the message converters
+	 */
+	private ResponseConverterCache(final List<HttpMessageConverter<?>> messageConverters) {
+		this.messageConverters = List.copyOf(messageConverters);
+	}
+
+	/**
+	 * Returns a new cache for the given message converters.
+	 *
+	 * @param messageConverters the message converters
+	 * @return a new cache
+	 */
+	public static ResponseConverterCache of(final List<HttpMessageConverter<?>> messageConverters) {
+		return new ResponseConverterCache(messageConverters);
+	}
+
+	/**
+	 * Returns the {@code Accept} header value for the given response type, {@code null} if no converter can read the
+	 * response type.
+	 *
+	 * @param responseType response type
+	 * @return the accept header value
+	 */
+	public String getAcceptHeader(final Type responseType) {
+		return getResponseType(responseType).acceptHeader;
+	}
+
+	/**
+	 * Returns a response extractor that reads the response into a {@link ResponseEntity} of the given type using the
+	 * cached converters.
+	 *
+	 * @param <T> response body type
+	 *
+	 * @param responseType response type
+	 * @return a response extractor
+	 */
+	public <T> ResponseExtractor<ResponseEntity<T>> responseEntityExtractor(final Type responseType) {
+		ResponseType entry = getResponseType(responseType);
+		return response -> {
+			T body = entry.read(response);
+			return ResponseEntity.status(response.getStatusCode())
+					.headers(response.getHeaders())
+					.body(body);
+		};
+	}
+
+	/**
+	 * Returns a lazy body over the given raw response body bytes, deserialized with the cached converter of the element
+	 * type on first access. This is used by clients which read the raw bytes themselves.
+	 *
+	 * @param <T> the deserialized body type
+	 *
+	 * @param elementType the deserialized body type
+	 * @param headers the response headers
+	 * @param bytes the raw body bytes, can be {@code null} if the response has no body
+	 * @return a lazy body
+	 */
+	public <T> LazyBody<T> lazyBody(final Type elementType, final HttpHeaders headers, final byte[] bytes) {
+		return new LazyBody<>(bytes, headers, getResponseType(elementType)::readBody);
+	}
+
+	/**
+	 * Returns the number of cached response types.
+	 *
+	 * @return the number of cached response types
+	 */
+	public int size() {
+		return responseTypes.size();
+	}
+
+	/**
+	 * Returns the cache entry for the given response type.
+	 *
+	 * @param responseType response type
+	 * @return the cache entry
+	 */
+	private ResponseType getResponseType(final Type responseType) {
+		ResponseType entry = responseTypes.get(responseType);
+		if (null == entry) {
+			// not computeIfAbsent since the entry of a lazy body type looks up the entry of its element type
+			entry = new ResponseType(responseType);
+			ResponseType existing = responseTypes.putIfAbsent(responseType, entry);
+			if (null != existing) {
+				entry = existing;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns true if the converter can read the given type with the given content type.
+	 *
+	 * @param converter message converter
+	 * @param type response type
+	 * @param resolvableType resolvable response type
+	 * @param responseClass raw response class, can be {@code null}
+	 * @param contentType content type, can be {@code null}
+	 * @return true if the converter can read the given type
+	 */
+	private static boolean canRead(final HttpMessageConverter<?> converter, final Type type, final ResolvableType resolvableType,
+			final Class<?> responseClass, final MediaType contentType) {
+		if (converter instanceof GenericHttpMessageConverter<?> genericConverter) {
+			if (genericConverter.canRead(type, null, contentType)) {
+				return true;
+			}
+		} else if (converter instanceof SmartHttpMessageConverter<?> smartConverter
+				&& smartConverter.canRead(resolvableType, contentType)) {
+			return true;
+		}
+		return null != responseClass && converter.canRead(responseClass, contentType);
+	}
+
+	/**
+	 * Returns the response input message or {@code null} if the response has no body.
+	 *
+	 * @param response client HTTP response
+	 * @return the response input message
+	 * @throws IOException on I/O error
+	 */
+	private static HttpInputMessage getInputMessage(final ClientHttpResponse response) throws IOException {
+		HttpStatusCode status = response.getStatusCode();
+		if (status.is1xxInformational() || status.isSameCodeAs(HttpStatus.NO_CONTENT)
+				|| status.isSameCodeAs(HttpStatus.NOT_MODIFIED)
+				|| response.getHeaders().getContentLength() == 0) {
+			return null;
+		}
+		InputStream body = response.getBody();
+		if (null == body) {
+			return null;
+		}
+		PushbackInputStream pushbackBody = new PushbackInputStream(body);
+		int b = pushbackBody.read();
+		if (-1 == b) {
+			return null;
+		}
+		pushbackBody.unread(b);
+		return new HttpInputMessage() {
+			@Override
+			public InputStream getBody() {
+				return pushbackBody;
+			}
+
+			@Override
+			public HttpHeaders getHeaders() {
+				return response.getHeaders();
+			}
+		};
+	}
+
+	/**
+	 * Cache entry for a response type.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private class ResponseType {
+
+		/**
+		 * The response type.
+		 */
+		private final Type type;
+
+		/**
+		 * The resolvable response type.
+		 */
+		private final ResolvableType resolvableType;
+
+		/**
+		 * The raw response class, {@code null} if it cannot be resolved.
+		 */
+		private final Class<?> responseClass;
+
+		/**
+		 * The accept header value, {@code null} if no converter can read the response type.
+		 */
+		private final String acceptHeader;
+
+		/**
+		 * The element type entry if the response type is a {@link LazyBody}, {@code null} otherwise.
+		 */
+		private final ResponseType lazyElement;
+
+		/**
+		 * The resolved converters by content type, keyed only by type, subtype and charset so that content types with
+		 * varying parameters don't grow the map.
+		 */
+		private final Map<MediaType, ResolvedConverter> converters = new ConcurrentHashMap<>();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param type response type
+		 */
+		ResponseType(final Type type) {
+			this.type = type;
+			this.resolvableType = ResolvableType.forType(type);
+			this.responseClass = type instanceof Class<?> cls ? cls : resolvableType.resolve();
+			Type elementType = LazyBody.elementType(type);
+			this.lazyElement = null != elementType ? getResponseType(elementType) : null;
+			this.acceptHeader = null != lazyElement ? lazyElement.acceptHeader : resolveAcceptHeader();
+		}
+
+		/**
+		 * Resolves the accept header value the same way the rest template does.
+		 *
+		 * @return the accept header value
+		 */
+		private String resolveAcceptHeader() {
+			Set<MediaType> mediaTypes = new LinkedHashSet<>();
+			for (HttpMessageConverter<?> converter : messageConverters) {
+				if (!canRead(converter, type, resolvableType, responseClass, null)) {
+					continue;
+				}
+				List<MediaType> supportedMediaTypes = null != responseClass
+						? converter.getSupportedMediaTypes(responseClass)
+						: converter.getSupportedMediaTypes();
+				for (MediaType mediaType : supportedMediaTypes) {
+					mediaTypes.add(null != mediaType.getCharset() ? new MediaType(mediaType.getType(), mediaType.getSubtype()) : mediaType);
+				}
+			}
+			if (mediaTypes.isEmpty()) {
+				return null;
+			}
+			List<MediaType> sortedMediaTypes = new ArrayList<>(mediaTypes);
+			MimeTypeUtils.sortBySpecificity(sortedMediaTypes);
+			return MediaType.toString(sortedMediaTypes);
+		}
+
+		/**
+		 * Reads the response body.
+		 *
+		 * @param <T> response body type
+		 *
+		 * @param response client HTTP response
+		 * @return the response body, {@code null} if the response has no body
+		 * @throws IOException on I/O error
+		 */
+		<T> T read(final ClientHttpResponse response) throws IOException {
+			if (Void.class == responseClass) {
+				return null;
+			}
+			HttpInputMessage inputMessage = getInputMessage(response);
+			if (null != lazyElement) {
+				byte[] bytes = null != inputMessage ? inputMessage.getBody().readAllBytes() : null;
+				return JavaObjects.cast(new LazyBody<>(bytes, response.getHeaders(), lazyElement::readBody));
+			}
+			if (null == inputMessage) {
+				return null;
+			}
+			return readBody(inputMessage);
+		}
+
+		/**
+		 * Reads the body of the given non empty input message.
+		 *
+		 * @param <T> response body type
+		 *
+		 * @param inputMessage the input message
+		 * @return the response body
+		 * @throws IOException on I/O error
+		 */
+		<T> T readBody(final HttpInputMessage inputMessage) throws IOException {
+			MediaType contentType = inputMessage.getHeaders().getContentType();
+			if (null == contentType) {
+				contentType = MediaType.APPLICATION_OCTET_STREAM;
+			}
+			MediaType converterKey = converterKey(contentType);
+			ResolvedConverter resolvedConverter = converters.get(converterKey);
+			if (null == resolvedConverter) {
+				resolvedConverter = resolve(converterKey);
+				if (null == resolvedConverter) {
+					throw new RestClientException("Could not extract response: no suitable HttpMessageConverter found for response type ["
+							+ type + "] and content type [" + contentType + "]");
+				}
+				converters.putIfAbsent(converterKey, resolvedConverter);
+			}
+			try {
+				return JavaObjects.cast(resolvedConverter.read(inputMessage, contentType));
+			} catch (HttpMessageNotReadableException e) {
+				throw new RestClientException("Error while extracting response for type [" + type + "] and content type ["
+						+ contentType + "]", e);
+			}
+		}
+
+		/**
+		 * Returns the key of the resolved converters map for the given content type: the type, the subtype and the charset,
+		 * the other parameters are dropped.
+		 *
+		 * @param contentType content type
+		 * @return the converter key
+		 */
+		private static MediaType converterKey(final MediaType contentType) {
+			int parameterCount = contentType.getParameters().size();
+			Charset charset = 0 != parameterCount ? contentType.getCharset() : null;
+			if (0 == parameterCount || (1 == parameterCount && null != charset)) {
+				return contentType;
+			}
+			return null != charset
+					? new MediaType(contentType.getType(), contentType.getSubtype(), charset)
+					: new MediaType(contentType.getType(), contentType.getSubtype());
+		}
+
+		/**
+		 * Resolves the converter for the given content type.
+		 *
+		 * @param contentType content type
+		 * @return the resolved converter, {@code null} if no converter can read the response
+		 */
+		private ResolvedConverter resolve(final MediaType contentType) {
+			for (HttpMessageConverter<?> converter : messageConverters) {
+				if (converter instanceof GenericHttpMessageConverter<?> genericConverter) {
+					if (genericConverter.canRead(type, null, contentType)) {
+						return new ResolvedConverter(this, converter, ReadMode.GENERIC, getObjectReader(converter));
+					}
+				} else if (converter instanceof SmartHttpMessageConverter<?> smartConverter
+						&& smartConverter.canRead(resolvableType, contentType)) {
+					return new ResolvedConverter(this, converter, ReadMode.SMART, null);
+				}
+				if (null != responseClass && converter.canRead(responseClass, contentType)) {
+					return new ResolvedConverter(this, converter, ReadMode.CLASS, null);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Returns the Jackson object reader for the response type if the converter is a Jackson converter using a single
+		 * object mapper, {@code null} otherwise.
+		 *
+		 * @param converter message converter
+		 * @return the object reader
+		 */
+		private ObjectReader getObjectReader(final HttpMessageConverter<?> converter) {
+			if (!(converter instanceof AbstractJackson2HttpMessageConverter jacksonConverter) || null == responseClass
+					|| !jacksonConverter.getObjectMappersForType(responseClass).isEmpty()) {
+				return null;
+			}
+			ObjectMapper objectMapper = jacksonConverter.getObjectMapper();
+			return objectMapper.readerFor(objectMapper.constructType(type));
+		}
+	}
+
+	/**
+	 * Converter resolved for a response type and content type.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class ResolvedConverter {
+
+		/**
+		 * The response type entry.
+		 */
+		private final ResponseType responseType;
+
+		/**
+		 * The message converter.
+		 */
+		private final HttpMessageConverter<?> converter;
+
+		/**
+		 * How the converter reads the response.
+		 */
+		private final ReadMode readMode;
+
+		/**
+		 * The Jackson object reader, {@code null} if the converter is not a Jackson converter.
+		 */
+		private final ObjectReader objectReader;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param responseType response type entry
+		 * @param converter message converter
+		 * @param readMode how the converter reads the response
+		 * @param objectReader Jackson object reader, can be {@code null}
+		 */
+		ResolvedConverter(final ResponseType responseType, final HttpMessageConverter<?> converter, final ReadMode readMode,
+				final ObjectReader objectReader) {
+			this.responseType = responseType;
+			this.converter = converter;
+			this.readMode = readMode;
+			this.objectReader = objectReader;
+		}
+
+		/**
+		 * Reads the response body.
+		 *
+		 * @param inputMessage response input message
+		 * @param contentType response content type
+		 * @return the response body
+		 * @throws IOException on I/O error
+		 */
+		Object read(final HttpInputMessage inputMessage, final MediaType contentType) throws IOException {
+			if (null != objectReader && isUnicode(contentType.getCharset())) {
+				try {
+					return objectReader.readValue(inputMessage.getBody());
+				} catch (JacksonException e) {
+					throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e, inputMessage);
+				}
+			}
+			return switch (readMode) {
+				case GENERIC -> ((GenericHttpMessageConverter<?>) converter).read(responseType.type, null, inputMessage);
+				case SMART -> ((SmartHttpMessageConverter<?>) converter).read(responseType.resolvableType, inputMessage, null);
+				case CLASS -> {
+					HttpMessageConverter<Object> objectConverter = JavaObjects.cast(converter);
+					yield objectConverter.read(JavaObjects.cast(responseType.responseClass), inputMessage);
+				}
+			};
+		}
+
+		/**
+		 * Returns true if Jackson can detect the given charset by itself.
+		 *
+		 * @param charset the content type charset, can be {@code null}
+		 * @return true if Jackson can detect the charset
+		 */
+		private static boolean isUnicode(final Charset charset) {
+			return null == charset
+					|| StandardCharsets.UTF_8.equals(charset)
+					|| StandardCharsets.UTF_16.equals(charset)
+					|| StandardCharsets.UTF_16BE.equals(charset)
+					|| StandardCharsets.UTF_16LE.equals(charset);
+		}
+	}
+
+	/**
+	 * How a resolved converter reads the response, mirrors the checks done by the rest template.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private enum ReadMode {
+
+		/**
+		 * Read with {@link GenericHttpMessageConverter#read(Type, Class, HttpInputMessage)}.
+		 */
+		GENERIC,
+
+		/**
+		 * Read with {@link SmartHttpMessageConverter#read(ResolvableType, HttpInputMessage, Map)}.
+		 */
+		SMART,
+
+		/**
+		 * Read with {@link HttpMessageConverter#read(Class, HttpInputMessage)}.
+		 */
+		CLASS
+	}
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 import jakarta.servlet.http.HttpServletRequest;
 
 import org.apache.hc.core5.http.Header;
+import org.apiphany.spring.collections.CopyOnWriteMultiValueMap;
 import org.morphix.reflection.Constructors;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -71,6 +72,28 @@ public class SpringHttpRequests {
 		return httpHeaders;
 	}
 
+	/**
+	 * Returns a lazy {@link HttpHeaders} view over an array of {@link Header}s, the headers are only converted to a map
+	 * when needed, see {@link HeaderArrayMultiValueMap}.
+	 *
+	 * @param headers source headers
+	 * @return HTTP headers view
+	 */
+	public static HttpHeaders httpHeadersView(final Header[] headers) {
+		return new HttpHeaders(HeaderArrayMultiValueMap.of(headers));
+	}
+
+	/**
+	 * Returns a {@link HttpHeaders} view backed by the given headers map, the map is copied only when the returned headers
+	 * are modified, see {@link CopyOnWriteMultiValueMap}.
+	 *
+	 * @param headers source headers, can be {@code null}
+	 * @return HTTP headers view
+	 */
+	public static HttpHeaders httpHeadersView(final Map<String, List<String>> headers) {
+		return new HttpHeaders(CopyOnWriteMultiValueMap.ofHeaders(headers));
+	}
+
 	/**
 	 * Returns a Spring HTTP method {@link HttpMethod} object.
 	 *
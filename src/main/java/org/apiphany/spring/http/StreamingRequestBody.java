@@ -0,0 +1,280 @@
+package org.apiphany.spring.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.http.StreamingHttpOutputMessage;
+
+/**
+ * Request body which is written directly to the connection output stream instead of being buffered in memory. Use it as
+ * the body of an {@link org.apiphany.ApiRequest} to upload large payloads.
+ * <p>
+ * Only a small transfer buffer is held in memory while writing, and file backed bodies are transferred through a
+ * {@link FileChannel}, so the heap needed for an upload doesn't depend on the payload size.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public abstract class StreamingRequestBody implements StreamingHttpOutputMessage.Body {
+
+	/**
+	 * Transfer buffer size.
+	 */
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Unknown content length.
+	 */
+	public static final long UNKNOWN_LENGTH = -1;
+
+	/**
+	 * Hide constructor.
+	 */
+	private StreamingRequestBody() {
+		// empty
+	}
+
+	/**
+	 * Returns the body length in bytes or {@link #UNKNOWN_LENGTH} if it is not known, when not known the body is sent with
+	 * chunked transfer encoding.
+	 *
+	 * @return the body length
+	 */
+	public abstract long contentLength();
+
+	/**
+	 * Returns a streaming body that reads the given input stream. The stream is closed after it was written.
+	 *
+	 * @param inputStream input stream
+	 * @return a new streaming body
+	 */
+	public static StreamingRequestBody of(final InputStream inputStream) {
+		return new InputStreamBody(inputStream, UNKNOWN_LENGTH);
+	}
+
+	/**
+	 * Returns a streaming body that reads the given input stream. The stream is closed after it was written.
+	 *
+	 * @param inputStream input stream
+	 * @param contentLength the number of bytes in the stream
+	 * @return a new streaming body
+	 */
+	public static StreamingRequestBody of(final InputStream inputStream, final long contentLength) {
+		return new InputStreamBody(inputStream, contentLength);
+	}
+
+	/**
+	 * Returns a streaming body that reads the given file. The body is repeatable.
+	 *
+	 * @param path file path
+	 * @return a new streaming body
+	 */
+	public static StreamingRequestBody of(final Path path) {
+		return new PathBody(path);
+	}
+
+	/**
+	 * Returns a streaming body that reads the given channel. The channel is closed after it was written.
+	 *
+	 * @param channel readable channel
+	 * @return a new streaming body
+	 */
+	public static StreamingRequestBody of(final ReadableByteChannel channel) {
+		return new ChannelBody(channel);
+	}
+
+	/**
+	 * Returns true if the given object can be sent as a streaming body.
+	 *
+	 * @param body request body
+	 * @return true if the body can be streamed
+	 */
+	public static boolean isStreamable(final Object body) {
+		return body instanceof StreamingRequestBody
+				|| body instanceof InputStream
+				|| body instanceof Path
+				|| body instanceof ReadableByteChannel;
+	}
+
+	/**
+	 * Returns a streaming body for the given object, see {@link #isStreamable(Object)}.
+	 *
+	 * @param body request body
+	 * @return a streaming body
+	 * @throws IllegalArgumentException if the body cannot be streamed
+	 */
+	public static StreamingRequestBody from(final Object body) {
+		return switch (body) {
+			case StreamingRequestBody streamingBody -> streamingBody;
+			case InputStream inputStream -> of(inputStream);
+			case Path path -> of(path);
+			case ReadableByteChannel channel -> of(channel);
+			default -> throw new IllegalArgumentException("Cannot stream request body of type: " + body.getClass());
+		};
+	}
+
+	/**
+	 * Streaming body over an input stream.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class InputStreamBody extends StreamingRequestBody {
+
+		/**
+		 * The input stream.
+		 */
+		private final InputStream inputStream;
+
+		/**
+		 * The content length.
+		 */
+		private final long contentLength;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param inputStream input stream
+		 * @param contentLength content length
+		 */
+		InputStreamBody(final InputStream inputStream, final long contentLength) {
+			this.inputStream = inputStream;
+			this.contentLength = contentLength;
+		}
+
+		/**
+		 * @see #writeTo(OutputStream)
+		 */
+		@Override
+		public void writeTo(final OutputStream outputStream) throws IOException {
+			try (InputStream in = inputStream) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					outputStream.write(buffer, 0, read);
+				}
+			}
+		}
+
+		/**
+		 * @see #contentLength()
+		 */
+		@Override
+		public long contentLength() {
+			return contentLength;
+		}
+	}
+
+	/**
+	 * Streaming body over a file.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class PathBody extends StreamingRequestBody {
+
+		/**
+		 * The file path.
+		 */
+		private final Path path;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param path file path
+		 */
+		PathBody(final Path path) {
+			this.path = path;
+		}
+
+		/**
+		 * @see #writeTo(OutputStream)
+		 */
+		@Override
+		public void writeTo(final OutputStream outputStream) throws IOException {
+			try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+				WritableByteChannel target = Channels.newChannel(outputStream);
+				long size = fileChannel.size();
+				long position = 0;
+				while (position < size) {
+					position += fileChannel.transferTo(position, size - position, target);
+				}
+			}
+		}
+
+		/**
+		 * @see #contentLength()
+		 */
+		@Override
+		public long contentLength() {
+			try {
+				return Files.size(path);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot read file size: " + path, e);
+			}
+		}
+
+		/**
+		 * @see #repeatable()
+		 */
+		@Override
+		public boolean repeatable() {
+			return true;
+		}
+	}
+
+	/**
+	 * Streaming body over a readable channel.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class ChannelBody extends StreamingRequestBody {
+
+		/**
+		 * The readable channel.
+		 */
+		private final ReadableByteChannel channel;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param channel readable channel
+		 */
+		ChannelBody(final ReadableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * @see #writeTo(OutputStream)
+		 */
+		@Override
+		public void writeTo(final OutputStream outputStream) throws IOException {
+			try (ReadableByteChannel in = channel) {
+				WritableByteChannel target = Channels.newChannel(outputStream);
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				while (in.read(buffer) != -1) {
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						target.write(buffer);
+					}
+					buffer.clear();
+				}
+			}
+		}
+
+		/**
+		 * @see #contentLength()
+		 */
+		@Override
+		public long contentLength() {
+			return UNKNOWN_LENGTH;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package org.apiphany.spring.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Request execution which runs a request with a streaming body through a list of request interceptors without
+ * buffering the body in memory, unlike the Spring intercepting request factory.
+ * <p>
+ * The interceptors see an empty body array, they can still change the request URI and headers, return a response
+ * without executing the request or decorate the response. The last execution creates the request with the given request
+ * factory and writes the streaming body directly to the connection, or the body array if an interceptor replaced the
+ * empty one.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class StreamingRequestExecution implements ClientHttpRequestExecution {
+
+	/**
+	 * Empty body given to the interceptors.
+	 */
+	private static final byte[] EMPTY_BODY = new byte[0];
+
+	/**
+	 * The request factory used to create the request after all interceptors ran.
+	 */
+	private final ClientHttpRequestFactory requestFactory;
+
+	/**
+	 * The interceptors that didn't run yet.
+	 */
+	private final Iterator<ClientHttpRequestInterceptor> interceptors;
+
+	/**
+	 * The streaming body.
+	 */
+	private final StreamingHttpOutputMessage.Body body;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param requestFactory the request factory used to create the request after all interceptors ran
+	 * @param interceptors the request interceptors
+	 * @param body the streaming body
+	 */
+	private StreamingRequestExecution(final ClientHttpRequestFactory requestFactory, final List<ClientHttpRequestInterceptor> interceptors,
+			final StreamingHttpOutputMessage.Body body) {
+		this.requestFactory = requestFactory;
+		this.interceptors = interceptors.iterator();
+		this.body = body;
+	}
+
+	/**
+	 * Executes a request with the given streaming body through the given interceptors.
+	 *
+	 * @param requestFactory the request factory used to create the request after all interceptors ran, it must not be an
+	 *     intercepting request factory
+	 * @param interceptors the request interceptors
+	 * @param uri the request URI
+	 * @param method the HTTP method
+	 * @param headers the request headers
+	 * @param body the streaming body
+	 * @return the HTTP response
+	 * @throws IOException on error
+	 */
+	public static ClientHttpResponse execute(final ClientHttpRequestFactory requestFactory, final List<ClientHttpRequestInterceptor> interceptors,
+			final URI uri, final HttpMethod method, final HttpHeaders headers, final StreamingHttpOutputMessage.Body body) throws IOException {
+		HttpRequest request = new StreamingHttpRequest(uri, method, headers);
+		return new StreamingRequestExecution(requestFactory, interceptors, body).execute(request, EMPTY_BODY);
+	}
+
+	/**
+	 * Runs the next interceptor or creates and executes the request when all interceptors ran.
+	 *
+	 * @param httpRequest HTTP request
+	 * @param bytes request body given by the previous interceptor
+	 * @return HTTP response
+	 * @throws IOException on error
+	 */
+	@Override
+	public ClientHttpResponse execute(final HttpRequest httpRequest, final byte[] bytes) throws IOException {
+		if (interceptors.hasNext()) {
+			return interceptors.next().intercept(httpRequest, bytes, this);
+		}
+		ClientHttpRequest request = requestFactory.createRequest(httpRequest.getURI(), httpRequest.getMethod());
+		request.getHeaders().putAll(httpRequest.getHeaders());
+		request.getAttributes().putAll(httpRequest.getAttributes());
+		StreamingHttpOutputMessage.Body requestBody = bytes.length > 0 ? outputStream -> outputStream.write(bytes) : body;
+		if (request instanceof StreamingHttpOutputMessage streamingRequest) {
+			streamingRequest.setBody(requestBody);
+		} else {
+			requestBody.writeTo(request.getBody());
+		}
+		return request.execute();
+	}
+
+	/**
+	 * The request given to the interceptors.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class StreamingHttpRequest implements HttpRequest {
+
+		/**
+		 * The request URI.
+		 */
+		private final URI uri;
+
+		/**
+		 * The HTTP method.
+		 */
+		private final HttpMethod method;
+
+		/**
+		 * The request headers.
+		 */
+		private final HttpHeaders headers;
+
+		/**
+		 * The request attributes.
+		 */
+		private final Map<String, Object> attributes = new HashMap<>();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param uri the request URI
+		 * @param method the HTTP method
+		 * @param headers the request headers
+		 */
+		StreamingHttpRequest(final URI uri, final HttpMethod method, final HttpHeaders headers) {
+			this.uri = uri;
+			this.method = method;
+			this.headers = headers;
+		}
+
+		/**
+		 * @see HttpRequest#getURI()
+		 */
+		@Override
+		public URI getURI() {
+			return uri;
+		}
+
+		/**
+		 * @see HttpRequest#getMethod()
+		 */
+		@Override
+		public HttpMethod getMethod() {
+			return method;
+		}
+
+		/**
+		 * @see HttpRequest#getHeaders()
+		 */
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+		/**
+		 * @see HttpRequest#getAttributes()
+		 */
+		@Override
+		public Map<String, Object> getAttributes() {
+			return attributes;
+		}
+	}
+}
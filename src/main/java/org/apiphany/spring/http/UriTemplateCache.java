@@ -0,0 +1,203 @@
+package org.apiphany.spring.http;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apiphany.lang.collections.Maps;
+import org.springframework.util.ConcurrentLruCache;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Bounded concurrent cache of parsed URL templates keyed by the request URL.
+ * <p>
+ * Parsing a URL with {@link UriComponentsBuilder#fromUriString(String)} is regular expression based and allocates
+ * heavily, since most clients call the same base URLs over and over the parsed {@link UriComponents} are cached so that
+ * building a request URI only needs to add and encode the query parameters. When the cache is full the least recently
+ * used templates are evicted.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class UriTemplateCache {
+
+	/**
+	 * Default maximum number of cached templates.
+	 */
+	public static final int DEFAULT_CAPACITY = 512;
+
+	/**
+	 * The underlying cache.
+	 */
+	private final ConcurrentLruCache<String, Template> cache;
+
+	/**
+	 * Number of lookups.
+	 */
+	private final LongAdder requests = new LongAdder();
+
+	/**
+	 * Number of lookups that needed to parse the URL.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity maximum number of cached templates
+	 */
+	private UriTemplateCache(final int capacity) {
+		this.cache = new ConcurrentLruCache<>(capacity, this::parse);
+	}
+
+	/**
+	 * Returns a new cache with the given capacity.
+	 *
+	 * @param capacity maximum number of cached templates
+	 * @return a new cache
+	 */
+	public static UriTemplateCache of(final int capacity) {
+		return new UriTemplateCache(capacity);
+	}
+
+	/**
+	 * Returns a new cache with the {@link #DEFAULT_CAPACITY}.
+	 *
+	 * @return a new cache
+	 */
+	public static UriTemplateCache defaults() {
+		return of(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Returns the parsed URI components for the given URL.
+	 *
+	 * @param url the URL
+	 * @return the parsed URI components
+	 */
+	public UriComponents get(final String url) {
+		return getTemplate(url).components;
+	}
+
+	/**
+	 * Returns a new URI components builder initialized from the cached template of the given URL.
+	 *
+	 * @param url the URL
+	 * @return a new URI components builder
+	 */
+	public UriComponentsBuilder builder(final String url) {
+		return UriComponentsBuilder.newInstance().uriComponents(get(url));
+	}
+
+	/**
+	 * Builds the URI from the given URL and query parameters, when there are no query parameters the cached URI is
+	 * returned without any allocation.
+	 *
+	 * @param url the URL
+	 * @param queryParams the query parameters, can be {@code null}
+	 * @return the URI
+	 */
+	public URI getUri(final String url, final Map<String, List<String>> queryParams) {
+		Template template = getTemplate(url);
+		if (Maps.isEmpty(queryParams)) {
+			return template.uri;
+		}
+		UriComponentsBuilder builder = UriComponentsBuilder.newInstance().uriComponents(template.components);
+		queryParams.forEach(builder::queryParam);
+		return builder.build().toUri();
+	}
+
+	/**
+	 * Returns the cached template for the given URL.
+	 *
+	 * @param url the URL
+	 * @return the cached template
+	 */
+	private Template getTemplate(final String url) {
+		requests.increment();
+		return cache.get(url);
+	}
+
+	/**
+	 * Parses the given URL into a template, called on cache misses.
+	 *
+	 * @param url the URL
+	 * @return the template
+	 */
+	private Template parse(final String url) {
+		misses.increment();
+		return new Template(UriComponentsBuilder.fromUriString(url).build());
+	}
+
+	/**
+	 * Returns the number of lookups that found the template in the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return Math.max(0, requests.sum() - misses.sum());
+	}
+
+	/**
+	 * Returns the number of lookups that needed to parse the URL.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of cached templates.
+	 *
+	 * @return the number of cached templates
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Returns the maximum number of cached templates.
+	 *
+	 * @return the capacity
+	 */
+	public int capacity() {
+		return cache.capacity();
+	}
+
+	/**
+	 * Removes all cached templates.
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Parsed URL template.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	private static class Template {
+
+		/**
+		 * The parsed URI components.
+		 */
+		private final UriComponents components;
+
+		/**
+		 * The URI without query parameters added.
+		 */
+		private final URI uri;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param components the parsed URI components
+		 */
+		Template(final UriComponents components) {
+			this.components = components;
+			this.uri = components.toUri();
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package org.apiphany.spring.http.cache;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * The {@code Cache-Control} directives relevant for a private client cache.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class CacheDirectives {
+
+	/**
+	 * Value for a missing {@code max-age} directive.
+	 */
+	public static final long NO_MAX_AGE = -1;
+
+	/**
+	 * Directives instance used when there is no {@code Cache-Control} header.
+	 */
+	private static final CacheDirectives NONE = new CacheDirectives(false, false, NO_MAX_AGE);
+
+	/**
+	 * True if the {@code no-store} directive is present.
+	 */
+	private final boolean noStore;
+
+	/**
+	 * True if the {@code no-cache} directive is present.
+	 */
+	private final boolean noCache;
+
+	/**
+	 * The {@code max-age} directive value in seconds or {@link #NO_MAX_AGE}.
+	 */
+	private final long maxAge;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param noStore true if the {@code no-store} directive is present
+	 * @param noCache true if the {@code no-cache} directive is present
+	 * @param maxAge the {@code max-age} directive value in seconds
+	 */
+	private CacheDirectives(final boolean noStore, final boolean noCache, final long maxAge) {
+		this.noStore = noStore;
+		this.noCache = noCache;
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * Parses the {@code Cache-Control} directives from the given headers.
+	 *
+	 * @param headers HTTP headers
+	 * @return the cache directives
+	 */
+	public static CacheDirectives of(final HttpHeaders headers) {
+		List<String> values = headers.get(HttpHeaders.CACHE_CONTROL);
+		if (null == values || values.isEmpty()) {
+			return NONE;
+		}
+		boolean noStore = false;
+		boolean noCache = false;
+		long maxAge = NO_MAX_AGE;
+		for (String value : values) {
+			for (String directive : value.split(",")) {
+				String name = directive.trim().toLowerCase(Locale.ROOT);
+				if ("no-store".equals(name)) {
+					noStore = true;
+				} else if (name.startsWith("no-cache")) {
+					noCache = true;
+				} else if (name.startsWith("max-age=")) {
+					maxAge = parseSeconds(name.substring("max-age=".length()));
+				}
+			}
+		}
+		return new CacheDirectives(noStore, noCache, maxAge);
+	}
+
+	/**
+	 * Parses a delta seconds value, invalid values are treated as 0 which means the response is stale.
+	 *
+	 * @param value value to parse
+	 * @return the number of seconds
+	 */
+	private static long parseSeconds(final String value) {
+		String seconds = value.trim();
+		if (seconds.length() > 1 && seconds.charAt(0) == '"' && seconds.charAt(seconds.length() - 1) == '"') {
+			seconds = seconds.substring(1, seconds.length() - 1);
+		}
+		try {
+			return Math.max(0, Long.parseLong(seconds));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns true if the {@code no-store} directive is present.
+	 *
+	 * @return true if the response must not be stored
+	 */
+	public boolean isNoStore() {
+		return noStore;
+	}
+
+	/**
+	 * Returns true if the {@code no-cache} directive is present.
+	 *
+	 * @return true if the response must be revalidated before each use
+	 */
+	public boolean isNoCache() {
+		return noCache;
+	}
+
+	/**
+	 * Returns the {@code max-age} directive value in seconds or {@link #NO_MAX_AGE} if not present.
+	 *
+	 * @return the max age in seconds
+	 */
+	public long getMaxAge() {
+		return maxAge;
+	}
+}
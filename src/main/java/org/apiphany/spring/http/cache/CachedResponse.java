@@ -0,0 +1,358 @@
+package org.apiphany.spring.http.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Immutable cached HTTP response.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class CachedResponse {
+
+	/**
+	 * Approximate fixed memory overhead of an entry used in size computations.
+	 */
+	private static final int ENTRY_OVERHEAD = 128;
+
+	/**
+	 * Headers from a {@code 304 Not Modified} response that must not replace the stored ones.
+	 */
+	private static final List<String> NOT_UPDATED_HEADERS = List.of(
+			HttpHeaders.CONTENT_LENGTH,
+			HttpHeaders.CONTENT_ENCODING,
+			HttpHeaders.TRANSFER_ENCODING,
+			HttpHeaders.CONTENT_RANGE);
+
+	/**
+	 * The status code.
+	 */
+	private final int statusCode;
+
+	/**
+	 * The status text.
+	 */
+	private final String statusText;
+
+	/**
+	 * The response headers.
+	 */
+	private final HttpHeaders headers;
+
+	/**
+	 * The response body.
+	 */
+	private final byte[] body;
+
+	/**
+	 * The request header values for the header names in the {@code Vary} response header.
+	 */
+	private final Map<String, List<String>> varyValues;
+
+	/**
+	 * The time when the response was received or last revalidated in milliseconds since epoch.
+	 */
+	private final long responseTime;
+
+	/**
+	 * The time until the response is fresh in milliseconds since epoch.
+	 */
+	private final long expirationTime;
+
+	/**
+	 * Approximate memory size of this entry.
+	 */
+	private final long size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param statusCode status code
+	 * @param statusText status text
+	 * @param headers response headers
+	 * @param body response body
+	 * @param varyValues request header values for the {@code Vary} header names
+	 * @param responseTime response time in milliseconds since epoch
+	 * @param expirationTime expiration time in milliseconds since epoch
+	 */
+	CachedResponse(final int statusCode, final String statusText, final HttpHeaders headers, final byte[] body,
+			final Map<String, List<String>> varyValues, final long responseTime, final long expirationTime) {
+		this.statusCode = statusCode;
+		this.statusText = null != statusText ? statusText : "";
+		this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+		this.body = body;
+		this.varyValues = Collections.unmodifiableMap(varyValues);
+		this.responseTime = responseTime;
+		this.expirationTime = expirationTime;
+		this.size = computeSize();
+	}
+
+	/**
+	 * Returns a new cached response, the freshness is computed from the response headers.
+	 *
+	 * @param statusCode status code
+	 * @param statusText status text
+	 * @param responseHeaders response headers
+	 * @param body response body
+	 * @param requestHeaders request headers used to store the {@code Vary} values
+	 * @param now current time in milliseconds since epoch
+	 * @return a new cached response
+	 */
+	public static CachedResponse of(final int statusCode, final String statusText, final HttpHeaders responseHeaders, final byte[] body,
+			final HttpHeaders requestHeaders, final long now) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.addAll(responseHeaders);
+		headers.remove(HttpHeaders.TRANSFER_ENCODING);
+		headers.setContentLength(body.length);
+		Map<String, List<String>> varyValues = new LinkedHashMap<>();
+		for (String name : responseHeaders.getVary()) {
+			List<String> values = requestHeaders.get(name);
+			varyValues.put(name, null != values ? List.copyOf(values) : List.of());
+		}
+		return new CachedResponse(statusCode, statusText, headers, body, varyValues, now, expirationTime(headers, now));
+	}
+
+	/**
+	 * Returns a new cached response updated with the headers of a {@code 304 Not Modified} response.
+	 *
+	 * @param notModifiedHeaders the headers of the {@code 304 Not Modified} response
+	 * @param now current time in milliseconds since epoch
+	 * @return the updated cached response
+	 */
+	public CachedResponse revalidated(final HttpHeaders notModifiedHeaders, final long now) {
+		HttpHeaders updatedHeaders = new HttpHeaders();
+		updatedHeaders.addAll(headers);
+		notModifiedHeaders.forEach((name, values) -> {
+			if (NOT_UPDATED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+				updatedHeaders.put(name, List.copyOf(values));
+			}
+		});
+		return new CachedResponse(statusCode, statusText, updatedHeaders, body, varyValues, now, expirationTime(updatedHeaders, now));
+	}
+
+	/**
+	 * Computes the expiration time from the {@code Cache-Control} {@code max-age} directive or the {@code Expires}
+	 * header. Responses without explicit freshness information are stale immediately and will be revalidated.
+	 *
+	 * @param headers response headers
+	 * @param now current time in milliseconds since epoch
+	 * @return the expiration time in milliseconds since epoch
+	 */
+	static long expirationTime(final HttpHeaders headers, final long now) {
+		CacheDirectives directives = CacheDirectives.of(headers);
+		if (directives.isNoCache()) {
+			return now;
+		}
+		if (CacheDirectives.NO_MAX_AGE != directives.getMaxAge()) {
+			return now + Math.min(directives.getMaxAge(), Long.MAX_VALUE / 2000) * 1000;
+		}
+		long expires = headers.getExpires();
+		if (expires > 0) {
+			long date = headers.getDate();
+			long freshness = expires - (date > 0 ? date : now);
+			return now + Math.max(0, freshness);
+		}
+		return now;
+	}
+
+	/**
+	 * Returns true if the response is still fresh.
+	 *
+	 * @param now current time in milliseconds since epoch
+	 * @return true if the response is fresh
+	 */
+	public boolean isFresh(final long now) {
+		return now < expirationTime;
+	}
+
+	/**
+	 * Returns true if the response has an {@code ETag} or a {@code Last-Modified} header and can be revalidated.
+	 *
+	 * @return true if the response can be revalidated
+	 */
+	public boolean hasValidators() {
+		return null != getETag() || getLastModified() > 0;
+	}
+
+	/**
+	 * Returns the {@code ETag} header value or {@code null} if not present.
+	 *
+	 * @return the entity tag
+	 */
+	public String getETag() {
+		return headers.getETag();
+	}
+
+	/**
+	 * Returns the {@code Last-Modified} header value in milliseconds since epoch or -1 if not present.
+	 *
+	 * @return the last modified time
+	 */
+	public long getLastModified() {
+		return headers.getLastModified();
+	}
+
+	/**
+	 * Returns true if the request headers match the request headers the response was stored for, for all the header names
+	 * in the {@code Vary} response header.
+	 *
+	 * @param requestHeaders request headers
+	 * @return true if the stored response can be used for the request
+	 */
+	public boolean matchesVary(final HttpHeaders requestHeaders) {
+		for (Map.Entry<String, List<String>> entry : varyValues.entrySet()) {
+			List<String> values = requestHeaders.get(entry.getKey());
+			if (!Objects.equals(entry.getValue(), null != values ? values : List.of())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a new client HTTP response with this cached response content.
+	 *
+	 * @return a new client HTTP response
+	 */
+	public ClientHttpResponse toClientHttpResponse() {
+		return new ClientHttpResponse() {
+
+			/**
+			 * @see ClientHttpResponse#getStatusCode()
+			 */
+			@Override
+			public HttpStatusCode getStatusCode() {
+				return HttpStatusCode.valueOf(statusCode);
+			}
+
+			/**
+			 * @see ClientHttpResponse#getStatusText()
+			 */
+			@Override
+			public String getStatusText() {
+				return statusText;
+			}
+
+			/**
+			 * @see ClientHttpResponse#getHeaders()
+			 */
+			@Override
+			public HttpHeaders getHeaders() {
+				return headers;
+			}
+
+			/**
+			 * @see ClientHttpResponse#getBody()
+			 */
+			@Override
+			public InputStream getBody() {
+				return new ByteArrayInputStream(body);
+			}
+
+			/**
+			 * @see ClientHttpResponse#close()
+			 */
+			@Override
+			public void close() {
+				// nothing to release
+			}
+		};
+	}
+
+	/**
+	 * Computes the approximate memory size of this entry.
+	 *
+	 * @return the approximate memory size
+	 */
+	private long computeSize() {
+		long result = ENTRY_OVERHEAD + body.length + statusText.length();
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			result += entry.getKey().length();
+			for (String value : entry.getValue()) {
+				result += value.length();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the status code.
+	 *
+	 * @return the status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Returns the status text.
+	 *
+	 * @return the status text
+	 */
+	public String getStatusText() {
+		return statusText;
+	}
+
+	/**
+	 * Returns the read-only response headers.
+	 *
+	 * @return the response headers
+	 */
+	public HttpHeaders getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Returns the response body, the returned array must not be modified.
+	 *
+	 * @return the response body
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * Returns the request header values for the header names in the {@code Vary} response header.
+	 *
+	 * @return the vary values
+	 */
+	public Map<String, List<String>> getVaryValues() {
+		return varyValues;
+	}
+
+	/**
+	 * Returns the time when the response was received or last revalidated.
+	 *
+	 * @return the response time in milliseconds since epoch
+	 */
+	public long getResponseTime() {
+		return responseTime;
+	}
+
+	/**
+	 * Returns the time until the response is fresh.
+	 *
+	 * @return the expiration time in milliseconds since epoch
+	 */
+	public long getExpirationTime() {
+		return expirationTime;
+	}
+
+	/**
+	 * Returns the approximate memory size of this entry.
+	 *
+	 * @return the approximate memory size in bytes
+	 */
+	public long size() {
+		return size;
+	}
+}
@@ -0,0 +1,759 @@
+package org.apiphany.spring.http.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Bounded store for cached HTTP responses.
+ * <p>
+ * The entries are kept in memory and evicted in least recently used order when the total size of the stored responses
+ * exceeds {@link Builder#maxBytes(long)}. Responses larger than {@link Builder#maxEntryBytes(long)} are never stored.
+ * <p>
+ * When a {@link Builder#diskDirectory(Path)} is configured, the entries are also written to disk, one file per entry,
+ * this way the cache survives both memory evictions and restarts. The disk tier is tracked by an in-memory index of the
+ * files in least recently used order, so a memory miss only touches the disk when the entry is on disk. All the disk
+ * operations run on a single background thread: the writes and deletes don't block the callers, and a memory miss for
+ * an entry on disk returns {@code null} and promotes the entry back to memory for the next lookups. The disk tier is
+ * bounded by {@link Builder#maxDiskBytes(long)} and the least recently used files are deleted first.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ResponseCache {
+
+	/**
+	 * Class logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResponseCache.class);
+
+	/**
+	 * Default maximum memory size of all the entries: 64 MB.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * Default maximum size of a single entry: 1 MB.
+	 */
+	public static final long DEFAULT_MAX_ENTRY_BYTES = 1024L * 1024;
+
+	/**
+	 * Default maximum disk size of all the entries: 512 MB.
+	 */
+	public static final long DEFAULT_MAX_DISK_BYTES = 512L * 1024 * 1024;
+
+	/**
+	 * The cache file extension.
+	 */
+	private static final String FILE_EXTENSION = ".cache";
+
+	/**
+	 * The cache file format version, files with a different version are ignored.
+	 */
+	private static final int FILE_VERSION = 1;
+
+	/**
+	 * The memory entries in access order.
+	 */
+	private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The lock guarding the memory entries.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Maximum memory size of all the entries.
+	 */
+	private final long maxBytes;
+
+	/**
+	 * Maximum size of a single entry.
+	 */
+	private final long maxEntryBytes;
+
+	/**
+	 * The disk directory, {@code null} if the disk tier is disabled.
+	 */
+	private final Path diskDirectory;
+
+	/**
+	 * Maximum disk size of all the entries.
+	 */
+	private final long maxDiskBytes;
+
+	/**
+	 * Current memory size of all the entries.
+	 */
+	private long bytes;
+
+	/**
+	 * Current disk size of all the entries.
+	 */
+	private final AtomicLong diskBytes = new AtomicLong();
+
+	/**
+	 * The disk file sizes by file name in least recently used order, {@code null} if the disk tier is disabled.
+	 */
+	private final LinkedHashMap<String, Long> diskIndex;
+
+	/**
+	 * The lock guarding the disk index.
+	 */
+	private final ReentrantLock diskLock = new ReentrantLock();
+
+	/**
+	 * The executor running the disk operations, {@code null} if the disk tier is disabled.
+	 */
+	private final ExecutorService diskExecutor;
+
+	/**
+	 * The keys being promoted from disk to memory.
+	 */
+	private final Set<String> promotions = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The cache statistics.
+	 */
+	private final ResponseCacheStatistics statistics = new ResponseCacheStatistics();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private ResponseCache(final Builder builder) {
+		this.maxBytes = builder.maxBytes;
+		this.maxEntryBytes = Math.min(builder.maxEntryBytes, builder.maxBytes);
+		this.diskDirectory = builder.diskDirectory;
+		this.maxDiskBytes = builder.maxDiskBytes;
+		if (null != diskDirectory) {
+			this.diskIndex = new LinkedHashMap<>(16, 0.75f, true);
+			this.diskExecutor = Executors.newSingleThreadExecutor(Thread.ofPlatform()
+					.name("apiphany-response-cache-disk")
+					.daemon()
+					.factory());
+			initializeDisk();
+		} else {
+			this.diskIndex = null;
+			this.diskExecutor = null;
+		}
+	}
+
+	/**
+	 * Returns a new in-memory cache with the default limits.
+	 *
+	 * @return a new cache
+	 */
+	public static ResponseCache defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the cached response for the given key. On a memory miss for an entry which is on disk the entry is promoted
+	 * to memory in the background so this call returns {@code null} and the next lookups find it in memory.
+	 *
+	 * @param key cache key
+	 * @return the cached response or {@code null} if not found in memory
+	 */
+	public CachedResponse get(final String key) {
+		CachedResponse response;
+		lock.lock();
+		try {
+			response = entries.get(key);
+		} finally {
+			lock.unlock();
+		}
+		if (null == response && null != diskDirectory) {
+			promote(key);
+		}
+		return response;
+	}
+
+	/**
+	 * Stores the given response, responses larger than the maximum entry size are ignored. The disk file is written in
+	 * the background.
+	 *
+	 * @param key cache key
+	 * @param response the response to store
+	 * @return true if the response was stored
+	 */
+	public boolean put(final String key, final CachedResponse response) {
+		if (response.size() > maxEntryBytes) {
+			return false;
+		}
+		putInMemory(key, response, false);
+		if (null != diskDirectory) {
+			runOnDisk(() -> writeToDisk(key, response));
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the entry with the given key, the disk file is deleted in the background.
+	 *
+	 * @param key cache key
+	 */
+	public void remove(final String key) {
+		lock.lock();
+		try {
+			CachedResponse removed = entries.remove(key);
+			if (null != removed) {
+				bytes -= removed.size();
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (null != diskDirectory) {
+			runOnDisk(() -> deleteFile(fileName(key)));
+		}
+	}
+
+	/**
+	 * Removes all the entries from memory and disk, the disk files are deleted in the background.
+	 */
+	public void clear() {
+		lock.lock();
+		try {
+			entries.clear();
+			bytes = 0;
+		} finally {
+			lock.unlock();
+		}
+		if (null != diskDirectory) {
+			runOnDisk(this::clearDisk);
+		}
+	}
+
+	/**
+	 * Stops the disk tier and waits for the pending disk operations to complete. The memory tier can still be used, but
+	 * nothing is written to or read from disk anymore.
+	 */
+	public void close() {
+		if (null != diskExecutor) {
+			diskExecutor.close();
+		}
+	}
+
+	/**
+	 * Stores the response in memory evicting the least recently used entries if needed.
+	 *
+	 * @param key cache key
+	 * @param response the response to store
+	 * @param onlyIfAbsent true to keep the entry already in memory, if any
+	 */
+	private void putInMemory(final String key, final CachedResponse response, final boolean onlyIfAbsent) {
+		lock.lock();
+		try {
+			if (onlyIfAbsent && entries.containsKey(key)) {
+				return;
+			}
+			CachedResponse previous = entries.put(key, response);
+			bytes += response.size() - (null != previous ? previous.size() : 0);
+			Iterator<CachedResponse> iterator = entries.values().iterator();
+			while (bytes > maxBytes && iterator.hasNext()) {
+				CachedResponse eldest = iterator.next();
+				iterator.remove();
+				bytes -= eldest.size();
+				statistics.recordEviction();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Promotes the entry with the given key from disk to memory in the background if it is on disk.
+	 *
+	 * @param key cache key
+	 */
+	private void promote(final String key) {
+		String fileName = fileName(key);
+		diskLock.lock();
+		try {
+			if (null == diskIndex.get(fileName)) {
+				return;
+			}
+		} finally {
+			diskLock.unlock();
+		}
+		if (!promotions.add(key)) {
+			return;
+		}
+		runOnDisk(() -> {
+			try {
+				CachedResponse response = readFromDisk(key, fileName);
+				if (null != response) {
+					putInMemory(key, response, true);
+				}
+			} finally {
+				promotions.remove(key);
+			}
+		});
+	}
+
+	/**
+	 * Runs the given disk operation on the disk executor.
+	 *
+	 * @param operation the disk operation
+	 */
+	private void runOnDisk(final Runnable operation) {
+		try {
+			diskExecutor.execute(operation);
+		} catch (RejectedExecutionException e) {
+			LOGGER.debug("Response cache disk tier is closed", e);
+		}
+	}
+
+	/**
+	 * Creates the disk directory and builds the disk index from the existing files, the least recently modified first.
+	 */
+	private void initializeDisk() {
+		try {
+			Files.createDirectories(diskDirectory);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot create response cache directory: " + diskDirectory, e);
+		}
+		List<Path> files = listFiles();
+		files.sort((f1, f2) -> lastModifiedTime(f1).compareTo(lastModifiedTime(f2)));
+		long size = 0;
+		for (Path file : files) {
+			long fileSize = fileSize(file);
+			diskIndex.put(file.getFileName().toString(), fileSize);
+			size += fileSize;
+		}
+		diskBytes.set(size);
+		LOGGER.debug("Response cache directory: {}, size: {} bytes", diskDirectory, size);
+	}
+
+	/**
+	 * Reads the entry with the given key from disk.
+	 *
+	 * @param key cache key
+	 * @param fileName the cache file name of the key
+	 * @return the cached response or {@code null} if not found or not readable
+	 */
+	private CachedResponse readFromDisk(final String key, final String fileName) {
+		Path file = diskDirectory.resolve(fileName);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (FILE_VERSION != in.readInt() || !key.equals(in.readUTF())) {
+				return null;
+			}
+			int statusCode = in.readInt();
+			String statusText = in.readUTF();
+			long responseTime = in.readLong();
+			long expirationTime = in.readLong();
+			HttpHeaders headers = new HttpHeaders();
+			readHeaders(in, headers::add);
+			Map<String, List<String>> varyValues = new LinkedHashMap<>();
+			readHeaders(in, (name, value) -> varyValues.computeIfAbsent(name, k -> new ArrayList<>()).add(value));
+			byte[] body = in.readNBytes(in.readInt());
+			return new CachedResponse(statusCode, statusText, headers, body, varyValues, responseTime, expirationTime);
+		} catch (NoSuchFileException e) {
+			deleteFile(fileName);
+			return null;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Cannot read response cache file: {}, deleting it.", file, e);
+			deleteFile(fileName);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the entry to disk, the entry is first written to a temporary file which is then moved so that readers never
+	 * see partially written files. The least recently used files are deleted when the disk size goes over the limit.
+	 *
+	 * @param key cache key
+	 * @param response the response to write
+	 */
+	private void writeToDisk(final String key, final CachedResponse response) {
+		String fileName = fileName(key);
+		Path file = diskDirectory.resolve(fileName);
+		Path tempFile = null;
+		try {
+			tempFile = Files.createTempFile(diskDirectory, null, ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(FILE_VERSION);
+				out.writeUTF(key);
+				out.writeInt(response.getStatusCode());
+				out.writeUTF(response.getStatusText());
+				out.writeLong(response.getResponseTime());
+				out.writeLong(response.getExpirationTime());
+				writeHeaders(out, response.getHeaders());
+				writeHeaders(out, response.getVaryValues());
+				out.writeInt(response.getBody().length);
+				out.write(response.getBody());
+			}
+			long size = fileSize(tempFile);
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			List<String> evicted = new ArrayList<>();
+			diskLock.lock();
+			try {
+				Long previousSize = diskIndex.put(fileName, size);
+				diskBytes.addAndGet(size - (null != previousSize ? previousSize : 0));
+				Iterator<Map.Entry<String, Long>> iterator = diskIndex.entrySet().iterator();
+				while (diskBytes.get() > maxDiskBytes && iterator.hasNext()) {
+					Map.Entry<String, Long> eldest = iterator.next();
+					iterator.remove();
+					diskBytes.addAndGet(-eldest.getValue());
+					evicted.add(eldest.getKey());
+				}
+			} finally {
+				diskLock.unlock();
+			}
+			for (String evictedFileName : evicted) {
+				Files.deleteIfExists(diskDirectory.resolve(evictedFileName));
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Cannot write response cache file: {}", file, e);
+			if (null != tempFile) {
+				deleteQuietly(tempFile);
+			}
+		}
+	}
+
+	/**
+	 * Deletes all the cache files.
+	 */
+	private void clearDisk() {
+		diskLock.lock();
+		try {
+			diskIndex.clear();
+			diskBytes.set(0);
+		} finally {
+			diskLock.unlock();
+		}
+		for (Path file : listFiles()) {
+			deleteQuietly(file);
+		}
+	}
+
+	/**
+	 * Writes the given headers.
+	 *
+	 * @param out the output
+	 * @param headers the headers
+	 * @throws IOException on write errors
+	 */
+	private static void writeHeaders(final DataOutputStream out, final Map<String, List<String>> headers) throws IOException {
+		int count = 0;
+		for (List<String> values : headers.values()) {
+			count += values.size();
+		}
+		out.writeInt(count);
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			for (String value : entry.getValue()) {
+				out.writeUTF(entry.getKey());
+				out.writeUTF(value);
+			}
+		}
+	}
+
+	/**
+	 * Reads headers written with {@link #writeHeaders(DataOutputStream, Map)}.
+	 *
+	 * @param in the input
+	 * @param consumer the header consumer
+	 * @throws IOException on read errors
+	 */
+	private static void readHeaders(final DataInputStream in, final HeaderConsumer consumer) throws IOException {
+		int count = in.readInt();
+		for (int i = 0; i < count; ++i) {
+			consumer.accept(in.readUTF(), in.readUTF());
+		}
+	}
+
+	/**
+	 * Returns the cache file name for the given key, the file name is the SHA-256 of the key.
+	 *
+	 * @param key cache key
+	 * @return the cache file name
+	 */
+	private static String fileName(final String key) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(hash) + FILE_EXTENSION;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	/**
+	 * Returns all the cache files.
+	 *
+	 * @return all the cache files
+	 */
+	private List<Path> listFiles() {
+		try (Stream<Path> files = Files.list(diskDirectory)) {
+			return new ArrayList<>(files.filter(file -> file.getFileName().toString().endsWith(FILE_EXTENSION)).toList());
+		} catch (IOException e) {
+			LOGGER.warn("Cannot list response cache directory: {}", diskDirectory, e);
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Deletes the cache file with the given name and removes it from the disk index.
+	 *
+	 * @param fileName the cache file name
+	 */
+	private void deleteFile(final String fileName) {
+		diskLock.lock();
+		try {
+			Long size = diskIndex.remove(fileName);
+			if (null != size) {
+				diskBytes.addAndGet(-size);
+			}
+		} finally {
+			diskLock.unlock();
+		}
+		deleteQuietly(diskDirectory.resolve(fileName));
+	}
+
+	/**
+	 * Deletes the given file without updating the disk index.
+	 *
+	 * @param file the file to delete
+	 */
+	private static void deleteQuietly(final Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOGGER.warn("Cannot delete response cache file: {}", file, e);
+		}
+	}
+
+	/**
+	 * Returns the size of the given file or 0 if it doesn't exist.
+	 *
+	 * @param file the file
+	 * @return the file size
+	 */
+	private static long fileSize(final Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns the last modified time of the given file or the epoch if it doesn't exist.
+	 *
+	 * @param file the file
+	 * @return the last modified time
+	 */
+	private static FileTime lastModifiedTime(final Path file) {
+		try {
+			return Files.getLastModifiedTime(file);
+		} catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	/**
+	 * Returns the cache statistics.
+	 *
+	 * @return the cache statistics
+	 */
+	public ResponseCacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Returns the number of entries in memory.
+	 *
+	 * @return the number of entries in memory
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the memory size of all the entries.
+	 *
+	 * @return the memory size in bytes
+	 */
+	public long getBytes() {
+		lock.lock();
+		try {
+			return bytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the disk size of all the entries.
+	 *
+	 * @return the disk size in bytes
+	 */
+	public long getDiskBytes() {
+		return diskBytes.get();
+	}
+
+	/**
+	 * Returns the maximum size of a single entry.
+	 *
+	 * @return the maximum entry size in bytes
+	 */
+	public long getMaxEntryBytes() {
+		return maxEntryBytes;
+	}
+
+	/**
+	 * Header name value consumer used when reading cache files.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	@FunctionalInterface
+	private interface HeaderConsumer {
+
+		/**
+		 * Consumes a header.
+		 *
+		 * @param name header name
+		 * @param value header value
+		 */
+		void accept(String name, String value);
+	}
+
+	/**
+	 * Builder for {@link ResponseCache}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * Maximum memory size of all the entries.
+		 */
+		private long maxBytes = DEFAULT_MAX_BYTES;
+
+		/**
+		 * Maximum size of a single entry.
+		 */
+		private long maxEntryBytes = DEFAULT_MAX_ENTRY_BYTES;
+
+		/**
+		 * The disk directory.
+		 */
+		private Path diskDirectory;
+
+		/**
+		 * Maximum disk size of all the entries.
+		 */
+		private long maxDiskBytes = DEFAULT_MAX_DISK_BYTES;
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Sets the maximum memory size of all the entries.
+		 *
+		 * @param maxBytes maximum memory size in bytes
+		 * @return this builder
+		 */
+		public Builder maxBytes(final long maxBytes) {
+			if (maxBytes <= 0) {
+				throw new IllegalArgumentException("Maximum size must be positive, got: " + maxBytes);
+			}
+			this.maxBytes = maxBytes;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum size of a single entry, larger responses are not cached.
+		 *
+		 * @param maxEntryBytes maximum entry size in bytes
+		 * @return this builder
+		 */
+		public Builder maxEntryBytes(final long maxEntryBytes) {
+			if (maxEntryBytes <= 0) {
+				throw new IllegalArgumentException("Maximum entry size must be positive, got: " + maxEntryBytes);
+			}
+			this.maxEntryBytes = maxEntryBytes;
+			return this;
+		}
+
+		/**
+		 * Enables the disk tier in the given directory.
+		 *
+		 * @param diskDirectory the disk directory
+		 * @return this builder
+		 */
+		public Builder diskDirectory(final Path diskDirectory) {
+			this.diskDirectory = diskDirectory;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum disk size of all the entries.
+		 *
+		 * @param maxDiskBytes maximum disk size in bytes
+		 * @return this builder
+		 */
+		public Builder maxDiskBytes(final long maxDiskBytes) {
+			if (maxDiskBytes <= 0) {
+				throw new IllegalArgumentException("Maximum disk size must be positive, got: " + maxDiskBytes);
+			}
+			this.maxDiskBytes = maxDiskBytes;
+			return this;
+		}
+
+		/**
+		 * Builds the cache.
+		 *
+		 * @return a new cache
+		 */
+		public ResponseCache build() {
+			return new ResponseCache(this);
+		}
+	}
+}
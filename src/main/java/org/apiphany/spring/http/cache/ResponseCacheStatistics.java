@@ -0,0 +1,102 @@
+package org.apiphany.spring.http.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the response cache, all the counters are thread safe and cheap to update on the request path.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ResponseCacheStatistics {
+
+	/**
+	 * Number of requests answered from the cache without contacting the server.
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * Number of requests that had to get the full response from the server.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Number of requests answered from the cache after the server confirmed the entry with {@code 304 Not Modified}.
+	 */
+	private final LongAdder revalidations = new LongAdder();
+
+	/**
+	 * Number of entries evicted from memory because of the size limit.
+	 */
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Default constructor.
+	 */
+	public ResponseCacheStatistics() {
+		// empty
+	}
+
+	/**
+	 * Records a request answered from the cache.
+	 */
+	public void recordHit() {
+		hits.increment();
+	}
+
+	/**
+	 * Records a request that got the full response from the server.
+	 */
+	public void recordMiss() {
+		misses.increment();
+	}
+
+	/**
+	 * Records a request answered from the cache after revalidation.
+	 */
+	public void recordRevalidation() {
+		revalidations.increment();
+	}
+
+	/**
+	 * Records an entry evicted from memory.
+	 */
+	public void recordEviction() {
+		evictions.increment();
+	}
+
+	/**
+	 * Returns the number of requests answered from the cache without contacting the server.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of requests that had to get the full response from the server.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of requests answered from the cache after the server confirmed the entry.
+	 *
+	 * @return the number of revalidations
+	 */
+	public long getRevalidations() {
+		return revalidations.sum();
+	}
+
+	/**
+	 * Returns the number of entries evicted from memory because of the size limit.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+}
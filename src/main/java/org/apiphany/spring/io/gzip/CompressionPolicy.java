@@ -0,0 +1,238 @@
+package org.apiphany.spring.io.gzip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Decides which request bodies get compressed and how.
+ * <p>
+ * Compressing very small bodies usually makes them bigger and costs CPU, and compressing media that is already
+ * compressed (images, archives, etc.) only costs CPU, this policy skips both cases.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class CompressionPolicy {
+
+	/**
+	 * Default minimum body size in bytes for which compression is applied.
+	 */
+	public static final int DEFAULT_MIN_SIZE = 1024;
+
+	/**
+	 * Default content types which are never compressed because they are already compressed.
+	 */
+	public static final List<MediaType> DEFAULT_EXCLUDED_CONTENT_TYPES = List.of(
+			MediaType.parseMediaType("image/*"),
+			MediaType.parseMediaType("video/*"),
+			MediaType.parseMediaType("audio/*"),
+			MediaType.parseMediaType("application/zip"),
+			MediaType.parseMediaType("application/gzip"),
+			MediaType.parseMediaType("application/x-gzip"),
+			MediaType.parseMediaType("application/x-bzip2"),
+			MediaType.parseMediaType("application/x-7z-compressed"),
+			MediaType.parseMediaType("application/x-rar-compressed"),
+			MediaType.parseMediaType("application/zstd"));
+
+	/**
+	 * Default policy instance.
+	 */
+	private static final CompressionPolicy DEFAULT = builder().build();
+
+	/**
+	 * Minimum body size in bytes for which compression is applied.
+	 */
+	private final int minSize;
+
+	/**
+	 * The compression level.
+	 */
+	private final int level;
+
+	/**
+	 * Content types which are never compressed.
+	 */
+	private final List<MediaType> excludedContentTypes;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private CompressionPolicy(final Builder builder) {
+		this.minSize = builder.minSize;
+		this.level = builder.level;
+		this.excludedContentTypes = Collections.unmodifiableList(new ArrayList<>(builder.excludedContentTypes));
+	}
+
+	/**
+	 * Returns the default compression policy.
+	 *
+	 * @return the default compression policy
+	 */
+	public static CompressionPolicy defaults() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Returns a new builder initialized with the default values.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns true if a body with the given size and content type should be compressed, false otherwise.
+	 *
+	 * @param size body size in bytes
+	 * @param contentType body content type, can be {@code null}
+	 * @return true if the body should be compressed
+	 */
+	public boolean shouldCompress(final long size, final MediaType contentType) {
+		if (size < minSize) {
+			return false;
+		}
+		return isCompressible(contentType);
+	}
+
+	/**
+	 * Returns true if a body with the given content type should be compressed, false otherwise. This check is useful for
+	 * bodies whose size is not known upfront.
+	 *
+	 * @param contentType body content type, can be {@code null}
+	 * @return true if the content type is compressible
+	 */
+	public boolean isCompressible(final MediaType contentType) {
+		if (null == contentType) {
+			return true;
+		}
+		for (MediaType excludedContentType : excludedContentTypes) {
+			if (excludedContentType.includes(contentType)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the minimum body size in bytes for which compression is applied.
+	 *
+	 * @return the minimum body size
+	 */
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * Returns the compression level.
+	 *
+	 * @return the compression level
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Returns the content types which are never compressed.
+	 *
+	 * @return the excluded content types
+	 */
+	public List<MediaType> getExcludedContentTypes() {
+		return excludedContentTypes;
+	}
+
+	/**
+	 * Builder for {@link CompressionPolicy}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * Minimum body size in bytes for which compression is applied.
+		 */
+		private int minSize = DEFAULT_MIN_SIZE;
+
+		/**
+		 * The compression level.
+		 */
+		private int level = Deflater.DEFAULT_COMPRESSION;
+
+		/**
+		 * Content types which are never compressed.
+		 */
+		private final List<MediaType> excludedContentTypes = new ArrayList<>(DEFAULT_EXCLUDED_CONTENT_TYPES);
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Sets the minimum body size in bytes for which compression is applied.
+		 *
+		 * @param minSize minimum body size
+		 * @return this builder
+		 */
+		public Builder minSize(final int minSize) {
+			if (minSize < 0) {
+				throw new IllegalArgumentException("Minimum size cannot be negative, got: " + minSize);
+			}
+			this.minSize = minSize;
+			return this;
+		}
+
+		/**
+		 * Sets the compression level, see {@link Deflater#setLevel(int)}.
+		 *
+		 * @param level compression level
+		 * @return this builder
+		 */
+		public Builder level(final int level) {
+			if ((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+				throw new IllegalArgumentException("Invalid compression level: " + level);
+			}
+			this.level = level;
+			return this;
+		}
+
+		/**
+		 * Adds a content type that should never be compressed, wildcards like {@code image/*} are supported.
+		 *
+		 * @param contentType content type to exclude
+		 * @return this builder
+		 */
+		public Builder exclude(final MediaType contentType) {
+			this.excludedContentTypes.add(contentType);
+			return this;
+		}
+
+		/**
+		 * Replaces all the content types that should never be compressed.
+		 *
+		 * @param contentTypes content types to exclude
+		 * @return this builder
+		 */
+		public Builder excludedContentTypes(final List<MediaType> contentTypes) {
+			this.excludedContentTypes.clear();
+			this.excludedContentTypes.addAll(contentTypes);
+			return this;
+		}
+
+		/**
+		 * Builds the compression policy.
+		 *
+		 * @return a new compression policy
+		 */
+		public CompressionPolicy build() {
+			return new CompressionPolicy(this);
+		}
+	}
+}
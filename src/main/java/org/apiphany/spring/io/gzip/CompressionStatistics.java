@@ -0,0 +1,118 @@
+package org.apiphany.spring.io.gzip;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for compression, all the counters are thread safe and cheap to update on the request path.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class CompressionStatistics {
+
+	/**
+	 * Number of compressed bodies.
+	 */
+	private final LongAdder compressedCount = new LongAdder();
+
+	/**
+	 * Number of bodies for which compression was skipped.
+	 */
+	private final LongAdder skippedCount = new LongAdder();
+
+	/**
+	 * Number of bytes before compression.
+	 */
+	private final LongAdder bytesIn = new LongAdder();
+
+	/**
+	 * Number of bytes after compression.
+	 */
+	private final LongAdder bytesOut = new LongAdder();
+
+	/**
+	 * Time spent compressing in nanoseconds.
+	 */
+	private final LongAdder timeNanos = new LongAdder();
+
+	/**
+	 * Default constructor.
+	 */
+	public CompressionStatistics() {
+		// empty
+	}
+
+	/**
+	 * Records a compression.
+	 *
+	 * @param inputSize number of bytes before compression
+	 * @param outputSize number of bytes after compression
+	 * @param nanos time spent compressing in nanoseconds
+	 */
+	public void recordCompressed(final long inputSize, final long outputSize, final long nanos) {
+		compressedCount.increment();
+		bytesIn.add(inputSize);
+		bytesOut.add(outputSize);
+		timeNanos.add(nanos);
+	}
+
+	/**
+	 * Records a skipped compression.
+	 */
+	public void recordSkipped() {
+		skippedCount.increment();
+	}
+
+	/**
+	 * Returns the number of compressed bodies.
+	 *
+	 * @return the number of compressed bodies
+	 */
+	public long getCompressedCount() {
+		return compressedCount.sum();
+	}
+
+	/**
+	 * Returns the number of bodies for which compression was skipped.
+	 *
+	 * @return the number of skipped bodies
+	 */
+	public long getSkippedCount() {
+		return skippedCount.sum();
+	}
+
+	/**
+	 * Returns the number of bytes before compression.
+	 *
+	 * @return the number of bytes before compression
+	 */
+	public long getBytesIn() {
+		return bytesIn.sum();
+	}
+
+	/**
+	 * Returns the number of bytes after compression.
+	 *
+	 * @return the number of bytes after compression
+	 */
+	public long getBytesOut() {
+		return bytesOut.sum();
+	}
+
+	/**
+	 * Returns the number of bytes saved by compression.
+	 *
+	 * @return the number of bytes saved
+	 */
+	public long getBytesSaved() {
+		return getBytesIn() - getBytesOut();
+	}
+
+	/**
+	 * Returns the time spent compressing in nanoseconds.
+	 *
+	 * @return the time spent compressing
+	 */
+	public long getTimeNanos() {
+		return timeNanos.sum();
+	}
+}
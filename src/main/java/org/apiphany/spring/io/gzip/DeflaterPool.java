@@ -0,0 +1,235 @@
+package org.apiphany.spring.io.gzip;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Thread safe pool of reusable {@link Deflater} objects together with their checksum and output buffer.
+ * <p>
+ * Every {@link Deflater} holds native memory and allocating one for each compressed body creates a lot of garbage and
+ * native allocations on write heavy services, this pool keeps at most {@link #getCapacity()} idle entries, entries
+ * released when the pool is full are ended.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class DeflaterPool {
+
+	/**
+	 * Default pool capacity.
+	 */
+	public static final int DEFAULT_CAPACITY = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+	/**
+	 * Default output buffer size.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * Buffers bigger than this are dropped when the entry is released so that one huge body doesn't pin memory forever.
+	 */
+	public static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * The compression level of all the deflaters in this pool.
+	 */
+	private final int level;
+
+	/**
+	 * Maximum number of idle entries.
+	 */
+	private final int capacity;
+
+	/**
+	 * The idle entries.
+	 */
+	private final Queue<Entry> idle = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The number of idle entries, kept separately because {@link ConcurrentLinkedQueue#size()} is not constant time.
+	 */
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param level compression level
+	 * @param capacity maximum number of idle entries
+	 */
+	public DeflaterPool(final int level, final int capacity) {
+		this.level = level;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Constructor with default capacity.
+	 *
+	 * @param level compression level
+	 */
+	public DeflaterPool(final int level) {
+		this(level, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Borrows an entry from the pool, creating a new one if the pool is empty. The entry must be given back with
+	 * {@link #release(Entry)}.
+	 *
+	 * @return a pool entry
+	 */
+	public Entry borrow() {
+		Entry entry = idle.poll();
+		if (null == entry) {
+			return new Entry(level);
+		}
+		idleCount.decrementAndGet();
+		return entry;
+	}
+
+	/**
+	 * Gives an entry back to the pool, the entry is reset so it can be reused.
+	 *
+	 * @param entry pool entry
+	 */
+	public void release(final Entry entry) {
+		if (idleCount.incrementAndGet() <= capacity) {
+			entry.reset();
+			idle.offer(entry);
+			return;
+		}
+		idleCount.decrementAndGet();
+		entry.end();
+	}
+
+	/**
+	 * Ends all the idle entries, releasing their native memory.
+	 */
+	public void clear() {
+		Entry entry;
+		while (null != (entry = idle.poll())) {
+			idleCount.decrementAndGet();
+			entry.end();
+		}
+	}
+
+	/**
+	 * Returns the compression level of the deflaters in this pool.
+	 *
+	 * @return the compression level
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Returns the maximum number of idle entries.
+	 *
+	 * @return the pool capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of idle entries.
+	 *
+	 * @return the number of idle entries
+	 */
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+
+	/**
+	 * Pool entry holding a raw (no wrap) {@link Deflater}, the checksum and an output buffer.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Entry {
+
+		/**
+		 * The deflater.
+		 */
+		private final Deflater deflater;
+
+		/**
+		 * The GZIP checksum.
+		 */
+		private final CRC32 crc = new CRC32();
+
+		/**
+		 * The output buffer.
+		 */
+		private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+
+		/**
+		 * Constructor.
+		 *
+		 * @param level compression level
+		 */
+		private Entry(final int level) {
+			this.deflater = new Deflater(level, true);
+		}
+
+		/**
+		 * Returns the deflater.
+		 *
+		 * @return the deflater
+		 */
+		public Deflater getDeflater() {
+			return deflater;
+		}
+
+		/**
+		 * Returns the checksum.
+		 *
+		 * @return the checksum
+		 */
+		public CRC32 getCrc() {
+			return crc;
+		}
+
+		/**
+		 * Returns the output buffer.
+		 *
+		 * @return the output buffer
+		 */
+		public byte[] getBuffer() {
+			return buffer;
+		}
+
+		/**
+		 * Makes sure the output buffer can hold at least the given number of bytes keeping the existing content.
+		 *
+		 * @param length number of bytes already in the buffer
+		 * @param minCapacity minimum capacity
+		 * @return the output buffer
+		 */
+		public byte[] ensureCapacity(final int length, final int minCapacity) {
+			if (buffer.length < minCapacity) {
+				byte[] newBuffer = new byte[Math.max(minCapacity, buffer.length * 2)];
+				System.arraycopy(buffer, 0, newBuffer, 0, length);
+				buffer = newBuffer;
+			}
+			return buffer;
+		}
+
+		/**
+		 * Resets the deflater and the checksum and drops the output buffer if it grew too big.
+		 */
+		private void reset() {
+			deflater.reset();
+			crc.reset();
+			if (buffer.length > MAX_POOLED_BUFFER_SIZE) {
+				buffer = new byte[DEFAULT_BUFFER_SIZE];
+			}
+		}
+
+		/**
+		 * Ends the deflater releasing its native memory.
+		 */
+		private void end() {
+			deflater.end();
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package org.apiphany.spring.io.gzip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * GZIP compressor which reuses pooled {@link Deflater} objects and output buffers. The compressor is thread safe and
+ * meant to be shared.
+ * <p>
+ * The output is the same as the one produced by {@link java.util.zip.GZIPOutputStream}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class GZipCompressor {
+
+	/**
+	 * GZIP header: magic number, deflate method, no flags, no modification time, no extra flags, unknown OS.
+	 */
+	static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	/**
+	 * GZIP trailer size: CRC32 and uncompressed size.
+	 */
+	static final int TRAILER_SIZE = 8;
+
+	/**
+	 * The compression policy.
+	 */
+	private final CompressionPolicy policy;
+
+	/**
+	 * The deflater pool.
+	 */
+	private final DeflaterPool deflaterPool;
+
+	/**
+	 * The compression statistics.
+	 */
+	private final CompressionStatistics statistics = new CompressionStatistics();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param policy compression policy
+	 */
+	public GZipCompressor(final CompressionPolicy policy) {
+		this.policy = policy;
+		this.deflaterPool = new DeflaterPool(policy.getLevel());
+	}
+
+	/**
+	 * Returns a new compressor with the default compression policy.
+	 *
+	 * @return a new compressor
+	 */
+	public static GZipCompressor defaults() {
+		return new GZipCompressor(CompressionPolicy.defaults());
+	}
+
+	/**
+	 * Compresses the given bytes in GZIP format and records the compression in the statistics. This method doesn't check
+	 * the compression policy, callers should do it with
+	 * {@link CompressionPolicy#shouldCompress(long, org.springframework.http.MediaType)}.
+	 *
+	 * @param bytes bytes to compress
+	 * @return compressed bytes
+	 */
+	public byte[] compress(final byte[] bytes) {
+		long start = System.nanoTime();
+		byte[] result = deflate(bytes);
+		statistics.recordCompressed(bytes.length, result.length, System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Compresses the given bytes in GZIP format and returns the compressed bytes only if they are smaller than the given
+	 * bytes, otherwise it returns the given bytes array itself. Only the outcome is recorded in the statistics: a
+	 * compression when the compressed bytes are returned and a skipped compression otherwise. Like
+	 * {@link #compress(byte[])}, this method doesn't check the compression policy.
+	 *
+	 * @param bytes bytes to compress
+	 * @return compressed bytes, or the given bytes if compression doesn't make them smaller
+	 */
+	public byte[] compressIfSmaller(final byte[] bytes) {
+		long start = System.nanoTime();
+		byte[] result = deflate(bytes);
+		if (result.length >= bytes.length) {
+			statistics.recordSkipped();
+			return bytes;
+		}
+		statistics.recordCompressed(bytes.length, result.length, System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Compresses the given bytes in GZIP format.
+	 *
+	 * @param bytes bytes to compress
+	 * @return compressed bytes
+	 */
+	private byte[] deflate(final byte[] bytes) {
+		DeflaterPool.Entry entry = deflaterPool.borrow();
+		try {
+			Deflater deflater = entry.getDeflater();
+			CRC32 crc = entry.getCrc();
+
+			byte[] buffer = entry.ensureCapacity(0, HEADER.length + TRAILER_SIZE);
+			System.arraycopy(HEADER, 0, buffer, 0, HEADER.length);
+			int length = HEADER.length;
+
+			crc.update(bytes);
+			deflater.setInput(bytes);
+			deflater.finish();
+			while (!deflater.finished()) {
+				if (length == buffer.length) {
+					buffer = entry.ensureCapacity(length, buffer.length * 2);
+				}
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			buffer = entry.ensureCapacity(length, length + TRAILER_SIZE);
+			writeIntLE(buffer, length, (int) crc.getValue());
+			writeIntLE(buffer, length + 4, bytes.length);
+			length += TRAILER_SIZE;
+
+			return Arrays.copyOf(buffer, length);
+		} finally {
+			deflaterPool.release(entry);
+		}
+	}
+
+	/**
+	 * Returns a new output stream which compresses everything written to it in GZIP format on the fly and writes it to the
+	 * given output stream. Like {@link #compress(byte[])}, this method doesn't check the compression policy.
+	 *
+	 * @param out the underlying output stream
+	 * @return a new compressing output stream
+	 * @throws IOException when the GZIP header cannot be written
+	 */
+	public PooledGZipOutputStream outputStream(final OutputStream out) throws IOException {
+		return new PooledGZipOutputStream(out, deflaterPool, statistics);
+	}
+
+	/**
+	 * Writes an integer in little endian byte order.
+	 *
+	 * @param buffer destination buffer
+	 * @param offset offset in the destination buffer
+	 * @param value value to write
+	 */
+	static void writeIntLE(final byte[] buffer, final int offset, final int value) {
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >> 8);
+		buffer[offset + 2] = (byte) (value >> 16);
+		buffer[offset + 3] = (byte) (value >> 24);
+	}
+
+	/**
+	 * Returns the compression policy.
+	 *
+	 * @return the compression policy
+	 */
+	public CompressionPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Returns the deflater pool.
+	 *
+	 * @return the deflater pool
+	 */
+	public DeflaterPool getDeflaterPool() {
+		return deflaterPool;
+	}
+
+	/**
+	 * Returns the compression statistics.
+	 *
+	 * @return the compression statistics
+	 */
+	public CompressionStatistics getStatistics() {
+		return statistics;
+	}
+}
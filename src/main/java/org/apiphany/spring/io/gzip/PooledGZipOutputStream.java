@@ -0,0 +1,161 @@
+package org.apiphany.spring.io.gzip;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream which compresses the data in GZIP format on the fly using a {@link Deflater} borrowed from a
+ * {@link DeflaterPool}. The deflater is given back to the pool when the stream is finished or closed.
+ * <p>
+ * Only the deflater output buffer is held in memory, so this stream can compress bodies of any size. Instances are
+ * created with {@link GZipCompressor#outputStream(OutputStream)}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class PooledGZipOutputStream extends FilterOutputStream {
+
+	/**
+	 * The pool the deflater was borrowed from.
+	 */
+	private final DeflaterPool deflaterPool;
+
+	/**
+	 * The statistics to update when the stream is finished.
+	 */
+	private final CompressionStatistics statistics;
+
+	/**
+	 * The borrowed pool entry, {@code null} after the stream is finished.
+	 */
+	private DeflaterPool.Entry entry;
+
+	/**
+	 * Buffer for single byte writes.
+	 */
+	private final byte[] singleByte = new byte[1];
+
+	/**
+	 * Number of bytes written to this stream.
+	 */
+	private long bytesIn;
+
+	/**
+	 * Number of bytes written to the underlying stream.
+	 */
+	private long bytesOut;
+
+	/**
+	 * Time spent compressing in nanoseconds.
+	 */
+	private long nanos;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out the underlying output stream
+	 * @param deflaterPool pool to borrow the deflater from
+	 * @param statistics statistics to update when the stream is finished
+	 * @throws IOException when the GZIP header cannot be written
+	 */
+	PooledGZipOutputStream(final OutputStream out, final DeflaterPool deflaterPool, final CompressionStatistics statistics)
+			throws IOException {
+		super(out);
+		this.deflaterPool = deflaterPool;
+		this.statistics = statistics;
+		out.write(GZipCompressor.HEADER);
+		this.bytesOut = GZipCompressor.HEADER.length;
+		this.entry = deflaterPool.borrow();
+	}
+
+	/**
+	 * @see #write(int)
+	 */
+	@Override
+	public void write(final int b) throws IOException {
+		singleByte[0] = (byte) b;
+		write(singleByte, 0, 1);
+	}
+
+	/**
+	 * @see #write(byte[], int, int)
+	 */
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		if (null == entry) {
+			throw new IOException("Stream already finished");
+		}
+		if (len == 0) {
+			return;
+		}
+		long start = System.nanoTime();
+		entry.getCrc().update(b, off, len);
+		Deflater deflater = entry.getDeflater();
+		deflater.setInput(b, off, len);
+		while (!deflater.needsInput()) {
+			deflate(deflater);
+		}
+		bytesIn += len;
+		nanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * Finishes writing the compressed data and the GZIP trailer to the underlying stream without closing it and gives the
+	 * deflater back to the pool.
+	 *
+	 * @throws IOException when writing fails
+	 */
+	public void finish() throws IOException {
+		if (null == entry) {
+			return;
+		}
+		try {
+			long start = System.nanoTime();
+			Deflater deflater = entry.getDeflater();
+			deflater.finish();
+			while (!deflater.finished()) {
+				deflate(deflater);
+			}
+			byte[] trailer = new byte[GZipCompressor.TRAILER_SIZE];
+			GZipCompressor.writeIntLE(trailer, 0, (int) entry.getCrc().getValue());
+			GZipCompressor.writeIntLE(trailer, 4, (int) bytesIn);
+			out.write(trailer);
+			bytesOut += trailer.length;
+			nanos += System.nanoTime() - start;
+			statistics.recordCompressed(bytesIn, bytesOut, nanos);
+		} finally {
+			deflaterPool.release(entry);
+			entry = null;
+		}
+	}
+
+	/**
+	 * Finishes the compressed data and closes the underlying stream.
+	 *
+	 * @see #close()
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the next block of compressed data to the underlying stream.
+	 *
+	 * @param deflater the deflater
+	 * @throws IOException when writing fails
+	 */
+	private void deflate(final Deflater deflater) throws IOException {
+		byte[] buffer = entry.getBuffer();
+		int length = deflater.deflate(buffer, 0, buffer.length);
+		if (length > 0) {
+			out.write(buffer, 0, length);
+			bytesOut += length;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package org.apiphany.spring.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.morphix.reflection.Constructors;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Utility methods for reading JSON content element by element.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class JsonStreams {
+
+	/**
+	 * Hide constructor.
+	 */
+	private JsonStreams() {
+		throw Constructors.unsupportedOperationException();
+	}
+
+	/**
+	 * Returns a lazy stream over the elements of the JSON array in the given input stream. The elements are parsed one at a
+	 * time with the Jackson streaming parser while the stream is consumed, so only the current element is held in memory.
+	 * If the content is a single JSON object (not an array) the stream will have that object as its only element.
+	 * <p>
+	 * The returned stream must be closed (for example with try-with-resources) to close the input stream, if the stream is
+	 * fully consumed the input is closed when the parser reaches its end.
+	 *
+	 * @param <T> element type
+	 *
+	 * @param objectMapper object mapper used to read the elements
+	 * @param inputStream JSON input stream
+	 * @param elementType element type
+	 * @return a lazy stream of elements
+	 */
+	public static <T> Stream<T> stream(final ObjectMapper objectMapper, final InputStream inputStream, final JavaType elementType) {
+		return stream(objectMapper.readerFor(elementType), inputStream);
+	}
+
+	/**
+	 * Returns a lazy stream over the elements of the JSON array in the given input stream, see
+	 * {@link #stream(ObjectMapper, InputStream, JavaType)}.
+	 *
+	 * @param <T> element type
+	 *
+	 * @param objectMapper object mapper used to read the elements
+	 * @param inputStream JSON input stream
+	 * @param elementType element type
+	 * @return a lazy stream of elements
+	 */
+	public static <T> Stream<T> stream(final ObjectMapper objectMapper, final InputStream inputStream, final Class<T> elementType) {
+		return stream(objectMapper.readerFor(elementType), inputStream);
+	}
+
+	/**
+	 * Returns a lazy stream over the elements of the JSON array in the given input stream using the given reader, see
+	 * {@link #stream(ObjectMapper, InputStream, JavaType)}.
+	 *
+	 * @param <T> element type
+	 *
+	 * @param objectReader object reader for the element type
+	 * @param inputStream JSON input stream
+	 * @return a lazy stream of elements
+	 */
+	public static <T> Stream<T> stream(final ObjectReader objectReader, final InputStream inputStream) {
+		MappingIterator<T> iterator = iterator(objectReader, inputStream);
+		Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false)
+				.onClose(() -> close(iterator, inputStream));
+	}
+
+	/**
+	 * Returns a closeable iterator over the elements of the JSON array in the given input stream. Closing the iterator
+	 * closes the input stream.
+	 *
+	 * @param <T> element type
+	 *
+	 * @param objectReader object reader for the element type
+	 * @param inputStream JSON input stream
+	 * @return a closeable iterator of elements
+	 */
+	public static <T> MappingIterator<T> iterator(final ObjectReader objectReader, final InputStream inputStream) {
+		try {
+			return objectReader.readValues(inputStream);
+		} catch (IOException e) {
+			close(null, inputStream);
+			throw new UncheckedIOException("Failed to start reading JSON content", e);
+		}
+	}
+
+	/**
+	 * Closes the iterator and the input stream.
+	 *
+	 * @param iterator mapping iterator, can be {@code null}
+	 * @param inputStream input stream
+	 */
+	private static void close(final MappingIterator<?> iterator, final InputStream inputStream) {
+		try (InputStream in = inputStream) {
+			if (null != iterator) {
+				iterator.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to close JSON content", e);
+		}
+	}
+}
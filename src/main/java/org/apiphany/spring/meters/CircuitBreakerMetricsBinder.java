@@ -0,0 +1,103 @@
+package org.apiphany.spring.meters;
+
+import java.util.Locale;
+
+import org.apiphany.client.http.CircuitBreaker;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the {@link CircuitBreaker} state to a {@link MeterRegistry}. The per-host meters are registered when a host is
+ * seen for the first time.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class CircuitBreakerMetricsBinder implements MeterBinder {
+
+	/**
+	 * Metrics name prefix.
+	 */
+	public static final String PREFIX = "apiphany.client.circuit.breaker";
+
+	/**
+	 * The circuit breaker.
+	 */
+	private final CircuitBreaker circuitBreaker;
+
+	/**
+	 * The common tags.
+	 */
+	private final Tags tags;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param circuitBreaker circuit breaker
+	 * @param clientName the client name used as tag
+	 */
+	private CircuitBreakerMetricsBinder(final CircuitBreaker circuitBreaker, final String clientName) {
+		this.circuitBreaker = circuitBreaker;
+		this.tags = Tags.of("client", clientName);
+	}
+
+	/**
+	 * Returns a new binder.
+	 *
+	 * @param circuitBreaker circuit breaker
+	 * @param clientName the client name used as tag
+	 * @return a new binder
+	 */
+	public static CircuitBreakerMetricsBinder of(final CircuitBreaker circuitBreaker, final String clientName) {
+		return new CircuitBreakerMetricsBinder(circuitBreaker, clientName);
+	}
+
+	/**
+	 * @see MeterBinder#bindTo(MeterRegistry)
+	 */
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		circuitBreaker.addHostListener(host -> bindTo(registry, host));
+		circuitBreaker.getHosts().forEach(host -> bindTo(registry, host));
+	}
+
+	/**
+	 * Binds the meters of the given host.
+	 *
+	 * @param registry the meter registry
+	 * @param host the host key
+	 */
+	private void bindTo(final MeterRegistry registry, final String host) {
+		Tags hostTags = tags.and("host", host);
+		for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+			String stateName = state.name().toLowerCase(Locale.ROOT);
+			Gauge.builder(PREFIX + ".state", circuitBreaker, breaker -> state == breaker.getState(host) ? 1 : 0)
+					.description("1 if the circuit of the host is in the given state, 0 otherwise")
+					.tags(hostTags).tag("state", stateName)
+					.register(registry);
+			FunctionCounter.builder(PREFIX + ".transitions", circuitBreaker, breaker -> breaker.getTransitions(host, state))
+					.description("Number of transitions of the circuit of the host to the given state")
+					.tags(hostTags).tag("state", stateName)
+					.register(registry);
+		}
+		FunctionCounter.builder(PREFIX + ".calls", circuitBreaker, breaker -> breaker.getSuccessfulCalls(host))
+				.description("Number of successful calls")
+				.tags(hostTags).tag("kind", "successful")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".calls", circuitBreaker, breaker -> breaker.getFailedCalls(host))
+				.description("Number of failed calls")
+				.tags(hostTags).tag("kind", "failed")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".calls", circuitBreaker, breaker -> breaker.getRejectedCalls(host))
+				.description("Number of calls rejected because the circuit was open")
+				.tags(hostTags).tag("kind", "rejected")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".slow.calls", circuitBreaker, breaker -> breaker.getSlowCalls(host))
+				.description("Number of calls slower than the slow call duration")
+				.tags(hostTags)
+				.register(registry);
+	}
+}
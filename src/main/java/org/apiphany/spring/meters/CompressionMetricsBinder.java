@@ -0,0 +1,91 @@
+package org.apiphany.spring.meters;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apiphany.spring.io.gzip.CompressionStatistics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the {@link CompressionStatistics} counters to a {@link MeterRegistry}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class CompressionMetricsBinder implements MeterBinder {
+
+	/**
+	 * Metrics name prefix.
+	 */
+	public static final String PREFIX = "apiphany.client.compression";
+
+	/**
+	 * The compression statistics.
+	 */
+	private final CompressionStatistics statistics;
+
+	/**
+	 * The common tags.
+	 */
+	private final Tags tags;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param statistics compression statistics
+	 * @param clientName the client name used as tag
+	 */
+	private CompressionMetricsBinder(final CompressionStatistics statistics, final String clientName) {
+		this.statistics = statistics;
+		this.tags = Tags.of("client", clientName);
+	}
+
+	/**
+	 * Returns a new binder.
+	 *
+	 * @param statistics compression statistics
+	 * @param clientName the client name used as tag
+	 * @return a new binder
+	 */
+	public static CompressionMetricsBinder of(final CompressionStatistics statistics, final String clientName) {
+		return new CompressionMetricsBinder(statistics, clientName);
+	}
+
+	/**
+	 * @see MeterBinder#bindTo(MeterRegistry)
+	 */
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		FunctionCounter.builder(PREFIX + ".requests", statistics, CompressionStatistics::getCompressedCount)
+				.description("Number of compressed request bodies")
+				.tags(tags).tag("result", "compressed")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".requests", statistics, CompressionStatistics::getSkippedCount)
+				.description("Number of request bodies for which compression was skipped")
+				.tags(tags).tag("result", "skipped")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".bytes.in", statistics, CompressionStatistics::getBytesIn)
+				.description("Number of bytes before compression")
+				.baseUnit(BaseUnits.BYTES)
+				.tags(tags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".bytes.out", statistics, CompressionStatistics::getBytesOut)
+				.description("Number of bytes after compression")
+				.baseUnit(BaseUnits.BYTES)
+				.tags(tags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".bytes.saved", statistics, CompressionStatistics::getBytesSaved)
+				.description("Number of bytes saved by compression")
+				.baseUnit(BaseUnits.BYTES)
+				.tags(tags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".time", statistics, s -> s.getTimeNanos() / (double) TimeUnit.SECONDS.toNanos(1))
+				.description("Time spent compressing request bodies")
+				.baseUnit("seconds")
+				.tags(tags)
+				.register(registry);
+	}
+}
@@ -0,0 +1,86 @@
+package org.apiphany.spring.meters;
+
+import org.apiphany.client.http.ConcurrencyLimiter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the {@link ConcurrencyLimiter} state to a {@link MeterRegistry}. The per-host meters are registered when a host
+ * is seen for the first time.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ConcurrencyLimiterMetricsBinder implements MeterBinder {
+
+	/**
+	 * Metrics name prefix.
+	 */
+	public static final String PREFIX = "apiphany.client.concurrency";
+
+	/**
+	 * The concurrency limiter.
+	 */
+	private final ConcurrencyLimiter concurrencyLimiter;
+
+	/**
+	 * The common tags.
+	 */
+	private final Tags tags;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param concurrencyLimiter concurrency limiter
+	 * @param clientName the client name used as tag
+	 */
+	private ConcurrencyLimiterMetricsBinder(final ConcurrencyLimiter concurrencyLimiter, final String clientName) {
+		this.concurrencyLimiter = concurrencyLimiter;
+		this.tags = Tags.of("client", clientName);
+	}
+
+	/**
+	 * Returns a new binder.
+	 *
+	 * @param concurrencyLimiter concurrency limiter
+	 * @param clientName the client name used as tag
+	 * @return a new binder
+	 */
+	public static ConcurrencyLimiterMetricsBinder of(final ConcurrencyLimiter concurrencyLimiter, final String clientName) {
+		return new ConcurrencyLimiterMetricsBinder(concurrencyLimiter, clientName);
+	}
+
+	/**
+	 * @see MeterBinder#bindTo(MeterRegistry)
+	 */
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		concurrencyLimiter.addHostListener(host -> bindTo(registry, host));
+		concurrencyLimiter.getHosts().forEach(host -> bindTo(registry, host));
+	}
+
+	/**
+	 * Binds the meters of the given host.
+	 *
+	 * @param registry the meter registry
+	 * @param host the host key
+	 */
+	private void bindTo(final MeterRegistry registry, final String host) {
+		Tags hostTags = tags.and("host", host);
+		Gauge.builder(PREFIX + ".limit", concurrencyLimiter, limiter -> limiter.getLimit(host))
+				.description("Current concurrency limit of the host")
+				.tags(hostTags)
+				.register(registry);
+		Gauge.builder(PREFIX + ".in.flight", concurrencyLimiter, limiter -> limiter.getInFlight(host))
+				.description("Number of exchanges in flight for the host")
+				.tags(hostTags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".rejected", concurrencyLimiter, limiter -> limiter.getRejected(host))
+				.description("Number of exchanges rejected because the host was at its concurrency limit")
+				.tags(hostTags)
+				.register(registry);
+	}
+}
@@ -0,0 +1,339 @@
+package org.apiphany.spring.meters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.ConcurrentLruCache;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * Resolves request paths to URI templates used as metric tags while bounding the number of distinct templates.
+ * <p>
+ * A path is first matched against the explicitly configured templates (for example {@code /users/{id}/orders}), the
+ * first matching template is used. Otherwise the path segments that look like identifiers are replaced: numbers and long
+ * hexadecimal strings with {@code {id}}, UUIDs with {@code {uuid}} and segments made mostly of digits with
+ * {@code {id}}. When the number of distinct templates reaches {@link Builder#maxTemplates(int)} every unknown template
+ * is collapsed into {@link #OTHER} so that a client calling paths with unexpected identifiers cannot explode the tag
+ * cardinality.
+ * <p>
+ * The resolved templates are cached by path, so the resolution cost is paid once per distinct path.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class EndpointTemplates {
+
+	/**
+	 * Template used for the paths over the cardinality limit.
+	 */
+	public static final String OTHER = "OTHER";
+
+	/**
+	 * Default maximum number of distinct templates.
+	 */
+	public static final int DEFAULT_MAX_TEMPLATES = 100;
+
+	/**
+	 * Default maximum number of cached paths.
+	 */
+	public static final int DEFAULT_CACHE_CAPACITY = 1024;
+
+	/**
+	 * Identifier placeholder.
+	 */
+	private static final String ID = "{id}";
+
+	/**
+	 * UUID placeholder.
+	 */
+	private static final String UUID = "{uuid}";
+
+	/**
+	 * Minimum length of hexadecimal segments considered identifiers.
+	 */
+	private static final int MIN_HEX_ID_LENGTH = 16;
+
+	/**
+	 * The explicitly configured templates.
+	 */
+	private final List<PathPattern> patterns;
+
+	/**
+	 * Maximum number of distinct templates.
+	 */
+	private final int maxTemplates;
+
+	/**
+	 * The distinct templates resolved so far.
+	 */
+	private final Set<String> templates = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The resolved templates by path.
+	 */
+	private final ConcurrentLruCache<String, String> cache;
+
+	/**
+	 * Number of path resolutions collapsed into {@link #OTHER}.
+	 */
+	private final LongAdder collapsed = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param builder the builder
+	 */
+	private EndpointTemplates(final Builder builder) {
+		this.patterns = List.copyOf(builder.patterns);
+		this.maxTemplates = builder.maxTemplates;
+		this.cache = new ConcurrentLruCache<>(builder.cacheCapacity, this::resolveTemplate);
+	}
+
+	/**
+	 * Returns new endpoint templates with the default settings and no explicit templates.
+	 *
+	 * @return new endpoint templates
+	 */
+	public static EndpointTemplates defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return a new builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the template of the given path.
+	 *
+	 * @param path the raw request path
+	 * @return the template, {@link #OTHER} if the cardinality limit was reached
+	 */
+	public String resolve(final String path) {
+		String template = cache.get(null == path || path.isEmpty() ? "/" : path);
+		if (OTHER.equals(template)) {
+			collapsed.increment();
+		}
+		return template;
+	}
+
+	/**
+	 * Resolves the template of the given path, called on cache misses.
+	 *
+	 * @param path the raw request path
+	 * @return the template
+	 */
+	private String resolveTemplate(final String path) {
+		PathContainer pathContainer = PathContainer.parsePath(path);
+		for (PathPattern pattern : patterns) {
+			if (pattern.matches(pathContainer)) {
+				return pattern.getPatternString();
+			}
+		}
+		String template = normalize(path);
+		if (templates.contains(template)) {
+			return template;
+		}
+		if (templates.size() >= maxTemplates) {
+			return OTHER;
+		}
+		templates.add(template);
+		return template;
+	}
+
+	/**
+	 * Replaces the path segments that look like identifiers with placeholders.
+	 *
+	 * @param path the raw request path
+	 * @return the normalized path
+	 */
+	private static String normalize(final String path) {
+		StringBuilder template = new StringBuilder(path.length());
+		int start = 0;
+		while (start <= path.length()) {
+			int end = path.indexOf('/', start);
+			if (end < 0) {
+				end = path.length();
+			}
+			if (start > 0) {
+				template.append('/');
+			}
+			template.append(normalizeSegment(path.substring(start, end)));
+			start = end + 1;
+		}
+		return template.toString();
+	}
+
+	/**
+	 * Returns the placeholder for the given segment if it looks like an identifier or the segment itself otherwise.
+	 *
+	 * @param segment the path segment
+	 * @return the placeholder or the segment
+	 */
+	private static String normalizeSegment(final String segment) {
+		int length = segment.length();
+		if (0 == length) {
+			return segment;
+		}
+		int digits = 0;
+		int hexLetters = 0;
+		for (int i = 0; i < length; ++i) {
+			char c = segment.charAt(i);
+			if (c >= '0' && c <= '9') {
+				++digits;
+			} else if ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
+				++hexLetters;
+			}
+		}
+		if (digits == length) {
+			return ID;
+		}
+		if (isUuid(segment)) {
+			return UUID;
+		}
+		if (length >= MIN_HEX_ID_LENGTH && digits + hexLetters == length) {
+			return ID;
+		}
+		if (length >= 4 && digits * 2 > length) {
+			return ID;
+		}
+		return segment;
+	}
+
+	/**
+	 * Returns true if the given segment is a UUID in its canonical form.
+	 *
+	 * @param segment the path segment
+	 * @return true if the segment is a UUID
+	 */
+	private static boolean isUuid(final String segment) {
+		if (36 != segment.length()) {
+			return false;
+		}
+		for (int i = 0; i < 36; ++i) {
+			char c = segment.charAt(i);
+			boolean dash = 8 == i || 13 == i || 18 == i || 23 == i;
+			if (dash != ('-' == c)) {
+				return false;
+			}
+			if (!dash && Character.digit(c, 16) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of distinct templates resolved by normalization, the explicit templates are not counted.
+	 *
+	 * @return the number of distinct templates
+	 */
+	public int getTemplateCount() {
+		return templates.size();
+	}
+
+	/**
+	 * Returns the maximum number of distinct templates.
+	 *
+	 * @return the maximum number of distinct templates
+	 */
+	public int getMaxTemplates() {
+		return maxTemplates;
+	}
+
+	/**
+	 * Returns the number of path resolutions collapsed into {@link #OTHER}.
+	 *
+	 * @return the number of collapsed resolutions
+	 */
+	public long getCollapsed() {
+		return collapsed.sum();
+	}
+
+	/**
+	 * Builder for {@link EndpointTemplates}.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public static class Builder {
+
+		/**
+		 * The explicitly configured templates.
+		 */
+		private final List<PathPattern> patterns = new ArrayList<>();
+
+		/**
+		 * Maximum number of distinct templates.
+		 */
+		private int maxTemplates = DEFAULT_MAX_TEMPLATES;
+
+		/**
+		 * Maximum number of cached paths.
+		 */
+		private int cacheCapacity = DEFAULT_CACHE_CAPACITY;
+
+		/**
+		 * Hide constructor.
+		 */
+		private Builder() {
+			// empty
+		}
+
+		/**
+		 * Adds an explicit template, for example {@code /users/{id}/orders}, the templates are matched in the order they
+		 * were added.
+		 *
+		 * @param template the path template
+		 * @return this builder
+		 */
+		public Builder template(final String template) {
+			this.patterns.add(PathPatternParser.defaultInstance.parse(template));
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of distinct templates resolved by normalization.
+		 *
+		 * @param maxTemplates maximum number of distinct templates
+		 * @return this builder
+		 */
+		public Builder maxTemplates(final int maxTemplates) {
+			if (maxTemplates < 1) {
+				throw new IllegalArgumentException("Maximum templates must be greater than 0, got: " + maxTemplates);
+			}
+			this.maxTemplates = maxTemplates;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of cached paths.
+		 *
+		 * @param cacheCapacity maximum number of cached paths
+		 * @return this builder
+		 */
+		public Builder cacheCapacity(final int cacheCapacity) {
+			if (cacheCapacity < 1) {
+				throw new IllegalArgumentException("Cache capacity must be greater than 0, got: " + cacheCapacity);
+			}
+			this.cacheCapacity = cacheCapacity;
+			return this;
+		}
+
+		/**
+		 * Builds the endpoint templates.
+		 *
+		 * @return new endpoint templates
+		 */
+		public EndpointTemplates build() {
+			return new EndpointTemplates(this);
+		}
+	}
+}
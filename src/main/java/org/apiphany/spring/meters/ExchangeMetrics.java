@@ -0,0 +1,291 @@
+package org.apiphany.spring.meters;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+
+/**
+ * Per-endpoint exchange metrics: a timer with a percentile histogram per method, status class and URI template and the
+ * request and response body size distributions per method, URI template and content encoding. The exchanges that
+ * failed with an I/O error and the ones rejected by the client have their own {@link #IO_ERROR} and {@link #REJECTED}
+ * status tags.
+ * <p>
+ * The URI templates come from {@link EndpointTemplates} which bounds the tag cardinality. The meters are registered
+ * once per endpoint and then cached, recording an exchange only looks up the cached meters in concurrent maps and
+ * updates them, without locking or building meter identifiers on the request path.
+ * <p>
+ * The timer histogram is limited to the {@link #MIN_EXPECTED_DURATION} to {@link #MAX_EXPECTED_DURATION} range, it can
+ * be changed or disabled with a Micrometer {@code MeterFilter} on {@link #PREFIX}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ExchangeMetrics {
+
+	/**
+	 * Metrics name prefix.
+	 */
+	public static final String PREFIX = "apiphany.client.exchanges";
+
+	/**
+	 * Status tag value for exchanges that failed with an I/O error.
+	 */
+	public static final String IO_ERROR = "IO_ERROR";
+
+	/**
+	 * Status tag value for exchanges rejected by the client before being sent, for example by a concurrency limit.
+	 */
+	public static final String REJECTED = "REJECTED";
+
+	/**
+	 * Encoding tag value for bodies without a content encoding.
+	 */
+	public static final String IDENTITY = "identity";
+
+	/**
+	 * Minimum expected exchange duration for the histogram.
+	 */
+	public static final Duration MIN_EXPECTED_DURATION = Duration.ofMillis(1);
+
+	/**
+	 * Maximum expected exchange duration for the histogram.
+	 */
+	public static final Duration MAX_EXPECTED_DURATION = Duration.ofSeconds(30);
+
+	/**
+	 * The status tag values by status class index, see {@link #statusIndex(int)}.
+	 */
+	private static final String[] STATUSES = { "UNKNOWN", "1xx", "2xx", "3xx", "4xx", "5xx", IO_ERROR, REJECTED };
+
+	/**
+	 * Index of {@link #IO_ERROR} in {@link #STATUSES}.
+	 */
+	private static final int IO_ERROR_INDEX = STATUSES.length - 2;
+
+	/**
+	 * Index of {@link #REJECTED} in {@link #STATUSES}.
+	 */
+	private static final int REJECTED_INDEX = STATUSES.length - 1;
+
+	/**
+	 * The meter registry.
+	 */
+	private final MeterRegistry registry;
+
+	/**
+	 * The common tags.
+	 */
+	private final Tags tags;
+
+	/**
+	 * The URI templates.
+	 */
+	private final EndpointTemplates endpointTemplates;
+
+	/**
+	 * The endpoint meters by host, URI template and method.
+	 */
+	private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param registry the meter registry
+	 * @param clientName the client name used as tag
+	 * @param endpointTemplates the URI templates
+	 */
+	private ExchangeMetrics(final MeterRegistry registry, final String clientName, final EndpointTemplates endpointTemplates) {
+		this.registry = registry;
+		this.tags = Tags.of("client", clientName);
+		this.endpointTemplates = endpointTemplates;
+		Gauge.builder(PREFIX + ".templates", endpointTemplates, EndpointTemplates::getTemplateCount)
+				.description("Number of distinct URI templates used as tags")
+				.tags(tags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".templates.collapsed", endpointTemplates, EndpointTemplates::getCollapsed)
+				.description("Number of exchanges whose URI template was collapsed because of the cardinality limit")
+				.tags(tags)
+				.register(registry);
+	}
+
+	/**
+	 * Returns new exchange metrics registered in the given registry.
+	 *
+	 * @param registry the meter registry
+	 * @param clientName the client name used as tag
+	 * @param endpointTemplates the URI templates
+	 * @return new exchange metrics
+	 */
+	public static ExchangeMetrics of(final MeterRegistry registry, final String clientName, final EndpointTemplates endpointTemplates) {
+		return new ExchangeMetrics(registry, clientName, endpointTemplates);
+	}
+
+	/**
+	 * Returns the meters of the endpoint of the given request, registering them if needed. The endpoint is resolved once
+	 * per exchange and then used to record the exchange duration and body sizes.
+	 *
+	 * @param method the HTTP method
+	 * @param uri the request URI
+	 * @return the endpoint meters
+	 */
+	public Endpoint endpoint(final String method, final URI uri) {
+		String host = uri.getScheme() + "://" + uri.getRawAuthority();
+		String template = endpointTemplates.resolve(uri.getRawPath());
+		String key = method + ' ' + host + template;
+		Endpoint endpoint = endpoints.get(key);
+		if (null != endpoint) {
+			return endpoint;
+		}
+		return endpoints.computeIfAbsent(key, k -> new Endpoint(tags.and("method", method, "host", host, "uri", template)));
+	}
+
+	/**
+	 * Returns the index of the status class of the given status code in {@link #STATUSES}.
+	 *
+	 * @param statusCode the response status code
+	 * @return the status class index
+	 */
+	private static int statusIndex(final int statusCode) {
+		int statusClass = statusCode / 100;
+		return statusClass >= 1 && statusClass <= 5 ? statusClass : 0;
+	}
+
+	/**
+	 * The cached meters of an endpoint, that is a method, host and URI template.
+	 *
+	 * @author Radu Sebastian LAZIN
+	 */
+	public class Endpoint {
+
+		/**
+		 * The endpoint tags.
+		 */
+		private final Tags endpointTags;
+
+		/**
+		 * The timers by status class index, registered on first use.
+		 */
+		private final AtomicReferenceArray<Timer> timers = new AtomicReferenceArray<>(STATUSES.length);
+
+		/**
+		 * The request size summaries by content encoding.
+		 */
+		private final Map<String, DistributionSummary> requestSizes = new ConcurrentHashMap<>();
+
+		/**
+		 * The response size summaries by content encoding.
+		 */
+		private final Map<String, DistributionSummary> responseSizes = new ConcurrentHashMap<>();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param endpointTags the endpoint tags
+		 */
+		Endpoint(final Tags endpointTags) {
+			this.endpointTags = endpointTags;
+		}
+
+		/**
+		 * Records a completed exchange.
+		 *
+		 * @param statusCode the response status code
+		 * @param durationNanos the exchange duration in nanoseconds
+		 */
+		public void recordExchange(final int statusCode, final long durationNanos) {
+			timer(statusIndex(statusCode)).record(durationNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Records an exchange that failed with an I/O error.
+		 *
+		 * @param durationNanos the exchange duration in nanoseconds
+		 */
+		public void recordIoError(final long durationNanos) {
+			timer(IO_ERROR_INDEX).record(durationNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Records an exchange rejected by the client before it was sent.
+		 *
+		 * @param durationNanos the time until the exchange was rejected in nanoseconds
+		 */
+		public void recordRejected(final long durationNanos) {
+			timer(REJECTED_INDEX).record(durationNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Records the size of a request body.
+		 *
+		 * @param encoding the content encoding, {@code null} if the body is not encoded
+		 * @param size the body size in bytes
+		 */
+		public void recordRequestSize(final String encoding, final long size) {
+			size(requestSizes, ".request.size", "Size of the request bodies as sent", encoding).record(size);
+		}
+
+		/**
+		 * Records the size of a response body.
+		 *
+		 * @param encoding the content encoding, {@code null} if the body is not encoded
+		 * @param size the body size in bytes
+		 */
+		public void recordResponseSize(final String encoding, final long size) {
+			size(responseSizes, ".response.size", "Size of the response bodies as read", encoding).record(size);
+		}
+
+		/**
+		 * Returns the timer of the given status class index, registering it if needed.
+		 *
+		 * @param statusIndex the status class index
+		 * @return the timer
+		 */
+		private Timer timer(final int statusIndex) {
+			Timer timer = timers.get(statusIndex);
+			if (null == timer) {
+				timer = Timer.builder(PREFIX)
+						.description("Duration of the exchanges until the response body was consumed")
+						.tags(endpointTags).tag("status", STATUSES[statusIndex])
+						.publishPercentileHistogram()
+						.minimumExpectedValue(MIN_EXPECTED_DURATION)
+						.maximumExpectedValue(MAX_EXPECTED_DURATION)
+						.register(registry);
+				timers.compareAndSet(statusIndex, null, timer);
+			}
+			return timer;
+		}
+
+		/**
+		 * Returns the size summary of the given encoding, registering it if needed.
+		 *
+		 * @param summaries the summaries by content encoding
+		 * @param suffix the metric name suffix
+		 * @param description the metric description
+		 * @param encoding the content encoding, {@code null} if the body is not encoded
+		 * @return the size summary
+		 */
+		private DistributionSummary size(final Map<String, DistributionSummary> summaries, final String suffix,
+				final String description, final String encoding) {
+			String encodingTag = null == encoding ? IDENTITY : encoding;
+			DistributionSummary summary = summaries.get(encodingTag);
+			if (null != summary) {
+				return summary;
+			}
+			return summaries.computeIfAbsent(encodingTag, e -> DistributionSummary.builder(PREFIX + suffix)
+					.description(description)
+					.baseUnit(BaseUnits.BYTES)
+					.tags(endpointTags).tag("encoding", e)
+					.register(registry));
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package org.apiphany.spring.meters;
+
+import org.apiphany.client.http.LoadBalancer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the {@link LoadBalancer} endpoint load and health to a {@link MeterRegistry}, the meters are tagged with the
+ * service name and the endpoint URL.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class LoadBalancerMetricsBinder implements MeterBinder {
+
+	/**
+	 * Metrics name prefix.
+	 */
+	public static final String PREFIX = "apiphany.client.load.balancer";
+
+	/**
+	 * The load balancer.
+	 */
+	private final LoadBalancer loadBalancer;
+
+	/**
+	 * The common tags.
+	 */
+	private final Tags tags;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param loadBalancer load balancer
+	 * @param clientName the client name used as tag
+	 */
+	private LoadBalancerMetricsBinder(final LoadBalancer loadBalancer, final String clientName) {
+		this.loadBalancer = loadBalancer;
+		this.tags = Tags.of("client", clientName);
+	}
+
+	/**
+	 * Returns a new binder.
+	 *
+	 * @param loadBalancer load balancer
+	 * @param clientName the client name used as tag
+	 * @return a new binder
+	 */
+	public static LoadBalancerMetricsBinder of(final LoadBalancer loadBalancer, final String clientName) {
+		return new LoadBalancerMetricsBinder(loadBalancer, clientName);
+	}
+
+	/**
+	 * @see MeterBinder#bindTo(MeterRegistry)
+	 */
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		for (String service : loadBalancer.getServices()) {
+			loadBalancer.getEndpoints(service).forEach(endpoint -> bindTo(registry, endpoint));
+		}
+	}
+
+	/**
+	 * Binds the meters of the given endpoint.
+	 *
+	 * @param registry the meter registry
+	 * @param endpoint the endpoint
+	 */
+	private void bindTo(final MeterRegistry registry, final LoadBalancer.Endpoint endpoint) {
+		Tags endpointTags = tags.and("service", endpoint.getService(), "endpoint", endpoint.getUrl());
+		Gauge.builder(PREFIX + ".in.flight", endpoint, LoadBalancer.Endpoint::getInFlight)
+				.description("Number of outstanding requests to the endpoint")
+				.tags(endpointTags)
+				.register(registry);
+		Gauge.builder(PREFIX + ".latency", endpoint, e -> e.getLatencyNanos() / 1_000_000_000.0)
+				.description("Peak EWMA latency of the endpoint")
+				.baseUnit("seconds")
+				.tags(endpointTags)
+				.register(registry);
+		Gauge.builder(PREFIX + ".ejected", endpoint, e -> e.isEjected() ? 1 : 0)
+				.description("1 if the endpoint is ejected, 0 otherwise")
+				.tags(endpointTags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".requests", endpoint, LoadBalancer.Endpoint::getSuccesses)
+				.description("Number of successful requests")
+				.tags(endpointTags).tag("kind", "successful")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".requests", endpoint, LoadBalancer.Endpoint::getFailures)
+				.description("Number of failed requests")
+				.tags(endpointTags).tag("kind", "failed")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".ejections", endpoint, LoadBalancer.Endpoint::getEjections)
+				.description("Number of times the endpoint was ejected")
+				.tags(endpointTags)
+				.register(registry);
+	}
+}
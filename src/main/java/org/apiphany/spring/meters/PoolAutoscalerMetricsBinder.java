@@ -0,0 +1,86 @@
+package org.apiphany.spring.meters;
+
+import org.apiphany.client.http.PoolAutoscaler;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the {@link PoolAutoscaler} state to a {@link MeterRegistry}. The per-route meters are registered when a route is
+ * seen for the first time.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class PoolAutoscalerMetricsBinder implements MeterBinder {
+
+	/**
+	 * Metrics name prefix.
+	 */
+	public static final String PREFIX = "apiphany.client.pool.autoscaler";
+
+	/**
+	 * The pool autoscaler.
+	 */
+	private final PoolAutoscaler poolAutoscaler;
+
+	/**
+	 * The common tags.
+	 */
+	private final Tags tags;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param poolAutoscaler pool autoscaler
+	 * @param clientName the client name used as tag
+	 */
+	private PoolAutoscalerMetricsBinder(final PoolAutoscaler poolAutoscaler, final String clientName) {
+		this.poolAutoscaler = poolAutoscaler;
+		this.tags = Tags.of("client", clientName);
+	}
+
+	/**
+	 * Returns a new binder.
+	 *
+	 * @param poolAutoscaler pool autoscaler
+	 * @param clientName the client name used as tag
+	 * @return a new binder
+	 */
+	public static PoolAutoscalerMetricsBinder of(final PoolAutoscaler poolAutoscaler, final String clientName) {
+		return new PoolAutoscalerMetricsBinder(poolAutoscaler, clientName);
+	}
+
+	/**
+	 * @see MeterBinder#bindTo(MeterRegistry)
+	 */
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		poolAutoscaler.addRouteListener(route -> bindTo(registry, route));
+		poolAutoscaler.getRoutes().forEach(route -> bindTo(registry, route));
+	}
+
+	/**
+	 * Binds the meters of the given route.
+	 *
+	 * @param registry the meter registry
+	 * @param route the route key
+	 */
+	private void bindTo(final MeterRegistry registry, final String route) {
+		Tags routeTags = tags.and("route", route);
+		Gauge.builder(PREFIX + ".max.per.route", poolAutoscaler, autoscaler -> autoscaler.getMaxPerRoute(route))
+				.description("Current maximum connections of the route")
+				.tags(routeTags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".adjustments", poolAutoscaler, autoscaler -> autoscaler.getGrows(route))
+				.description("Number of adjustments of the route maximum connections")
+				.tags(routeTags.and("direction", "grow"))
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".adjustments", poolAutoscaler, autoscaler -> autoscaler.getShrinks(route))
+				.description("Number of adjustments of the route maximum connections")
+				.tags(routeTags.and("direction", "shrink"))
+				.register(registry);
+	}
+}
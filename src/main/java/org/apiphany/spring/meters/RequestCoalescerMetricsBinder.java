@@ -0,0 +1,73 @@
+package org.apiphany.spring.meters;
+
+import org.apiphany.client.http.RequestCoalescer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the {@link RequestCoalescer} statistics to a {@link MeterRegistry}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class RequestCoalescerMetricsBinder implements MeterBinder {
+
+	/**
+	 * Metrics name prefix.
+	 */
+	public static final String PREFIX = "apiphany.client.coalescing";
+
+	/**
+	 * The request coalescer.
+	 */
+	private final RequestCoalescer requestCoalescer;
+
+	/**
+	 * The common tags.
+	 */
+	private final Tags tags;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param requestCoalescer request coalescer
+	 * @param clientName the client name used as tag
+	 */
+	private RequestCoalescerMetricsBinder(final RequestCoalescer requestCoalescer, final String clientName) {
+		this.requestCoalescer = requestCoalescer;
+		this.tags = Tags.of("client", clientName);
+	}
+
+	/**
+	 * Returns a new binder.
+	 *
+	 * @param requestCoalescer request coalescer
+	 * @param clientName the client name used as tag
+	 * @return a new binder
+	 */
+	public static RequestCoalescerMetricsBinder of(final RequestCoalescer requestCoalescer, final String clientName) {
+		return new RequestCoalescerMetricsBinder(requestCoalescer, clientName);
+	}
+
+	/**
+	 * @see MeterBinder#bindTo(MeterRegistry)
+	 */
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		FunctionCounter.builder(PREFIX + ".requests", requestCoalescer, RequestCoalescer::getExecuted)
+				.description("Number of coalescable requests that executed the exchange")
+				.tags(tags).tag("result", "executed")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".requests", requestCoalescer, RequestCoalescer::getCoalesced)
+				.description("Number of requests that joined an in-flight exchange")
+				.tags(tags).tag("result", "coalesced")
+				.register(registry);
+		Gauge.builder(PREFIX + ".in.flight", requestCoalescer, RequestCoalescer::getInFlight)
+				.description("Number of coalescable exchanges in flight")
+				.tags(tags)
+				.register(registry);
+	}
+}
@@ -0,0 +1,80 @@
+package org.apiphany.spring.meters;
+
+import org.apiphany.client.http.RequestHedger;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the {@link RequestHedger} statistics to a {@link MeterRegistry}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class RequestHedgerMetricsBinder implements MeterBinder {
+
+	/**
+	 * Metrics name prefix.
+	 */
+	public static final String PREFIX = "apiphany.client.hedging";
+
+	/**
+	 * The request hedger.
+	 */
+	private final RequestHedger requestHedger;
+
+	/**
+	 * The common tags.
+	 */
+	private final Tags tags;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param requestHedger request hedger
+	 * @param clientName the client name used as tag
+	 */
+	private RequestHedgerMetricsBinder(final RequestHedger requestHedger, final String clientName) {
+		this.requestHedger = requestHedger;
+		this.tags = Tags.of("client", clientName);
+	}
+
+	/**
+	 * Returns a new binder.
+	 *
+	 * @param requestHedger request hedger
+	 * @param clientName the client name used as tag
+	 * @return a new binder
+	 */
+	public static RequestHedgerMetricsBinder of(final RequestHedger requestHedger, final String clientName) {
+		return new RequestHedgerMetricsBinder(requestHedger, clientName);
+	}
+
+	/**
+	 * @see MeterBinder#bindTo(MeterRegistry)
+	 */
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		FunctionCounter.builder(PREFIX + ".requests", requestHedger, RequestHedger::getRequests)
+				.description("Number of hedgeable requests")
+				.tags(tags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".hedges", requestHedger, RequestHedger::getHedges)
+				.description("Number of hedged requests sent")
+				.tags(tags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".hedges.won", requestHedger, RequestHedger::getHedgeWins)
+				.description("Number of hedged requests that completed before the original request")
+				.tags(tags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".budget.exhausted", requestHedger, RequestHedger::getBudgetExhausted)
+				.description("Number of hedges not sent because the hedge budget was exhausted")
+				.tags(tags)
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".saturated", requestHedger, RequestHedger::getSaturated)
+				.description("Number of hedges not sent because the exchange executor had no free permit")
+				.tags(tags)
+				.register(registry);
+	}
+}
@@ -0,0 +1,93 @@
+package org.apiphany.spring.meters;
+
+import org.apiphany.spring.http.cache.ResponseCache;
+import org.apiphany.spring.http.cache.ResponseCacheStatistics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the {@link ResponseCache} statistics to a {@link MeterRegistry}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class ResponseCacheMetricsBinder implements MeterBinder {
+
+	/**
+	 * Metrics name prefix.
+	 */
+	public static final String PREFIX = "apiphany.client.cache";
+
+	/**
+	 * The response cache.
+	 */
+	private final ResponseCache responseCache;
+
+	/**
+	 * The common tags.
+	 */
+	private final Tags tags;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param responseCache response cache
+	 * @param clientName the client name used as tag
+	 */
+	private ResponseCacheMetricsBinder(final ResponseCache responseCache, final String clientName) {
+		this.responseCache = responseCache;
+		this.tags = Tags.of("client", clientName);
+	}
+
+	/**
+	 * Returns a new binder.
+	 *
+	 * @param responseCache response cache
+	 * @param clientName the client name used as tag
+	 * @return a new binder
+	 */
+	public static ResponseCacheMetricsBinder of(final ResponseCache responseCache, final String clientName) {
+		return new ResponseCacheMetricsBinder(responseCache, clientName);
+	}
+
+	/**
+	 * @see MeterBinder#bindTo(MeterRegistry)
+	 */
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		ResponseCacheStatistics statistics = responseCache.getStatistics();
+		FunctionCounter.builder(PREFIX + ".requests", statistics, ResponseCacheStatistics::getHits)
+				.description("Number of requests answered from the cache")
+				.tags(tags).tag("result", "hit")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".requests", statistics, ResponseCacheStatistics::getMisses)
+				.description("Number of requests that got the full response from the server")
+				.tags(tags).tag("result", "miss")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".requests", statistics, ResponseCacheStatistics::getRevalidations)
+				.description("Number of requests answered from the cache after a 304 Not Modified response")
+				.tags(tags).tag("result", "revalidated")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".evictions", statistics, ResponseCacheStatistics::getEvictions)
+				.description("Number of entries evicted from memory")
+				.tags(tags)
+				.register(registry);
+		Gauge.builder(PREFIX + ".size", responseCache, ResponseCache::size)
+				.description("Number of cached responses in memory")
+				.tags(tags)
+				.register(registry);
+		Gauge.builder(PREFIX + ".memory", responseCache, ResponseCache::getBytes)
+				.description("Memory size of the cached responses")
+				.baseUnit("bytes")
+				.tags(tags)
+				.register(registry);
+		Gauge.builder(PREFIX + ".disk", responseCache, ResponseCache::getDiskBytes)
+				.description("Disk size of the cached responses")
+				.baseUnit("bytes")
+				.tags(tags)
+				.register(registry);
+	}
+}
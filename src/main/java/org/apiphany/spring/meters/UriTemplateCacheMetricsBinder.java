@@ -0,0 +1,73 @@
+package org.apiphany.spring.meters;
+
+import org.apiphany.spring.http.UriTemplateCache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the {@link UriTemplateCache} statistics to a {@link MeterRegistry}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+public class UriTemplateCacheMetricsBinder implements MeterBinder {
+
+	/**
+	 * Metrics name prefix.
+	 */
+	public static final String PREFIX = "apiphany.client.uri.cache";
+
+	/**
+	 * The URI template cache.
+	 */
+	private final UriTemplateCache uriTemplateCache;
+
+	/**
+	 * The common tags.
+	 */
+	private final Tags tags;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param uriTemplateCache URI template cache
+	 * @param clientName the client name used as tag
+	 */
+	private UriTemplateCacheMetricsBinder(final UriTemplateCache uriTemplateCache, final String clientName) {
+		this.uriTemplateCache = uriTemplateCache;
+		this.tags = Tags.of("client", clientName);
+	}
+
+	/**
+	 * Returns a new binder.
+	 *
+	 * @param uriTemplateCache URI template cache
+	 * @param clientName the client name used as tag
+	 * @return a new binder
+	 */
+	public static UriTemplateCacheMetricsBinder of(final UriTemplateCache uriTemplateCache, final String clientName) {
+		return new UriTemplateCacheMetricsBinder(uriTemplateCache, clientName);
+	}
+
+	/**
+	 * @see MeterBinder#bindTo(MeterRegistry)
+	 */
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		FunctionCounter.builder(PREFIX + ".requests", uriTemplateCache, UriTemplateCache::getHits)
+				.description("Number of URI template lookups found in the cache")
+				.tags(tags).tag("result", "hit")
+				.register(registry);
+		FunctionCounter.builder(PREFIX + ".requests", uriTemplateCache, UriTemplateCache::getMisses)
+				.description("Number of URI template lookups that parsed the URL")
+				.tags(tags).tag("result", "miss")
+				.register(registry);
+		Gauge.builder(PREFIX + ".size", uriTemplateCache, UriTemplateCache::size)
+				.description("Number of cached URI templates")
+				.tags(tags)
+				.register(registry);
+	}
+}
@@ -0,0 +1,238 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apiphany.http.HttpException;
+import org.apiphany.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * Test class for {@link CircuitBreaker}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class CircuitBreakerTest {
+
+	private static final String HOST = "http://localhost:8080";
+	private static final String OTHER_HOST = "http://localhost:9090";
+	private static final int WINDOW_SIZE = 10;
+	private static final int MINIMUM_CALLS = 4;
+	private static final int HALF_OPEN_CALLS = 2;
+	private static final Duration WAIT_IN_OPEN_STATE = Duration.ofMillis(50);
+
+	private final CircuitBreaker circuitBreaker = CircuitBreaker.builder()
+			.windowSize(WINDOW_SIZE)
+			.minimumCalls(MINIMUM_CALLS)
+			.failureRateThreshold(0.5)
+			.waitInOpenState(WAIT_IN_OPEN_STATE)
+			.halfOpenCalls(HALF_OPEN_CALLS)
+			.build();
+
+	@Test
+	void shouldStayClosedBeforeMinimumCalls() {
+		for (int i = 0; i < MINIMUM_CALLS - 1; ++i) {
+			fail(circuitBreaker, HOST, serverError());
+		}
+
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.CLOSED));
+		assertThat(circuitBreaker.getFailedCalls(HOST), equalTo((long) MINIMUM_CALLS - 1));
+	}
+
+	@Test
+	void shouldOpenWhenFailureRateReachesThresholdAndRejectWithoutCalling() {
+		succeed(circuitBreaker, HOST);
+		succeed(circuitBreaker, HOST);
+		fail(circuitBreaker, HOST, serverError());
+		fail(circuitBreaker, HOST, serverError());
+
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.OPEN));
+
+		AtomicInteger calls = new AtomicInteger();
+		HttpException e = assertThrows(HttpException.class, () -> circuitBreaker.execute(HOST, calls::incrementAndGet));
+
+		assertThat(e.getStatus(), equalTo(HttpStatus.SERVICE_UNAVAILABLE));
+		assertThat(calls.get(), equalTo(0));
+		assertThat(circuitBreaker.getRejectedCalls(HOST), equalTo(1L));
+		assertThat(circuitBreaker.getTransitions(HOST, CircuitBreaker.State.OPEN), equalTo(1L));
+	}
+
+	@Test
+	void shouldCountIOErrorsAsFailures() {
+		for (int i = 0; i < MINIMUM_CALLS; ++i) {
+			fail(circuitBreaker, HOST, new UncheckedIOException(new SocketTimeoutException("Read timed out")));
+		}
+
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.OPEN));
+	}
+
+	@Test
+	void shouldCountServerErrorHttpExceptionsAsFailures() {
+		for (int i = 0; i < MINIMUM_CALLS; ++i) {
+			fail(circuitBreaker, HOST, new HttpException(HttpStatus.SERVICE_UNAVAILABLE, "Unavailable"));
+		}
+
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.OPEN));
+	}
+
+	@Test
+	void shouldCountClientErrorsAsSuccessfulCalls() {
+		for (int i = 0; i < WINDOW_SIZE; ++i) {
+			fail(circuitBreaker, HOST, HttpClientErrorException.create(org.springframework.http.HttpStatus.NOT_FOUND, "Not Found", null,
+					null, null));
+		}
+
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.CLOSED));
+		assertThat(circuitBreaker.getSuccessfulCalls(HOST), equalTo((long) WINDOW_SIZE));
+		assertThat(circuitBreaker.getFailedCalls(HOST), equalTo(0L));
+	}
+
+	@Test
+	void shouldIgnoreTooManyRequestsAndConcurrencyLimitRejections() {
+		for (int i = 0; i < WINDOW_SIZE; ++i) {
+			fail(circuitBreaker, HOST, new HttpException(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests"));
+			fail(circuitBreaker, HOST, new ConcurrencyLimitExceededException(HOST, 1));
+		}
+
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.CLOSED));
+		assertThat(circuitBreaker.getSuccessfulCalls(HOST), equalTo(0L));
+		assertThat(circuitBreaker.getFailedCalls(HOST), equalTo(0L));
+	}
+
+	@Test
+	void shouldOpenWhenSlowCallRateReachesThreshold() {
+		CircuitBreaker slowCircuitBreaker = CircuitBreaker.builder()
+				.windowSize(WINDOW_SIZE)
+				.minimumCalls(MINIMUM_CALLS)
+				.slowCallDuration(Duration.ZERO)
+				.slowCallRateThreshold(0.5)
+				.build();
+
+		for (int i = 0; i < MINIMUM_CALLS; ++i) {
+			succeed(slowCircuitBreaker, HOST);
+		}
+
+		assertThat(slowCircuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.OPEN));
+		assertThat(slowCircuitBreaker.getSlowCalls(HOST), equalTo((long) MINIMUM_CALLS));
+	}
+
+	@Test
+	void shouldSlideTheWindowOverOldFailures() {
+		CircuitBreaker largeCircuitBreaker = CircuitBreaker.builder()
+				.windowSize(WINDOW_SIZE)
+				.minimumCalls(WINDOW_SIZE)
+				.failureRateThreshold(0.5)
+				.build();
+		for (int i = 0; i < WINDOW_SIZE / 2 - 1; ++i) {
+			fail(largeCircuitBreaker, HOST, serverError());
+		}
+		for (int i = 0; i < WINDOW_SIZE * 3; ++i) {
+			succeed(largeCircuitBreaker, HOST);
+		}
+		for (int i = 0; i < WINDOW_SIZE / 2 - 1; ++i) {
+			fail(largeCircuitBreaker, HOST, serverError());
+		}
+
+		assertThat(largeCircuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.CLOSED));
+	}
+
+	@Test
+	void shouldCloseAfterSuccessfulTrialCallsInHalfOpenState() throws InterruptedException {
+		open(circuitBreaker, HOST);
+		Thread.sleep(WAIT_IN_OPEN_STATE.toMillis() * 2);
+
+		for (int i = 0; i < HALF_OPEN_CALLS; ++i) {
+			succeed(circuitBreaker, HOST);
+		}
+
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.CLOSED));
+		assertThat(circuitBreaker.getTransitions(HOST, CircuitBreaker.State.HALF_OPEN), equalTo(1L));
+		assertThat(circuitBreaker.getTransitions(HOST, CircuitBreaker.State.CLOSED), equalTo(1L));
+
+		fail(circuitBreaker, HOST, serverError());
+
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.CLOSED));
+	}
+
+	@Test
+	void shouldOpenAgainAfterFailedTrialCallsInHalfOpenState() throws InterruptedException {
+		open(circuitBreaker, HOST);
+		Thread.sleep(WAIT_IN_OPEN_STATE.toMillis() * 2);
+
+		succeed(circuitBreaker, HOST);
+		fail(circuitBreaker, HOST, serverError());
+
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.OPEN));
+		assertThat(circuitBreaker.getTransitions(HOST, CircuitBreaker.State.OPEN), equalTo(2L));
+	}
+
+	@Test
+	void shouldLimitConcurrentTrialCallsInHalfOpenState() throws InterruptedException {
+		open(circuitBreaker, HOST);
+		Thread.sleep(WAIT_IN_OPEN_STATE.toMillis() * 2);
+		AtomicInteger rejected = new AtomicInteger();
+
+		circuitBreaker.execute(HOST, () -> circuitBreaker.execute(HOST, () -> {
+			assertThrows(HttpException.class, () -> circuitBreaker.execute(HOST, () -> null));
+			return rejected.incrementAndGet();
+		}));
+
+		assertThat(rejected.get(), equalTo(1));
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.CLOSED));
+	}
+
+	@Test
+	void shouldKeepSeparateCircuitsPerHost() {
+		open(circuitBreaker, HOST);
+
+		succeed(circuitBreaker, OTHER_HOST);
+
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.OPEN));
+		assertThat(circuitBreaker.getState(OTHER_HOST), equalTo(CircuitBreaker.State.CLOSED));
+		assertThat(circuitBreaker.getHosts().size(), equalTo(2));
+	}
+
+	@Test
+	void shouldNotifyHostListenersOnce() {
+		AtomicInteger added = new AtomicInteger();
+		circuitBreaker.addHostListener(host -> added.incrementAndGet());
+
+		succeed(circuitBreaker, HOST);
+		succeed(circuitBreaker, HOST);
+
+		assertThat(added.get(), equalTo(1));
+	}
+
+	private static void open(final CircuitBreaker circuitBreaker, final String host) {
+		for (int i = 0; i < MINIMUM_CALLS; ++i) {
+			fail(circuitBreaker, host, serverError());
+		}
+		assertThat(circuitBreaker.getState(host), equalTo(CircuitBreaker.State.OPEN));
+	}
+
+	private static void succeed(final CircuitBreaker circuitBreaker, final String host) {
+		circuitBreaker.execute(host, () -> "OK");
+	}
+
+	private static void fail(final CircuitBreaker circuitBreaker, final String host, final RuntimeException failure) {
+		Supplier<String> exchange = () -> {
+			throw failure;
+		};
+		RuntimeException e = assertThrows(RuntimeException.class, () -> circuitBreaker.execute(host, exchange));
+		assertThat(e, equalTo(failure));
+	}
+
+	private static RuntimeException serverError() {
+		return HttpServerErrorException.create(org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error", null,
+				null, null);
+	}
+}
@@ -0,0 +1,209 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Test class for {@link ConcurrencyLimiter}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class ConcurrencyLimiterTest {
+
+	private static final String HOST = "http://localhost:8080";
+	private static final long RTT = 10_000_000L;
+
+	@Test
+	void shouldReturnSchemeAndAuthorityAsHost() {
+		String host = ConcurrencyLimiter.host(URI.create("https://user@example.com:8443/path?query=1"));
+
+		assertThat(host, equalTo("https://user@example.com:8443"));
+	}
+
+	@Test
+	void shouldRejectWithDedicatedExceptionWhenHostIsAtItsLimit() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+				.initialLimit(2)
+				.build();
+		limiter.acquire(HOST);
+		limiter.acquire(HOST);
+
+		ConcurrencyLimitExceededException e = assertThrows(ConcurrencyLimitExceededException.class, () -> limiter.acquire(HOST));
+
+		assertThat(e.getHost(), equalTo(HOST));
+		assertThat(e.getLimit(), equalTo(2));
+		assertThat(limiter.getRejected(HOST), equalTo(1L));
+		assertThat(limiter.getRejected(), equalTo(1L));
+		assertThat(limiter.getInFlight(HOST), equalTo(2));
+	}
+
+	@Test
+	void shouldReleasePermitOnlyOnce() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+				.initialLimit(1)
+				.build();
+		ConcurrencyLimiter.Permit permit = limiter.acquire(HOST);
+
+		permit.ignored();
+		permit.ignored();
+
+		assertThat(limiter.getInFlight(HOST), equalTo(0));
+		limiter.acquire(HOST);
+		assertThrows(ConcurrencyLimitExceededException.class, () -> limiter.acquire(HOST));
+	}
+
+	@Test
+	void shouldKeepTheRoundTripTimeRecordedWhenTheResponseWasReceived() throws InterruptedException {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+				.initialLimit(1)
+				.build();
+		ConcurrencyLimiter.Permit permit = limiter.acquire(HOST);
+
+		permit.received();
+		long rttNanos = permit.getRttNanos();
+		Thread.sleep(20);
+		permit.received();
+
+		assertThat(permit.getRttNanos(), equalTo(rttNanos));
+		assertThat(limiter.getInFlight(HOST), equalTo(1));
+		permit.success();
+		assertThat(limiter.getInFlight(HOST), equalTo(0));
+	}
+
+	@Test
+	void shouldBackOffOnDroppedExchanges() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+				.initialLimit(100)
+				.backoffRatio(0.5)
+				.build();
+
+		limiter.acquire(HOST).dropped();
+
+		assertThat(limiter.getLimit(HOST), equalTo(50));
+	}
+
+	@Test
+	void shouldNotChangeLimitOnIgnoredExchanges() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+				.initialLimit(10)
+				.build();
+
+		for (int i = 0; i < 100; ++i) {
+			limiter.acquire(HOST).ignored();
+		}
+
+		assertThat(limiter.getLimit(HOST), equalTo(10));
+	}
+
+	@Test
+	void shouldIncreaseLimitWithSteadyRoundTripTimesUnderLoad() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+				.initialLimit(10)
+				.build();
+
+		for (int i = 0; i < 20; ++i) {
+			completeAtFullLoad(limiter, RTT);
+		}
+
+		assertThat(limiter.getLimit(HOST), greaterThan(10));
+	}
+
+	@Test
+	void shouldNotIncreaseLimitWhenHostIsUsedBelowHalfOfItsLimit() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+				.initialLimit(10)
+				.build();
+
+		for (int i = 0; i < 100; ++i) {
+			limiter.acquire(HOST).complete(ConcurrencyLimiter.Outcome.SUCCESS, RTT);
+		}
+
+		assertThat(limiter.getLimit(HOST), equalTo(10));
+	}
+
+	@Test
+	void shouldDecreaseLimitWhenRoundTripTimesGrowAndRecoverWhenTheyBecomeTheBaseline() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+				.initialLimit(100)
+				.longWindow(50)
+				.build();
+		for (int i = 0; i < 50; ++i) {
+			completeAtFullLoad(limiter, RTT);
+		}
+		int baselineLimit = limiter.getLimit(HOST);
+
+		for (int i = 0; i < 5; ++i) {
+			completeAtFullLoad(limiter, 4 * RTT);
+		}
+		int overloadedLimit = limiter.getLimit(HOST);
+
+		assertThat(overloadedLimit, lessThan(baselineLimit));
+		assertThat(overloadedLimit, greaterThanOrEqualTo(ConcurrencyLimiter.DEFAULT_MIN_LIMIT));
+
+		for (int i = 0; i < 200; ++i) {
+			completeAtFullLoad(limiter, 4 * RTT);
+		}
+
+		assertThat(limiter.getLimit(HOST), greaterThan(overloadedLimit));
+	}
+
+	@Test
+	void shouldNotCollapseOnSingleFastSample() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder()
+				.initialLimit(50)
+				.build();
+		for (int i = 0; i < 20; ++i) {
+			completeAtFullLoad(limiter, RTT);
+		}
+		int limit = limiter.getLimit(HOST);
+
+		completeAtFullLoad(limiter, 1_000);
+		completeAtFullLoad(limiter, RTT);
+
+		assertThat(limiter.getLimit(HOST), greaterThanOrEqualTo(limit / 2));
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			"200, false",
+			"304, false",
+			"404, false",
+			"429, true",
+			"500, true",
+			"503, true"
+	})
+	void shouldDropOnlyOverloadStatusCodes(final int statusCode, final boolean dropped) {
+		assertThat(ConcurrencyLimiter.isDropped(statusCode), equalTo(dropped));
+	}
+
+	@Test
+	void shouldNotBuildWithShortWindowLargerThanLongWindow() {
+		ConcurrencyLimiter.Builder builder = ConcurrencyLimiter.builder()
+				.shortWindow(100)
+				.longWindow(10);
+
+		assertThrows(IllegalArgumentException.class, builder::build);
+	}
+
+	private static void completeAtFullLoad(final ConcurrencyLimiter limiter, final long rttNanos) {
+		int limit = limiter.getLimit(HOST);
+		List<ConcurrencyLimiter.Permit> permits = new ArrayList<>(limit);
+		for (int i = 0; i < limit; ++i) {
+			permits.add(limiter.acquire(HOST));
+		}
+		permits.getFirst().complete(ConcurrencyLimiter.Outcome.SUCCESS, rttNanos);
+		permits.subList(1, permits.size()).forEach(ConcurrencyLimiter.Permit::ignored);
+	}
+}
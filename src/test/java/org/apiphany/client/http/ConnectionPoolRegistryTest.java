@@ -0,0 +1,89 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apiphany.client.ClientProperties;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link ConnectionPoolRegistry}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class ConnectionPoolRegistryTest {
+
+	private final ConnectionPoolRegistry registry = ConnectionPoolRegistry.create();
+
+	@Test
+	void shouldShareThePoolBetweenClientsWithTheSameProperties() {
+		ClientProperties clientProperties = ClientProperties.defaults();
+		AtomicInteger customized = new AtomicInteger();
+
+		try (ConnectionPoolRegistry.Lease lease1 = registry.acquire(clientProperties, cm -> customized.incrementAndGet());
+				ConnectionPoolRegistry.Lease lease2 = registry.acquire(ClientProperties.defaults(), cm -> customized.incrementAndGet())) {
+
+			assertThat(lease1.getHttpClient(), sameInstance(lease2.getHttpClient()));
+			assertThat(lease1.getConnectionManager(), sameInstance(lease2.getConnectionManager()));
+			assertThat(registry.size(), equalTo(1));
+			assertThat(registry.getReferences(clientProperties), equalTo(2));
+			assertThat(customized.get(), equalTo(2));
+		}
+		assertThat(registry.size(), equalTo(0));
+		assertThat(registry.getReferences(clientProperties), equalTo(0));
+	}
+
+	@Test
+	void shouldCloseThePoolWhenTheLastLeaseIsClosed() {
+		ClientProperties clientProperties = ClientProperties.defaults();
+		ConnectionPoolRegistry.Lease lease1 = registry.acquire(clientProperties, cm -> { });
+		ConnectionPoolRegistry.Lease lease2 = registry.acquire(clientProperties, cm -> { });
+
+		lease1.close();
+		lease1.close();
+
+		assertThat(registry.getReferences(clientProperties), equalTo(1));
+
+		lease2.close();
+
+		assertThat(registry.size(), equalTo(0));
+	}
+
+	@Test
+	void shouldAttachOnlyTheFirstAutoscalerToTheSharedPool() {
+		ClientProperties clientProperties = ClientProperties.defaults();
+		PoolAutoscaler poolAutoscaler1 = PoolAutoscaler.defaults();
+		PoolAutoscaler poolAutoscaler2 = PoolAutoscaler.defaults();
+		ConnectionPoolRegistry.Lease lease1 = registry.acquire(clientProperties, cm -> { }, poolAutoscaler1);
+		ConnectionPoolRegistry.Lease lease2 = registry.acquire(clientProperties, cm -> { }, poolAutoscaler2);
+		PoolingHttpClientConnectionManager connectionManager = lease1.getConnectionManager();
+		try {
+			assertThat(lease1.getPoolAutoscaler(), sameInstance(poolAutoscaler1));
+			assertThat(lease2.getPoolAutoscaler(), sameInstance(poolAutoscaler1));
+			assertThrows(IllegalStateException.class, () -> poolAutoscaler1.start(connectionManager));
+			assertDoesNotThrow(() -> poolAutoscaler2.start(connectionManager));
+
+			lease1.close();
+
+			assertThat(lease2.getPoolAutoscaler(), sameInstance(poolAutoscaler1));
+		} finally {
+			lease1.close();
+			lease2.close();
+			poolAutoscaler2.close();
+		}
+	}
+
+	@Test
+	void shouldNotAutoscaleThePoolWhenNoClientGivesAnAutoscaler() {
+		try (ConnectionPoolRegistry.Lease lease = registry.acquire(ClientProperties.defaults(), cm -> { })) {
+			assertThat(lease.getPoolAutoscaler(), nullValue());
+		}
+	}
+}
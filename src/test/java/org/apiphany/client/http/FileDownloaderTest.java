@@ -0,0 +1,120 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apiphany.client.ExchangeClient;
+import org.apiphany.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Test class for {@link FileDownloader}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class FileDownloaderTest {
+
+	private static final URI URI_RESOURCE = URI.create("http://localhost:8080/file");
+	private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+	private static final int INTERRUPTED_AT = 8;
+	private static final String ETAG = "\"v1\"";
+
+	@TempDir
+	private Path directory;
+
+	@Test
+	void shouldResumeWithIfRangeWhenTheResponseHasAValidator() throws IOException {
+		List<ClassicHttpRequest> requests = new ArrayList<>();
+		CloseableHttpClient httpClient = httpClient(requests, ETAG);
+		Path target = directory.resolve("file");
+
+		new FileDownloader(httpClient, mock(ExchangeClient.class))
+				.download(URI_RESOURCE, HttpMethod.GET, new HttpHeaders(), target, DownloadOptions.defaults());
+
+		assertThat(Files.readAllBytes(target), equalTo(CONTENT));
+		assertThat(requests.size(), equalTo(2));
+		assertThat(requests.get(1).getFirstHeader(HttpHeaders.RANGE).getValue(), equalTo("bytes=" + INTERRUPTED_AT + "-"));
+		assertThat(requests.get(1).getFirstHeader(HttpHeaders.IF_RANGE).getValue(), equalTo(ETAG));
+	}
+
+	@Test
+	void shouldRestartFromTheBeginningWhenTheResponseHasNoValidator() throws IOException {
+		List<ClassicHttpRequest> requests = new ArrayList<>();
+		CloseableHttpClient httpClient = httpClient(requests, null);
+		Path target = directory.resolve("file");
+
+		new FileDownloader(httpClient, mock(ExchangeClient.class))
+				.download(URI_RESOURCE, HttpMethod.GET, new HttpHeaders(), target, DownloadOptions.defaults());
+
+		assertThat(Files.readAllBytes(target), equalTo(CONTENT));
+		assertThat(requests.size(), equalTo(2));
+		assertThat(requests.get(1).getFirstHeader(HttpHeaders.RANGE), nullValue());
+		assertThat(requests.get(1).getFirstHeader(HttpHeaders.IF_RANGE), nullValue());
+	}
+
+	private static CloseableHttpClient httpClient(final List<ClassicHttpRequest> requests, final String etag) throws IOException {
+		CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+		doAnswer(invocation -> {
+			ClassicHttpRequest httpRequest = invocation.getArgument(1);
+			requests.add(httpRequest);
+			if (null != httpRequest.getFirstHeader(HttpHeaders.RANGE)) {
+				return response(206, Arrays.copyOfRange(CONTENT, INTERRUPTED_AT, CONTENT.length), etag,
+						"bytes " + INTERRUPTED_AT + "-" + (CONTENT.length - 1) + "/" + CONTENT.length);
+			}
+			if (1 == requests.size()) {
+				InputStream interrupted = new SequenceInputStream(new ByteArrayInputStream(CONTENT, 0, INTERRUPTED_AT), new InputStream() {
+					@Override
+					public int read() throws IOException {
+						throw new IOException("Connection reset");
+					}
+				});
+				return response(200, interrupted, CONTENT.length, etag);
+			}
+			return response(200, CONTENT, etag, null);
+		}).when(httpClient).executeOpen(any(HttpHost.class), any(ClassicHttpRequest.class), any());
+		return httpClient;
+	}
+
+	private static ClassicHttpResponse response(final int code, final byte[] body, final String etag, final String contentRange) {
+		ClassicHttpResponse response = response(code, new ByteArrayInputStream(body), body.length, etag);
+		if (null != contentRange) {
+			response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange);
+		}
+		return response;
+	}
+
+	private static ClassicHttpResponse response(final int code, final InputStream body, final long length, final String etag) {
+		BasicClassicHttpResponse response = new BasicClassicHttpResponse(code);
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+		if (null != etag) {
+			response.setHeader(HttpHeaders.ETAG, etag);
+		}
+		response.setEntity(new InputStreamEntity(body, length, ContentType.APPLICATION_OCTET_STREAM));
+		return response;
+	}
+}
@@ -0,0 +1,72 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.io.CloseMode;
+import org.apiphany.client.ClientProperties;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link Http2Options}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class Http2OptionsTest {
+
+	@Test
+	void shouldCreateTheClientWithDefaultClientProperties() {
+		CloseableHttpAsyncClient client = Http2Options.defaults().createClient(ClientProperties.defaults());
+
+		assertThat(client, not(nullValue()));
+
+		client.close(CloseMode.IMMEDIATE);
+	}
+
+	@Test
+	void shouldFindNoUnsupportedPropertiesWhenAllHaveTheirDefaults() {
+		Map<String, Object> properties = Map.of("timeout", Map.of("connect", 5000), "proxy", Map.of());
+
+		assertThat(Http2Options.unsupportedProperties(properties, properties), empty());
+	}
+
+	@Test
+	void shouldReturnThePathsOfTheChangedProperties() {
+		Map<String, Object> defaults = Map.of("timeout", Map.of("connect", 5000, "response", 30000), "maxConnections", 10);
+		Map<String, Object> properties = Map.of("timeout", Map.of("connect", 1000, "response", 30000), "maxConnections", 10,
+				"proxy", Map.of("host", "proxy.local"));
+
+		assertThat(Http2Options.unsupportedProperties(properties, defaults), contains("proxy", "timeout.connect"));
+	}
+
+	@Test
+	void shouldIgnoreTheCompressionProperties() {
+		Map<String, Object> defaults = Map.of("compression", Map.of("gzip", false));
+		Map<String, Object> properties = Map.of("compression", Map.of("gzip", true));
+
+		assertThat(Http2Options.unsupportedProperties(properties, defaults), empty());
+	}
+
+	@Test
+	void shouldNotReturnThePropertyValues() {
+		Map<String, Object> defaults = Map.of("ssl", Map.of());
+		Map<String, Object> properties = Map.of("ssl", Map.of("keyStorePassword", "secret"));
+
+		assertThat(Http2Options.unsupportedProperties(properties, defaults).toString(), not(containsString("secret")));
+	}
+
+	@Test
+	void shouldFailOnInvalidStreamLimit() {
+		Http2Options.Builder builder = Http2Options.builder();
+
+		assertThrows(IllegalArgumentException.class, () -> builder.maxConcurrentStreams(0));
+	}
+}
@@ -0,0 +1,163 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.net.URI;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link LoadBalancer}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class LoadBalancerTest {
+
+	private static final String SERVICE = "users";
+	private static final URI URI_SERVICE = URI.create("http://users/api/users/1?expand=roles");
+	private static final Duration EJECTION_TIME = Duration.ofMillis(50);
+
+	@Test
+	void shouldNotChooseAnEndpointForOtherHosts() {
+		LoadBalancer loadBalancer = LoadBalancer.builder()
+				.service(SERVICE, "http://10.0.0.1:8080")
+				.build();
+
+		assertThat(loadBalancer.choose(URI.create("http://localhost:8080/api/users/1")), nullValue());
+	}
+
+	@Test
+	void shouldResolveTheServiceUriOnTheEndpoint() {
+		LoadBalancer loadBalancer = LoadBalancer.builder()
+				.service(SERVICE, "http://10.0.0.1:8080/base/")
+				.build();
+
+		LoadBalancer.Choice choice = loadBalancer.choose(URI_SERVICE);
+
+		assertThat(choice.getUri(), equalTo(URI.create("http://10.0.0.1:8080/base/api/users/1?expand=roles")));
+		choice.success();
+	}
+
+	@Test
+	void shouldCountTheRequestInFlightUntilTheChoiceIsCompleted() {
+		LoadBalancer loadBalancer = LoadBalancer.builder()
+				.service(SERVICE, "http://10.0.0.1:8080")
+				.build();
+
+		LoadBalancer.Choice choice = loadBalancer.choose(URI_SERVICE);
+		LoadBalancer.Endpoint endpoint = choice.getEndpoint();
+
+		assertThat(endpoint.getInFlight(), equalTo(1));
+
+		choice.success();
+		choice.failure();
+
+		assertThat(endpoint.getInFlight(), equalTo(0));
+		assertThat(endpoint.getSuccesses(), equalTo(1L));
+		assertThat(endpoint.getFailures(), equalTo(0L));
+	}
+
+	@Test
+	void shouldClassifyTheResponseStatus() {
+		LoadBalancer loadBalancer = LoadBalancer.builder()
+				.service(SERVICE, "http://10.0.0.1:8080")
+				.build();
+		LoadBalancer.Endpoint endpoint = loadBalancer.getEndpoints(SERVICE).getFirst();
+
+		loadBalancer.choose(URI_SERVICE).complete(200);
+		loadBalancer.choose(URI_SERVICE).complete(404);
+		loadBalancer.choose(URI_SERVICE).complete(429);
+		loadBalancer.choose(URI_SERVICE).complete(503);
+
+		assertThat(endpoint.getSuccesses(), equalTo(2L));
+		assertThat(endpoint.getFailures(), equalTo(1L));
+		assertThat(endpoint.getInFlight(), equalTo(0));
+	}
+
+	@Test
+	void shouldEjectAnEndpointAfterConsecutiveFailures() {
+		LoadBalancer loadBalancer = LoadBalancer.builder()
+				.service(SERVICE, "http://10.0.0.1:8080", "http://10.0.0.2:8080")
+				.consecutiveFailures(2)
+				.build();
+		LoadBalancer.Endpoint endpoint = loadBalancer.getEndpoints(SERVICE).getFirst();
+
+		fail(loadBalancer, endpoint);
+		assertThat(endpoint.isEjected(), equalTo(false));
+
+		fail(loadBalancer, endpoint);
+		assertThat(endpoint.isEjected(), equalTo(true));
+		assertThat(endpoint.getEjections(), equalTo(1L));
+
+		for (int i = 0; i < 10; ++i) {
+			LoadBalancer.Choice choice = loadBalancer.choose(URI_SERVICE);
+			assertThat(choice.getEndpoint().getUrl(), equalTo("http://10.0.0.2:8080"));
+			choice.success();
+		}
+	}
+
+	@Test
+	void shouldGrowTheEjectionMultiplierWithRepeatedEjections() throws InterruptedException {
+		LoadBalancer loadBalancer = singleEndpoint();
+		LoadBalancer.Endpoint endpoint = loadBalancer.getEndpoints(SERVICE).getFirst();
+
+		loadBalancer.choose(URI_SERVICE).failure();
+
+		assertThat(endpoint.getEjectionMultiplier(), equalTo(1L));
+
+		awaitEjectionEnd(endpoint);
+		loadBalancer.choose(URI_SERVICE).failure();
+
+		assertThat(endpoint.getEjectionMultiplier(), equalTo(2L));
+		assertThat(endpoint.getEjections(), equalTo(2L));
+	}
+
+	@Test
+	void shouldDecayTheEjectionMultiplierWhileTheEndpointIsHealthy() throws InterruptedException {
+		LoadBalancer loadBalancer = singleEndpoint();
+		LoadBalancer.Endpoint endpoint = loadBalancer.getEndpoints(SERVICE).getFirst();
+		loadBalancer.choose(URI_SERVICE).failure();
+		awaitEjectionEnd(endpoint);
+		loadBalancer.choose(URI_SERVICE).failure();
+		awaitEjectionEnd(endpoint);
+
+		Thread.sleep(EJECTION_TIME.multipliedBy(3).toMillis());
+
+		assertThat(endpoint.getEjectionMultiplier(), equalTo(0L));
+
+		loadBalancer.choose(URI_SERVICE).failure();
+
+		assertThat(endpoint.getEjectionMultiplier(), equalTo(1L));
+		assertThat(endpoint.getEjections(), equalTo(3L));
+	}
+
+	private static LoadBalancer singleEndpoint() {
+		return LoadBalancer.builder()
+				.service(SERVICE, "http://10.0.0.1:8080")
+				.consecutiveFailures(1)
+				.maxEjectionPercent(100)
+				.ejectionTime(EJECTION_TIME)
+				.maxEjectionTime(EJECTION_TIME.multipliedBy(10))
+				.build();
+	}
+
+	private static void fail(final LoadBalancer loadBalancer, final LoadBalancer.Endpoint endpoint) {
+		LoadBalancer.Choice choice;
+		do {
+			choice = loadBalancer.choose(URI_SERVICE);
+			if (choice.getEndpoint() != endpoint) {
+				choice.success();
+			}
+		} while (choice.getEndpoint() != endpoint);
+		choice.failure();
+	}
+
+	private static void awaitEjectionEnd(final LoadBalancer.Endpoint endpoint) throws InterruptedException {
+		while (endpoint.isEjected()) {
+			Thread.sleep(5);
+		}
+	}
+}
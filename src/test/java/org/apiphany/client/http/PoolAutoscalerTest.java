@@ -0,0 +1,137 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link PoolAutoscaler}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class PoolAutoscalerTest {
+
+	private static final HttpRoute ROUTE = PoolWarmUp.route("http://service-a:8080");
+	private static final HttpRoute OTHER_ROUTE = PoolWarmUp.route("http://service-b:8080");
+	private static final Timeout TIMEOUT = Timeout.ofSeconds(10);
+
+	private final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+	private final List<ConnectionEndpoint> leased = new ArrayList<>();
+	private final List<LeaseRequest> pending = new ArrayList<>();
+
+	private PoolAutoscaler poolAutoscaler;
+
+	@AfterEach
+	void tearDown() {
+		pending.forEach(LeaseRequest::cancel);
+		leased.forEach(endpoint -> connectionManager.release(endpoint, null, TimeValue.ZERO_MILLISECONDS));
+		if (null != poolAutoscaler) {
+			poolAutoscaler.close();
+		}
+		connectionManager.close(CloseMode.IMMEDIATE);
+	}
+
+	@Test
+	void shouldGrowByThePendingRequestsCappedByTheFreePoolCapacity() throws Exception {
+		connectionManager.setMaxTotal(4);
+		connectionManager.setDefaultMaxPerRoute(1);
+		start(PoolAutoscaler.builder().minPerRoute(1).interval(Duration.ofHours(1)).build());
+		lease(OTHER_ROUTE);
+		lease(ROUTE);
+		for (int i = 0; i < 3; ++i) {
+			pending.add(connectionManager.lease(null, ROUTE, TIMEOUT, null));
+		}
+
+		poolAutoscaler.scale();
+
+		String route = PoolAutoscaler.route(ROUTE);
+		assertThat(connectionManager.getMaxPerRoute(ROUTE), equalTo(3));
+		assertThat(poolAutoscaler.getMaxPerRoute(route), equalTo(3));
+		assertThat(poolAutoscaler.getGrows(route), equalTo(1L));
+		assertThat(connectionManager.getMaxPerRoute(OTHER_ROUTE), equalTo(1));
+		assertThat(poolAutoscaler.getGrows(PoolAutoscaler.route(OTHER_ROUTE)), equalTo(0L));
+	}
+
+	@Test
+	void shouldNotGrowWhenThePoolHasNoFreeCapacity() throws Exception {
+		connectionManager.setMaxTotal(2);
+		connectionManager.setDefaultMaxPerRoute(1);
+		start(PoolAutoscaler.builder().minPerRoute(1).interval(Duration.ofHours(1)).build());
+		lease(OTHER_ROUTE);
+		lease(ROUTE);
+		pending.add(connectionManager.lease(null, ROUTE, TIMEOUT, null));
+
+		poolAutoscaler.scale();
+
+		assertThat(connectionManager.getMaxPerRoute(ROUTE), equalTo(1));
+		assertThat(poolAutoscaler.getGrows(PoolAutoscaler.route(ROUTE)), equalTo(0L));
+	}
+
+	@Test
+	void shouldShrinkOnlyAfterTheRouteStayedUnderusedForTheShrinkDelay() throws Exception {
+		connectionManager.setMaxTotal(20);
+		connectionManager.setDefaultMaxPerRoute(8);
+		start(PoolAutoscaler.builder().interval(Duration.ofHours(1)).shrinkDelay(Duration.ofHours(3)).build());
+		String route = PoolAutoscaler.route(ROUTE);
+		lease(ROUTE);
+
+		poolAutoscaler.scale();
+		poolAutoscaler.scale();
+
+		List<ConnectionEndpoint> busy = new ArrayList<>();
+		for (int i = 0; i < 4; ++i) {
+			busy.add(connectionManager.lease(null, ROUTE, TIMEOUT, null).get(TIMEOUT));
+		}
+		poolAutoscaler.scale();
+		busy.forEach(endpoint -> connectionManager.release(endpoint, null, TimeValue.ZERO_MILLISECONDS));
+
+		poolAutoscaler.scale();
+		poolAutoscaler.scale();
+
+		assertThat(connectionManager.getMaxPerRoute(ROUTE), equalTo(8));
+		assertThat(poolAutoscaler.getShrinks(route), equalTo(0L));
+
+		poolAutoscaler.scale();
+
+		assertThat(connectionManager.getMaxPerRoute(ROUTE), equalTo(4));
+		assertThat(poolAutoscaler.getMaxPerRoute(route), equalTo(4));
+		assertThat(poolAutoscaler.getShrinks(route), equalTo(1L));
+	}
+
+	@Test
+	void shouldNotShrinkBelowTwiceThePeakLeasedConnections() throws Exception {
+		connectionManager.setMaxTotal(20);
+		connectionManager.setDefaultMaxPerRoute(8);
+		start(PoolAutoscaler.builder().interval(Duration.ofHours(1)).shrinkDelay(Duration.ofHours(1)).build());
+		for (int i = 0; i < 3; ++i) {
+			lease(ROUTE);
+		}
+
+		poolAutoscaler.scale();
+
+		assertThat(connectionManager.getMaxPerRoute(ROUTE), equalTo(6));
+		assertThat(poolAutoscaler.getShrinks(PoolAutoscaler.route(ROUTE)), equalTo(1L));
+	}
+
+	private void start(final PoolAutoscaler autoscaler) {
+		this.poolAutoscaler = autoscaler;
+		autoscaler.start(connectionManager);
+	}
+
+	private void lease(final HttpRoute route) throws Exception {
+		leased.add(connectionManager.lease(null, route, TIMEOUT, null).get(TIMEOUT));
+	}
+}
@@ -0,0 +1,146 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.routing.DefaultRoutePlanner;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.io.CloseMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test class for {@link PoolWarmUp}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class PoolWarmUpTest {
+
+	private static final byte[] BODY = "OK".getBytes(StandardCharsets.UTF_8);
+
+	private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+	private final DefaultRoutePlanner routePlanner = new DefaultRoutePlanner(DefaultSchemePortResolver.INSTANCE);
+
+	private HttpServer server;
+	private String url;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", exchange -> {
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			exchange.sendResponseHeaders(200, BODY.length);
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(BODY);
+			}
+		});
+		server.start();
+		url = "http://localhost:" + server.getAddress().getPort();
+	}
+
+	@AfterEach
+	void tearDown() {
+		connectionManager.close(CloseMode.IMMEDIATE);
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	@Test
+	void shouldBuildTheSameRouteAsTheHttpClientRoutePlanner() throws Exception {
+		HttpRoute route = PoolWarmUp.route(url + "/api/v1?x=1");
+
+		HttpRoute plannedRoute = routePlanner.determineRoute(HttpHost.create(url), HttpClientContext.create());
+
+		assertThat(route, equalTo(plannedRoute));
+		assertThat(PoolWarmUp.route("https://localhost"),
+				equalTo(routePlanner.determineRoute(HttpHost.create("https://localhost"), HttpClientContext.create())));
+	}
+
+	@Test
+	void shouldReuseTheWarmedUpConnectionsForTheRequests() throws Exception {
+		PoolWarmUp poolWarmUp = PoolWarmUp.builder().url(url).connectionsPerRoute(2).build();
+		HttpRoute route = PoolWarmUp.route(url);
+
+		poolWarmUp.warmUp(connectionManager, executor).join();
+
+		assertThat(poolWarmUp.getOpened(), equalTo(2L));
+		assertThat(poolWarmUp.getFailed(), equalTo(0L));
+		assertThat(connectionManager.getStats(route).getAvailable(), equalTo(2));
+
+		try (CloseableHttpClient httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setConnectionManagerShared(true)
+				.build()) {
+			for (int i = 0; i < 3; ++i) {
+				String body = httpClient.execute(new HttpGet(url + "/api"), response -> EntityUtils.toString(response.getEntity()));
+				assertThat(body, equalTo("OK"));
+			}
+		}
+
+		assertThat(connectionManager.getRoutes(), equalTo(Set.of(route)));
+		assertThat(connectionManager.getStats(route).getAvailable(), equalTo(2));
+		assertThat(connectionManager.getTotalStats().getLeased(), equalTo(0));
+		assertThat(clientPorts.size(), equalTo(1));
+	}
+
+	@Test
+	void shouldCountTheFailedConnectionsWithoutFailingTheWarmUp() throws Exception {
+		String closedUrl = "http://localhost:" + closedPort();
+		PoolWarmUp poolWarmUp = PoolWarmUp.builder().url(closedUrl).connectionsPerRoute(2).timeout(Duration.ofSeconds(1)).build();
+
+		poolWarmUp.warmUp(connectionManager, executor).join();
+
+		assertThat(poolWarmUp.getOpened(), equalTo(0L));
+		assertThat(poolWarmUp.getFailed(), equalTo(2L));
+		assertThat(connectionManager.getTotalStats().getLeased(), equalTo(0));
+		assertThat(connectionManager.getTotalStats().getAvailable(), equalTo(0));
+	}
+
+	@Test
+	void shouldStartTheClientWhenTheWarmUpFails() throws Exception {
+		PoolWarmUp poolWarmUp = PoolWarmUp.builder()
+				.url("http://localhost:" + closedPort())
+				.connectionsPerRoute(2)
+				.timeout(Duration.ofSeconds(1))
+				.build();
+		try (RestTemplateExchangeClient client = new RestTemplateExchangeClient()) {
+			client.setPoolWarmUp(poolWarmUp);
+			client.createHttpClient();
+
+			client.start();
+
+			assertThat(client.isRunning(), equalTo(true));
+			assertThat(poolWarmUp.getFailed(), equalTo(2L));
+		}
+	}
+
+	private static int closedPort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apiphany.ApiRequest;
+import org.apiphany.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link RequestCoalescer}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class RequestCoalescerTest {
+
+	private static final URI URI_RESOURCE = URI.create("http://localhost:8080/resource?id=1");
+	private static final String KEY = "GET http://localhost:8080/resource?id=1";
+	private static final String TOKEN = "Bearer secret-token";
+
+	private final RequestCoalescer coalescer = RequestCoalescer.defaults();
+
+	@Test
+	void shouldJoinTheInFlightExchange() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		Object response = new Object();
+
+		CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> coalescer.execute(KEY, () -> {
+			calls.incrementAndGet();
+			started.countDown();
+			await(release);
+			return response;
+		}));
+		started.await(5, TimeUnit.SECONDS);
+		CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> coalescer.execute(KEY, () -> {
+			calls.incrementAndGet();
+			return new Object();
+		}));
+		awaitCoalesced(1);
+		release.countDown();
+
+		assertThat(first.get(5, TimeUnit.SECONDS), sameInstance(response));
+		assertThat(second.get(5, TimeUnit.SECONDS), sameInstance(response));
+		assertThat(calls.get(), equalTo(1));
+		assertThat(coalescer.getExecuted(), equalTo(1L));
+		assertThat(coalescer.getInFlight(), equalTo(0));
+	}
+
+	@Test
+	void shouldShareTheExceptionOfTheInFlightExchange() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		IllegalStateException failure = new IllegalStateException("exchange failed");
+
+		CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> coalescer.execute(KEY, () -> {
+			started.countDown();
+			await(release);
+			throw failure;
+		}));
+		started.await(5, TimeUnit.SECONDS);
+		CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> coalescer.execute(KEY, Object::new));
+		awaitCoalesced(1);
+		release.countDown();
+
+		ExecutionException firstException = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+		ExecutionException secondException = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+		assertThat(firstException.getCause(), sameInstance(failure));
+		assertThat(secondException.getCause(), sameInstance(failure));
+	}
+
+	@Test
+	void shouldStartANewExchangeAfterTheInFlightOneCompleted() {
+		AtomicInteger calls = new AtomicInteger();
+
+		coalescer.execute(KEY, calls::incrementAndGet);
+		coalescer.execute(KEY, calls::incrementAndGet);
+
+		assertThat(calls.get(), equalTo(2));
+		assertThat(coalescer.getCoalesced(), equalTo(0L));
+	}
+
+	@Test
+	void shouldSeparateKeysByCookie() {
+		String key1 = coalescer.key(request(Map.of("Cookie", List.of("SESSION=1"))), URI_RESOURCE);
+		String key2 = coalescer.key(request(Map.of("Cookie", List.of("SESSION=2"))), URI_RESOURCE);
+		String key3 = coalescer.key(request(Map.of("cookie", List.of("SESSION=1"))), URI_RESOURCE);
+
+		assertThat(key1, not(equalTo(key2)));
+		assertThat(key1, equalTo(key3));
+	}
+
+	@Test
+	void shouldSeparateKeysByAuthorization() {
+		String key1 = coalescer.key(request(Map.of("Authorization", List.of(TOKEN))), URI_RESOURCE);
+		String key2 = coalescer.key(request(Map.of("Authorization", List.of("Bearer other-token"))), URI_RESOURCE);
+		String key3 = coalescer.key(request(Map.of()), URI_RESOURCE);
+
+		assertThat(key1, not(equalTo(key2)));
+		assertThat(key1, not(equalTo(key3)));
+	}
+
+	@Test
+	void shouldNotKeepTheCredentialsInTheKey() {
+		String key = coalescer.key(request(Map.of("Authorization", List.of(TOKEN), "Cookie", List.of("SESSION=abc"))), URI_RESOURCE);
+
+		assertThat(key, not(containsString("secret-token")));
+		assertThat(key, not(containsString("SESSION=abc")));
+	}
+
+	@Test
+	void shouldKeepTheOtherKeyHeaderValues() {
+		String key1 = coalescer.key(request(Map.of("Accept", List.of("application/json"))), URI_RESOURCE);
+		String key2 = coalescer.key(request(Map.of("Accept", List.of("application/xml"))), URI_RESOURCE);
+
+		assertThat(key1, containsString("application/json"));
+		assertThat(key1, not(equalTo(key2)));
+	}
+
+	@Test
+	void shouldSeparateKeysByResponseType() {
+		ApiRequest<?> stringRequest = request(Map.of());
+		ApiRequest<?> integerRequest = request(Map.of());
+		doReturn(Integer.class).when(integerRequest).getClassResponseType();
+
+		assertThat(coalescer.key(stringRequest, URI_RESOURCE), not(equalTo(coalescer.key(integerRequest, URI_RESOURCE))));
+	}
+
+	private static ApiRequest<?> request(final Map<String, List<String>> headers) {
+		ApiRequest<?> apiRequest = mock(ApiRequest.class);
+		doReturn(HttpMethod.GET).when(apiRequest).getMethod();
+		doReturn(headers).when(apiRequest).getHeaders();
+		doReturn(false).when(apiRequest).hasGenericType();
+		doReturn(String.class).when(apiRequest).getClassResponseType();
+		return apiRequest;
+	}
+
+	private void awaitCoalesced(final long count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (coalescer.getCoalesced() < count && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+	}
+
+	private static void await(final CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
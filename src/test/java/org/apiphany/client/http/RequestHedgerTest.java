@@ -0,0 +1,310 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apiphany.spring.http.ConcurrencyLimitingRequestInterceptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+import io.micrometer.context.ContextRegistry;
+
+/**
+ * Test class for {@link RequestHedger}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class RequestHedgerTest {
+
+	private static final String ROUTE = "GET http://localhost/resource";
+	private static final Duration DELAY = Duration.ofMillis(20);
+	private static final long SLOW_MILLIS = 5_000;
+	private static final String CONTEXT_KEY = "request-hedger-test";
+	private static final ThreadLocal<String> CONTEXT = new ThreadLocal<>();
+	private static final URI URI_RESOURCE = URI.create("http://localhost:8080/resource");
+	private static final String HOST = "http://localhost:8080";
+	private static final int INITIAL_LIMIT = 10;
+
+	private final ExchangeExecutor exchangeExecutor = ExchangeExecutor.virtualThreads();
+
+	@AfterEach
+	void tearDown() {
+		exchangeExecutor.close();
+	}
+
+	@Test
+	void shouldNotHedgeFastExchanges() throws Exception {
+		RequestHedger hedger = RequestHedger.builder().delay(Duration.ofSeconds(1)).build();
+		AtomicInteger calls = new AtomicInteger();
+
+		String result = onVirtualThread(() -> hedger.execute(ROUTE, exchangeExecutor, () -> {
+			calls.incrementAndGet();
+			return "original";
+		}));
+
+		assertThat(result, equalTo("original"));
+		assertThat(calls.get(), equalTo(1));
+		assertThat(hedger.getHedges(), equalTo(0L));
+	}
+
+	@Test
+	void shouldReturnHedgeAndAbortSlowOriginalExchange() throws Exception {
+		RequestHedger hedger = RequestHedger.builder().delay(DELAY).build();
+		AtomicInteger calls = new AtomicInteger();
+		long start = System.nanoTime();
+
+		String result = onVirtualThread(() -> {
+			String hedged = hedger.execute(ROUTE, exchangeExecutor, () -> 1 == calls.incrementAndGet() ? sleep("original") : "hedge");
+			return Thread.currentThread().isInterrupted() ? "interrupted" : hedged;
+		});
+
+		assertThat(result, equalTo("hedge"));
+		assertThat(Duration.ofNanos(System.nanoTime() - start).toMillis(), lessThan(SLOW_MILLIS));
+		assertThat(hedger.getHedges(), equalTo(1L));
+		assertThat(hedger.getHedgeWins(), equalTo(1L));
+	}
+
+	@Test
+	void shouldReturnHedgeWhenOriginalExchangeFails() throws Exception {
+		RequestHedger hedger = RequestHedger.builder().delay(DELAY).build();
+		AtomicInteger calls = new AtomicInteger();
+
+		String result = onVirtualThread(() -> hedger.execute(ROUTE, exchangeExecutor, () -> {
+			if (1 == calls.incrementAndGet()) {
+				sleepUninterruptibly(DELAY.toMillis() * 3);
+				throw new IllegalStateException("original failed");
+			}
+			sleepUninterruptibly(DELAY.toMillis() * 5);
+			return "hedge";
+		}));
+
+		assertThat(result, equalTo("hedge"));
+		assertThat(hedger.getHedgeWins(), equalTo(1L));
+	}
+
+	@Test
+	void shouldThrowOriginalFailureWhenItFailsBeforeTheHedgeDelay() {
+		RequestHedger hedger = RequestHedger.builder().delay(Duration.ofSeconds(1)).build();
+		IllegalStateException failure = new IllegalStateException("original failed");
+
+		Exception e = assertThrows(Exception.class, () -> onVirtualThread(() -> hedger.execute(ROUTE, exchangeExecutor, () -> {
+			throw failure;
+		})));
+
+		assertThat(e.getCause(), equalTo(failure));
+		assertThat(hedger.getHedges(), equalTo(0L));
+	}
+
+	@Test
+	void shouldNotHedgeOnPlatformThreads() {
+		RequestHedger hedger = RequestHedger.builder().delay(Duration.ofMillis(1)).build();
+		AtomicInteger calls = new AtomicInteger();
+
+		String result = hedger.execute(ROUTE, exchangeExecutor, () -> {
+			calls.incrementAndGet();
+			sleepUninterruptibly(DELAY.toMillis());
+			return "original";
+		});
+
+		assertThat(result, equalTo("original"));
+		assertThat(calls.get(), equalTo(1));
+		assertThat(hedger.getHedges(), equalTo(0L));
+	}
+
+	@Test
+	void shouldNotHedgeWhenTheExchangeExecutorHasNoFreePermit() throws Exception {
+		RequestHedger hedger = RequestHedger.builder().delay(Duration.ofMillis(1)).build();
+		AtomicInteger calls = new AtomicInteger();
+		try (ExchangeExecutor boundedExecutor = ExchangeExecutor.virtualThreads(1)) {
+			String result = boundedExecutor.submit(() -> hedger.execute(ROUTE, boundedExecutor, () -> {
+				calls.incrementAndGet();
+				sleepUninterruptibly(DELAY.toMillis());
+				return "original";
+			})).get();
+
+			assertThat(result, equalTo("original"));
+			assertThat(calls.get(), equalTo(1));
+			assertThat(hedger.getHedges(), equalTo(0L));
+			assertThat(hedger.getSaturated(), equalTo(1L));
+		}
+	}
+
+	@Test
+	void shouldNotHedgeWhenTheBudgetIsExhausted() throws Exception {
+		RequestHedger hedger = RequestHedger.builder()
+				.delay(Duration.ofMillis(1))
+				.maxHedgeRatio(0)
+				.maxBurst(1)
+				.build();
+		Supplier<String> slow = () -> {
+			sleepUninterruptibly(DELAY.toMillis());
+			return "result";
+		};
+
+		onVirtualThread(() -> hedger.execute(ROUTE, exchangeExecutor, slow));
+		onVirtualThread(() -> hedger.execute(ROUTE, exchangeExecutor, slow));
+
+		assertThat(hedger.getHedges(), equalTo(1L));
+		assertThat(hedger.getBudgetExhausted(), equalTo(1L));
+	}
+
+	@Test
+	void shouldPropagateTheCallerContextToTheHedge() throws Exception {
+		ContextRegistry.getInstance().registerThreadLocalAccessor(CONTEXT_KEY, CONTEXT);
+		try {
+			RequestHedger hedger = RequestHedger.builder().delay(DELAY).build();
+			AtomicInteger calls = new AtomicInteger();
+
+			String result = onVirtualThread(() -> {
+				CONTEXT.set("caller");
+				try {
+					return hedger.execute(ROUTE, exchangeExecutor, () -> 1 == calls.incrementAndGet() ? sleep("original") : CONTEXT.get());
+				} finally {
+					CONTEXT.remove();
+				}
+			});
+
+			assertThat(result, equalTo("caller"));
+		} finally {
+			ContextRegistry.getInstance().removeThreadLocalAccessor(CONTEXT_KEY);
+		}
+	}
+
+	@Test
+	void shouldUseTheRoutePercentileAsDelayAfterEnoughSamples() throws Exception {
+		RequestHedger hedger = RequestHedger.builder()
+				.minSamples(2)
+				.minDelay(Duration.ZERO)
+				.build();
+
+		assertThat(hedger.getDelay(ROUTE), equalTo(null));
+
+		onVirtualThread(() -> hedger.execute(ROUTE, exchangeExecutor, () -> "first"));
+		onVirtualThread(() -> hedger.execute(ROUTE, exchangeExecutor, () -> "second"));
+
+		assertThat(hedger.getDelay(ROUTE).isNegative(), equalTo(false));
+		assertThat(hedger.getRequests(), equalTo(2L));
+	}
+
+	@Test
+	void shouldNotRecordTheCancelledOriginalExchangeAsAFailure() throws Exception {
+		RequestHedger hedger = RequestHedger.builder().delay(DELAY).build();
+		CircuitBreaker circuitBreaker = CircuitBreaker.builder()
+				.minimumCalls(1)
+				.slowCallDuration(Duration.ofSeconds(1))
+				.build();
+		ConcurrencyLimiter concurrencyLimiter = ConcurrencyLimiter.builder()
+				.initialLimit(INITIAL_LIMIT)
+				.backoffRatio(0.5)
+				.build();
+		ConcurrencyLimitingRequestInterceptor interceptor = new ConcurrencyLimitingRequestInterceptor(concurrencyLimiter);
+		HttpRequest request = request();
+		ClientHttpResponse response = response();
+		AtomicInteger calls = new AtomicInteger();
+
+		String result = onVirtualThread(() -> hedger.execute(ROUTE, exchangeExecutor, () -> circuitBreaker.execute(HOST,
+				() -> limitedExchange(interceptor, request, response, 1 == calls.incrementAndGet()))));
+
+		assertThat(result, equalTo("hedge"));
+		assertThat(calls.get(), equalTo(2));
+		assertThat(hedger.getHedgeWins(), equalTo(1L));
+		assertThat(circuitBreaker.getFailedCalls(HOST), equalTo(0L));
+		assertThat(circuitBreaker.getSlowCalls(HOST), equalTo(0L));
+		assertThat(circuitBreaker.getSuccessfulCalls(HOST), equalTo(1L));
+		assertThat(circuitBreaker.getState(HOST), equalTo(CircuitBreaker.State.CLOSED));
+		assertThat(concurrencyLimiter.getLimit(HOST), equalTo(INITIAL_LIMIT));
+		assertThat(concurrencyLimiter.getInFlight(HOST), equalTo(0));
+	}
+
+	@Test
+	void shouldNotMarkExchangesAsCancelledOutsideOfHedging() {
+		assertThat(RequestHedger.isCancelled(), equalTo(false));
+	}
+
+	private static String limitedExchange(final ConcurrencyLimitingRequestInterceptor interceptor, final HttpRequest request,
+			final ClientHttpResponse response, final boolean slow) {
+		ClientHttpRequestExecution execution = (httpRequest, body) -> {
+			if (slow) {
+				try {
+					Thread.sleep(SLOW_MILLIS);
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException("Closed by interrupt");
+				}
+			}
+			return response;
+		};
+		try {
+			interceptor.intercept(request, new byte[0], execution).close();
+			return slow ? "original" : "hedge";
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static ClientHttpResponse response() throws IOException {
+		ClientHttpResponse response = mock(ClientHttpResponse.class);
+		doReturn(HttpStatusCode.valueOf(200)).when(response).getStatusCode();
+		return response;
+	}
+
+	private static HttpRequest request() {
+		HttpRequest request = mock(HttpRequest.class);
+		doReturn(HttpMethod.GET).when(request).getMethod();
+		doReturn(URI_RESOURCE).when(request).getURI();
+		doReturn(new HttpHeaders()).when(request).getHeaders();
+		return request;
+	}
+
+	private static <R> R onVirtualThread(final Callable<R> callable) throws Exception {
+		CompletableFuture<R> result = new CompletableFuture<>();
+		Thread.ofVirtual().start(() -> {
+			try {
+				result.complete(callable.call());
+			} catch (Throwable e) { // NOSONAR test helper
+				result.completeExceptionally(e);
+			}
+		});
+		return result.get();
+	}
+
+	private static String sleep(final String result) {
+		try {
+			Thread.sleep(SLOW_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted", e);
+		}
+		return result;
+	}
+
+	private static void sleepUninterruptibly(final long millis) {
+		long deadline = System.nanoTime() + Duration.ofMillis(millis).toNanos();
+		while (System.nanoTime() < deadline) {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+	}
+}
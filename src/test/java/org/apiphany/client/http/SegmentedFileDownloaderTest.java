@@ -0,0 +1,114 @@
+package org.apiphany.client.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.HttpHost;
+import org.apiphany.client.ExchangeClient;
+import org.apiphany.http.HttpStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Test class for {@link SegmentedFileDownloader}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class SegmentedFileDownloaderTest {
+
+	private static final URI URI_RESOURCE = URI.create("http://localhost:8080/file");
+	private static final long LENGTH = 2048;
+	private static final long WAIT_MILLIS = 10_000;
+
+	private final ExecutorService segmentExecutor = Executors.newFixedThreadPool(2);
+
+	@TempDir
+	private Path directory;
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		segmentExecutor.shutdownNow();
+		segmentExecutor.awaitTermination(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	@Test
+	void shouldAbortTheOtherSegmentsAndDeleteTheFileWhenASegmentFails() throws IOException {
+		CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+		AtomicBoolean otherSegmentAborted = new AtomicBoolean();
+		doAnswer(invocation -> {
+			HttpUriRequest httpRequest = invocation.getArgument(1);
+			if (httpRequest.getFirstHeader(HttpHeaders.RANGE).getValue().startsWith("bytes=0-")) {
+				throw new IOException("Connection refused");
+			}
+			long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+			while (!httpRequest.isAborted() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(1);
+			}
+			otherSegmentAborted.set(httpRequest.isAborted());
+			throw new IOException("Request aborted");
+		}).when(httpClient).executeOpen(any(HttpHost.class), any(ClassicHttpRequest.class), any());
+		SegmentedFileDownloader downloader = new SegmentedFileDownloader(httpClient, mock(ExchangeClient.class), segmentExecutor) {
+			@Override
+			protected Probe probe(final URI uri, final HttpHeaders headers) {
+				return new Probe(HttpStatus.OK, new HttpHeaders(), LENGTH, true, "\"v1\"");
+			}
+		};
+		Path target = directory.resolve("file");
+		DownloadOptions options = DownloadOptions.defaults()
+				.segmentCount(2)
+				.minSegmentSize(LENGTH / 2)
+				.maxResumeAttempts(1);
+
+		downloader.download(URI_RESOURCE, new HttpHeaders(), target, options);
+
+		assertThat(otherSegmentAborted.get(), equalTo(true));
+		assertThat(Files.exists(target), equalTo(false));
+		verify(httpClient, times(3)).executeOpen(any(HttpHost.class), any(ClassicHttpRequest.class), any());
+	}
+
+	@Test
+	void shouldDownloadWithASingleRequestWhenTheResourceHasNoValidator() throws IOException {
+		CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
+		List<ClassicHttpRequest> requests = new CopyOnWriteArrayList<>();
+		doAnswer(invocation -> {
+			requests.add(invocation.getArgument(1));
+			throw new IOException("Connection refused");
+		}).when(httpClient).executeOpen(any(HttpHost.class), any(ClassicHttpRequest.class), any());
+		SegmentedFileDownloader downloader = new SegmentedFileDownloader(httpClient, mock(ExchangeClient.class), segmentExecutor) {
+			@Override
+			protected Probe probe(final URI uri, final HttpHeaders headers) {
+				return new Probe(HttpStatus.OK, new HttpHeaders(), LENGTH, true, null);
+			}
+		};
+		DownloadOptions options = DownloadOptions.defaults()
+				.segmentCount(2)
+				.minSegmentSize(LENGTH / 2);
+
+		downloader.download(URI_RESOURCE, new HttpHeaders(), directory.resolve("file"), options);
+
+		assertThat(requests.size(), equalTo(1));
+		assertThat(requests.getFirst().getFirstHeader(HttpHeaders.RANGE), nullValue());
+	}
+}
@@ -0,0 +1,78 @@
+package org.apiphany.spring;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * Test class for {@link Beans}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class BeansTest {
+
+	@Test
+	void shouldReturnNullForMissingBeans() {
+		try (GenericApplicationContext ctx = new GenericApplicationContext()) {
+			ctx.refresh();
+
+			assertThat(Beans.getOptionalBean(StringBuilder.class, ctx), nullValue());
+			assertThat(Beans.getOptionalBean(StringBuilder.class, ctx), nullValue());
+		}
+	}
+
+	@Test
+	void shouldReturnTheSameSingletonBean() {
+		try (GenericApplicationContext ctx = new GenericApplicationContext()) {
+			ctx.registerBean(StringBuilder.class);
+			ctx.refresh();
+
+			StringBuilder bean = Beans.getOptionalBean(StringBuilder.class, ctx);
+
+			assertThat(bean, notNullValue());
+			assertThat(Beans.getOptionalBean(StringBuilder.class, ctx), sameInstance(bean));
+		}
+	}
+
+	@Test
+	void shouldNotCachePrototypeBeans() {
+		try (GenericApplicationContext ctx = new GenericApplicationContext()) {
+			ctx.registerBean(StringBuilder.class, bd -> bd.setScope(BeanDefinition.SCOPE_PROTOTYPE));
+			ctx.refresh();
+
+			StringBuilder bean = Beans.getOptionalBean(StringBuilder.class, ctx);
+
+			assertThat(bean, notNullValue());
+			assertThat(Beans.getOptionalBean(StringBuilder.class, ctx), not(sameInstance(bean)));
+		}
+	}
+
+	@Test
+	void shouldReturnNullWhenBeanIsNotUnique() {
+		try (GenericApplicationContext ctx = new GenericApplicationContext()) {
+			ctx.registerBean("first", StringBuilder.class);
+			ctx.registerBean("second", StringBuilder.class);
+			ctx.refresh();
+
+			assertThat(Beans.getOptionalBean(StringBuilder.class, ctx), nullValue());
+		}
+	}
+
+	@Test
+	void shouldReturnNullAfterTheContextIsClosed() {
+		GenericApplicationContext ctx = new GenericApplicationContext();
+		ctx.registerBean(StringBuilder.class);
+		ctx.refresh();
+		Beans.getOptionalBean(StringBuilder.class, ctx);
+
+		ctx.close();
+
+		assertThat(Beans.getOptionalBean(StringBuilder.class, ctx), nullValue());
+	}
+}
@@ -0,0 +1,164 @@
+package org.apiphany.spring.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Test class for {@link BinaryFormats}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class BinaryFormatsTest {
+
+	private static final URI URI_RESOURCE = URI.create("http://localhost:8080/resource");
+	private static final String JSON = MediaType.APPLICATION_JSON_VALUE;
+
+	@Test
+	void shouldPreferTheBinaryFormatsInOrderWithLowerQualitiesForUnknownHosts() {
+		BinaryFormats binaryFormats = BinaryFormats.defaults();
+
+		String accept = binaryFormats.getAcceptHeader(URI_RESOURCE, JSON);
+
+		assertThat(accept, equalTo("application/x-jackson-smile, application/cbor;q=0.9, application/json;q=0.8"));
+	}
+
+	@Test
+	void shouldKeepTheLowerQualityOfTheOriginalMediaTypes() {
+		BinaryFormats binaryFormats = BinaryFormats.defaults();
+
+		String accept = binaryFormats.getAcceptHeader(URI_RESOURCE, "application/json, text/plain;q=0.5");
+
+		assertThat(accept, equalTo("application/x-jackson-smile, application/cbor;q=0.9, application/json;q=0.8, text/plain;q=0.5"));
+	}
+
+	@Test
+	void shouldPreferTheFormatTheHostAnsweredWith() {
+		BinaryFormats binaryFormats = BinaryFormats.defaults();
+
+		binaryFormats.update(URI_RESOURCE, true, null, 200, BinaryFormats.CBOR);
+
+		assertThat(binaryFormats.getContentType(URI_RESOURCE), equalTo(BinaryFormats.CBOR));
+		assertThat(binaryFormats.getAcceptHeader(URI_RESOURCE, JSON),
+				equalTo("application/cbor, application/x-jackson-smile;q=0.9, application/json;q=0.8"));
+		assertThat(binaryFormats.getBinaryHosts(), equalTo(Map.of("http://localhost:8080", BinaryFormats.CBOR)));
+	}
+
+	@Test
+	void shouldNotRewriteAcceptHeadersWithoutJson() {
+		BinaryFormats binaryFormats = BinaryFormats.defaults();
+
+		assertThat(binaryFormats.getAcceptHeader(URI_RESOURCE, "text/plain"), equalTo("text/plain"));
+		assertThat(binaryFormats.getAcceptHeader(URI_RESOURCE, "*/*"), equalTo("*/*"));
+		assertThat(binaryFormats.getAcceptHeader(URI_RESOURCE, null), nullValue());
+	}
+
+	@Test
+	void shouldFallBackToJsonOnlyWhenTheHostAnswersWithJson() {
+		BinaryFormats binaryFormats = BinaryFormats.defaults();
+
+		binaryFormats.update(URI_RESOURCE, true, null, 200, MediaType.APPLICATION_JSON);
+
+		assertThat(binaryFormats.isJsonOnly(URI_RESOURCE), equalTo(true));
+		assertThat(binaryFormats.getContentType(URI_RESOURCE), nullValue());
+		assertThat(binaryFormats.getAcceptHeader(URI_RESOURCE, JSON), equalTo(JSON));
+	}
+
+	@Test
+	void shouldNotFallBackToJsonOnlyOnErrorResponses() {
+		BinaryFormats binaryFormats = BinaryFormats.defaults();
+
+		binaryFormats.update(URI_RESOURCE, true, null, 500, MediaType.APPLICATION_JSON);
+
+		assertThat(binaryFormats.isJsonOnly(URI_RESOURCE), equalTo(false));
+	}
+
+	@Test
+	void shouldOfferTheBinaryFormatsAgainAfterTheRecheckInterval() throws InterruptedException {
+		BinaryFormats binaryFormats = BinaryFormats.builder()
+				.smile()
+				.recheckInterval(Duration.ofMillis(1))
+				.build();
+		binaryFormats.update(URI_RESOURCE, true, null, 200, MediaType.APPLICATION_JSON);
+
+		Thread.sleep(5);
+
+		assertThat(binaryFormats.isJsonOnly(URI_RESOURCE), equalTo(false));
+		assertThat(binaryFormats.getAcceptHeader(URI_RESOURCE, JSON), equalTo("application/x-jackson-smile, application/json;q=0.9"));
+	}
+
+	@Test
+	void shouldDowngradeToJsonWhenTheHostRejectsABinaryBody() {
+		BinaryFormats binaryFormats = BinaryFormats.defaults();
+		binaryFormats.update(URI_RESOURCE, true, null, 200, BinaryFormats.SMILE);
+
+		binaryFormats.update(URI_RESOURCE, true, BinaryFormats.SMILE, 415, MediaType.APPLICATION_JSON);
+
+		assertThat(binaryFormats.isJsonOnly(URI_RESOURCE), equalTo(true));
+		assertThat(binaryFormats.getContentType(URI_RESOURCE, new Object()), nullValue());
+	}
+
+	@Test
+	void shouldNotDowngradeOnUnsupportedMediaTypeForJsonBodies() {
+		BinaryFormats binaryFormats = BinaryFormats.defaults();
+		binaryFormats.update(URI_RESOURCE, true, null, 200, BinaryFormats.SMILE);
+
+		binaryFormats.update(URI_RESOURCE, true, MediaType.APPLICATION_JSON, 415, MediaType.APPLICATION_JSON);
+
+		assertThat(binaryFormats.getContentType(URI_RESOURCE), equalTo(BinaryFormats.SMILE));
+	}
+
+	@Test
+	void shouldSendRawBodiesAsTheyAre() {
+		BinaryFormats binaryFormats = BinaryFormats.defaults();
+		binaryFormats.update(URI_RESOURCE, true, null, 200, BinaryFormats.SMILE);
+
+		assertThat(binaryFormats.getContentType(URI_RESOURCE, "text"), nullValue());
+		assertThat(binaryFormats.getContentType(URI_RESOURCE, new byte[0]), nullValue());
+		assertThat(binaryFormats.getContentType(URI_RESOURCE, null), nullValue());
+		assertThat(binaryFormats.getContentType(URI_RESOURCE, new Object()), equalTo(BinaryFormats.SMILE));
+	}
+
+	@Test
+	void shouldAddTheConvertersRightAfterTheJsonConverter() {
+		ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+		MappingJackson2HttpMessageConverter jsonConverter = new MappingJackson2HttpMessageConverter(objectMapper);
+		StringHttpMessageConverter stringConverter = new StringHttpMessageConverter();
+		List<HttpMessageConverter<?>> converters = new ArrayList<>(List.of(new ByteArrayHttpMessageConverter(),
+				new MappingJackson2SmileHttpMessageConverter(), jsonConverter, stringConverter));
+
+		BinaryFormats.defaults().addConverters(converters);
+
+		assertThat(converters.size(), equalTo(5));
+		assertThat(converters.get(1), sameInstance(jsonConverter));
+		assertThat(converters.get(2), instanceOf(MappingJackson2SmileHttpMessageConverter.class));
+		assertThat(converters.get(3), instanceOf(MappingJackson2CborHttpMessageConverter.class));
+		assertThat(converters.get(4), sameInstance(stringConverter));
+		ObjectMapper smileObjectMapper = ((MappingJackson2SmileHttpMessageConverter) converters.get(2)).getObjectMapper();
+		assertThat(smileObjectMapper, not(sameInstance(objectMapper)));
+		assertThat(smileObjectMapper.getFactory(), instanceOf(SmileFactory.class));
+		assertThat(smileObjectMapper.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES), equalTo(false));
+	}
+}
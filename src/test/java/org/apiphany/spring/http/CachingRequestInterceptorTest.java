@@ -0,0 +1,160 @@
+package org.apiphany.spring.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import org.apiphany.spring.http.cache.ResponseCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Test class for {@link CachingRequestInterceptor}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class CachingRequestInterceptorTest {
+
+	private static final URI URI_RESOURCE = URI.create("http://localhost/resource");
+	private static final String BODY = "{\"id\":1}";
+
+	@Test
+	void shouldUseMethodAndUriAsKeyWithoutCredentials() {
+		HttpRequest request = request(new HttpHeaders());
+
+		String key = CachingRequestInterceptor.key(request);
+
+		assertThat(key, equalTo("GET " + URI_RESOURCE));
+	}
+
+	@Test
+	void shouldUseDifferentKeysForDifferentAuthorizations() {
+		HttpHeaders headers1 = new HttpHeaders();
+		headers1.setBearerAuth("token1");
+		HttpHeaders headers2 = new HttpHeaders();
+		headers2.setBearerAuth("token2");
+
+		String key1 = CachingRequestInterceptor.key(request(headers1));
+		String key2 = CachingRequestInterceptor.key(request(headers2));
+
+		assertThat(key1, startsWith("GET " + URI_RESOURCE + " "));
+		assertThat(key1, not(equalTo(key2)));
+		assertThat(key1, not(containsString("token1")));
+	}
+
+	@Test
+	void shouldUseDifferentKeysForDifferentCookies() {
+		HttpHeaders headers1 = new HttpHeaders();
+		headers1.add(HttpHeaders.COOKIE, "session=1");
+		HttpHeaders headers2 = new HttpHeaders();
+		headers2.add(HttpHeaders.COOKIE, "session=2");
+
+		String key1 = CachingRequestInterceptor.key(request(headers1));
+		String key2 = CachingRequestInterceptor.key(request(headers2));
+
+		assertThat(key1, not(equalTo(key2)));
+	}
+
+	@Test
+	void shouldUseSameKeyForSameCredentials() {
+		HttpHeaders headers1 = new HttpHeaders();
+		headers1.setBearerAuth("token");
+		HttpHeaders headers2 = new HttpHeaders();
+		headers2.setBearerAuth("token");
+
+		String key1 = CachingRequestInterceptor.key(request(headers1));
+		String key2 = CachingRequestInterceptor.key(request(headers2));
+
+		assertThat(key1, equalTo(key2));
+	}
+
+	@Test
+	void shouldAnswerFreshResponsesFromTheCache() throws IOException {
+		CachingRequestInterceptor interceptor = new CachingRequestInterceptor(ResponseCache.defaults());
+		ClientHttpRequestExecution exec = execution(response());
+
+		interceptor.intercept(request(new HttpHeaders()), new byte[0], exec).close();
+		ClientHttpResponse cached = interceptor.intercept(request(new HttpHeaders()), new byte[0], exec);
+
+		assertThat(new String(cached.getBody().readAllBytes(), StandardCharsets.UTF_8), equalTo(BODY));
+		assertThat(interceptor.getResponseCache().size(), equalTo(1));
+		verify(exec, times(1)).execute(any(), any());
+	}
+
+	@Test
+	void shouldBypassTheCacheAndRemoveTheSkipCacheHeader() throws IOException {
+		CachingRequestInterceptor interceptor = new CachingRequestInterceptor(ResponseCache.defaults());
+		ClientHttpResponse response = response();
+		ClientHttpRequestExecution exec = execution(response);
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(CachingRequestInterceptor.SKIP_CACHE, "true");
+
+		ClientHttpResponse result = interceptor.intercept(request(headers), new byte[0], exec);
+
+		assertThat(result, sameInstance(response));
+		assertThat(headers.containsKey(CachingRequestInterceptor.SKIP_CACHE), equalTo(false));
+		assertThat(interceptor.getResponseCache().size(), equalTo(0));
+		verify(response, never()).getBody();
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { HttpHeaders.RANGE, HttpHeaders.IF_RANGE, HttpHeaders.IF_MATCH, HttpHeaders.IF_UNMODIFIED_SINCE })
+	void shouldBypassTheCacheForRangeAndPreconditionRequests(final String headerName) throws IOException {
+		CachingRequestInterceptor interceptor = new CachingRequestInterceptor(ResponseCache.defaults());
+		ClientHttpRequestExecution exec = execution(response());
+		interceptor.intercept(request(new HttpHeaders()), new byte[0], exec).close();
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(headerName, HttpHeaders.RANGE.equals(headerName) ? "bytes=0-1" : "\"v1\"");
+
+		interceptor.intercept(request(headers), new byte[0], exec);
+
+		verify(exec, times(2)).execute(any(), any());
+		assertThat(interceptor.getResponseCache().size(), equalTo(1));
+	}
+
+	private static ClientHttpRequestExecution execution(final ClientHttpResponse response) throws IOException {
+		ClientHttpRequestExecution exec = mock(ClientHttpRequestExecution.class);
+		doReturn(response).when(exec).execute(any(), any());
+		return exec;
+	}
+
+	private static ClientHttpResponse response() throws IOException {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("max-age=60");
+		ClientHttpResponse response = mock(ClientHttpResponse.class);
+		doReturn(HttpStatus.OK).when(response).getStatusCode();
+		doReturn(HttpStatus.OK.getReasonPhrase()).when(response).getStatusText();
+		doReturn(headers).when(response).getHeaders();
+		doReturn(new ByteArrayInputStream(BODY.getBytes(StandardCharsets.UTF_8))).when(response).getBody();
+		return response;
+	}
+
+	private static HttpRequest request(final HttpHeaders headers) {
+		HttpRequest request = mock(HttpRequest.class);
+		doReturn(HttpMethod.GET).when(request).getMethod();
+		doReturn(URI_RESOURCE).when(request).getURI();
+		doReturn(headers).when(request).getHeaders();
+		return request;
+	}
+}
@@ -0,0 +1,138 @@
+package org.apiphany.spring.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apiphany.client.http.ConcurrencyLimitExceededException;
+import org.apiphany.client.http.ConcurrencyLimiter;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Test class for {@link ConcurrencyLimitingRequestInterceptor}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class ConcurrencyLimitingRequestInterceptorTest {
+
+	private static final URI URI_RESOURCE = URI.create("http://localhost:8080/resource");
+	private static final String HOST = "http://localhost:8080";
+	private static final byte[] BODY = new byte[0];
+	private static final int INITIAL_LIMIT = 10;
+
+	private final ConcurrencyLimiter concurrencyLimiter = ConcurrencyLimiter.builder()
+			.initialLimit(INITIAL_LIMIT)
+			.backoffRatio(0.5)
+			.build();
+
+	private final ConcurrencyLimitingRequestInterceptor interceptor = new ConcurrencyLimitingRequestInterceptor(concurrencyLimiter);
+
+	@Test
+	void shouldHoldPermitUntilResponseIsClosed() throws IOException {
+		ClientHttpResponse response = interceptor.intercept(request(), BODY, execution(200));
+
+		assertThat(concurrencyLimiter.getInFlight(HOST), equalTo(1));
+
+		response.close();
+
+		assertThat(concurrencyLimiter.getInFlight(HOST), equalTo(0));
+		assertThat(concurrencyLimiter.getLimit(HOST), equalTo(INITIAL_LIMIT));
+	}
+
+	@Test
+	void shouldRecordRoundTripTimeWhenStatusIsReceivedAndCompleteOnClose() throws IOException {
+		ConcurrencyLimiter limiter = mock(ConcurrencyLimiter.class);
+		ConcurrencyLimiter.Permit permit = mock(ConcurrencyLimiter.Permit.class);
+		doReturn(permit).when(limiter).acquire(HOST);
+		ConcurrencyLimitingRequestInterceptor limitingInterceptor = new ConcurrencyLimitingRequestInterceptor(limiter);
+
+		ClientHttpResponse response = limitingInterceptor.intercept(request(), BODY, execution(200));
+
+		verify(permit).received();
+		verify(permit, never()).success();
+
+		response.close();
+
+		InOrder inOrder = inOrder(permit);
+		inOrder.verify(permit).received();
+		inOrder.verify(permit).success();
+	}
+
+	@Test
+	void shouldDropOnServerErrorResponses() throws IOException {
+		interceptor.intercept(request(), BODY, execution(503)).close();
+
+		assertThat(concurrencyLimiter.getLimit(HOST), equalTo(INITIAL_LIMIT / 2));
+	}
+
+	@Test
+	void shouldDropOnTooManyRequestsResponses() throws IOException {
+		interceptor.intercept(request(), BODY, execution(429)).close();
+
+		assertThat(concurrencyLimiter.getLimit(HOST), equalTo(INITIAL_LIMIT / 2));
+	}
+
+	@Test
+	void shouldIgnoreClientErrorResponses() throws IOException {
+		interceptor.intercept(request(), BODY, execution(404)).close();
+
+		assertThat(concurrencyLimiter.getInFlight(HOST), equalTo(0));
+		assertThat(concurrencyLimiter.getLimit(HOST), equalTo(INITIAL_LIMIT));
+	}
+
+	@Test
+	void shouldDropOnIOErrors() throws IOException {
+		ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+		doThrow(new IOException("Connection reset")).when(execution).execute(any(), any());
+
+		assertThrows(IOException.class, () -> interceptor.intercept(request(), BODY, execution));
+
+		assertThat(concurrencyLimiter.getInFlight(HOST), equalTo(0));
+		assertThat(concurrencyLimiter.getLimit(HOST), equalTo(INITIAL_LIMIT / 2));
+	}
+
+	@Test
+	void shouldRejectWithoutExecutingWhenHostIsAtItsLimit() throws IOException {
+		for (int i = 0; i < INITIAL_LIMIT; ++i) {
+			interceptor.intercept(request(), BODY, execution(200));
+		}
+		ClientHttpRequestExecution execution = execution(200);
+
+		assertThrows(ConcurrencyLimitExceededException.class, () -> interceptor.intercept(request(), BODY, execution));
+
+		verify(execution, never()).execute(any(), any());
+	}
+
+	private static HttpRequest request() {
+		HttpRequest request = mock(HttpRequest.class);
+		doReturn(HttpMethod.GET).when(request).getMethod();
+		doReturn(URI_RESOURCE).when(request).getURI();
+		doReturn(new HttpHeaders()).when(request).getHeaders();
+		return request;
+	}
+
+	private static ClientHttpRequestExecution execution(final int statusCode) throws IOException {
+		ClientHttpResponse response = mock(ClientHttpResponse.class);
+		doReturn(HttpStatusCode.valueOf(statusCode)).when(response).getStatusCode();
+		ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+		doReturn(response).when(execution).execute(any(), any());
+		return execution;
+	}
+}
@@ -0,0 +1,145 @@
+package org.apiphany.spring.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Test class for {@link LazyBody}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class LazyBodyTest {
+
+	private static final String BODY = "body";
+	private static final int THREADS = 8;
+
+	@Test
+	void shouldNotDeserializeAnUnreadBody() {
+		AtomicInteger reads = new AtomicInteger();
+
+		LazyBody<String> lazyBody = new LazyBody<>(bytes(), new HttpHeaders(), inputMessage -> {
+			reads.incrementAndGet();
+			return BODY;
+		});
+
+		assertThat(lazyBody.isRead(), equalTo(false));
+		assertThat(lazyBody.getBytes(), equalTo(bytes()));
+		assertThat(reads.get(), equalTo(0));
+	}
+
+	@Test
+	void shouldDeserializeOnlyOnce() {
+		AtomicInteger reads = new AtomicInteger();
+		LazyBody<String> lazyBody = new LazyBody<>(bytes(), new HttpHeaders(), inputMessage -> {
+			reads.incrementAndGet();
+			return new String(inputMessage.getBody().readAllBytes(), StandardCharsets.UTF_8);
+		});
+
+		assertThat(lazyBody.get(), equalTo(BODY));
+		assertThat(lazyBody.get(), equalTo(BODY));
+
+		assertThat(lazyBody.isRead(), equalTo(true));
+		assertThat(reads.get(), equalTo(1));
+	}
+
+	@Test
+	void shouldDeserializeOnlyOnceWhenAccessedConcurrently() throws Exception {
+		AtomicInteger reads = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		LazyBody<String> lazyBody = new LazyBody<>(bytes(), new HttpHeaders(), inputMessage -> {
+			reads.incrementAndGet();
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return BODY;
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<String>> futures = new ArrayList<>(THREADS);
+			for (int i = 0; i < THREADS; ++i) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return lazyBody.get();
+				}));
+			}
+			start.countDown();
+			for (Future<String> future : futures) {
+				assertThat(future.get(5, TimeUnit.SECONDS), equalTo(BODY));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(reads.get(), equalTo(1));
+	}
+
+	@Test
+	void shouldRetryAFailedRead() {
+		AtomicInteger reads = new AtomicInteger();
+		LazyBody<String> lazyBody = new LazyBody<>(bytes(), new HttpHeaders(), inputMessage -> {
+			if (1 == reads.incrementAndGet()) {
+				throw new IOException("Failed");
+			}
+			return BODY;
+		});
+
+		assertThrows(UncheckedIOException.class, lazyBody::get);
+		assertThat(lazyBody.isRead(), equalTo(false));
+
+		assertThat(lazyBody.get(), equalTo(BODY));
+		assertThat(reads.get(), equalTo(2));
+	}
+
+	@Test
+	void shouldReturnNullForAnEmptyBodyWithoutReading() {
+		AtomicInteger reads = new AtomicInteger();
+
+		LazyBody<String> lazyBody = new LazyBody<>(null, new HttpHeaders(), inputMessage -> {
+			reads.incrementAndGet();
+			return BODY;
+		});
+
+		assertThat(lazyBody.isEmpty(), equalTo(true));
+		assertThat(lazyBody.get(), nullValue());
+		assertThat(reads.get(), equalTo(0));
+	}
+
+	@Test
+	void shouldReturnTheElementTypeOfLazyBodyTypes() {
+		Type lazyUsers = new ParameterizedTypeReference<LazyBody<List<String>>>() {
+			// empty
+		}.getType();
+		Type users = new ParameterizedTypeReference<List<String>>() {
+			// empty
+		}.getType();
+
+		assertThat(LazyBody.elementType(lazyUsers), equalTo(users));
+		assertThat(LazyBody.elementType(LazyBody.class), equalTo(Object.class));
+		assertThat(LazyBody.elementType(String.class), nullValue());
+	}
+
+	private static byte[] bytes() {
+		return BODY.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,107 @@
+package org.apiphany.spring.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apiphany.client.http.LoadBalancer;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Test class for {@link LoadBalancingRequestInterceptor}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class LoadBalancingRequestInterceptorTest {
+
+	private static final String SERVICE = "users";
+	private static final URI URI_SERVICE = URI.create("http://users/api/users/1");
+	private static final URI URI_ENDPOINT = URI.create("http://10.0.0.1:8080/api/users/1");
+	private static final byte[] BODY = new byte[0];
+
+	private final LoadBalancer loadBalancer = LoadBalancer.builder()
+			.service(SERVICE, "http://10.0.0.1:8080")
+			.build();
+
+	private final LoadBalancingRequestInterceptor interceptor = new LoadBalancingRequestInterceptor(loadBalancer);
+
+	private final LoadBalancer.Endpoint endpoint = loadBalancer.getEndpoints(SERVICE).getFirst();
+
+	@Test
+	void shouldSendTheRequestToTheEndpoint() throws IOException {
+		HttpRequest request = request(URI_SERVICE);
+		ClientHttpRequestExecution execution = execution(200);
+
+		interceptor.intercept(request, BODY, execution);
+
+		ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+		verify(execution).execute(captor.capture(), any());
+		assertThat(captor.getValue().getURI(), equalTo(URI_ENDPOINT));
+		assertThat(captor.getValue().getMethod(), equalTo(HttpMethod.GET));
+		assertThat(request.getURI(), equalTo(URI_SERVICE));
+		assertThat(endpoint.getSuccesses(), equalTo(1L));
+		assertThat(endpoint.getInFlight(), equalTo(0));
+	}
+
+	@Test
+	void shouldSendRequestsToOtherHostsAsTheyAre() throws IOException {
+		HttpRequest request = request(URI.create("http://localhost:8080/resource"));
+		ClientHttpRequestExecution execution = execution(200);
+
+		interceptor.intercept(request, BODY, execution);
+
+		verify(execution).execute(same(request), any());
+		assertThat(endpoint.getSuccesses(), equalTo(0L));
+	}
+
+	@Test
+	void shouldRecordServerErrorResponsesAsFailures() throws IOException {
+		interceptor.intercept(request(URI_SERVICE), BODY, execution(503));
+
+		assertThat(endpoint.getFailures(), equalTo(1L));
+		assertThat(endpoint.getInFlight(), equalTo(0));
+	}
+
+	@Test
+	void shouldRecordIOErrorsAsFailures() throws IOException {
+		ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+		doThrow(new IOException("Connection refused")).when(execution).execute(any(), any());
+
+		assertThrows(IOException.class, () -> interceptor.intercept(request(URI_SERVICE), BODY, execution));
+
+		assertThat(endpoint.getFailures(), equalTo(1L));
+		assertThat(endpoint.getInFlight(), equalTo(0));
+	}
+
+	private static HttpRequest request(final URI uri) {
+		HttpRequest request = mock(HttpRequest.class);
+		doReturn(HttpMethod.GET).when(request).getMethod();
+		doReturn(uri).when(request).getURI();
+		doReturn(new HttpHeaders()).when(request).getHeaders();
+		return request;
+	}
+
+	private static ClientHttpRequestExecution execution(final int statusCode) throws IOException {
+		ClientHttpResponse response = mock(ClientHttpResponse.class);
+		doReturn(HttpStatusCode.valueOf(statusCode)).when(response).getStatusCode();
+		ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+		doReturn(response).when(execution).execute(any(), any());
+		return execution;
+	}
+}
@@ -0,0 +1,100 @@
+package org.apiphany.spring.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+
+import org.apiphany.client.http.ConcurrencyLimitExceededException;
+import org.apiphany.spring.meters.EndpointTemplates;
+import org.apiphany.spring.meters.ExchangeMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test class for {@link MetricsRequestInterceptor}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class MetricsRequestInterceptorTest {
+
+	private static final URI URI_USER = URI.create("http://localhost:8080/users/123");
+	private static final byte[] BODY = new byte[0];
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final MetricsRequestInterceptor interceptor =
+			new MetricsRequestInterceptor(ExchangeMetrics.of(registry, "TestClient", EndpointTemplates.defaults()));
+
+	@Test
+	void shouldRecordTheExchangeAndResponseSizeWhenTheResponseIsClosed() throws IOException {
+		ClientHttpResponse response = mock(ClientHttpResponse.class);
+		doReturn(HttpStatusCode.valueOf(200)).when(response).getStatusCode();
+		doReturn(new HttpHeaders()).when(response).getHeaders();
+		doReturn(new ByteArrayInputStream(new byte[42])).when(response).getBody();
+
+		ClientHttpResponse metered = interceptor.intercept(request(), BODY, execution(response));
+		metered.getBody().readAllBytes();
+
+		assertThat(timer("2xx"), equalTo(0L));
+
+		metered.close();
+
+		assertThat(timer("2xx"), equalTo(1L));
+		assertThat(registry.get(ExchangeMetrics.PREFIX + ".response.size").summary().totalAmount(), equalTo(42.0));
+	}
+
+	@Test
+	void shouldRecordIoErrors() throws IOException {
+		ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+		doThrow(new IOException("Connection reset")).when(execution).execute(any(), any());
+
+		assertThrows(IOException.class, () -> interceptor.intercept(request(), BODY, execution));
+
+		assertThat(timer(ExchangeMetrics.IO_ERROR), equalTo(1L));
+	}
+
+	@Test
+	void shouldRecordConcurrencyLimitRejections() throws IOException {
+		ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+		doThrow(new ConcurrencyLimitExceededException("http://localhost:8080", 1)).when(execution).execute(any(), any());
+
+		assertThrows(ConcurrencyLimitExceededException.class, () -> interceptor.intercept(request(), BODY, execution));
+
+		assertThat(timer(ExchangeMetrics.REJECTED), equalTo(1L));
+	}
+
+	private long timer(final String status) {
+		Timer timer = registry.find(ExchangeMetrics.PREFIX).tag("uri", "/users/{id}").tag("status", status).timer();
+		return null == timer ? 0 : timer.count();
+	}
+
+	private static HttpRequest request() {
+		HttpRequest request = mock(HttpRequest.class);
+		doReturn(HttpMethod.GET).when(request).getMethod();
+		doReturn(URI_USER).when(request).getURI();
+		doReturn(new HttpHeaders()).when(request).getHeaders();
+		return request;
+	}
+
+	private static ClientHttpRequestExecution execution(final ClientHttpResponse response) throws IOException {
+		ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+		doReturn(response).when(execution).execute(any(), any());
+		return execution;
+	}
+}
@@ -0,0 +1,96 @@
+package org.apiphany.spring.http;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Test class for {@link ResponseConverterCache}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class ResponseConverterCacheTest {
+
+	private static final String BODY = "text";
+
+	@Test
+	void shouldResolveTheConverterOncePerTypeSubtypeAndCharset() {
+		StringHttpMessageConverter converter = spy(new StringHttpMessageConverter());
+		ResponseConverterCache cache = ResponseConverterCache.of(List.of(converter));
+
+		for (int i = 0; i < 10; ++i) {
+			String body = cache.<String>lazyBody(String.class, headers("text/plain;charset=UTF-8;boundary=" + i), bytes()).get();
+			assertThat(body, equalTo(BODY));
+		}
+		cache.lazyBody(String.class, headers("text/plain;charset=ISO-8859-1;boundary=0"), bytes()).get();
+
+		verify(converter, times(2)).canRead(eq(String.class), any(MediaType.class));
+	}
+
+	@Test
+	void shouldNotDeserializeAnUnreadLazyBody() throws IOException {
+		StringHttpMessageConverter converter = spy(new StringHttpMessageConverter());
+		ResponseConverterCache cache = ResponseConverterCache.of(List.of(converter));
+
+		LazyBody<String> lazyBody = cache.lazyBody(String.class, headers("text/plain"), bytes());
+
+		assertThat(lazyBody.isRead(), equalTo(false));
+		verify(converter, never()).read(any(), any());
+	}
+
+	@Test
+	void shouldDeserializeALazyBodyOnceWithTheCachedConverter() throws IOException {
+		StringHttpMessageConverter converter = spy(new StringHttpMessageConverter());
+		ResponseConverterCache cache = ResponseConverterCache.of(List.of(converter));
+		LazyBody<String> lazyBody = cache.lazyBody(String.class, headers("text/plain"), bytes());
+
+		assertThat(lazyBody.get(), equalTo(BODY));
+		assertThat(lazyBody.get(), equalTo(BODY));
+
+		verify(converter, times(1)).read(any(), any());
+	}
+
+	@Test
+	void shouldRetryALazyBodyWhoseReadFailed() throws IOException {
+		StringHttpMessageConverter converter = spy(new StringHttpMessageConverter());
+		doThrow(new HttpMessageNotReadableException("Failed", (HttpInputMessage) null))
+				.doCallRealMethod()
+				.when(converter).read(any(), any());
+		ResponseConverterCache cache = ResponseConverterCache.of(List.of(converter));
+		LazyBody<String> lazyBody = cache.lazyBody(String.class, headers("text/plain"), bytes());
+
+		assertThrows(RestClientException.class, lazyBody::get);
+		assertThat(lazyBody.isRead(), equalTo(false));
+
+		assertThat(lazyBody.get(), equalTo(BODY));
+	}
+
+	private static HttpHeaders headers(final String contentType) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+		return headers;
+	}
+
+	private static byte[] bytes() {
+		return BODY.getBytes(StandardCharsets.UTF_8);
+	}
+}
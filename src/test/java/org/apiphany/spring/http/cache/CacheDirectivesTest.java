@@ -0,0 +1,57 @@
+package org.apiphany.spring.http.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Test class for {@link CacheDirectives}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class CacheDirectivesTest {
+
+	@Test
+	void shouldHaveNoDirectivesWithoutCacheControl() {
+		CacheDirectives directives = CacheDirectives.of(new HttpHeaders());
+
+		assertThat(directives.isNoStore(), equalTo(false));
+		assertThat(directives.isNoCache(), equalTo(false));
+		assertThat(directives.getMaxAge(), equalTo(CacheDirectives.NO_MAX_AGE));
+	}
+
+	@Test
+	void shouldParseAllDirectivesIgnoringCaseAndWhitespace() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.CACHE_CONTROL, " No-Store ,Max-Age=30");
+		headers.add(HttpHeaders.CACHE_CONTROL, "no-cache=\"Set-Cookie\"");
+
+		CacheDirectives directives = CacheDirectives.of(headers);
+
+		assertThat(directives.isNoStore(), equalTo(true));
+		assertThat(directives.isNoCache(), equalTo(true));
+		assertThat(directives.getMaxAge(), equalTo(30L));
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+			"max-age=120      | 120",
+			"max-age=\"45\"   | 45",
+			"max-age=-5       | 0",
+			"max-age=invalid  | 0",
+			"max-age=         | 0",
+			"public, s-maxage=10 | -1"
+	})
+	void shouldParseMaxAge(final String cacheControl, final long expectedMaxAge) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.CACHE_CONTROL, cacheControl);
+
+		CacheDirectives directives = CacheDirectives.of(headers);
+
+		assertThat(directives.getMaxAge(), equalTo(expectedMaxAge));
+	}
+}
@@ -0,0 +1,128 @@
+package org.apiphany.spring.http.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Test class for {@link CachedResponse}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class CachedResponseTest {
+
+	private static final long NOW = 1_700_000_000_000L;
+	private static final byte[] BODY = "body".getBytes();
+
+	@Test
+	void shouldBeFreshUntilMaxAgeExpires() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("max-age=60");
+
+		CachedResponse response = CachedResponse.of(200, "OK", headers, BODY, new HttpHeaders(), NOW);
+
+		assertThat(response.getExpirationTime(), equalTo(NOW + 60_000));
+		assertThat(response.isFresh(NOW + 59_999), equalTo(true));
+		assertThat(response.isFresh(NOW + 60_000), equalTo(false));
+	}
+
+	@Test
+	void shouldPreferMaxAgeOverExpires() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("max-age=10");
+		headers.setDate(NOW);
+		headers.setExpires(NOW + 3_600_000);
+
+		CachedResponse response = CachedResponse.of(200, "OK", headers, BODY, new HttpHeaders(), NOW);
+
+		assertThat(response.getExpirationTime(), equalTo(NOW + 10_000));
+	}
+
+	@Test
+	void shouldComputeFreshnessFromExpiresRelativeToDate() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setDate(NOW - 120_000);
+		headers.setExpires(NOW - 60_000);
+
+		CachedResponse response = CachedResponse.of(200, "OK", headers, BODY, new HttpHeaders(), NOW);
+
+		assertThat(response.getExpirationTime(), equalTo(NOW + 60_000));
+		assertThat(response.isFresh(NOW + 30_000), equalTo(true));
+	}
+
+	@Test
+	void shouldBeStaleWhenExpiresIsBeforeDate() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setDate(NOW);
+		headers.setExpires(NOW - 60_000);
+
+		CachedResponse response = CachedResponse.of(200, "OK", headers, BODY, new HttpHeaders(), NOW);
+
+		assertThat(response.isFresh(NOW), equalTo(false));
+	}
+
+	@Test
+	void shouldBeStaleWithoutFreshnessInformation() {
+		CachedResponse response = CachedResponse.of(200, "OK", new HttpHeaders(), BODY, new HttpHeaders(), NOW);
+
+		assertThat(response.isFresh(NOW), equalTo(false));
+	}
+
+	@Test
+	void shouldBeStaleWithNoCacheEvenWithMaxAge() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("no-cache, max-age=60");
+
+		CachedResponse response = CachedResponse.of(200, "OK", headers, BODY, new HttpHeaders(), NOW);
+
+		assertThat(response.isFresh(NOW), equalTo(false));
+	}
+
+	@Test
+	void shouldNotOverflowWithHugeMaxAge() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("max-age=" + Long.MAX_VALUE);
+
+		CachedResponse response = CachedResponse.of(200, "OK", headers, BODY, new HttpHeaders(), NOW);
+
+		assertThat(response.isFresh(NOW + 365L * 24 * 3_600_000), equalTo(true));
+	}
+
+	@Test
+	void shouldRefreshFreshnessWhenRevalidated() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("max-age=60");
+		headers.setETag("\"v1\"");
+		CachedResponse response = CachedResponse.of(200, "OK", headers, BODY, new HttpHeaders(), NOW);
+
+		HttpHeaders notModifiedHeaders = new HttpHeaders();
+		notModifiedHeaders.setCacheControl("max-age=120");
+		long later = NOW + 90_000;
+		CachedResponse revalidated = response.revalidated(notModifiedHeaders, later);
+
+		assertThat(response.isFresh(later), equalTo(false));
+		assertThat(revalidated.isFresh(later), equalTo(true));
+		assertThat(revalidated.getExpirationTime(), equalTo(later + 120_000));
+		assertThat(revalidated.getETag(), equalTo("\"v1\""));
+		assertThat(revalidated.getBody(), equalTo(BODY));
+	}
+
+	@Test
+	void shouldMatchVaryOnlyWithSameRequestHeaderValues() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setVary(List.of(HttpHeaders.ACCEPT_LANGUAGE));
+		HttpHeaders requestHeaders = new HttpHeaders();
+		requestHeaders.set(HttpHeaders.ACCEPT_LANGUAGE, "en");
+		CachedResponse response = CachedResponse.of(200, "OK", headers, BODY, requestHeaders, NOW);
+
+		HttpHeaders otherRequestHeaders = new HttpHeaders();
+		otherRequestHeaders.set(HttpHeaders.ACCEPT_LANGUAGE, "fr");
+
+		assertThat(response.matchesVary(requestHeaders), equalTo(true));
+		assertThat(response.matchesVary(otherRequestHeaders), equalTo(false));
+	}
+}
@@ -0,0 +1,138 @@
+package org.apiphany.spring.http.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Test class for {@link ResponseCache}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class ResponseCacheTest {
+
+	private static final String KEY = "GET http://localhost/resource";
+	private static final byte[] BODY = "body".getBytes();
+	private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+	@TempDir
+	private Path diskDirectory;
+
+	@Test
+	void shouldReturnStoredResponseFromMemory() {
+		ResponseCache cache = ResponseCache.defaults();
+		CachedResponse response = response(60);
+
+		cache.put(KEY, response);
+
+		assertThat(cache.get(KEY), equalTo(response));
+		assertThat(cache.size(), equalTo(1));
+	}
+
+	@Test
+	void shouldNotStoreResponsesLargerThanMaxEntryBytes() {
+		ResponseCache cache = ResponseCache.builder()
+				.maxEntryBytes(1)
+				.build();
+
+		boolean stored = cache.put(KEY, response(60));
+
+		assertThat(stored, equalTo(false));
+		assertThat(cache.get(KEY), nullValue());
+	}
+
+	@Test
+	void shouldPromoteDiskEntryToMemoryInTheBackground() {
+		ResponseCache writer = ResponseCache.builder()
+				.diskDirectory(diskDirectory)
+				.build();
+		writer.put(KEY, response(60));
+		writer.close();
+
+		ResponseCache reader = ResponseCache.builder()
+				.diskDirectory(diskDirectory)
+				.build();
+		try {
+			assertThat(reader.get(KEY), nullValue());
+
+			CachedResponse promoted = awaitValue(() -> reader.get(KEY));
+
+			assertThat(promoted.getBody(), equalTo(BODY));
+			assertThat(promoted.isFresh(System.currentTimeMillis()), equalTo(true));
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	void shouldEvictLeastRecentlyUsedFilesWhenDiskIsFull() {
+		ResponseCache first = ResponseCache.builder()
+				.diskDirectory(diskDirectory)
+				.build();
+		first.put(KEY + "/1", response(60));
+		first.close();
+		long fileSize = first.getDiskBytes();
+
+		ResponseCache second = ResponseCache.builder()
+				.diskDirectory(diskDirectory)
+				.maxDiskBytes(fileSize + fileSize / 2)
+				.build();
+		second.put(KEY + "/2", response(60));
+		second.close();
+
+		assertThat(second.getDiskBytes(), equalTo(fileSize));
+
+		ResponseCache reader = ResponseCache.builder()
+				.diskDirectory(diskDirectory)
+				.build();
+		try {
+			reader.get(KEY + "/1");
+
+			CachedResponse promoted = awaitValue(() -> reader.get(KEY + "/2"));
+
+			assertThat(promoted.getBody(), equalTo(BODY));
+			assertThat(reader.get(KEY + "/1"), nullValue());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	void shouldDeleteDiskFilesOnClear() {
+		ResponseCache writer = ResponseCache.builder()
+				.diskDirectory(diskDirectory)
+				.build();
+		writer.put(KEY, response(60));
+		writer.clear();
+		writer.close();
+
+		assertThat(writer.getDiskBytes(), equalTo(0L));
+		assertThat(writer.get(KEY), nullValue());
+	}
+
+	private static CachedResponse response(final long maxAge) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("max-age=" + maxAge);
+		return CachedResponse.of(200, "OK", headers, BODY, new HttpHeaders(), System.currentTimeMillis());
+	}
+
+	private static <T> T awaitValue(final Supplier<T> supplier) {
+		long deadline = System.nanoTime() + TIMEOUT.toNanos();
+		T value = supplier.get();
+		while (null == value && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+			value = supplier.get();
+		}
+		assertThat(value, notNullValue());
+		return value;
+	}
+}
@@ -0,0 +1,91 @@
+package org.apiphany.spring.meters;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Test class for {@link EndpointTemplates}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class EndpointTemplatesTest {
+
+	@ParameterizedTest
+	@CsvSource({
+			"/users/123, /users/{id}",
+			"/users/123/orders/456, /users/{id}/orders/{id}",
+			"/users/3f2504e0-4f89-11d3-9a0c-0305e82c3301, /users/{uuid}",
+			"/blobs/0123456789abcdef0123, /blobs/{id}",
+			"/orders/A12345, /orders/{id}",
+			"/users/me, /users/me",
+			"/api/v2/items, /api/v2/items",
+			"/, /"
+	})
+	void shouldReplaceIdentifierSegmentsWithPlaceholders(final String path, final String expectedTemplate) {
+		EndpointTemplates endpointTemplates = EndpointTemplates.defaults();
+
+		assertThat(endpointTemplates.resolve(path), equalTo(expectedTemplate));
+	}
+
+	@Test
+	void shouldResolveEmptyPathToRoot() {
+		EndpointTemplates endpointTemplates = EndpointTemplates.defaults();
+
+		assertThat(endpointTemplates.resolve(""), equalTo("/"));
+		assertThat(endpointTemplates.resolve(null), equalTo("/"));
+	}
+
+	@Test
+	void shouldUseTheFirstMatchingExplicitTemplate() {
+		EndpointTemplates endpointTemplates = EndpointTemplates.builder()
+				.template("/users/{name}/orders")
+				.template("/users/**")
+				.build();
+
+		assertThat(endpointTemplates.resolve("/users/john/orders"), equalTo("/users/{name}/orders"));
+		assertThat(endpointTemplates.resolve("/users/john/profile"), equalTo("/users/**"));
+		assertThat(endpointTemplates.getTemplateCount(), equalTo(0));
+	}
+
+	@Test
+	void shouldCollapseNewTemplatesOverTheCardinalityLimit() {
+		EndpointTemplates endpointTemplates = EndpointTemplates.builder()
+				.maxTemplates(2)
+				.build();
+
+		assertThat(endpointTemplates.resolve("/a/1"), equalTo("/a/{id}"));
+		assertThat(endpointTemplates.resolve("/b/1"), equalTo("/b/{id}"));
+		assertThat(endpointTemplates.resolve("/c/1"), equalTo(EndpointTemplates.OTHER));
+		assertThat(endpointTemplates.resolve("/d"), equalTo(EndpointTemplates.OTHER));
+
+		assertThat(endpointTemplates.resolve("/a/2"), equalTo("/a/{id}"));
+		assertThat(endpointTemplates.getTemplateCount(), equalTo(2));
+		assertThat(endpointTemplates.getCollapsed(), equalTo(2L));
+	}
+
+	@Test
+	void shouldCountCollapsedResolutionsOfCachedPaths() {
+		EndpointTemplates endpointTemplates = EndpointTemplates.builder()
+				.maxTemplates(1)
+				.build();
+		endpointTemplates.resolve("/a");
+
+		endpointTemplates.resolve("/b");
+		endpointTemplates.resolve("/b");
+
+		assertThat(endpointTemplates.getCollapsed(), equalTo(2L));
+	}
+
+	@Test
+	void shouldRejectInvalidSettings() {
+		EndpointTemplates.Builder builder = EndpointTemplates.builder();
+
+		assertThrows(IllegalArgumentException.class, () -> builder.maxTemplates(0));
+		assertThrows(IllegalArgumentException.class, () -> builder.cacheCapacity(0));
+	}
+}
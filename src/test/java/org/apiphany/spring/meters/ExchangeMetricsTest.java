@@ -0,0 +1,99 @@
+package org.apiphany.spring.meters;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test class for {@link ExchangeMetrics}.
+ *
+ * @author Radu Sebastian LAZIN
+ */
+class ExchangeMetricsTest {
+
+	private static final String CLIENT = "TestClient";
+	private static final URI URI_USER = URI.create("http://localhost:8080/users/123");
+	private static final long DURATION = TimeUnit.MILLISECONDS.toNanos(5);
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final ExchangeMetrics exchangeMetrics = ExchangeMetrics.of(registry, CLIENT, EndpointTemplates.defaults());
+
+	@Test
+	void shouldReturnTheSameEndpointForPathsWithTheSameTemplate() {
+		ExchangeMetrics.Endpoint endpoint = exchangeMetrics.endpoint("GET", URI_USER);
+
+		assertThat(exchangeMetrics.endpoint("GET", URI.create("http://localhost:8080/users/456")), sameInstance(endpoint));
+	}
+
+	@Test
+	void shouldRecordExchangesPerStatusClass() {
+		ExchangeMetrics.Endpoint endpoint = exchangeMetrics.endpoint("GET", URI_USER);
+
+		endpoint.recordExchange(200, DURATION);
+		endpoint.recordExchange(204, DURATION);
+		endpoint.recordExchange(503, DURATION);
+
+		assertThat(timer("2xx").count(), equalTo(2L));
+		assertThat(timer("5xx").count(), equalTo(1L));
+		assertThat(timer("2xx").totalTime(TimeUnit.NANOSECONDS), equalTo(2.0 * DURATION));
+	}
+
+	@Test
+	void shouldRecordIoErrorsAndRejectionsWithTheirOwnStatus() {
+		ExchangeMetrics.Endpoint endpoint = exchangeMetrics.endpoint("GET", URI_USER);
+
+		endpoint.recordIoError(DURATION);
+		endpoint.recordRejected(DURATION);
+		endpoint.recordRejected(DURATION);
+
+		assertThat(timer(ExchangeMetrics.IO_ERROR).count(), equalTo(1L));
+		assertThat(timer(ExchangeMetrics.REJECTED).count(), equalTo(2L));
+	}
+
+	@Test
+	void shouldRecordBodySizesPerEncoding() {
+		ExchangeMetrics.Endpoint endpoint = exchangeMetrics.endpoint("POST", URI_USER);
+
+		endpoint.recordRequestSize("gzip", 100);
+		endpoint.recordRequestSize(null, 300);
+		endpoint.recordResponseSize(null, 50);
+
+		assertThat(summary(".request.size", "gzip").totalAmount(), equalTo(100.0));
+		assertThat(summary(".request.size", ExchangeMetrics.IDENTITY).totalAmount(), equalTo(300.0));
+		assertThat(summary(".response.size", ExchangeMetrics.IDENTITY).count(), equalTo(1L));
+	}
+
+	@Test
+	void shouldCountTemplatesAndCollapsedExchanges() {
+		ExchangeMetrics metrics = ExchangeMetrics.of(registry, "LimitedClient", EndpointTemplates.builder().maxTemplates(1).build());
+
+		metrics.endpoint("GET", URI_USER);
+		metrics.endpoint("GET", URI.create("http://localhost:8080/orders/1"));
+
+		assertThat(registry.get(ExchangeMetrics.PREFIX + ".templates").tag("client", "LimitedClient").gauge().value(), equalTo(1.0));
+		assertThat(registry.get(ExchangeMetrics.PREFIX + ".templates.collapsed").tag("client", "LimitedClient").functionCounter().count(),
+				equalTo(1.0));
+	}
+
+	private Timer timer(final String status) {
+		return registry.get(ExchangeMetrics.PREFIX)
+				.tags("client", CLIENT, "method", "GET", "host", "http://localhost:8080", "uri", "/users/{id}", "status", status)
+				.timer();
+	}
+
+	private DistributionSummary summary(final String suffix, final String encoding) {
+		return registry.get(ExchangeMetrics.PREFIX + suffix)
+				.tags("client", CLIENT, "uri", "/users/{id}", "encoding", encoding)
+				.summary();
+	}
+}